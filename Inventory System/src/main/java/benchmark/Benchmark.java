@@ -0,0 +1,46 @@
+package benchmark;
+
+/**
+ * This class is one benchmark of the model layer: an operation that is timed over and over against an Inventory
+ * filled with a given number of parts, as run by BenchmarkRunner.
+ */
+abstract class Benchmark {
+    private final String name;
+
+    /**
+     * Constructor for a benchmark.
+     * @param name the name the results are reported under
+     */
+    Benchmark(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Getter for the name the results are reported under.
+     * @return name
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Fills the Inventory before the first iteration. Not timed.
+     * @param size the number of parts
+     */
+    void setUp(int size) {
+        ModelBenchmarks.load(size);
+    }
+
+    /**
+     * Runs the operation once. This is what is timed.
+     * @param invocation the number of the call within the benchmark, to pick the records it works on
+     * @return Anything the operation produced, which the runner consumes so the work cannot be skipped.
+     */
+    abstract Object run(int invocation);
+
+    /**
+     * Puts the Inventory back as it was before an iteration, when the operation changes its size. Not timed.
+     */
+    void afterIteration() {
+    }
+}
@@ -0,0 +1,370 @@
+package benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * This class runs the benchmarks of the model layer and writes their results as JSON, in the layout JMH uses for
+ * its JSON results, so runs can be compared release over release with the same tools.
+ * Each benchmark is timed on its own for every Inventory size as the average time of one call: a number of
+ * warmup iterations are run and thrown away, then the measurement iterations are kept, each the average time of
+ * the calls made in a fixed time. Every benchmark and size runs in a new JVM, since the Inventory is static and
+ * one benchmark would otherwise leave its records, indexes and compiled code to the next.
+ *
+ * The options follow those of JMH:
+ * -p size=1000,100000 sets the Inventory sizes, -wi and -i the number of warmup and measurement iterations,
+ * -w and -r their time such as 1s or 200ms, -f the number of JVMs per benchmark and size (0 runs them in this one),
+ * -rff the file the results are written to, and any other argument is a regular expression that benchmark names
+ * must contain to be run. JVM options given to this JVM, such as -Dinventory.partStorage=columns, are passed on.
+ *
+ * -preset idLookup runs only lookupPartById and lookupProductById, at 1k, 10k, 100k, 1M and 10M parts, to show
+ * how the cost of a lookup by Id changes with the size of the Inventory. The 10M Inventory needs about 4 GB of
+ * heap, so give -Xmx4g to this JVM, which passes it on. Options after the preset override it.
+ */
+public final class BenchmarkRunner {
+    /**
+     * The two-sided 99.9% quantiles of Student's t distribution for 1 to 30 degrees of freedom,
+     * by which the error of a score is the half-width of its 99.9% confidence interval, as in JMH.
+     */
+    private static final double[] T_999 = {
+        636.619, 31.599, 12.924, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587,
+        4.437, 4.318, 4.221, 4.140, 4.073, 4.015, 3.965, 3.922, 3.883, 3.850,
+        3.819, 3.792, 3.768, 3.745, 3.725, 3.707, 3.690, 3.674, 3.659, 3.646
+    };
+    /**
+     * The number of calls between readings of the clock.
+     */
+    private static final int BATCH = 16;
+    /**
+     * Never equal to a result; comparing every result with it keeps the calls from being optimized away.
+     */
+    private static volatile Object never = new Object();
+    private static int matched;
+
+    private static final int[] ID_LOOKUP_SIZES = {1_000, 10_000, 100_000, 1_000_000, 10_000_000};
+
+    private int[] sizes = {1_000, 100_000};
+    private int warmupIterations = 3;
+    private int iterations = 5;
+    private long warmupNanos = 1_000_000_000L;
+    private long iterationNanos = 1_000_000_000L;
+    private int forks = 1;
+    private Path resultFile = Path.of("benchmark-results.json");
+    private Pattern filter = Pattern.compile("");
+
+    private BenchmarkRunner() {
+    }
+
+    /**
+     * Runs the benchmarks with the options given, printing each score as it is measured.
+     * @param args the options
+     * @throws IOException if a JVM cannot be started or the results cannot be written
+     * @throws InterruptedException if interrupted while waiting for a JVM
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 0 && args[0].equals("--child")) {
+            BenchmarkRunner runner = new BenchmarkRunner();
+            runner.warmupIterations = Integer.parseInt(args[3]);
+            runner.iterations = Integer.parseInt(args[4]);
+            runner.warmupNanos = Long.parseLong(args[5]);
+            runner.iterationNanos = Long.parseLong(args[6]);
+            double[] samples = runner.measure(find(args[1]), Integer.parseInt(args[2]));
+            StringBuilder line = new StringBuilder("#samples");
+            for (double sample : samples) {
+                line.append(' ').append(sample);
+            }
+            System.out.println(line);
+            return;
+        }
+        BenchmarkRunner runner = parse(args);
+        List<String> results = new ArrayList<>();
+        for (Benchmark benchmark : ModelBenchmarks.all()) {
+            if (!runner.filter.matcher(benchmark.getName()).find()) {
+                continue;
+            }
+            for (int size : runner.sizes) {
+                List<double[]> samples = new ArrayList<>();
+                if (runner.forks == 0) {
+                    samples.add(runner.measure(benchmark, size));
+                }
+                for (int fork = 0; fork < runner.forks; fork++) {
+                    samples.add(runner.fork(benchmark.getName(), size));
+                }
+                double[] score = score(samples);
+                System.out.printf(Locale.ROOT, "%-26s %10d %14.3f +- %.3f ns/op%n", benchmark.getName(), size,
+                        score[0], score[1]);
+                results.add(runner.toJson(benchmark.getName(), size, samples, score));
+            }
+        }
+        Files.writeString(runner.resultFile, "[\n" + String.join(",\n", results) + "\n]\n", StandardCharsets.UTF_8);
+        System.out.println("Results written to " + runner.resultFile.toAbsolutePath());
+    }
+
+    /**
+     * Reads the options.
+     * @param args the options
+     * @return A runner with the options set.
+     * @throws IllegalArgumentException if an option is not known or has no value
+     */
+    private static BenchmarkRunner parse(String[] args) {
+        BenchmarkRunner runner = new BenchmarkRunner();
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (!option.startsWith("-")) {
+                runner.filter = Pattern.compile(option);
+                continue;
+            }
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("No value for " + option);
+            }
+            String value = args[++i];
+            switch (option) {
+                case "-p":
+                    if (!value.startsWith("size=")) {
+                        throw new IllegalArgumentException("Only the size parameter can be set: " + value);
+                    }
+                    runner.sizes = Arrays.stream(value.substring(5).split(",")).mapToInt(Integer::parseInt).toArray();
+                    break;
+                case "-wi":
+                    runner.warmupIterations = Integer.parseInt(value);
+                    break;
+                case "-i":
+                    runner.iterations = Integer.parseInt(value);
+                    break;
+                case "-w":
+                    runner.warmupNanos = nanos(value);
+                    break;
+                case "-r":
+                    runner.iterationNanos = nanos(value);
+                    break;
+                case "-f":
+                    runner.forks = Integer.parseInt(value);
+                    break;
+                case "-rff":
+                    runner.resultFile = Path.of(value);
+                    break;
+                case "-preset":
+                    if (!value.equals("idLookup")) {
+                        throw new IllegalArgumentException("Unknown preset " + value);
+                    }
+                    runner.sizes = ID_LOOKUP_SIZES;
+                    runner.filter = Pattern.compile("^lookup(Part|Product)ById$");
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+        if (runner.iterations < 1) {
+            throw new IllegalArgumentException("At least one measurement iteration is needed");
+        }
+        return runner;
+    }
+
+    /**
+     * Reads a time such as 1s, 200ms or 2, which is taken as seconds.
+     */
+    private static long nanos(String time) {
+        if (time.endsWith("ms")) {
+            return Long.parseLong(time.substring(0, time.length() - 2)) * 1_000_000L;
+        }
+        return (long) (Double.parseDouble(time.endsWith("s") ? time.substring(0, time.length() - 1) : time) * 1e9);
+    }
+
+    private static Benchmark find(String name) {
+        for (Benchmark benchmark : ModelBenchmarks.all()) {
+            if (benchmark.getName().equals(name)) {
+                return benchmark;
+            }
+        }
+        throw new IllegalArgumentException("No benchmark named " + name);
+    }
+
+    /**
+     * Times a benchmark in this JVM.
+     * @param benchmark the benchmark
+     * @param size the number of parts in the Inventory
+     * @return The average time of one call in each measurement iteration, in nanoseconds.
+     */
+    private double[] measure(Benchmark benchmark, int size) {
+        benchmark.setUp(size);
+        int invocation = 0;
+        for (int i = 0; i < warmupIterations; i++) {
+            long start = System.nanoTime();
+            invocation += iteration(benchmark, invocation, start + warmupNanos);
+            benchmark.afterIteration();
+        }
+        double[] samples = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            int calls = iteration(benchmark, invocation, start + iterationNanos);
+            samples[i] = (double) (System.nanoTime() - start) / calls;
+            invocation += calls;
+            benchmark.afterIteration();
+        }
+        return samples;
+    }
+
+    /**
+     * Calls a benchmark over and over until a time.
+     * @return The number of calls made.
+     */
+    private static int iteration(Benchmark benchmark, int first, long end) {
+        int calls = 0;
+        do {
+            for (int i = 0; i < BATCH; i++) {
+                if (benchmark.run(first + calls++) == never) {
+                    matched++;
+                }
+            }
+        } while (System.nanoTime() < end);
+        return calls;
+    }
+
+    /**
+     * Times a benchmark in a new JVM started with the same class path and JVM options as this one.
+     * @param name the name of the benchmark
+     * @param size the number of parts in the Inventory
+     * @return The average time of one call in each measurement iteration, in nanoseconds.
+     * @throws IOException if the JVM cannot be started or fails
+     * @throws InterruptedException if interrupted while waiting for the JVM
+     */
+    private double[] fork(String name, int size) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.addAll(List.of("-cp", System.getProperty("java.class.path"), BenchmarkRunner.class.getName(),
+                "--child", name, Integer.toString(size), Integer.toString(warmupIterations),
+                Integer.toString(iterations), Long.toString(warmupNanos), Long.toString(iterationNanos)));
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        double[] samples = null;
+        try (BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream(),
+                StandardCharsets.UTF_8))) {
+            for (String line = out.readLine(); line != null; line = out.readLine()) {
+                if (line.startsWith("#samples ")) {
+                    samples = Arrays.stream(line.substring(9).split(" ")).mapToDouble(Double::parseDouble).toArray();
+                } else {
+                    System.out.println(line);
+                }
+            }
+        }
+        if (process.waitFor() != 0 || samples == null) {
+            throw new IOException("The JVM running " + name + " with " + size + " parts failed");
+        }
+        return samples;
+    }
+
+    /**
+     * Works out the score of a benchmark, the mean of every measurement iteration of every JVM,
+     * and its error, the half-width of the 99.9% confidence interval, which is not a number for one iteration.
+     * @param samples the iterations of each JVM
+     * @return The score and the error.
+     */
+    private static double[] score(List<double[]> samples) {
+        double[] all = samples.stream().flatMapToDouble(Arrays::stream).toArray();
+        double mean = Arrays.stream(all).average().orElse(Double.NaN);
+        if (all.length < 2) {
+            return new double[] {mean, Double.NaN};
+        }
+        double squares = 0;
+        for (double sample : all) {
+            squares += (sample - mean) * (sample - mean);
+        }
+        double deviation = Math.sqrt(squares / (all.length - 1));
+        return new double[] {mean, quantile(all.length - 1) * deviation / Math.sqrt(all.length)};
+    }
+
+    /**
+     * Gets the two-sided 99.9% quantile of Student's t distribution, from the table up to 30 degrees of freedom
+     * and from the Cornish-Fisher expansion around the normal quantile above that.
+     */
+    private static double quantile(int degrees) {
+        if (degrees <= T_999.length) {
+            return T_999[degrees - 1];
+        }
+        double z = 3.2905;
+        return z + (z * z * z + z) / (4.0 * degrees)
+                + (5 * Math.pow(z, 5) + 16 * z * z * z + 3 * z) / (96.0 * degrees * degrees);
+    }
+
+    private String toJson(String name, int size, List<double[]> samples, double[] score) {
+        StringBuilder json = new StringBuilder("    {\n");
+        member(json, "benchmark", quote(ModelBenchmarks.class.getName() + "." + name));
+        member(json, "mode", quote("avgt"));
+        member(json, "threads", "1");
+        member(json, "forks", Integer.toString(forks));
+        member(json, "jvm", quote(Path.of(System.getProperty("java.home"), "bin", "java").toString()));
+        List<String> jvmArgs = new ArrayList<>();
+        for (String arg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            jvmArgs.add(quote(arg));
+        }
+        member(json, "jvmArgs", "[" + String.join(", ", jvmArgs) + "]");
+        member(json, "jdkVersion", quote(System.getProperty("java.version")));
+        member(json, "vmName", quote(System.getProperty("java.vm.name")));
+        member(json, "vmVersion", quote(System.getProperty("java.vm.version")));
+        member(json, "warmupIterations", Integer.toString(warmupIterations));
+        member(json, "warmupTime", quote(time(warmupNanos)));
+        member(json, "warmupBatchSize", "1");
+        member(json, "measurementIterations", Integer.toString(iterations));
+        member(json, "measurementTime", quote(time(iterationNanos)));
+        member(json, "measurementBatchSize", "1");
+        member(json, "params", "{\"size\": " + quote(Integer.toString(size)) + "}");
+        List<String> rawData = new ArrayList<>();
+        for (double[] fork : samples) {
+            List<String> values = new ArrayList<>();
+            for (double sample : fork) {
+                values.add(number(sample));
+            }
+            rawData.add("[" + String.join(", ", values) + "]");
+        }
+        json.append("        \"primaryMetric\": {\n");
+        json.append("            \"score\": ").append(number(score[0])).append(",\n");
+        json.append("            \"scoreError\": ").append(number(score[1])).append(",\n");
+        json.append("            \"scoreConfidence\": [").append(number(score[0] - score[1])).append(", ")
+                .append(number(score[0] + score[1])).append("],\n");
+        json.append("            \"scoreUnit\": \"ns/op\",\n");
+        json.append("            \"rawData\": [").append(String.join(", ", rawData)).append("]\n");
+        json.append("        },\n");
+        json.append("        \"secondaryMetrics\": {}\n");
+        return json.append("    }").toString();
+    }
+
+    private static void member(StringBuilder json, String name, String value) {
+        json.append("        ").append(quote(name)).append(": ").append(value).append(",\n");
+    }
+
+    /**
+     * Writes a number as JSON, or as the string "NaN" as JMH does, since JSON has no NaN.
+     */
+    private static String number(double value) {
+        return Double.isNaN(value) ? "\"NaN\"" : Double.toString(value);
+    }
+
+    private static String time(long nanos) {
+        return nanos % 1_000_000_000L == 0 ? nanos / 1_000_000_000L + " s" : nanos / 1_000_000L + " ms";
+    }
+
+    private static String quote(String text) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
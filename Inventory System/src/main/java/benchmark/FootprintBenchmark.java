@@ -0,0 +1,177 @@
+package benchmark;
+
+import model.Inventory;
+import model.Part;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * This class measures how much heap the parts of the Inventory take with each part storage: part objects, and the
+ * primitive columns chosen with -Dinventory.partStorage=columns. The parts are those of ModelBenchmarks, added in
+ * chunks as an import would add them, so no part object outlives its chunk except in the objects storage.
+ * The heap in use after a full collection is compared before and after the parts are added, so the result covers
+ * everything kept per part: the storage, the Id index and the name index.
+ * The columns keep each distinct name once, so how much they save depends on how often names repeat; every part
+ * of ModelBenchmarks has a name of its own, and the number of distinct names can be set to measure shared ones.
+ *
+ * Each storage and size is measured in a new JVM, since the storage is chosen when the Inventory class is loaded.
+ * The options are -p size=1000,100000 for the Inventory sizes, -names the number of distinct part names, 0 for
+ * every part having its own, and -rff the file the results are written to as JSON.
+ * JVM options given to this JVM, such as -XX:-UseCompressedOops, are passed on.
+ */
+public final class FootprintBenchmark {
+    private static final String[] STORAGES = {"objects", "columns"};
+    /**
+     * The number of parts added at a time.
+     */
+    private static final int CHUNK = 10_000;
+
+    private FootprintBenchmark() {
+    }
+
+    /**
+     * Measures every storage with the options given, printing each result as it is measured.
+     * @param args the options
+     * @throws IOException if a JVM cannot be started or the results cannot be written
+     * @throws InterruptedException if interrupted while waiting for a JVM
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 0 && args[0].equals("--child")) {
+            System.out.println("#bytes " + measure(Integer.parseInt(args[1]), Integer.parseInt(args[2])));
+            return;
+        }
+        int[] sizes = {100_000, 1_000_000};
+        int names = 0;
+        Path resultFile = Path.of("footprint-results.json");
+        for (int i = 0; i < args.length; i++) {
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("No value for " + args[i]);
+            }
+            String value = args[++i];
+            switch (args[i - 1]) {
+                case "-p":
+                    if (!value.startsWith("size=")) {
+                        throw new IllegalArgumentException("Only the size parameter can be set: " + value);
+                    }
+                    sizes = Arrays.stream(value.substring(5).split(",")).mapToInt(Integer::parseInt).toArray();
+                    break;
+                case "-names":
+                    names = Integer.parseInt(value);
+                    break;
+                case "-rff":
+                    resultFile = Path.of(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i - 1]);
+            }
+        }
+        List<String> results = new ArrayList<>();
+        for (int size : sizes) {
+            for (String storage : STORAGES) {
+                long bytes = fork(storage, size, names);
+                System.out.printf(Locale.ROOT, "%-8s %10d parts %12.1f bytes/part %10.1f MB%n", storage, size,
+                        (double) bytes / size, bytes / 1048576.0);
+                results.add(String.format(Locale.ROOT, "    {\"storage\": \"%s\", \"size\": %d, \"names\": %d, "
+                        + "\"bytes\": %d, \"bytesPerPart\": %f}", storage, size, names, bytes, (double) bytes / size));
+            }
+        }
+        Files.writeString(resultFile, "[\n" + String.join(",\n", results) + "\n]\n", StandardCharsets.UTF_8);
+        System.out.println("Results written to " + resultFile.toAbsolutePath());
+    }
+
+    /**
+     * Adds parts to the Inventory of this JVM and measures the heap they take.
+     * @param size the number of parts
+     * @param names the number of distinct part names, 0 for every part having its own
+     * @return The bytes of heap taken.
+     */
+    private static long measure(int size, int names) {
+        // the Inventory and its empty lists and indexes are not counted
+        Inventory.getAllParts();
+        long before = usedHeap();
+        List<Part> chunk = new ArrayList<>(CHUNK);
+        for (int id = 1; id <= size; id++) {
+            Part part = ModelBenchmarks.part(id);
+            if (names > 0) {
+                part.setName(ModelBenchmarks.partName((id - 1) % names + 1));
+            }
+            chunk.add(part);
+            if (chunk.size() == CHUNK || id == size) {
+                Inventory.addParts(chunk);
+                chunk = new ArrayList<>(CHUNK);
+            }
+        }
+        long after = usedHeap();
+        if (Inventory.getAllParts().size() != size) {
+            throw new IllegalStateException("Expected " + size + " parts");
+        }
+        return after - before;
+    }
+
+    /**
+     * Gets the heap in use once collections no longer free anything.
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            long now = runtime.totalMemory() - runtime.freeMemory();
+            if (now >= used) {
+                break;
+            }
+            used = now;
+        }
+        return used;
+    }
+
+    /**
+     * Measures a storage in a new JVM.
+     * @param storage the value of the inventory.partStorage property
+     * @param size the number of parts
+     * @param names the number of distinct part names, 0 for every part having its own
+     * @return The bytes of heap taken.
+     * @throws IOException if the JVM cannot be started or fails
+     * @throws InterruptedException if interrupted while waiting for the JVM
+     */
+    private static long fork(String storage, int size, int names) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        for (String arg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (!arg.startsWith("-Dinventory.partStorage=")) {
+                command.add(arg);
+            }
+        }
+        command.addAll(List.of("-Dinventory.partStorage=" + storage, "-cp", System.getProperty("java.class.path"),
+                FootprintBenchmark.class.getName(), "--child", Integer.toString(size), Integer.toString(names)));
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        long bytes = -1;
+        try (BufferedReader out = new BufferedReader(new InputStreamReader(process.getInputStream(),
+                StandardCharsets.UTF_8))) {
+            for (String line = out.readLine(); line != null; line = out.readLine()) {
+                if (line.startsWith("#bytes ")) {
+                    bytes = Long.parseLong(line.substring(7));
+                }
+            }
+        }
+        if (process.waitFor() != 0 || bytes < 0) {
+            throw new IOException("The JVM measuring " + storage + " storage with " + size + " parts failed");
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,90 @@
+package benchmark;
+
+/**
+ * This class counts latencies in buckets that are at most 1.6% wide at every scale, from nanoseconds to minutes,
+ * so percentiles can be read to that precision with a fixed amount of memory however many latencies are counted.
+ * Values below 128 have a bucket each; above that, each power of two is split into 64 buckets.
+ * A histogram is only used by one thread; those of several threads are merged once they are done.
+ */
+final class LatencyHistogram {
+    private static final int SUB_BUCKETS = 64;
+    private static final int LINEAR = 2 * SUB_BUCKETS;
+    private final long[] counts = new long[LINEAR + (63 - 7) * SUB_BUCKETS];
+    private long total;
+    private long max;
+
+    /**
+     * Counts one latency.
+     * @param nanos the latency, negative values counted as 0
+     */
+    void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts[bucket(value)]++;
+        total++;
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Adds the latencies counted by another histogram to this one.
+     * @param other the other histogram
+     */
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Getter for the number of latencies counted.
+     * @return count
+     */
+    long getCount() {
+        return total;
+    }
+
+    /**
+     * Getter for the highest latency counted.
+     * @return max, in nanoseconds
+     */
+    long getMax() {
+        return max;
+    }
+
+    /**
+     * Gets the latency that a given share of the latencies are at or below.
+     * @param percentile the share, from 0 to 100
+     * @return The highest value of the bucket the percentile falls in, in nanoseconds, or 0 if nothing was counted.
+     */
+    long percentile(double percentile) {
+        long rank = (long) Math.ceil(percentile / 100 * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= Math.max(1, rank) && counts[i] > 0) {
+                return Math.min(max, highest(i));
+            }
+        }
+        return 0;
+    }
+
+    private static int bucket(long value) {
+        if (value < LINEAR) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - 6;
+        return LINEAR + (magnitude - 7) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    private static long highest(int bucket) {
+        if (bucket < LINEAR) {
+            return bucket;
+        }
+        int magnitude = (bucket - LINEAR) / SUB_BUCKETS + 7;
+        int shift = magnitude - 6;
+        long sub = (bucket - LINEAR) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+}
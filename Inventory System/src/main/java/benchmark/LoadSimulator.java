@@ -0,0 +1,416 @@
+package benchmark;
+
+import model.InHouse;
+import model.Inventory;
+import model.Outsourced;
+import model.Part;
+import model.Product;
+import model.Reservation;
+import persistence.InventoryJournal;
+import persistence.WriteAheadLog;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class puts the model layer under a mixed load from several threads at once, without the user interface,
+ * and reports the throughput and the latency percentiles of each kind of operation.
+ * The load is made by Workload: lookups of parts and products and searches by name, and updates, stock
+ * reservations, new products and deletes of parts, picked with a given share of reads and a Zipf-skewed
+ * popularity of records, with bulk imports now and then. Every thread writes as well as reads.
+ *
+ * A run can be recorded to a file and replayed, running the same operations by the same threads on the same
+ * Inventory. A paced replay starts each operation when it was started in the recorded run, and counts its latency
+ * from then, so an operation held up by a slow one before it is counted as held up rather than left out.
+ * Such a replay only has room to catch up if the recorded run was not already running flat out, so a run can
+ * instead be given a rate, which starts the operations on a fixed schedule and counts latencies the same way.
+ *
+ * Given a durability mode, every change is also recorded in a journal in a temporary file, as the program does, so
+ * runs in SYNC, GROUP and ASYNC modes compare what each costs the writes; GROUP lets the changes of many threads
+ * share one force of the journal, so it shows best with several threads and a low share of reads.
+ *
+ * The options are:
+ * -size the number of parts loaded, -threads the number of threads, -ops the number of operations in all,
+ * -reads the share of reads, -zipf the skew, -imports the share of bulk imports and -importSize their parts,
+ * -seed the seed, -warmup the number of operations per thread run before the Inventory is loaded again and the
+ * run is measured, -rate the operations per second in all to start them at, -record and -replay the trace file,
+ * -paced to replay at the recorded times, -durability SYNC, GROUP or ASYNC to journal every change and -flushDelay
+ * the milliseconds the journal's background flush waits for more changes, and -rff a file the results are also
+ * written to as JSON.
+ */
+public final class LoadSimulator {
+    private static final Workload.Operation[] OPERATIONS = Workload.Operation.values();
+    /**
+     * Waits longer than this before a paced operation are parked; shorter ones yield to other threads.
+     */
+    private static final long SPIN_NANOS = 100_000L;
+    /**
+     * Never equal to a result; comparing every result with it keeps the calls from being optimized away.
+     */
+    private static volatile Object never = new Object();
+    private static int matched;
+
+    private int size = 100_000;
+    private int threads = 4;
+    private long operations = 1_000_000L;
+    private double reads = 0.9;
+    private double skew = 0.99;
+    private double imports = 0.0001;
+    private int importSize = 1_000;
+    private long seed = 42;
+    private int warmup = 50_000;
+    private double rate;
+    private Path recordFile;
+    private Path replayFile;
+    private boolean paced;
+    private WriteAheadLog.Durability durability;
+    private long flushDelayMillis = 2;
+    private Path resultFile;
+
+    private LoadSimulator() {
+    }
+
+    /**
+     * Runs a load with the options given and prints its results.
+     * @param args the options
+     * @throws IOException if a trace or the results cannot be read or written
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        LoadSimulator simulator = parse(args);
+        Workload.Trace trace;
+        if (simulator.replayFile != null) {
+            trace = Workload.read(simulator.replayFile);
+            simulator.size = trace.getSize();
+            simulator.threads = trace.getOperations().length;
+        } else {
+            Workload workload = simulator.workload(simulator.seed);
+            long[][] operations = new long[simulator.threads][];
+            long[][] starts = new long[simulator.threads][];
+            for (int worker = 0; worker < simulator.threads; worker++) {
+                int count = (int) (simulator.operations / simulator.threads
+                        + (worker < simulator.operations % simulator.threads ? 1 : 0));
+                operations[worker] = workload.operations(worker, count);
+                starts[worker] = new long[count];
+                for (int i = 0; simulator.rate > 0 && i < count; i++) {
+                    starts[worker][i] = (long) (((double) i * simulator.threads + worker) * 1e9 / simulator.rate);
+                }
+            }
+            trace = new Workload.Trace(simulator.size, operations, starts);
+        }
+
+        ModelBenchmarks.load(simulator.size);
+        InventoryJournal journal = null;
+        if (simulator.durability != null) {
+            Path file = Files.createTempFile("load-journal", ".wal");
+            file.toFile().deleteOnExit();
+            journal = InventoryJournal.open(file, simulator.durability, simulator.flushDelayMillis);
+            Inventory.addListener(journal);
+        }
+        if (simulator.warmup > 0) {
+            Workload workload = simulator.workload(~simulator.seed);
+            long[][] operations = new long[simulator.threads][];
+            for (int worker = 0; worker < simulator.threads; worker++) {
+                operations[worker] = workload.operations(worker, simulator.warmup);
+            }
+            simulator.run(operations, new long[simulator.threads][simulator.warmup], false);
+            ModelBenchmarks.load(simulator.size);
+        }
+
+        boolean paced = simulator.replayFile == null ? simulator.rate > 0 : simulator.paced;
+        long started = System.nanoTime();
+        LatencyHistogram[] latencies = simulator.run(trace.getOperations(), trace.getStarts(), paced);
+        double seconds = (System.nanoTime() - started) / 1e9;
+        if (journal != null) {
+            journal.close();
+        }
+
+        if (simulator.recordFile != null) {
+            Workload.write(simulator.recordFile, trace);
+            System.out.println("Trace written to " + simulator.recordFile.toAbsolutePath());
+        }
+        simulator.report(latencies, seconds);
+    }
+
+    /**
+     * Reads the options.
+     * @param args the options
+     * @return A simulator with the options set.
+     * @throws IllegalArgumentException if an option is not known or has no value
+     */
+    private static LoadSimulator parse(String[] args) {
+        LoadSimulator simulator = new LoadSimulator();
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (option.equals("-paced")) {
+                simulator.paced = true;
+                continue;
+            }
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("No value for " + option);
+            }
+            String value = args[++i];
+            switch (option) {
+                case "-size":
+                    simulator.size = Integer.parseInt(value);
+                    break;
+                case "-threads":
+                    simulator.threads = Integer.parseInt(value);
+                    break;
+                case "-ops":
+                    simulator.operations = Long.parseLong(value);
+                    break;
+                case "-reads":
+                    simulator.reads = Double.parseDouble(value);
+                    break;
+                case "-zipf":
+                    simulator.skew = Double.parseDouble(value);
+                    break;
+                case "-imports":
+                    simulator.imports = Double.parseDouble(value);
+                    break;
+                case "-importSize":
+                    simulator.importSize = Integer.parseInt(value);
+                    break;
+                case "-seed":
+                    simulator.seed = Long.parseLong(value);
+                    break;
+                case "-warmup":
+                    simulator.warmup = Integer.parseInt(value);
+                    break;
+                case "-rate":
+                    simulator.rate = Double.parseDouble(value);
+                    break;
+                case "-record":
+                    simulator.recordFile = Path.of(value);
+                    break;
+                case "-replay":
+                    simulator.replayFile = Path.of(value);
+                    break;
+                case "-durability":
+                    simulator.durability = WriteAheadLog.Durability.valueOf(value.toUpperCase(Locale.ROOT));
+                    break;
+                case "-flushDelay":
+                    simulator.flushDelayMillis = Long.parseLong(value);
+                    break;
+                case "-rff":
+                    simulator.resultFile = Path.of(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+        if (simulator.threads < 1 || simulator.operations < simulator.threads
+                || simulator.operations / simulator.threads > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Each thread must have from 1 to " + Integer.MAX_VALUE + " operations");
+        }
+        return simulator;
+    }
+
+    private Workload workload(long seed) {
+        return new Workload(size, seed, reads, skew, imports, importSize);
+    }
+
+    /**
+     * Runs the operations of every thread at once, each thread starting when all of them are ready.
+     * @param operations the operations of each thread
+     * @param starts when each operation is started, in nanoseconds from the start of the run: set as they are
+     *        started, or read to start them then if paced
+     * @param paced whether to start each operation at its time
+     * @return The latencies of each kind of operation.
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    private LatencyHistogram[] run(long[][] operations, long[][] starts, boolean paced) throws InterruptedException {
+        LatencyHistogram[][] latencies = new LatencyHistogram[operations.length][OPERATIONS.length];
+        CountDownLatch ready = new CountDownLatch(operations.length);
+        CountDownLatch start = new CountDownLatch(1);
+        long[] origin = new long[1];
+        List<Thread> workers = new ArrayList<>();
+        for (int worker = 0; worker < operations.length; worker++) {
+            int w = worker;
+            for (int kind = 0; kind < OPERATIONS.length; kind++) {
+                latencies[w][kind] = new LatencyHistogram();
+            }
+            Thread thread = new Thread(() -> {
+                ready.countDown();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                work(operations[w], starts[w], paced, origin[0], latencies[w]);
+            }, "load-" + worker);
+            workers.add(thread);
+            thread.start();
+        }
+        ready.await();
+        origin[0] = System.nanoTime();
+        start.countDown();
+        for (Thread thread : workers) {
+            thread.join();
+        }
+        LatencyHistogram[] merged = latencies[0];
+        for (int worker = 1; worker < latencies.length; worker++) {
+            for (int kind = 0; kind < OPERATIONS.length; kind++) {
+                merged[kind].add(latencies[worker][kind]);
+            }
+        }
+        return merged;
+    }
+
+    private static void work(long[] operations, long[] starts, boolean paced, long origin,
+                             LatencyHistogram[] latencies) {
+        for (int i = 0; i < operations.length; i++) {
+            long begin;
+            if (paced) {
+                begin = origin + starts[i];
+                for (long wait = begin - System.nanoTime(); wait > 0; wait = begin - System.nanoTime()) {
+                    if (wait > SPIN_NANOS) {
+                        LockSupport.parkNanos(wait - SPIN_NANOS);
+                    } else {
+                        Thread.yield();
+                    }
+                }
+            } else {
+                begin = System.nanoTime();
+                starts[i] = begin - origin;
+            }
+            if (execute(operations[i]) == never) {
+                matched++;
+            }
+            latencies[Workload.kind(operations[i]).ordinal()].record(System.nanoTime() - begin);
+        }
+    }
+
+    /**
+     * Runs one operation through the public Inventory API, as the controllers would.
+     * Another thread may have just deleted the part an operation works on, in which case it does nothing.
+     * @param operation the operation
+     * @return What the call returned, so it is not optimized away.
+     */
+    private static Object execute(long operation) {
+        int id = Workload.id(operation);
+        int value = Workload.value(operation);
+        switch (Workload.kind(operation)) {
+            case LOOKUP_PART:
+                return Inventory.lookupPart(id);
+            case LOOKUP_PRODUCT:
+                return Inventory.lookupProduct(id);
+            case SEARCH_NAME:
+                return Inventory.lookupPart(ModelBenchmarks.partName(id));
+            case UPDATE_PART: {
+                Part part = Inventory.lookupPart(id);
+                if (part != null) {
+                    Inventory.updatePart(id, copy(part, id, value / 100.0));
+                }
+                return part;
+            }
+            case RESERVE_PART:
+                try {
+                    Reservation reservation = Inventory.reservePart(id, value);
+                    if (reservation == null) {
+                        return Inventory.receivePart(id, 100);
+                    }
+                    return reservation.commit();
+                } catch (IllegalArgumentException e) {
+                    return e;
+                }
+            case ADD_PRODUCT: {
+                // as AddProductController.onSave does
+                Product product = new Product(0, "kit", 49.99, 4, 1, 10);
+                for (int i = 0; i < ModelBenchmarks.ASSOCIATED_PARTS; i++) {
+                    Part part = Inventory.lookupPart(id + i);
+                    if (part != null) {
+                        product.addAssociatedPart(part);
+                    }
+                }
+                product.setId(Inventory.getProductIds().next());
+                Inventory.addProduct(product);
+                return product;
+            }
+            case DELETE_PART: {
+                // the part is added back, so the Inventory keeps its size
+                Part part = Inventory.lookupPart(id);
+                if (part == null) {
+                    return null;
+                }
+                Part saved = copy(part, id, part.getPrice());
+                boolean deleted = Inventory.deletePart(part);
+                if (deleted) {
+                    Inventory.addPart(saved);
+                }
+                return deleted;
+            }
+            case IMPORT: {
+                List<Part> parts = new ArrayList<>(value);
+                for (int i = 0; i < value; i++) {
+                    int partId = Inventory.getPartIds().next();
+                    parts.add(new InHouse(partId, ModelBenchmarks.partName(partId), 9.99, 50, 1, 1000, i % 50));
+                }
+                Inventory.addParts(parts);
+                return parts;
+            }
+            default:
+                throw new IllegalStateException("Unknown operation " + operation);
+        }
+    }
+
+    /**
+     * Copies a part, as ModifyPartController does, keeping whether it is in-house or outsourced.
+     */
+    private static Part copy(Part part, int id, double price) {
+        if (part instanceof InHouse) {
+            return new InHouse(id, part.getName(), price, part.getStock(), part.getMin(), part.getMax(),
+                    ((InHouse) part).getMachineId());
+        }
+        return new Outsourced(id, part.getName(), price, part.getStock(), part.getMin(), part.getMax(),
+                ((Outsourced) part).getCompanyName());
+    }
+
+    /**
+     * Prints the throughput and latencies of each kind of operation, and writes them as JSON if asked to.
+     * @param latencies the latencies of each kind of operation
+     * @param seconds how long the run took
+     * @throws IOException if the results cannot be written
+     */
+    private void report(LatencyHistogram[] latencies, double seconds) throws IOException {
+        long total = 0;
+        List<String> results = new ArrayList<>();
+        System.out.printf(Locale.ROOT, "%-14s %10s %12s %10s %10s %10s %10s%n", "operation", "count", "ops/s",
+                "p50 us", "p99 us", "p99.9 us", "max us");
+        for (Workload.Operation kind : OPERATIONS) {
+            LatencyHistogram latency = latencies[kind.ordinal()];
+            if (latency.getCount() == 0) {
+                continue;
+            }
+            total += latency.getCount();
+            double[] values = {latency.getCount() / seconds, latency.percentile(50) / 1e3,
+                latency.percentile(99) / 1e3, latency.percentile(99.9) / 1e3, latency.getMax() / 1e3};
+            System.out.printf(Locale.ROOT, "%-14s %10d %12.0f %10.1f %10.1f %10.1f %10.1f%n", kind.getLabel(),
+                    latency.getCount(), values[0], values[1], values[2], values[3], values[4]);
+            results.add(String.format(Locale.ROOT, "        \"%s\": {\"read\": %b, \"count\": %d, \"throughput\": %f, "
+                    + "\"p50\": %f, \"p99\": %f, \"p999\": %f, \"max\": %f}", kind.getLabel(), kind.isRead(),
+                    latency.getCount(), values[0], values[1], values[2], values[3], values[4]));
+        }
+        System.out.printf(Locale.ROOT, "%-14s %10d %12.0f ops/s over %.2f s, %d threads, %s%n", "total", total,
+                total / seconds, seconds, threads, durability == null ? "no journal"
+                        : durability + " journal, " + flushDelayMillis + " ms flush delay");
+        if (resultFile == null) {
+            return;
+        }
+        String json = String.format(Locale.ROOT, "{\n    \"size\": %d,\n    \"threads\": %d,\n    \"durability\": %s,\n"
+                + "    \"flushDelayMillis\": %d,\n    \"seconds\": %f,\n    \"throughput\": %f,\n"
+                + "    \"latencyUnit\": \"us\",\n    \"operations\": {\n%s\n    }\n}\n", size, threads,
+                durability == null ? "null" : "\"" + durability + "\"", flushDelayMillis, seconds, total / seconds,
+                String.join(",\n", results));
+        Files.writeString(resultFile, json, StandardCharsets.UTF_8);
+        System.out.println("Results written to " + resultFile.toAbsolutePath());
+    }
+}
@@ -0,0 +1,213 @@
+package benchmark;
+
+import model.InHouse;
+import model.Inventory;
+import model.Outsourced;
+import model.Part;
+import model.Product;
+import model.RecordSource;
+import model.Validation;
+
+import java.util.List;
+
+/**
+ * This class holds the benchmarks of the model layer and the Inventory they run against.
+ * Each Inventory has the given number of parts, half in-house and half outsourced, and a tenth as many products,
+ * each with five associated parts. The records an operation works on are spread over the whole Inventory.
+ */
+final class ModelBenchmarks {
+    /**
+     * The words part names start with; a name is a word and a number, such as "washer 12".
+     */
+    private static final String[] WORDS = {"bolt", "nail", "screw", "washer", "nut", "spring", "gear", "hinge"};
+    /**
+     * The number of associated parts of each product, and of each product saved.
+     */
+    static final int ASSOCIATED_PARTS = 5;
+
+    private static Part[] parts;
+    private static int productCount;
+
+    private ModelBenchmarks() {
+    }
+
+    /**
+     * Gets every benchmark, in the order they are run.
+     * @return The benchmarks.
+     */
+    static List<Benchmark> all() {
+        return List.of(
+                new Benchmark("lookupPartById") {
+                    @Override
+                    Object run(int invocation) {
+                        return Inventory.lookupPart(partId(invocation));
+                    }
+                },
+                new Benchmark("lookupProductById") {
+                    @Override
+                    Object run(int invocation) {
+                        return Inventory.lookupProduct(spread(invocation, productCount) + 1);
+                    }
+                },
+                new Benchmark("lookupPartByName") {
+                    @Override
+                    Object run(int invocation) {
+                        return Inventory.lookupPart(parts[spread(invocation, parts.length)].getName());
+                    }
+                },
+                new Benchmark("updatePart") {
+                    @Override
+                    Object run(int invocation) {
+                        // as ModifyPartController does: a new part with the same Id replaces the old one
+                        Part part = parts[spread(invocation, parts.length)];
+                        Part changed = new InHouse(part.getId(), part.getName(), part.getPrice() + 1,
+                                part.getStock(), part.getMin(), part.getMax(), invocation & 63);
+                        Inventory.updatePart(part.getId(), changed);
+                        return changed;
+                    }
+                },
+                new Benchmark("deletePart") {
+                    @Override
+                    Object run(int invocation) {
+                        // the part is added back, so every iteration runs against the same number of parts
+                        Part part = parts[spread(invocation, parts.length)];
+                        boolean deleted = Inventory.deletePart(Inventory.lookupPart(part.getId()));
+                        Inventory.addPart(part);
+                        return deleted;
+                    }
+                },
+                new Benchmark("addRemoveAssociatedPart") {
+                    @Override
+                    Object run(int invocation) {
+                        Product product = Inventory.lookupProduct(spread(invocation, productCount) + 1);
+                        Part part = Inventory.lookupPart(partId(invocation + 1));
+                        product.addAssociatedPart(part);
+                        return product.deleteAssociatedPart(part);
+                    }
+                },
+                new Benchmark("saveProduct") {
+                    private int firstSaved;
+
+                    @Override
+                    void setUp(int size) {
+                        super.setUp(size);
+                        firstSaved = productCount + 1;
+                    }
+
+                    @Override
+                    Object run(int invocation) {
+                        // as AddProductController.onSave does, from the values read from the form
+                        String problem = Validation.checkRecord("kit", 4, 1, 10);
+                        Product product = new Product(0, "kit", 49.99, 4, 1, 10);
+                        for (int i = 0; i < ASSOCIATED_PARTS; i++) {
+                            product.addAssociatedPart(Inventory.lookupPart(partId(invocation + i)));
+                        }
+                        product.setId(Inventory.getProductIds().next());
+                        Inventory.addProduct(product);
+                        return problem;
+                    }
+
+                    @Override
+                    void afterIteration() {
+                        int last = Inventory.getProductIds().getNextUnleased();
+                        int[] saved = new int[Math.max(0, last - firstSaved)];
+                        for (int i = 0; i < saved.length; i++) {
+                            saved[i] = firstSaved + i;
+                        }
+                        Inventory.deleteProducts(saved);
+                        firstSaved = Math.max(firstSaved, last);
+                    }
+                });
+    }
+
+    /**
+     * Replaces the whole Inventory with the parts and products of a given size, and moves the Id allocators
+     * past them.
+     * @param size the number of parts
+     */
+    static void load(int size) {
+        parts = new Part[size];
+        for (int i = 0; i < size; i++) {
+            parts[i] = part(i + 1);
+        }
+        productCount = productCount(size);
+        Product[] products = new Product[productCount];
+        for (int i = 0; i < productCount; i++) {
+            products[i] = new Product(i + 1, "kit " + i, 20 + i % 500, 5, 1, 100);
+            for (int k = 0; k < ASSOCIATED_PARTS; k++) {
+                products[i].addAssociatedPart(parts[(int) ((i * 7L + k * 13L) % size)]);
+            }
+        }
+        Inventory.load(source(parts), source(products));
+        Inventory.getPartIds().advancePast(size);
+        Inventory.getProductIds().advancePast(productCount);
+    }
+
+    /**
+     * Creates a part of the loaded Inventory: in-house for odd Ids and outsourced for even ones.
+     * @param id the Id of the part
+     * @return The part, a new object on every call.
+     */
+    static Part part(int id) {
+        int i = id - 1;
+        double price = 0.5 + i % 1000 / 10.0;
+        return i % 2 == 0 ? new InHouse(id, partName(id), price, 10 + i % 90, 1, 1000, i % 50)
+                : new Outsourced(id, partName(id), price, 10 + i % 90, 1, 1000, "Company " + i % 20);
+    }
+
+    /**
+     * Gets the name of a part of the loaded Inventory.
+     * @param id the Id of the part, from 1 to the number of parts
+     * @return The name.
+     */
+    static String partName(int id) {
+        return WORDS[(id - 1) % WORDS.length] + " " + (id - 1) / WORDS.length;
+    }
+
+    /**
+     * Gets the number of products loaded with a number of parts.
+     * @param size the number of parts
+     * @return The number of products, whose Ids run from 1 to it.
+     */
+    static int productCount(int size) {
+        return Math.max(1, size / 10);
+    }
+
+    /**
+     * Picks a record for a call, spreading consecutive calls over the whole Inventory rather than walking it.
+     * @param invocation the number of the call
+     * @param count the number of records
+     * @return A position from 0 to count - 1.
+     */
+    private static int spread(int invocation, int count) {
+        return (int) (((invocation * 0x9E3779B9L) & 0x7FFFFFFFL) % count);
+    }
+
+    private static int partId(int invocation) {
+        return parts[spread(invocation, parts.length)].getId();
+    }
+
+    /**
+     * Supplies records kept in an array, in which each record's Id is its position plus one.
+     * @param records the records
+     * @return The source.
+     */
+    private static <T> RecordSource<T> source(T[] records) {
+        return new RecordSource<T>() {
+            @Override
+            public int size() {
+                return records.length;
+            }
+
+            @Override
+            public int idAt(int index) {
+                return index + 1;
+            }
+
+            @Override
+            public T load(int id) {
+                return records[id - 1];
+            }
+        };
+    }
+}
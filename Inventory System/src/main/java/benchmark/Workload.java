@@ -0,0 +1,308 @@
+package benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * This class generates the synthetic operations run by LoadSimulator against an Inventory loaded by ModelBenchmarks,
+ * and records and reads them as traces so a run can be replayed exactly.
+ *
+ * Each operation is one long: its kind, the Id of the part or product it works on and a value such as a price.
+ * Parts and products are picked with Zipf-skewed popularity: the k-th most popular is picked in proportion to
+ * 1 / k^skew, so a skew of 0 picks evenly and a skew of 1 or more picks a few records most of the time.
+ * Which records are the most popular is shuffled by the seed, so they are not simply the lowest Ids.
+ */
+final class Workload {
+    /**
+     * This enum lists the kinds of operation, with the name they are reported under.
+     */
+    enum Operation {
+        LOOKUP_PART("lookupPart", true),
+        LOOKUP_PRODUCT("lookupProduct", true),
+        SEARCH_NAME("searchName", true),
+        UPDATE_PART("updatePart", false),
+        RESERVE_PART("reservePart", false),
+        ADD_PRODUCT("addProduct", false),
+        DELETE_PART("deletePart", false),
+        IMPORT("import", false);
+
+        private final String label;
+        private final boolean read;
+
+        Operation(String label, boolean read) {
+            this.label = label;
+            this.read = read;
+        }
+
+        /**
+         * Getter for the name the operation is reported under.
+         * @return label
+         */
+        String getLabel() {
+            return label;
+        }
+
+        /**
+         * Checks whether the operation only reads the Inventory.
+         * @return True for reads.
+         */
+        boolean isRead() {
+            return read;
+        }
+    }
+
+    /**
+     * The operations of a recorded run, by worker, with when each was started.
+     */
+    static final class Trace {
+        private final int size;
+        private final long[][] operations;
+        private final long[][] starts;
+
+        Trace(int size, long[][] operations, long[][] starts) {
+            this.size = size;
+            this.operations = operations;
+            this.starts = starts;
+        }
+
+        /**
+         * Getter for the number of parts of the Inventory the run started with.
+         * @return size
+         */
+        int getSize() {
+            return size;
+        }
+
+        /**
+         * Getter for the operations of each worker, in the order the worker ran them.
+         * @return operations
+         */
+        long[][] getOperations() {
+            return operations;
+        }
+
+        /**
+         * Getter for when each operation was started, in nanoseconds from the start of the run.
+         * @return starts
+         */
+        long[][] getStarts() {
+            return starts;
+        }
+    }
+
+    private static final int MAGIC = 0x494E5654;
+    private static final int VERSION = 1;
+    private static final Operation[] OPERATIONS = Operation.values();
+
+    private final int size;
+    private final long seed;
+    private final double reads;
+    private final double imports;
+    private final int importSize;
+    private final double[] partCdf;
+    private final double[] productCdf;
+    private final int[] partOrder;
+    private final int[] productOrder;
+
+    /**
+     * Constructor for a workload.
+     * @param size the number of parts the Inventory is loaded with
+     * @param seed the seed of every random choice
+     * @param reads the share of operations, other than imports, that only read
+     * @param skew the Zipf exponent of the popularity of parts and products
+     * @param imports the share of operations that are bulk imports
+     * @param importSize the number of parts added by each import
+     * @throws IllegalArgumentException if a share is not between 0 and 1, the skew is negative or the sizes are
+     *         not positive
+     */
+    Workload(int size, long seed, double reads, double skew, double imports, int importSize) {
+        if (!(reads >= 0 && reads <= 1 && imports >= 0 && imports <= 1)) {
+            throw new IllegalArgumentException("The read and import shares must be between 0 and 1");
+        }
+        if (!(skew >= 0) || size < 1 || importSize < 1) {
+            throw new IllegalArgumentException("The skew cannot be negative, and the sizes must be positive");
+        }
+        this.size = size;
+        this.seed = seed;
+        this.reads = reads;
+        this.imports = imports;
+        this.importSize = importSize;
+        int products = ModelBenchmarks.productCount(size);
+        partCdf = cdf(size, skew);
+        productCdf = cdf(products, skew);
+        partOrder = shuffled(size, new SplittableRandom(seed));
+        productOrder = shuffled(products, new SplittableRandom(~seed));
+    }
+
+    /**
+     * Creates the operations of one worker. Workers with different numbers get different operations,
+     * and the same worker of the same workload always gets the same ones.
+     * @param worker the number of the worker
+     * @param count the number of operations
+     * @return The operations.
+     */
+    long[] operations(int worker, int count) {
+        SplittableRandom random = new SplittableRandom(seed + (worker + 1) * 0x9E3779B97F4A7C15L);
+        long[] operations = new long[count];
+        for (int i = 0; i < count; i++) {
+            operations[i] = next(random);
+        }
+        return operations;
+    }
+
+    private long next(SplittableRandom random) {
+        if (random.nextDouble() < imports) {
+            return pack(Operation.IMPORT, 0, importSize);
+        }
+        double kind = random.nextDouble();
+        if (random.nextDouble() < reads) {
+            if (kind < 0.7) {
+                return pack(Operation.LOOKUP_PART, part(random), 0);
+            }
+            return kind < 0.9 ? pack(Operation.LOOKUP_PRODUCT, product(random), 0)
+                    : pack(Operation.SEARCH_NAME, part(random), 0);
+        }
+        if (kind < 0.6) {
+            return pack(Operation.UPDATE_PART, part(random), 1 + random.nextInt(100_000));
+        }
+        if (kind < 0.85) {
+            return pack(Operation.RESERVE_PART, part(random), 1 + random.nextInt(5));
+        }
+        return kind < 0.95 ? pack(Operation.ADD_PRODUCT, part(random), 0)
+                : pack(Operation.DELETE_PART, part(random), 0);
+    }
+
+    private int part(SplittableRandom random) {
+        return partOrder[pick(partCdf, random)];
+    }
+
+    private int product(SplittableRandom random) {
+        return productOrder[pick(productCdf, random)];
+    }
+
+    /**
+     * Gets the kind of an operation.
+     * @param operation the operation
+     * @return The kind.
+     */
+    static Operation kind(long operation) {
+        return OPERATIONS[(int) (operation >>> 56)];
+    }
+
+    /**
+     * Gets the Id of the part or product an operation works on.
+     * @param operation the operation
+     * @return The Id.
+     */
+    static int id(long operation) {
+        return (int) operation;
+    }
+
+    /**
+     * Gets the value of an operation: the price in cents of an update, the quantity of a reservation
+     * or the number of parts of an import.
+     * @param operation the operation
+     * @return The value.
+     */
+    static int value(long operation) {
+        return (int) (operation >>> 32) & 0xFFFFFF;
+    }
+
+    private static long pack(Operation kind, int id, int value) {
+        return (long) kind.ordinal() << 56 | (long) (value & 0xFFFFFF) << 32 | id & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Works out the cumulative Zipf probabilities of n ranks.
+     */
+    private static double[] cdf(int n, double skew) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += Math.pow(k + 1, -skew);
+            cdf[k] = sum;
+        }
+        for (int k = 0; k < n; k++) {
+            cdf[k] /= sum;
+        }
+        return cdf;
+    }
+
+    private static int pick(double[] cdf, SplittableRandom random) {
+        int rank = Arrays.binarySearch(cdf, random.nextDouble());
+        return Math.min(cdf.length - 1, rank >= 0 ? rank : -rank - 1);
+    }
+
+    /**
+     * Gets the Ids 1 to n in a random order.
+     */
+    private static int[] shuffled(int n, SplittableRandom random) {
+        int[] ids = new int[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = i + 1;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int id = ids[i];
+            ids[i] = ids[j];
+            ids[j] = id;
+        }
+        return ids;
+    }
+
+    /**
+     * Writes the operations of a run to a file.
+     * @param file the file
+     * @param trace the operations
+     * @throws IOException if the file cannot be written
+     */
+    static void write(Path file, Trace trace) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(trace.size);
+            out.writeInt(trace.operations.length);
+            for (int worker = 0; worker < trace.operations.length; worker++) {
+                out.writeInt(trace.operations[worker].length);
+                for (int i = 0; i < trace.operations[worker].length; i++) {
+                    out.writeLong(trace.operations[worker][i]);
+                    out.writeLong(trace.starts[worker][i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the operations of a run written by write.
+     * @param file the file
+     * @return The operations.
+     * @throws IOException if the file cannot be read or is not a trace
+     */
+    static Trace read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a workload trace: " + file);
+            }
+            int size = in.readInt();
+            long[][] operations = new long[in.readInt()][];
+            long[][] starts = new long[operations.length][];
+            for (int worker = 0; worker < operations.length; worker++) {
+                int count = in.readInt();
+                operations[worker] = new long[count];
+                starts[worker] = new long[count];
+                for (int i = 0; i < count; i++) {
+                    operations[worker][i] = in.readLong();
+                    starts[worker][i] = in.readLong();
+                }
+            }
+            return new Trace(size, operations, starts);
+        }
+    }
+}
@@ -1,16 +1,11 @@
 package controller;
 import javafx.event.ActionEvent;
-import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
-import javafx.scene.Node;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.stage.Stage;
-import main.Main;
 import model.InHouse;
 import model.Inventory;
 import model.Outsourced;
+import model.Validation;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ResourceBundle;
@@ -18,7 +13,7 @@ import java.util.ResourceBundle;
 /**
  * Controller class that handles the program for adding parts to the Main Screen.
  */
-public class AddPartController implements Initializable {
+public class AddPartController implements Initializable, ReusableScreen {
     public Button savePartButton;
     public Button cancelPartButton;
     public RadioButton inHouseRadioButton;
@@ -43,6 +38,21 @@ public class AddPartController implements Initializable {
         inHouseRadioButton.setSelected(true);
     }
 
+    /**
+     * Clears the form left by the last part added, and selects the In-House Radio Button again.
+     */
+    @Override
+    public void reset() {
+        partNameField.clear();
+        partInventoryField.clear();
+        partPriceField.clear();
+        partMinField.clear();
+        partMaxField.clear();
+        partLabelField.clear();
+        inHouseRadioButton.setSelected(true);
+        partLabel.setText("Machine ID");
+    }
+
     /**
      * Gets text for input fields from user.
      * Validates input values and throws an error for the user to make any correction.
@@ -69,17 +79,11 @@ public class AddPartController implements Initializable {
             error = "Max";
             int max = Integer.parseInt(pMax);
 
-            if (name.isBlank()) {
-                Alert alert = new Alert(Alert.AlertType.ERROR);
-                alert.setTitle("Error");
-                alert.setContentText("Name cannot be blank.");
-                alert.showAndWait();
-                return;
-            }
-            if (min > stock || stock > max) {
+            String problem = Validation.checkRecord(name, stock, min, max);
+            if (problem != null) {
                 Alert alert = new Alert(Alert.AlertType.ERROR);
                 alert.setTitle("Error");
-                alert.setContentText("Min value should be less than Inventory. Inventory should be between Min and Max values.");
+                alert.setContentText(problem);
                 alert.showAndWait();
                 return;
             }
@@ -87,32 +91,28 @@ public class AddPartController implements Initializable {
                 error = "Machine ID should be a number and";
                 int machineId = Integer.parseInt(partLabelField.getText());
                 InHouse inPart = new InHouse(id, name, price, stock, min, max, machineId);
-                inPart.setId(Main.getPartId());
+                inPart.setId(Inventory.getPartIds().next());
                 Inventory.addPart(inPart);
             }
             if (outsourcedRadioButton.isSelected()) {
                 String companyName = partLabelField.getText();
                 Outsourced outPart = new Outsourced(id, name, price, stock, min, max, companyName);
-                outPart.setId(Main.getPartId());
+                outPart.setId(Inventory.getPartIds().next());
                 Inventory.addPart(outPart);
-                if (companyName.isBlank()) {
+                String companyProblem = Validation.checkCompanyName(companyName);
+                if (companyProblem != null) {
                     Alert alert = new Alert(Alert.AlertType.ERROR);
                     alert.setTitle("Error");
-                    alert.setContentText("Company Name cannot be blank.");
+                    alert.setContentText(companyProblem);
                     alert.showAndWait();
                     return;
                 }
             }
-            Parent root = FXMLLoader.load(getClass().getResource("/view/MainScreen.fxml"));
-            Stage stage = (Stage) ((Node) actionEvent.getSource()).getScene().getWindow();
-            Scene scene = new Scene(root, 1452, 715);
-            stage.setTitle("Inventory Management System");
-            stage.setScene(scene);
-            stage.show();
+            Screens.show(actionEvent, Screens.Screen.MAIN);
         } catch (Exception e) {
             Alert alert = new Alert(Alert.AlertType.ERROR);
             alert.setTitle("Error");
-            alert.setContentText(error + " must be a valid value and cannot be blank.");
+            alert.setContentText(Validation.invalidValue(error));
             alert.showAndWait();
         }
     }
@@ -123,12 +123,7 @@ public class AddPartController implements Initializable {
      * @throws IOException
      */
     public void onPartCancel (ActionEvent actionEvent) throws IOException {
-            Parent root = FXMLLoader.load(getClass().getResource("/view/MainScreen.fxml"));
-            Stage stage = (Stage) ((Node) actionEvent.getSource()).getScene().getWindow();
-            Scene scene = new Scene(root, 1452, 715);
-            stage.setTitle("Add Part Form");
-            stage.setScene(scene);
-            stage.show();
+            Screens.show(actionEvent, Screens.Screen.MAIN);
     }
 
     /**
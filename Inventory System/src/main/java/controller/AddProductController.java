@@ -3,15 +3,9 @@ package controller;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
-import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
-import javafx.scene.Node;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
-import javafx.stage.Stage;
-import main.Main;
 import model.*;
 import model.Product;
 import java.io.IOException;
@@ -24,7 +18,7 @@ import model.Part;
 /**
  * Controller class that handles the program for adding products to the Main Screen.
  */
-public class AddProductController implements Initializable {
+public class AddProductController implements Initializable, ReusableScreen {
 
     public TextField nameField;
     public TextField inventoryField;
@@ -37,6 +31,7 @@ public class AddProductController implements Initializable {
     public Button cancelButton;
     public TextField partLookupField;
     public TableView<Part> partTable;
+    private LiveSearch<Part> partSearch;
     public TableColumn partIdColumn;
     public TableColumn partNameColumn;
     public TableColumn partInventoryColumn;
@@ -51,13 +46,11 @@ public class AddProductController implements Initializable {
     /**
      * Initializes the Table View of parts and associated parts.
      * Sets identity for each column.
-     * Calls the Inventory class to get all Parts and sets them in the Part Table.
      * @param url
      * @param resourceBundle
      */
     @Override
     public void initialize(URL url, ResourceBundle resourceBundle) {
-        partTable.setItems(Inventory.getAllParts());
         partIdColumn.setCellValueFactory(new PropertyValueFactory<>("id")); // tied to getter from InHouse
         partNameColumn.setCellValueFactory(new PropertyValueFactory<>("name"));
         partInventoryColumn.setCellValueFactory(new PropertyValueFactory<>("stock"));
@@ -70,35 +63,38 @@ public class AddProductController implements Initializable {
     }
 
     /**
-     * Searches through the parts list given the user input by calling the lookupPart method from the Inventory class.
+     * Clears the form left by the last product added, each time the form is shown.
+     * Calls the Inventory class to get all Parts and sets them in the Part Table.
+     */
+    @Override
+    public void reset() {
+        nameField.clear();
+        inventoryField.clear();
+        priceField.clear();
+        minField.clear();
+        maxField.clear();
+        if (partSearch == null) {
+            partSearch = new LiveSearch<>(partTable, Inventory.partWindow(), partLookupField, Inventory::lookupPartIds,
+                    partId -> Inventory.lookupPart(partId) != null);
+        }
+        partLookupField.clear();
+        associatedList = FXCollections.observableArrayList();
+        associatedPartTable.setItems(associatedList);
+    }
+
+    /**
+     * Searches through the parts list at once when Enter is pressed, by calling the lookupPartIds method from the Inventory class.
      * Throws a warning if part Id or name is not found.
-     * Sets the items in an observable list if found.
+     * Shows the parts found in the part table, or every part if the search is blank.
      * @param actionEvent searches for parts using part id or partial/full part name
      */
     public void onPartLookup(ActionEvent actionEvent) {
-        String searchPart = partLookupField.getText();
-        try {
-            ObservableList<Part> partList = Inventory.lookupPart(searchPart);
-
-            if (partList.size() == 0) {
-                int partId = Integer.parseInt(searchPart);
-                Part partSearch = Inventory.lookupPart(partId);
-                partList.add(partSearch);
-                if (partSearch == null) {
-                    Alert alert = new Alert(Alert.AlertType.WARNING);
-                    alert.setTitle("Warning");
-                    alert.setContentText("Part ID not found.");
-                    alert.showAndWait();
-                }
-            }
-            partTable.setItems(partList);
-        }
-        catch (NumberFormatException e) {
+        partSearch.searchNow(partLookupField.getText(), missing -> {
             Alert alert = new Alert(Alert.AlertType.WARNING);
             alert.setTitle("Warning");
-            alert.setContentText("Part name not found.");
+            alert.setContentText("Part " + missing + " not found.");
             alert.showAndWait();
-        }
+        });
     }
 
     /**
@@ -147,7 +143,7 @@ public class AddProductController implements Initializable {
      * Gets text for input fields from user.
      * Validates input values and throws an error for the user to make any correction.
      * Creates an instance of a product object and adds any associated parts.
-     * Calls the Main for the unique Id method for the product.
+     * Takes a unique Id for the product from the product Id allocator.
      * Adds the product object to the Inventory class and returns to the Main Screen.
      * @param actionEvent saves modified product
      */
@@ -170,17 +166,11 @@ public class AddProductController implements Initializable {
             error = "Max";
             int max = Integer.parseInt(pmax);
 
-            if (name.isBlank()) {
-                Alert alert = new Alert(Alert.AlertType.ERROR);
-                alert.setTitle("Error");
-                alert.setContentText("Name cannot be blank.");
-                alert.showAndWait();
-                return;
-            }
-            if (min > stock || stock > max) {
+            String problem = Validation.checkRecord(name, stock, min, max);
+            if (problem != null) {
                 Alert alert = new Alert(Alert.AlertType.ERROR);
                 alert.setTitle("Error");
-                alert.setContentText("Min value should be less than Inventory. Inventory should be between Min and Max values.");
+                alert.setContentText(problem);
                 alert.showAndWait();
                 return;
             }
@@ -188,18 +178,13 @@ public class AddProductController implements Initializable {
             for (Part part : associatedList) {
                 newProduct.addAssociatedPart(part);
             }
-            newProduct.setId(Main.getProductId());
+            newProduct.setId(Inventory.getProductIds().next());
             Inventory.addProduct(newProduct);
-            Parent root = FXMLLoader.load(getClass().getResource("/view/MainScreen.fxml"));
-            Stage stage = (Stage) ((Node) actionEvent.getSource()).getScene().getWindow();
-            Scene scene = new Scene(root, 1452, 715);
-            stage.setTitle("Inventory Management System");
-            stage.setScene(scene);
-            stage.show();
+            Screens.show(actionEvent, Screens.Screen.MAIN);
         } catch (Exception e) {
             Alert alert = new Alert(Alert.AlertType.ERROR);
             alert.setTitle("Error");
-            alert.setContentText(error + " must be a valid value and cannot be blank.");
+            alert.setContentText(Validation.invalidValue(error));
             alert.showAndWait();
         }
     }
@@ -210,12 +195,7 @@ public class AddProductController implements Initializable {
      * @throws IOException
      */
     public void onCancel(ActionEvent actionEvent) throws IOException {
-        Parent root = FXMLLoader.load(getClass().getResource("/view/MainScreen.fxml"));
-        Stage stage = (Stage) ((Node) actionEvent.getSource()).getScene().getWindow();
-        Scene scene = new Scene(root, 1452, 715);
-        stage.setTitle("Add Part Form");
-        stage.setScene(scene);
-        stage.show();
+        Screens.show(actionEvent, Screens.Screen.MAIN);
     }
 }
 
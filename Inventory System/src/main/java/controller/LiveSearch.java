@@ -0,0 +1,147 @@
+package controller;
+
+import javafx.application.Platform;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.control.TextField;
+import javafx.scene.control.cell.PropertyValueFactory;
+import model.RecordWindow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+
+/**
+ * This class searches a table as the user types in its lookup field. Each search waits until typing pauses,
+ * then runs on a background thread, and only the result of the newest search is shown in the table.
+ * A search still waiting or running when the text changes again is cancelled.
+ *
+ * The table shows a paged window over the Inventory, which also sorts the rows when a column header is clicked.
+ * Everything but the search itself runs on the JavaFX thread.
+ * @param <T> the record type, Part or Product
+ */
+final class LiveSearch<T> {
+    /**
+     * The pause in typing after which a search starts.
+     */
+    private static final long DEBOUNCE_MILLIS = 250;
+    /**
+     * One thread for all tables; a newer search interrupts the one it replaces, so they never queue up.
+     */
+    private static final ScheduledExecutorService searches = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "inventory-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final RecordWindow<T> window;
+    private final Function<String, int[]> byName;
+    private final IntPredicate exists;
+    private Future<?> pending;
+    /**
+     * Counts the searches started, so a result that arrives after a newer search started is dropped.
+     */
+    private long started;
+
+    /**
+     * Constructor for the search of one table, which shows the window in the table and searches as the field changes.
+     * @param table the table
+     * @param window the paged window over the records of the table
+     * @param field the lookup field
+     * @param byName looks up the Ids of the records whose names contain a string
+     * @param exists tells whether a record with an Id exists
+     */
+    LiveSearch(TableView<T> table, RecordWindow<T> window, TextField field, Function<String, int[]> byName,
+            IntPredicate exists) {
+        this.window = window;
+        this.byName = byName;
+        this.exists = exists;
+        table.setItems(window);
+        table.setSortPolicy(sorted -> {
+            window.sort(sortOrder(sorted));
+            return true;
+        });
+        field.textProperty().addListener((observable, before, text) -> search(text, DEBOUNCE_MILLIS, null));
+    }
+
+    /**
+     * Searches at once, as when Enter is pressed in the lookup field, and reports it if nothing was found.
+     * @param text the text of the lookup field
+     * @param notFound gets "ID" if the text is a number no record has as its Id, otherwise "name" if nothing was found
+     */
+    void searchNow(String text, Consumer<String> notFound) {
+        search(text, 0, notFound);
+    }
+
+    /**
+     * Cancels the current search and starts a new one after a delay. A blank text shows every record.
+     * @param text the text to search for
+     * @param delayMillis the delay
+     * @param notFound told what was not found, or null to show an empty table without telling
+     */
+    private void search(String text, long delayMillis, Consumer<String> notFound) {
+        if (pending != null) {
+            pending.cancel(true);
+        }
+        long search = ++started;
+        if (text.isBlank()) {
+            pending = null;
+            window.showAll();
+            return;
+        }
+        pending = searches.schedule(() -> {
+            int[] ids;
+            String missing = null;
+            try {
+                ids = byName.apply(text);
+                if (ids.length == 0) {
+                    int id = Integer.parseInt(text.trim());
+                    if (exists.test(id)) {
+                        ids = new int[] {id};
+                    } else {
+                        missing = "ID";
+                    }
+                }
+            } catch (NumberFormatException e) {
+                ids = new int[0];
+                missing = "name";
+            } catch (CancellationException e) {
+                return;
+            }
+            int[] found = ids;
+            String reported = missing;
+            Platform.runLater(() -> {
+                if (search != started) {
+                    return;
+                }
+                pending = null;
+                window.show(found);
+                if (reported != null && notFound != null) {
+                    notFound.accept(reported);
+                }
+            });
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reads the sort order of a table as the properties its sort columns show.
+     * @param table the table
+     * @return The sort order, most significant column first.
+     */
+    private static List<RecordWindow.SortKey> sortOrder(TableView<?> table) {
+        List<RecordWindow.SortKey> order = new ArrayList<>();
+        for (TableColumn<?, ?> column : table.getSortOrder()) {
+            Object factory = column.getCellValueFactory();
+            String property = ((PropertyValueFactory<?, ?>) factory).getProperty();
+            order.add(new RecordWindow.SortKey(property, column.getSortType() == TableColumn.SortType.ASCENDING));
+        }
+        return order;
+    }
+}
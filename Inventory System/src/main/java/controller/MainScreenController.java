@@ -2,14 +2,9 @@ package controller;
 
 import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
-import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
-import javafx.scene.Node;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
-import javafx.stage.Stage;
 import model.Inventory;
 import model.Part;
 import model.Product;
@@ -21,7 +16,7 @@ import java.util.ResourceBundle;
 /**
  * Main Screen class that handles the Part Table, Product Table, and their corresponding search methods.
  */
-public class MainScreenController implements Initializable {
+public class MainScreenController implements Initializable, ReusableScreen {
     public TableView<Part> partTable;
     public TableColumn partIDColumn;
     public TableColumn partNameColumn;
@@ -43,29 +38,47 @@ public class MainScreenController implements Initializable {
     public Button exitButton;
     public static Part parts;
     private static Product products;
+    private LiveSearch<Part> partSearch;
+    private LiveSearch<Product> productSearch;
 
     /**
      * Initializes the Table View of Parts and Products.
      * Sets identity for each column.
-     * Calls the Inventory class to get all Parts and Products and sets them in their respective tables.
      * @param url
      * @param resourceBundle
      */
     @Override
     public void initialize(URL url, ResourceBundle resourceBundle) {
-        partTable.setItems(Inventory.getAllParts());
         partIDColumn.setCellValueFactory(new PropertyValueFactory<>("id")); // tied to getter from InHouse
         partNameColumn.setCellValueFactory(new PropertyValueFactory<>("name"));
         partInventoryColumn.setCellValueFactory(new PropertyValueFactory<>("stock"));
         partPriceColumn.setCellValueFactory(new PropertyValueFactory<>("price"));
 
 
-        productTable.setItems(Inventory.getAllProducts());
         productIDColumn.setCellValueFactory(new PropertyValueFactory<>("id"));
         productNameColumn.setCellValueFactory(new PropertyValueFactory<>("name"));
         productInventoryColumn.setCellValueFactory(new PropertyValueFactory<>("stock"));
         productPriceColumn.setCellValueFactory(new PropertyValueFactory<>("price"));
     }
+
+    /**
+     * Shows all Parts and Products each time the Main Screen is shown, clearing the searches of its last use.
+     * Calls the Inventory class to get paged windows over all Parts and Products and sets them in their respective tables.
+     * The windows sort themselves when a column header is clicked, so the tables never copy or sort the records.
+     * The tables are searched in the background as the user types in the lookup fields.
+     */
+    @Override
+    public void reset() {
+        if (partSearch == null) {
+            partSearch = new LiveSearch<>(partTable, Inventory.partWindow(), partLookupField, Inventory::lookupPartIds,
+                    partId -> Inventory.lookupPart(partId) != null);
+            productSearch = new LiveSearch<>(productTable, Inventory.productWindow(), productLookupField,
+                    Inventory::lookupProductIds, productId -> Inventory.lookupProduct(productId) != null);
+        }
+        partLookupField.clear();
+        productLookupField.clear();
+    }
+
     /**
      * Getter for parts.
      * @return Parts created
@@ -82,69 +95,33 @@ public class MainScreenController implements Initializable {
         return products;
     }
     /**
-     * Searches through the parts list given the user input by calling the lookupPart method from the Inventory class.
+     * Searches through the parts list at once when Enter is pressed, by calling the lookupPartIds method from the Inventory class.
      * Throws a warning if part Id or name is not found.
-     * Sets the items in an observable list if found.
+     * Shows the parts found in the part table, or every part if the search is blank.
      * @param actionEvent searches for parts using part id or partial/full part name
      */
     public void onPartLookup(ActionEvent actionEvent) {
-
-        String searchPart = partLookupField.getText();
-        try {
-            ObservableList<Part> partList = Inventory.lookupPart(searchPart);
-
-            if (partList.size() == 0) {
-                int partId = Integer.parseInt(searchPart);
-                Part partSearch = Inventory.lookupPart(partId);
-                partList.add(partSearch);
-                if (partSearch == null) {
-                    Alert alert = new Alert(Alert.AlertType.WARNING);
-                    alert.setTitle("Warning");
-                    alert.setContentText("Part ID not found.");
-                    alert.showAndWait();
-                }
-            }
-            partTable.setItems(partList);
-            }
-            catch (NumberFormatException e) {
-                Alert alert = new Alert(Alert.AlertType.WARNING);
-                alert.setTitle("Warning");
-                alert.setContentText("Part name not found.");
-                alert.showAndWait();
-        }
+        partSearch.searchNow(partLookupField.getText(), missing -> {
+            Alert alert = new Alert(Alert.AlertType.WARNING);
+            alert.setTitle("Warning");
+            alert.setContentText("Part " + missing + " not found.");
+            alert.showAndWait();
+        });
     }
 
     /**
-     * Searches through the products list given the user input by calling the lookupProduct method from the Inventory class.
+     * Searches through the products list at once when Enter is pressed, by calling the lookupProductIds method from the Inventory class.
      * Throws a warning if product Id or name is not found.
-     * Sets the items in an observable list if found.
+     * Shows the products found in the product table, or every product if the search is blank.
      * @param actionEvent searches for products using product id or partial/full product name
      */
     public void onProductLookup(ActionEvent actionEvent) {
-        String searchProduct = productLookupField.getText();
-        try {
-
-            ObservableList<Product> productList = Inventory.lookupProduct(searchProduct);
-
-            if (productList.size() == 0) {
-                int productId = Integer.parseInt(searchProduct);
-                Product productSearch = Inventory.lookupProduct(productId);
-                productList.add(productSearch);
-                if (productSearch == null) {
-                    Alert alert = new Alert(Alert.AlertType.WARNING);
-                    alert.setTitle("Warning");
-                    alert.setContentText("Product ID not found.");
-                    alert.showAndWait();
-                }
-            }
-            productTable.setItems(productList);
-        }
-        catch (NumberFormatException e) {
+        productSearch.searchNow(productLookupField.getText(), missing -> {
             Alert alert = new Alert(Alert.AlertType.WARNING);
             alert.setTitle("Warning");
-            alert.setContentText("Product name not found.");
+            alert.setContentText("Product " + missing + " not found.");
             alert.showAndWait();
-        }
+        });
     }
 
     /**
@@ -154,12 +131,7 @@ public class MainScreenController implements Initializable {
      */
     public void onAddPartButton(ActionEvent actionEvent) throws IOException {
 
-        Parent root = FXMLLoader.load(getClass().getResource("/view/AddPart.fxml"));
-        Stage stage = (Stage) ((Node)actionEvent.getSource()).getScene().getWindow();
-        Scene scene = new Scene(root, 823, 772);
-        stage.setTitle("Add Part Form");
-        stage.setScene(scene);
-        stage.show();
+        Screens.show(actionEvent, Screens.Screen.ADD_PART);
     }
 
     /**
@@ -178,12 +150,7 @@ public class MainScreenController implements Initializable {
             alert.showAndWait();
         }
         else {
-            Parent parent = FXMLLoader.load(getClass().getResource("/view/ModifyPart.fxml"));
-            Scene scene = new Scene(parent);
-            Stage stage = (Stage) ((Node) actionEvent.getSource()).getScene().getWindow();
-            stage.setScene(scene);
-            stage.setTitle("Modify Part Form");
-            stage.show();
+            Screens.show(actionEvent, Screens.Screen.MODIFY_PART);
         }
     }
 
@@ -217,12 +184,7 @@ public class MainScreenController implements Initializable {
      * @throws IOException
      */
     public void onAddProductButton(ActionEvent actionEvent) throws IOException {
-        Parent root = FXMLLoader.load(getClass().getResource("/view/AddProduct.fxml"));
-        Stage stage = (Stage) ((Node)actionEvent.getSource()).getScene().getWindow();
-        Scene scene = new Scene(root, 1684, 793);
-        stage.setTitle("Add Product Form");
-        stage.setScene(scene);
-        stage.show();
+        Screens.show(actionEvent, Screens.Screen.ADD_PRODUCT);
     }
 
     /**
@@ -240,12 +202,7 @@ public class MainScreenController implements Initializable {
             alert.showAndWait();
         }
         else {
-            Parent parent = FXMLLoader.load(getClass().getResource("/view/ModifyProduct.fxml"));
-            Scene scene = new Scene(parent);
-            Stage stage = (Stage) ((Node) actionEvent.getSource()).getScene().getWindow();
-            stage.setScene(scene);
-            stage.setTitle("Modify Product Form");
-            stage.show();
+            Screens.show(actionEvent, Screens.Screen.MODIFY_PRODUCT);
         }
     }
 
@@ -253,7 +210,8 @@ public class MainScreenController implements Initializable {
      * Deletes a product object in the Product Table.
      * Throws a warning if no product is selected and the Modify product button is clicked.
      * Throws a confirmation for the user to confirm deletion.
-     * Throws an error if the product selected for deletion has an associated part.
+     * Throws an error if the product selected for deletion has an associated part,
+     * or is a sub-assembly of another product.
      * @param actionEvent deletes selected product
      */
     public void onDeleteProductButton(ActionEvent actionEvent) {
@@ -270,13 +228,18 @@ public class MainScreenController implements Initializable {
             Optional<ButtonType> result = alert.showAndWait();
             if (result.isPresent() && result.get() == ButtonType.OK) {
                 ObservableList<Part> associatedList = products.getAllAssociatedParts();
-                if (associatedList.isEmpty()) {
-                    Inventory.deleteProduct(products);
-                } else {
+                if (!associatedList.isEmpty()) {
                     Alert alert1 = new Alert(Alert.AlertType.ERROR);
                     alert1.setTitle("Error");
                     alert1.setContentText("Product has an associated part and cannot be deleted.");
                     alert1.showAndWait();
+                } else if (Inventory.isProductUsed(products.getId())) {
+                    Alert alert1 = new Alert(Alert.AlertType.ERROR);
+                    alert1.setTitle("Error");
+                    alert1.setContentText("Product is a sub-assembly of another product and cannot be deleted.");
+                    alert1.showAndWait();
+                } else {
+                    Inventory.deleteProduct(products);
                 }
             }
         }
@@ -1,25 +1,18 @@
 package controller;
 
 import javafx.event.ActionEvent;
-import javafx.fxml.FXMLLoader;
-import javafx.fxml.Initializable;
-import javafx.scene.Node;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.stage.Stage;
 import model.InHouse;
 import model.Outsourced;
+import model.Validation;
 import model.Inventory;
 import model.Part;
 import java.io.IOException;
-import java.net.URL;
-import java.util.ResourceBundle;
 
 /**
  * Controller class that handles the program for modifying parts.
  */
-public class ModifyPartController implements Initializable {
+public class ModifyPartController implements ReusableScreen {
     public Button savePartButton;
     public Button cancelPartButton;
     public RadioButton inHouseRadioButton;
@@ -35,15 +28,13 @@ public class ModifyPartController implements Initializable {
     private Part part;
 
     /**
-     * Initializes the part selected from the MainScreenController.
+     * Loads the part selected from the MainScreenController, each time the form is shown.
      * Sets the input fields with their corresponding values they originally had.
      * Checks whether the selected part is an instance of InHouse or Outsourced class.
      * Sets the text for their appropriate fields based on their identity provided by the radio buttons.
-     * @param url
-     * @param resourceBundle
      */
     @Override
-    public void initialize(URL url, ResourceBundle resourceBundle) {
+    public void reset() {
 
         part = MainScreenController.getPart();
 
@@ -95,17 +86,11 @@ public class ModifyPartController implements Initializable {
             error = "Max";
             int max = Integer.parseInt(pMax);
 
-            if (name.isBlank()) {
+            String problem = Validation.checkRecord(name, stock, min, max);
+            if (problem != null) {
                 Alert alert = new Alert(Alert.AlertType.ERROR);
                 alert.setTitle("Error");
-                alert.setContentText("Name cannot be blank.");
-                alert.showAndWait();
-                return;
-            }
-            if (min > stock || stock > max) {
-                Alert alert = new Alert(Alert.AlertType.ERROR);
-                alert.setTitle("Error");
-                alert.setContentText("Min value should be less than Inventory. Inventory should be between Min and Max values.");
+                alert.setContentText(problem);
                 alert.showAndWait();
                 return;
             }
@@ -119,26 +104,22 @@ public class ModifyPartController implements Initializable {
                 String companyName = partLabelField.getText();
                 Outsourced outPart = new Outsourced(id, name, price, stock, min, max, companyName);
                 Inventory.updatePart(id, outPart);
-                if (companyName.isBlank()) {
+                String companyProblem = Validation.checkCompanyName(companyName);
+                if (companyProblem != null) {
                     Alert alert = new Alert(Alert.AlertType.ERROR);
                     alert.setTitle("Error");
-                    alert.setContentText("Company Name cannot be blank.");
+                    alert.setContentText(companyProblem);
                     alert.showAndWait();
                     return;
                 }
             }
 
-            Parent root = FXMLLoader.load(getClass().getResource("/view/MainScreen.fxml"));
-            Scene scene = new Scene(root, 1452, 715);
-            Stage stage = (Stage) ((Node) actionEvent.getSource()).getScene().getWindow();
-            stage.setTitle("Inventory Management System");
-            stage.setScene(scene);
-            stage.show();
+            Screens.show(actionEvent, Screens.Screen.MAIN);
 
         } catch (Exception e) {
             Alert alert = new Alert(Alert.AlertType.ERROR);
             alert.setTitle("Error");
-            alert.setContentText(error + " must be a valid value and cannot be blank.");
+            alert.setContentText(Validation.invalidValue(error));
             alert.showAndWait();
         }
     }
@@ -149,12 +130,7 @@ public class ModifyPartController implements Initializable {
      * @throws IOException
      */
     public void onPartCancel(ActionEvent actionEvent) throws IOException {
-        Parent root = FXMLLoader.load(getClass().getResource("/view/MainScreen.fxml"));
-        Stage stage = (Stage) ((Node)actionEvent.getSource()).getScene().getWindow();
-        Scene scene = new Scene(root, 1452, 715);
-        stage.setTitle("Add Part Form");
-        stage.setScene(scene);
-        stage.show();
+        Screens.show(actionEvent, Screens.Screen.MAIN);
     }
 
     /**
@@ -3,25 +3,21 @@ package controller;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
-import javafx.fxml.FXMLLoader;
 import javafx.fxml.Initializable;
-import javafx.scene.Node;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
-import javafx.stage.Stage;
 import model.*;
 import model.Product;
 import java.io.IOException;
 import java.net.URL;
+import java.util.Map;
 import java.util.Optional;
 import java.util.ResourceBundle;
 import model.Part;
 /**
  * Controller class that handles the program for modifying products and adding/removing associated parts to the product.
  */
-public class ModifyProductController implements Initializable {
+public class ModifyProductController implements Initializable, ReusableScreen {
     public TextField idField;
     public TextField nameField;
     public TextField inventoryField;
@@ -34,6 +30,7 @@ public class ModifyProductController implements Initializable {
     public Button cancelButton;
     public TextField partLookupField;
     public TableView<Part> partTable;
+    private LiveSearch<Part> partSearch;
     public TableColumn partIdColumn;
     public TableColumn partNameColumn;
     public TableColumn partInventoryColumn;
@@ -47,14 +44,31 @@ public class ModifyProductController implements Initializable {
     private Product product;
 
     /**
-     * Initializes the product selected from the MainScreenController along with Parts Table and Associated Parts Table.
-     * Sets the input fields for the Product form with the corresponding values they originally had.
-     * Sets items in the Associated Parts Table with all the associated parts connected to the selected Product.
+     * Initializes the Table View of parts and associated parts.
+     * Sets identity for each column.
      * @param url
      * @param resourceBundle
      */
     @Override
     public void initialize(URL url, ResourceBundle resourceBundle) {
+        partIdColumn.setCellValueFactory(new PropertyValueFactory<>("id")); // tied to getter from InHouse
+        partNameColumn.setCellValueFactory(new PropertyValueFactory<>("name"));
+        partInventoryColumn.setCellValueFactory(new PropertyValueFactory<>("stock"));
+        partPriceColumn.setCellValueFactory(new PropertyValueFactory<>("price"));
+
+        associatedIdColumn.setCellValueFactory(new PropertyValueFactory<>("id"));
+        associatedNameColumn.setCellValueFactory(new PropertyValueFactory<>("name"));
+        associatedInventoryColumn.setCellValueFactory(new PropertyValueFactory<>("stock"));
+        associatedPriceColumn.setCellValueFactory(new PropertyValueFactory<>("price"));
+    }
+
+    /**
+     * Loads the product selected from the MainScreenController along with Parts Table and Associated Parts Table, each time the form is shown.
+     * Sets the input fields for the Product form with the corresponding values they originally had.
+     * Sets items in the Associated Parts Table with all the associated parts connected to the selected Product.
+     */
+    @Override
+    public void reset() {
         product = MainScreenController.getProduct();
         associatedList = product.getAllAssociatedParts();
 
@@ -65,48 +79,26 @@ public class ModifyProductController implements Initializable {
         minField.setText(String.valueOf(product.getMin()));
         maxField.setText(String.valueOf(product.getMax()));
 
-        partTable.setItems(Inventory.getAllParts());
-        partIdColumn.setCellValueFactory(new PropertyValueFactory<>("id")); // tied to getter from InHouse
-        partNameColumn.setCellValueFactory(new PropertyValueFactory<>("name"));
-        partInventoryColumn.setCellValueFactory(new PropertyValueFactory<>("stock"));
-        partPriceColumn.setCellValueFactory(new PropertyValueFactory<>("price"));
-
+        if (partSearch == null) {
+            partSearch = new LiveSearch<>(partTable, Inventory.partWindow(), partLookupField, Inventory::lookupPartIds,
+                    partId -> Inventory.lookupPart(partId) != null);
+        }
+        partLookupField.clear();
         associatedPartTable.setItems(associatedList);
-        associatedIdColumn.setCellValueFactory(new PropertyValueFactory<>("id"));
-        associatedNameColumn.setCellValueFactory(new PropertyValueFactory<>("name"));
-        associatedInventoryColumn.setCellValueFactory(new PropertyValueFactory<>("stock"));
-        associatedPriceColumn.setCellValueFactory(new PropertyValueFactory<>("price"));
     }
     /**
-     * Searches through the parts list given the user input by calling the lookupPart method from the Inventory class.
+     * Searches through the parts list at once when Enter is pressed, by calling the lookupPartIds method from the Inventory class.
      * Throws a warning if part Id or name is not found.
-     * Sets the items in an observable list if found.
+     * Shows the parts found in the part table, or every part if the search is blank.
      * @param actionEvent searches for parts using part id or partial/full part name
      */
     public void onPartLookup(ActionEvent actionEvent) {
-        String searchPart = partLookupField.getText();
-        try {
-            ObservableList<Part> partList = Inventory.lookupPart(searchPart);
-
-            if (partList.size() == 0) {
-                int partId = Integer.parseInt(searchPart);
-                Part partSearch = Inventory.lookupPart(partId);
-                partList.add(partSearch);
-                if (partSearch == null) {
-                    Alert alert = new Alert(Alert.AlertType.WARNING);
-                    alert.setTitle("Warning");
-                    alert.setContentText("Part ID not found.");
-                    alert.showAndWait();
-                }
-            }
-            partTable.setItems(partList);
-        }
-        catch (NumberFormatException e) {
+        partSearch.searchNow(partLookupField.getText(), missing -> {
             Alert alert = new Alert(Alert.AlertType.WARNING);
             alert.setTitle("Warning");
-            alert.setContentText("Part name not found.");
+            alert.setContentText("Part " + missing + " not found.");
             alert.showAndWait();
-        }
+        });
     }
 
     /**
@@ -178,17 +170,11 @@ public class ModifyProductController implements Initializable {
             error = "Max";
             int max = Integer.parseInt(pmax);
 
-            if (name.isBlank()) {
+            String problem = Validation.checkRecord(name, stock, min, max);
+            if (problem != null) {
                 Alert alert = new Alert(Alert.AlertType.ERROR);
                 alert.setTitle("Error");
-                alert.setContentText("Name cannot be blank.");
-                alert.showAndWait();
-                return;
-            }
-            if (min > stock || stock > max) {
-                Alert alert = new Alert(Alert.AlertType.ERROR);
-                alert.setTitle("Error");
-                alert.setContentText("Min value should be less than Inventory. Inventory should be between Min and Max values.");
+                alert.setContentText(problem);
                 alert.showAndWait();
                 return;
             }
@@ -196,17 +182,16 @@ public class ModifyProductController implements Initializable {
             for (Part part : associatedList) {
                 newProduct.addAssociatedPart(part);
             }
+            // the form does not edit sub-assemblies, so the product keeps the ones it has
+            for (Map.Entry<Integer, Integer> sub : product.getSubAssemblies().entrySet()) {
+                newProduct.addSubAssembly(sub.getKey(), sub.getValue());
+            }
             Inventory.updateProduct(id, newProduct);
-            Parent root = FXMLLoader.load(getClass().getResource("/view/MainScreen.fxml"));
-            Stage stage = (Stage) ((Node) actionEvent.getSource()).getScene().getWindow();
-            Scene scene = new Scene(root, 1452, 715);
-            stage.setTitle("Inventory Management System");
-            stage.setScene(scene);
-            stage.show();
+            Screens.show(actionEvent, Screens.Screen.MAIN);
         } catch (Exception e) {
             Alert alert = new Alert(Alert.AlertType.ERROR);
             alert.setTitle("Error");
-            alert.setContentText(error + " must be a valid value and cannot be blank.");
+            alert.setContentText(Validation.invalidValue(error));
             alert.showAndWait();
         }
     }
@@ -217,12 +202,7 @@ public class ModifyProductController implements Initializable {
      * @throws IOException
      */
     public void onCancel(ActionEvent actionEvent) throws IOException {
-        Parent root = FXMLLoader.load(getClass().getResource("/view/MainScreen.fxml"));
-        Stage stage = (Stage) ((Node) actionEvent.getSource()).getScene().getWindow();
-        Scene scene = new Scene(root, 1452, 715);
-        stage.setTitle("Add Part Form");
-        stage.setScene(scene);
-        stage.show();
+        Screens.show(actionEvent, Screens.Screen.MAIN);
     }
 
 }
@@ -0,0 +1,13 @@
+package controller;
+
+/**
+ * This interface is for the controllers of screens that Screens loads once and shows again and again.
+ * A screen may be loaded on a background thread before it is first needed, so initialize only sets up its nodes;
+ * anything that reads the Inventory or the selected record is done in reset, on the JavaFX thread.
+ */
+interface ReusableScreen {
+    /**
+     * Clears what the last use of the screen left behind and loads the values to show, just before the screen is shown.
+     */
+    void reset();
+}
@@ -0,0 +1,163 @@
+package controller;
+
+import javafx.event.ActionEvent;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.Scene;
+import javafx.stage.Stage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * This class switches the stage between the screens of the program. Each screen is loaded from its FXML file once,
+ * and its scene and controller are kept and shown again on later switches, after the controller is reset.
+ * The forms can be loaded on a background thread at startup, so even the first switch to them does not parse FXML.
+ * Only the nodes are built there; JavaFX needs scenes to be made on its application thread, so the scene of a
+ * screen is made when the screen is first shown.
+ */
+public final class Screens {
+    /**
+     * This enum lists the screens, with their FXML file, title and first size.
+     */
+    public enum Screen {
+        MAIN("/view/MainScreen.fxml", "Inventory Management System", 1452, 715),
+        ADD_PART("/view/AddPart.fxml", "Add Part Form", 823, 772),
+        MODIFY_PART("/view/ModifyPart.fxml", "Modify Part Form", 0, 0),
+        ADD_PRODUCT("/view/AddProduct.fxml", "Add Product Form", 1684, 793),
+        MODIFY_PRODUCT("/view/ModifyProduct.fxml", "Modify Product Form", 0, 0);
+
+        private final String fxml;
+        private final String title;
+        private final double width;
+        private final double height;
+
+        Screen(String fxml, String title, double width, double height) {
+            this.fxml = fxml;
+            this.title = title;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    /**
+     * A loaded screen. The scene is only made and read on the JavaFX application thread.
+     */
+    private static final class Loaded {
+        private final Parent root;
+        private final Object controller;
+        private Scene scene;
+
+        private Loaded(Parent root, Object controller) {
+            this.root = root;
+            this.controller = controller;
+        }
+    }
+
+    private static final Map<Screen, CompletableFuture<Loaded>> screens = new ConcurrentHashMap<>();
+    private static volatile long lastSwitchNanos;
+
+    private Screens() {
+    }
+
+    /**
+     * Loads the screens not loaded yet on a background thread, one after another, so they are ready when first shown.
+     * A screen that fails to load here is loaded again when it is shown, where the error is reported.
+     */
+    public static void prewarm() {
+        Executor loader = task -> {
+            Thread thread = new Thread(task, "screen-prewarm");
+            thread.setDaemon(true);
+            thread.start();
+        };
+        CompletableFuture<?> previous = CompletableFuture.completedFuture(null);
+        for (Screen screen : Screen.values()) {
+            CompletableFuture<Loaded> loading = new CompletableFuture<>();
+            if (screens.putIfAbsent(screen, loading) == null) {
+                previous = previous.handleAsync((ignored, error) -> {
+                    try {
+                        loading.complete(load(screen));
+                    } catch (RuntimeException e) {
+                        screens.remove(screen, loading);
+                        loading.completeExceptionally(e);
+                    }
+                    return null;
+                }, loader);
+            }
+        }
+    }
+
+    /**
+     * Shows a screen on the stage that holds the node an event came from.
+     * @param event the event, such as a button click
+     * @param screen the screen to show
+     * @throws IOException if the screen cannot be loaded
+     */
+    static void show(ActionEvent event, Screen screen) throws IOException {
+        show((Stage) ((Node) event.getSource()).getScene().getWindow(), screen);
+    }
+
+    /**
+     * Shows a screen on a stage, loading it first if it was not loaded yet, or waiting for it if it is being loaded.
+     * The controller of a screen shown before is reset.
+     * @param stage the stage
+     * @param screen the screen to show
+     * @throws IOException if the screen cannot be loaded
+     */
+    public static void show(Stage stage, Screen screen) throws IOException {
+        long start = System.nanoTime();
+        Loaded loaded;
+        try {
+            loaded = screens.computeIfAbsent(screen, key -> CompletableFuture.completedFuture(load(key))).join();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (CompletionException e) {
+            // the background load failed; this load reports the error itself
+            screens.remove(screen);
+            show(stage, screen);
+            return;
+        }
+        if (loaded.controller instanceof ReusableScreen) {
+            ((ReusableScreen) loaded.controller).reset();
+        }
+        if (loaded.scene == null) {
+            loaded.scene = screen.width > 0 ? new Scene(loaded.root, screen.width, screen.height)
+                    : new Scene(loaded.root);
+        }
+        stage.setTitle(screen.title);
+        stage.setScene(loaded.scene);
+        stage.show();
+        lastSwitchNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Getter for the time the last switch took, from the call to show until the new scene was set.
+     * The first switch to a screen also counts making its scene, and loading it unless it was loaded ahead.
+     * @return time in nanoseconds
+     */
+    public static long getLastSwitchNanos() {
+        return lastSwitchNanos;
+    }
+
+    /**
+     * Loads a screen from its FXML file. Does not make its scene, so it can run on any thread.
+     * @param screen the screen
+     * @return The loaded screen.
+     * @throws UncheckedIOException if the FXML file cannot be read
+     */
+    private static Loaded load(Screen screen) {
+        try {
+            FXMLLoader loader = new FXMLLoader(Screens.class.getResource(screen.fxml));
+            Parent root = loader.load();
+            return new Loaded(root, loader.getController());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -2,14 +2,18 @@
 package main;
 
 import javafx.application.Application;
-import javafx.fxml.FXMLLoader;
-import javafx.scene.Scene;
 import javafx.stage.Stage;
+import controller.Screens;
 import model.InHouse;
 import model.Inventory;
 import model.Outsourced;
 import model.Product;
+import persistence.InventoryStore;
+import persistence.WriteAheadLog;
+
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 
 
 /**
@@ -22,64 +26,63 @@ import java.io.IOException;
  */
 public class Main extends Application {
     /**
-     * This sets partId all partId to 0 and can be accessed throughout the program.
-     */
-    public static int partId = 0;
-    /**
-     * This sets all productId to 0 and can be accessed throughout the program.
-     */
-    public static int productId = 0;
-    /**
-     * This method returns unique, incremental partId.
-     * @return
-     */
-    public static int getPartId() {
-        return ++partId;
-    }
-    /**
-     * This method returns unique, incremental productId.
-     * @return
+     * This is the store that keeps the Inventory on disk as a snapshot and a journal of later changes.
+     * The data directory, durability mode and flush delay can be set with the inventory.data, inventory.durability
+     * and inventory.flushDelayMillis system properties.
      */
-    public static int getProductId() {
-        return ++productId;
-    }
+    private static InventoryStore store;
     /**
      * This is the start method.
      * This is where the first fxml form is initialized.
+     * The other forms are then loaded in the background, so switching to them later does not load them.
      * @param stage
      * @throws IOException
      */
     @Override
     public void start(Stage stage) throws IOException {
-        FXMLLoader fxmlLoader = new FXMLLoader(Main.class.getResource("/view/MainScreen.fxml"));
-        Scene scene = new Scene(fxmlLoader.load(), 1452, 715);
-        stage.setTitle("Inventory Management System");
-        stage.setScene(scene);
-        stage.show();
+        Screens.show(stage, Screens.Screen.MAIN);
+        Screens.prewarm();
     }
     /**
      * This is the main of the program.
-     * It will create new objects and launch the program.
+     * It will load the Inventory from the store, create the sample objects on the first start and launch the program.
+     * A snapshot is written when the program exits, so the next start can map it instead of replaying every change.
      * @param args
+     * @throws IOException if the store cannot be opened
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        store = InventoryStore.open(Path.of(System.getProperty("inventory.data", ".")),
+                WriteAheadLog.Durability.valueOf(System.getProperty("inventory.durability", "GROUP")),
+                Long.getLong("inventory.flushDelayMillis", 2));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                store.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }));
+        if (store.isEmpty()) {
+            addSampleData();
+        }
+
+        launch();
+    }
 
-        InHouse bolt = new InHouse(partId, "bolt", 2.99, 5, 2, 300, 4);
-        partId = Main.getPartId();
+    /**
+     * Creates the sample parts and products used on the first start, when the store is still empty.
+     * Their Ids come from the Inventory's Id allocators like those of parts and products added later.
+     */
+    private static void addSampleData() {
+        InHouse bolt = new InHouse(Inventory.getPartIds().next(), "bolt", 2.99, 5, 2, 300, 4);
         Inventory.addPart(bolt);
 
-        Outsourced nail = new Outsourced(partId, "nail", .75, 50, 3, 500, "Nail Co");
-        partId = Main.getPartId();
+        Outsourced nail = new Outsourced(Inventory.getPartIds().next(), "nail", .75, 50, 3, 500, "Nail Co");
         Inventory.addPart(nail);
 
-        Product tool = new Product(productId, "tool", 99, 3, 2, 4);
-        productId = Main.getProductId();
+        Product tool = new Product(Inventory.getProductIds().next(), "tool", 99, 3, 2, 4);
         Inventory.addProduct(tool);
 
-        Product phone = new Product(productId, "phone", 99, 3, 2, 4);
-        productId = Main.getProductId();
+        Product phone = new Product(Inventory.getProductIds().next(), "phone", 99, 3, 2, 4);
         Inventory.addProduct(phone);
-
-        launch();
     }
 }
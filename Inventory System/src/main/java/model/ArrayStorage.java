@@ -0,0 +1,44 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * This class is the default RecordStorage, which keeps a reference to every record object in a plain array.
+ * @param <T> the record type, Part or Product
+ */
+class ArrayStorage<T> implements RecordStorage<T> {
+    private Object[] elements = new Object[16];
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index, int id) {
+        return (T) elements[index];
+    }
+
+    @Override
+    public void set(int index, T record) {
+        elements[index] = record;
+    }
+
+    @Override
+    public boolean holds(int index, T record) {
+        return elements[index] == record;
+    }
+
+    @Override
+    public void move(int from, int to, int length) {
+        System.arraycopy(elements, from, elements, to, length);
+    }
+
+    @Override
+    public void clear(int from, int to) {
+        Arrays.fill(elements, from, to, null);
+    }
+
+    @Override
+    public void ensureCapacity(int capacity) {
+        if (capacity > elements.length) {
+            elements = Arrays.copyOf(elements, capacity);
+        }
+    }
+}
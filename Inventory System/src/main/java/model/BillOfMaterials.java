@@ -0,0 +1,478 @@
+package model;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * This class explodes products into the leaf parts they are assembled from, through any depth of sub-assemblies,
+ * and rolls up their cost and how many units the part stock can build.
+ *
+ * A product lists a part once per unit needed and each sub-assembly with a quantity, so its explosion is its own
+ * part counts plus the explosion of every sub-assembly times its quantity. Explosions are memoized per product
+ * and worked out children first, so a sub-assembly shared by many products is exploded once.
+ * A product can be built as many times as the stock of its scarcest leaf part covers that part's quantity;
+ * the stock of the sub-assemblies themselves is not counted. A product whose explosion needs a part or
+ * sub-assembly not in the Inventory, or that has no parts at all, cannot be built.
+ *
+ * Explosions only change with the structure: a product change drops those of the product and of every product
+ * that contains it. A part change drops only the rolled-up cost and buildable quantity of the products that
+ * contain the part at any depth, found through the where-used index and the parents of each product.
+ */
+final class BillOfMaterials implements InventoryListener {
+    /**
+     * The leaf parts of a product with their total quantities, by ascending part Id.
+     */
+    static final class Explosion {
+        private static final Explosion MISSING = new Explosion(new int[0], new long[0], false);
+
+        final int[] partIds;
+        final long[] quantities;
+        /**
+         * False if a sub-assembly, at any depth, is not in the Inventory.
+         */
+        final boolean complete;
+
+        private Explosion(int[] partIds, long[] quantities, boolean complete) {
+            this.partIds = partIds;
+            this.quantities = quantities;
+            this.complete = complete;
+        }
+    }
+
+    private final RecordList<Part> parts;
+    private final RecordList<Product> products;
+    private final WhereUsedIndex whereUsed;
+    /**
+     * Product Id to the Ids of the products that include it as a sub-assembly.
+     */
+    private final Map<Integer, Set<Integer>> parents = new HashMap<>();
+    /**
+     * Product Id to the sub-assembly Ids it was linked under, to unlink them when it changes in place.
+     */
+    private final Map<Integer, int[]> linked = new HashMap<>();
+    private final ConcurrentHashMap<Integer, Explosion> explosions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Double> costs = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Integer> buildable = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor for the bill of materials of the Inventory lists.
+     * @param parts the parts
+     * @param products the products
+     * @param whereUsed the where-used index of the products
+     */
+    BillOfMaterials(RecordList<Part> parts, RecordList<Product> products, WhereUsedIndex whereUsed) {
+        this.parts = parts;
+        this.products = products;
+        this.whereUsed = whereUsed;
+    }
+
+    /**
+     * Gets the leaf parts of a product. Called under the read lock, with every record decoded.
+     * @param productId the Id of the product
+     * @return The explosion, otherwise null if there is no product with the Id.
+     */
+    Explosion explode(int productId) {
+        Explosion explosion = explosions.get(productId);
+        if (explosion != null) {
+            return explosion;
+        }
+        if (products.getById(productId) == null) {
+            return null;
+        }
+        // depth first, working out each product after its sub-assemblies
+        ArrayDeque<Integer> stack = new ArrayDeque<>();
+        Set<Integer> entered = new HashSet<>();
+        stack.push(productId);
+        while (!stack.isEmpty()) {
+            int id = stack.peek();
+            if (explosions.containsKey(id)) {
+                stack.pop();
+            } else if (entered.add(id)) {
+                Product product = products.getById(id);
+                if (product != null) {
+                    for (int child : product.getSubAssemblies().keySet()) {
+                        // a sub-assembly already entered is only reached again through a cycle in loaded data
+                        if (!explosions.containsKey(child) && !entered.contains(child)) {
+                            stack.push(child);
+                        }
+                    }
+                }
+            } else {
+                stack.pop();
+                explosions.putIfAbsent(id, compute(id));
+            }
+        }
+        return explosions.get(productId);
+    }
+
+    /**
+     * Gets the cost of the leaf parts of one unit of a product.
+     * Called under the read lock, with every record decoded.
+     * @param productId the Id of the product
+     * @return The cost, otherwise NaN if there is no product with the Id or it needs a part or sub-assembly
+     *         not in the Inventory.
+     */
+    double cost(int productId) {
+        Double cached = costs.get(productId);
+        if (cached != null) {
+            return cached;
+        }
+        Explosion explosion = explode(productId);
+        if (explosion == null) {
+            return Double.NaN;
+        }
+        double cost = explosion.complete ? 0 : Double.NaN;
+        for (int i = 0; i < explosion.partIds.length && !Double.isNaN(cost); i++) {
+            Part part = parts.getById(explosion.partIds[i]);
+            cost = part == null ? Double.NaN : cost + part.getPrice() * explosion.quantities[i];
+        }
+        costs.put(productId, cost);
+        return cost;
+    }
+
+    /**
+     * Gets how many units of a product can be built. Called under the read lock, with every record decoded.
+     * @param productId the Id of the product
+     * @return The number of units, otherwise -1 if there is no product with the Id.
+     */
+    int buildable(int productId) {
+        Integer cached = buildable.get(productId);
+        if (cached != null) {
+            return cached;
+        }
+        Explosion explosion = explode(productId);
+        if (explosion == null) {
+            return -1;
+        }
+        int units = units(explosion, this::stockOf);
+        buildable.put(productId, units);
+        return units;
+    }
+
+    /**
+     * Gets how many units of every product can be built. Called under the lock, with every record decoded.
+     * The explosions and the stock of their parts are read on the calling thread, which holds the lock; the
+     * products not cached are then worked out in parallel from those copies alone, since the worker threads hold
+     * no lock and must not read the lists.
+     * @return The number of units of each product, in the order of the products.
+     */
+    int[] buildableAll() {
+        int[] units = new int[products.size()];
+        int[] uncached = new int[units.length];
+        Explosion[] exploded = new Explosion[units.length];
+        Map<Integer, Integer> stock = new HashMap<>();
+        int count = 0;
+        for (int slot = 0; slot < units.length; slot++) {
+            Integer cached = buildable.get(products.idAt(slot));
+            if (cached != null) {
+                units[slot] = cached;
+                continue;
+            }
+            Explosion explosion = explode(products.idAt(slot));
+            for (int partId : explosion.partIds) {
+                stock.computeIfAbsent(partId, this::stockOf);
+            }
+            uncached[count] = slot;
+            exploded[count++] = explosion;
+        }
+        IntStream.range(0, count).parallel()
+                .forEach(i -> units[uncached[i]] = units(exploded[i], stock::get));
+        for (int i = 0; i < count; i++) {
+            buildable.put(products.idAt(uncached[i]), units[uncached[i]]);
+        }
+        return units;
+    }
+
+    /**
+     * Gets the stock of a part.
+     * @param partId the Id of the part
+     * @return The stock, at least 0, otherwise -1 if there is no part with the Id.
+     */
+    private int stockOf(int partId) {
+        Part part = parts.getById(partId);
+        return part == null ? -1 : Math.max(0, part.getStock());
+    }
+
+    /**
+     * Works out how many units of a product its leaf parts cover.
+     * @param explosion the explosion of the product
+     * @param stockOf the stock of a part by Id, -1 if there is no part with the Id
+     * @return The number of units.
+     */
+    private static int units(Explosion explosion, IntUnaryOperator stockOf) {
+        long units = explosion.complete && explosion.partIds.length > 0 ? Integer.MAX_VALUE : 0;
+        for (int i = 0; i < explosion.partIds.length && units > 0; i++) {
+            int stock = stockOf.applyAsInt(explosion.partIds[i]);
+            units = stock < 0 ? 0 : Math.min(units, stock / explosion.quantities[i]);
+        }
+        return (int) units;
+    }
+
+    /**
+     * Checks whether any product in the Inventory includes a product as a sub-assembly. Called under the lock.
+     * @param productId the Id of the product
+     * @return True if another product includes it.
+     */
+    boolean isSubAssembly(int productId) {
+        return parents.containsKey(productId);
+    }
+
+    /**
+     * Checks whether a product in the Inventory, or about to be added, would contain itself through its
+     * sub-assemblies, with every other product as it is in the Inventory. Called under the lock.
+     * Only the products that already contain the product at some depth are looked at.
+     * @param product the product as it would be
+     * @return True if the product would be one of its own sub-assemblies at some depth.
+     */
+    boolean containsItself(Product product) {
+        return isWithin(product.getId(), product.getSubAssemblies().keySet());
+    }
+
+    /**
+     * Checks whether a product is one of some products, or is contained by one of them at any depth.
+     * Called under the lock.
+     * @param productId the Id of the product
+     * @param containers the Ids of the products to look for
+     * @return True if the product is within one of them.
+     */
+    boolean isWithin(int productId, Collection<Integer> containers) {
+        if (containers.isEmpty()) {
+            return false;
+        }
+        ArrayDeque<Integer> stack = new ArrayDeque<>();
+        Set<Integer> seen = new HashSet<>();
+        stack.push(productId);
+        while (!stack.isEmpty()) {
+            int id = stack.pop();
+            if (containers.contains(id)) {
+                return true;
+            }
+            if (seen.add(id)) {
+                stack.addAll(parents.getOrDefault(id, Set.of()));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds a product that would contain itself once some products are added or changed together.
+     * Called under the lock. Each product reachable from them is visited once.
+     * @param changed products as they would be by Id, or null for products that would be deleted;
+     *        products not in it are read from the Inventory
+     * @return The Id of a changed product that would contain itself, otherwise IdIndex.NONE.
+     */
+    int findCycle(Map<Integer, Product> changed) {
+        // products being visited are on the path, and a sub-assembly on the path closes a cycle
+        Set<Integer> onPath = new HashSet<>();
+        Set<Integer> done = new HashSet<>();
+        ArrayDeque<Integer> path = new ArrayDeque<>();
+        ArrayDeque<Iterator<Integer>> children = new ArrayDeque<>();
+        for (Map.Entry<Integer, Product> start : changed.entrySet()) {
+            if (start.getValue() == null || done.contains(start.getKey())) {
+                continue;
+            }
+            path.push(start.getKey());
+            onPath.add(start.getKey());
+            children.push(start.getValue().getSubAssemblies().keySet().iterator());
+            while (!path.isEmpty()) {
+                if (!children.peek().hasNext()) {
+                    done.add(path.peek());
+                    onPath.remove(path.pop());
+                    children.pop();
+                    continue;
+                }
+                int child = children.peek().next();
+                if (onPath.contains(child)) {
+                    for (int id : path) {
+                        if (changed.containsKey(id)) {
+                            return id;
+                        }
+                        if (id == child) {
+                            break;
+                        }
+                    }
+                    return child;
+                }
+                Product product = changed.containsKey(child) ? changed.get(child) : products.getById(child);
+                if (product != null && !done.contains(child)) {
+                    path.push(child);
+                    onPath.add(child);
+                    children.push(product.getSubAssemblies().keySet().iterator());
+                }
+            }
+        }
+        return IdIndex.NONE;
+    }
+
+    /**
+     * Works out the explosion of a product whose sub-assemblies are all worked out already.
+     * @param productId the Id of the product
+     * @return The explosion.
+     */
+    private Explosion compute(int productId) {
+        Product product = products.getById(productId);
+        if (product == null) {
+            return Explosion.MISSING;
+        }
+        Map<Integer, Long> total = new HashMap<>();
+        for (Part part : product.getAllAssociatedParts()) {
+            total.merge(part.getId(), 1L, Long::sum);
+        }
+        boolean complete = true;
+        for (Map.Entry<Integer, Integer> sub : product.getSubAssemblies().entrySet()) {
+            Explosion child = explosions.get(sub.getKey());
+            if (child == null || !child.complete) {
+                complete = false;
+                continue;
+            }
+            for (int i = 0; i < child.partIds.length; i++) {
+                total.merge(child.partIds[i], child.quantities[i] * sub.getValue(), Long::sum);
+            }
+        }
+        int[] ids = new int[total.size()];
+        int n = 0;
+        for (int id : total.keySet()) {
+            ids[n++] = id;
+        }
+        Arrays.sort(ids);
+        long[] quantities = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            quantities[i] = total.get(ids[i]);
+        }
+        return new Explosion(ids, quantities, complete);
+    }
+
+    /**
+     * Drops the rolled-up values of the products that contain a part at any depth.
+     * @param partId the Id of the part
+     */
+    private void partChanged(int partId) {
+        if (costs.isEmpty() && buildable.isEmpty()) {
+            return;
+        }
+        for (int productId : withParents(whereUsed.productIds(partId))) {
+            costs.remove(productId);
+            buildable.remove(productId);
+        }
+    }
+
+    /**
+     * Drops everything worked out for a product and the products that contain it at any depth.
+     * @param productId the Id of the product
+     */
+    private void productChanged(int productId) {
+        for (int id : withParents(new int[] {productId})) {
+            explosions.remove(id);
+            costs.remove(id);
+            buildable.remove(id);
+        }
+    }
+
+    /**
+     * Gets products together with every product that contains them at any depth.
+     * @param productIds the Ids of the products
+     * @return The Ids, each once.
+     */
+    private Set<Integer> withParents(int[] productIds) {
+        Set<Integer> found = new HashSet<>();
+        ArrayDeque<Integer> stack = new ArrayDeque<>();
+        for (int id : productIds) {
+            stack.push(id);
+        }
+        while (!stack.isEmpty()) {
+            int id = stack.pop();
+            if (found.add(id)) {
+                stack.addAll(parents.getOrDefault(id, Set.of()));
+            }
+        }
+        return found;
+    }
+
+    private void link(Product product) {
+        int[] children = product.getSubAssemblies().keySet().stream().mapToInt(Integer::intValue).toArray();
+        if (children.length == 0) {
+            return;
+        }
+        linked.put(product.getId(), children);
+        for (int child : children) {
+            parents.computeIfAbsent(child, id -> new HashSet<>()).add(product.getId());
+        }
+    }
+
+    private void unlink(int productId) {
+        int[] children = linked.remove(productId);
+        if (children == null) {
+            return;
+        }
+        for (int child : children) {
+            Set<Integer> of = parents.get(child);
+            if (of != null && of.remove(productId) && of.isEmpty()) {
+                parents.remove(child);
+            }
+        }
+    }
+
+    @Override
+    public void partAdded(Part part) {
+        partChanged(part.getId());
+    }
+
+    @Override
+    public void partUpdated(int id, Part oldPart, Part newPart) {
+        partChanged(id);
+        partChanged(newPart.getId());
+    }
+
+    @Override
+    public void partDeleted(Part part) {
+        partChanged(part.getId());
+    }
+
+    @Override
+    public void productAdded(Product product) {
+        link(product);
+        productChanged(product.getId());
+    }
+
+    @Override
+    public void productUpdated(int id, Product oldProduct, Product newProduct) {
+        unlink(id);
+        link(newProduct);
+        productChanged(id);
+        productChanged(newProduct.getId());
+    }
+
+    @Override
+    public void productDeleted(Product product) {
+        unlink(product.getId());
+        productChanged(product.getId());
+    }
+
+    @Override
+    public void associatedPartsChanged(Product product) {
+        unlink(product.getId());
+        link(product);
+        productChanged(product.getId());
+    }
+
+    @Override
+    public void inventoryLoaded() {
+        parents.clear();
+        linked.clear();
+        explosions.clear();
+        costs.clear();
+        buildable.clear();
+        for (Product product : products) {
+            link(product);
+        }
+    }
+}
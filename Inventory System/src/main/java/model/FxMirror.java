@@ -0,0 +1,164 @@
+package model;
+
+import javafx.application.Platform;
+import javafx.collections.ListChangeListener;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * This class keeps a copy of an Inventory list that is only changed on the JavaFX thread, for the tables to show
+ * while other threads change the Inventory.
+ *
+ * Changes to the source list are collected by record id as they happen and applied to the copy in one batch
+ * on the JavaFX thread; a change made on the JavaFX thread itself is applied at once.
+ * The copy follows the source by id rather than by position, so sorting the copy in a table is kept:
+ * removed records are taken out, replaced records are swapped in place and new records are added at the end.
+ * @param <T> the record type, Part or Product
+ */
+class FxMirror<T> {
+    private static final Object ABSENT = new Object();
+    private static final Object PRESENT = new Object();
+
+    private final RecordList<T> source;
+    private final ToIntFunction<? super T> idOf;
+    private final RecordList<T> copy;
+    private final InventoryLock lock;
+    /**
+     * The latest state of every id changed since the last batch, in the order the ids were first changed.
+     */
+    private Map<Integer, Object> pending = new LinkedHashMap<>();
+    private boolean scheduled;
+    /**
+     * Set once the JavaFX toolkit turns out not to be running, so nothing would ever apply a batch.
+     */
+    private volatile boolean unattended;
+
+    /**
+     * Constructor for a mirror of a source list, which starts out empty.
+     * @param source the list to follow
+     * @param idOf gets the id of a record
+     * @param lock the lock that guards the source list
+     */
+    FxMirror(RecordList<T> source, ToIntFunction<? super T> idOf, InventoryLock lock) {
+        this.source = source;
+        this.idOf = idOf;
+        this.copy = new RecordList<>(idOf);
+        this.lock = lock;
+        source.addListener(this::onSourceChanged);
+    }
+
+    /**
+     * Gets the copy, after applying any pending changes when called on the JavaFX thread,
+     * or from any thread while the JavaFX toolkit is not running.
+     * @return The copy.
+     */
+    RecordList<T> list() {
+        if (unattended || Platform.isFxApplicationThread()) {
+            apply();
+        }
+        return copy;
+    }
+
+    /**
+     * Records the ids touched by a change of the source. Runs on the changing thread, under the write lock.
+     * @param change the change
+     */
+    private void onSourceChanged(ListChangeListener.Change<? extends T> change) {
+        synchronized (this) {
+            // removals first, so a record moved within one change ends up present
+            while (change.next()) {
+                if (!change.wasPermutated()) {
+                    for (T removed : change.getRemoved()) {
+                        pending.put(idOf.applyAsInt(removed), ABSENT);
+                    }
+                }
+            }
+            change.reset();
+            while (change.next()) {
+                if (!change.wasPermutated()) {
+                    // ids are read by position so records waiting to be decoded stay that way
+                    for (int i = change.getFrom(); i < change.getTo(); i++) {
+                        pending.put(source.idAt(i), PRESENT);
+                    }
+                }
+            }
+            if (pending.isEmpty() || scheduled) {
+                return;
+            }
+            scheduled = true;
+        }
+        if (Platform.isFxApplicationThread()) {
+            apply();
+            return;
+        }
+        try {
+            Platform.runLater(this::apply);
+        } catch (IllegalStateException e) {
+            // the JavaFX toolkit is not running yet; the changes are applied when the copy is first asked for
+            synchronized (this) {
+                scheduled = false;
+                unattended = true;
+            }
+        }
+    }
+
+    /**
+     * Applies the pending changes to the copy. Runs on the JavaFX thread.
+     */
+    private void apply() {
+        synchronized (copy) {
+            applyBatch();
+        }
+    }
+
+    /**
+     * Applies the pending changes to the copy, holding the copy's monitor so batches never overlap.
+     */
+    private void applyBatch() {
+        Map<Integer, Object> batch;
+        synchronized (this) {
+            batch = pending;
+            pending = new LinkedHashMap<>();
+            scheduled = false;
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<Integer, T>> present = lock.readDecoding(source::isDecoded, () -> {
+            List<Map.Entry<Integer, T>> found = new ArrayList<>();
+            for (Map.Entry<Integer, Object> entry : batch.entrySet()) {
+                if (entry.getValue() == PRESENT) {
+                    T record = source.getById(entry.getKey());
+                    if (record != null) {
+                        found.add(Map.entry(entry.getKey(), record));
+                    }
+                }
+            }
+            return found;
+        });
+        BitSet doomed = new BitSet(copy.size());
+        for (Map.Entry<Integer, Object> entry : batch.entrySet()) {
+            int slot = copy.slotOf(entry.getKey());
+            if (entry.getValue() == ABSENT && slot != IdIndex.NONE) {
+                doomed.set(slot);
+            }
+        }
+        copy.removeSlots(doomed);
+        List<T> added = new ArrayList<>();
+        for (Map.Entry<Integer, T> entry : present) {
+            int slot = copy.slotOf(entry.getKey());
+            if (slot == IdIndex.NONE) {
+                added.add(entry.getValue());
+            } else {
+                // set even the same record, which may have been changed in place, so its row is redrawn
+                copy.set(slot, entry.getValue());
+            }
+        }
+        copy.addAll(added);
+    }
+}
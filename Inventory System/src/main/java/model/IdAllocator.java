@@ -0,0 +1,154 @@
+package model;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+/**
+ * This class hands out unique, increasing record Ids from any number of threads.
+ * Each thread leases a block of Ids with one atomic add and then takes Ids from its block without any shared state,
+ * so threads inserting at a high rate do not contend on a counter.
+ *
+ * Ids are only unique, not gapless: a block is lost when its thread stops using it or the program exits,
+ * or when a record is added with an Id of its own at or above the first Id of the oldest block still in use.
+ * Before an Id is handed out, the reserver is told a high-water mark above it, so a store can persist the mark
+ * and start after it on the next run. The mark is reserved well ahead of the Ids in use, so it is rarely written.
+ */
+public final class IdAllocator {
+    private final int blockSize;
+    private final int reserveAhead;
+    /**
+     * The first Id of the next block to lease.
+     */
+    private final AtomicLong next;
+    /**
+     * The Ids below this have been reserved with the reserver.
+     */
+    private volatile long reserved;
+    /**
+     * Changes whenever a record takes an Id that a leased block may hold, so blocks leased before that are dropped.
+     */
+    private volatile int epoch;
+    /**
+     * The first Id of the next block when the epoch last changed. Every block leased in this epoch starts at or
+     * after it, so an Id below it is in no block that is still used.
+     */
+    private volatile long leasedFrom;
+    private volatile IntConsumer reserver;
+    private final ThreadLocal<Lease> leases = ThreadLocal.withInitial(Lease::new);
+
+    /**
+     * The block of Ids leased by one thread.
+     */
+    private static final class Lease {
+        private int epoch = -1;
+        private int next;
+        private int end;
+    }
+
+    /**
+     * Constructor for an allocator that has no reserver yet.
+     * @param first the first Id to hand out
+     * @param blockSize the number of Ids each thread leases at a time
+     * @param reserveAhead the number of Ids reserved past the ones leased, each time the reserver is called
+     */
+    public IdAllocator(int first, int blockSize, int reserveAhead) {
+        if (blockSize < 1 || reserveAhead < 0) {
+            throw new IllegalArgumentException("blockSize must be positive and reserveAhead must not be negative");
+        }
+        this.blockSize = blockSize;
+        this.reserveAhead = reserveAhead;
+        this.next = new AtomicLong(first);
+        this.reserved = first;
+        this.leasedFrom = first;
+    }
+
+    /**
+     * Hands out the next Id for the calling thread.
+     * @return An Id that has not been handed out before.
+     * @throws IllegalStateException if every int Id has been used
+     * @throws java.io.UncheckedIOException if the reserver could not persist the high-water mark
+     */
+    public int next() {
+        Lease lease = leases.get();
+        if (lease.next == lease.end || lease.epoch != epoch) {
+            lease(lease);
+        }
+        return lease.next++;
+    }
+
+    /**
+     * Leases a new block of Ids for a thread, reserving more Ids first if the block goes past the reserved ones.
+     * Synchronized with advancePast, so a block is never leased in an epoch that has already dropped it.
+     * @param lease the thread's lease
+     */
+    private synchronized void lease(Lease lease) {
+        int currentEpoch = epoch;
+        long start = next.getAndAdd(blockSize);
+        long end = start + blockSize;
+        if (end > Integer.MAX_VALUE) {
+            throw new IllegalStateException("No Ids are left to hand out.");
+        }
+        if (end > reserved) {
+            reserve(end);
+        }
+        lease.epoch = currentEpoch;
+        lease.next = (int) start;
+        lease.end = (int) end;
+    }
+
+    /**
+     * Tells the reserver a new high-water mark, at least the given Id.
+     * @param end the Id that the mark must reach
+     */
+    private synchronized void reserve(long end) {
+        if (end <= reserved) {
+            return;
+        }
+        long mark = Math.min(Integer.MAX_VALUE, end + reserveAhead);
+        IntConsumer current = reserver;
+        if (current != null) {
+            current.accept((int) mark);
+        }
+        reserved = mark;
+    }
+
+    /**
+     * Makes sure the given Id is not handed out by any call to next that starts after this returns, for records added
+     * with an Id of their own. Later calls hand out Ids above it.
+     * If a leased block may hold the Id, every leased block is dropped when its thread next asks for an Id,
+     * since the Id may be inside a block a thread has only partly used.
+     * @param id the Id in use
+     */
+    public void advancePast(int id) {
+        if (id < leasedFrom) {
+            return;
+        }
+        synchronized (this) {
+            if (id < leasedFrom) {
+                return;
+            }
+            next.accumulateAndGet((long) id + 1, Math::max);
+            epoch++;
+            leasedFrom = next.get();
+        }
+    }
+
+    /**
+     * Sets the reserver that persists the high-water mark. The next block leased reserves a new mark.
+     * @param reserver called with each new high-water mark before any Id below it is handed out, or null for none
+     */
+    public synchronized void setReserver(IntConsumer reserver) {
+        this.reserver = reserver;
+        reserved = Math.min(reserved, next.get());
+        epoch++;
+        leasedFrom = next.get();
+    }
+
+    /**
+     * Getter for the first Id that no thread has leased yet.
+     * @return next unleased Id
+     */
+    public int getNextUnleased() {
+        return (int) Math.min(Integer.MAX_VALUE, next.get());
+    }
+}
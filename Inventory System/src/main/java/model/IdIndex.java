@@ -0,0 +1,181 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * This class is a hash index that maps int ids to int slots (or other non-negative values) without boxing either side.
+ * It uses open addressing with linear probing and backward-shift deletion, so there are no tombstones.
+ */
+class IdIndex {
+    /**
+     * Value stored in a bucket that holds no entry. Slots are never negative.
+     */
+    static final int NONE = -1;
+    /**
+     * Largest fraction of buckets allowed to be in use before the table grows.
+     */
+    private static final float LOAD_FACTOR = 0.5f;
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    /**
+     * Constructor for an empty IdIndex.
+     */
+    IdIndex() {
+        this(16);
+    }
+
+    /**
+     * Constructor for an IdIndex sized to hold the expected number of ids without growing.
+     * @param expected number of ids expected
+     */
+    IdIndex(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expected / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * Gets the slot stored for an id.
+     * The probe never visits more buckets than the table has, so an optimistic read that races a resize ends.
+     * @param key the id to look up
+     * @return The slot, otherwise NONE if the id is not indexed.
+     */
+    int get(int key) {
+        int i = bucket(key);
+        for (int probes = 0; probes <= mask && values[i] != NONE; probes++) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+            i = (i + 1) & mask;
+        }
+        return NONE;
+    }
+
+    /**
+     * Stores the slot for an id, replacing any slot already stored for it.
+     * @param key the id
+     * @param value the slot, must not be negative
+     */
+    void put(int key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Slot cannot be negative: " + value);
+        }
+        int i = bucket(key);
+        while (values[i] != NONE) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size >= resizeAt) {
+            rehash(keys.length << 1);
+        }
+    }
+
+    /**
+     * Removes an id from the index.
+     * @param key the id to remove
+     * @return The slot that was stored, otherwise NONE if the id was not indexed.
+     */
+    int remove(int key) {
+        int i = bucket(key);
+        while (values[i] != NONE) {
+            if (keys[i] == key) {
+                int old = values[i];
+                shiftBack(i);
+                size--;
+                return old;
+            }
+            i = (i + 1) & mask;
+        }
+        return NONE;
+    }
+
+    /**
+     * Removes every id from the index.
+     */
+    void clear() {
+        Arrays.fill(values, NONE);
+        size = 0;
+    }
+
+    /**
+     * Gets every indexed id, in no particular order.
+     * @return The ids.
+     */
+    int[] keys() {
+        int[] result = new int[size];
+        int n = 0;
+        for (int i = 0; i < keys.length && n < size; i++) {
+            if (values[i] != NONE) {
+                result[n++] = keys[i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Getter for the number of indexed ids.
+     * @return size
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Closes the gap left at a removed bucket by moving later entries of the same probe run back into it.
+     * @param gap the bucket that was emptied
+     */
+    private void shiftBack(int gap) {
+        int i = gap;
+        while (true) {
+            i = (i + 1) & mask;
+            if (values[i] == NONE) {
+                break;
+            }
+            int home = bucket(keys[i]);
+            // the entry can only move back if its home bucket is not between the gap and its current bucket
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        values[gap] = NONE;
+    }
+
+    private int bucket(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, NONE);
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != NONE) {
+                int j = bucket(oldKeys[i]);
+                while (values[j] != NONE) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+}
@@ -1,170 +1,1574 @@
 package model;
 
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
 /**
  * This is the Inventory class that models for Parts and Products.
+ * Every method can be called from any thread: reads by Id are optimistic and lock-free unless they overlap a change,
+ * other reads share a read lock and changes are made one at a time under a write lock.
  */
 public class Inventory {
+    /**
+     * This guards every list and index below.
+     */
+    private static final InventoryLock lock = new InventoryLock(Inventory::lockReleased);
     /**
      * This creates an Observable list called allParts for all parts in the Inventory.
+     * It keeps an index from each part Id to its position so Id lookups do not scan the list.
+     * Setting the inventory.partStorage system property to "columns" keeps the parts in primitive arrays
+     * instead of one object per part, and hands out flyweight parts when they are read.
      */
-    private static ObservableList<Part> allParts = FXCollections.observableArrayList();
+    private static RecordList<Part> allParts = new RecordList<>(Part::getId,
+            "columns".equals(System.getProperty("inventory.partStorage")) ? new PartColumns(lock) : new ArrayStorage<>());
     /**
      * This creates an Observable list called allProducts for all products in the Inventory.
+     * It keeps an index from each product Id to its position so Id lookups do not scan the list.
+     */
+    private static RecordList<Product> allProducts = new RecordList<>(Product::getId);
+    /**
+     * This indexes the trigrams of every part name so name searches only check candidate parts.
+     */
+    private static final TrigramIndex partNames = new TrigramIndex();
+    /**
+     * This indexes the trigrams of every product name so name searches only check candidate products.
+     */
+    private static final TrigramIndex productNames = new TrigramIndex();
+    /**
+     * This maps each part Id to the products that have the part as an associated part.
+     */
+    private static final WhereUsedIndex whereUsed = new WhereUsedIndex();
+    /**
+     * This hands out the Ids of new parts. Each thread leases 64 Ids at a time.
+     */
+    private static final IdAllocator partIds = new IdAllocator(1, 64, 4096);
+    /**
+     * This hands out the Ids of new products. Each thread leases 64 Ids at a time.
+     */
+    private static final IdAllocator productIds = new IdAllocator(1, 64, 4096);
+    /**
+     * This holds the listeners that are told about every change made through this class.
+     */
+    private static final List<InventoryListener> listeners = new CopyOnWriteArrayList<>();
+    /**
+     * When the inventory.concurrent system property is true, getAllParts and getAllProducts return copies that are
+     * only changed on the JavaFX thread, so the tables can show the Inventory while other threads change it.
+     * Otherwise they return the lists themselves, which must then only be changed on the JavaFX thread.
+     */
+    private static final FxMirror<Part> partsMirror = Boolean.getBoolean("inventory.concurrent")
+            ? new FxMirror<>(allParts, Part::getId, lock) : null;
+    private static final FxMirror<Product> productsMirror = partsMirror != null
+            ? new FxMirror<>(allProducts, Product::getId, lock) : null;
+    /**
+     * This runs the write-backs of reserved stock into the records: on the JavaFX thread, which owns the lists,
+     * except in concurrent mode or while the JavaFX toolkit is not running, where a background thread does.
+     */
+    private static final Executor stockWriter = new Executor() {
+        private final Executor background = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "inventory-stock");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        @Override
+        public void execute(Runnable task) {
+            if (partsMirror == null) {
+                try {
+                    Platform.runLater(task);
+                    return;
+                } catch (IllegalStateException e) {
+                    // the JavaFX toolkit is not running
+                }
+            }
+            background.execute(task);
+        }
+    };
+    /**
+     * This holds the stock of parts being reserved, so reservations do not wait for the lock.
+     */
+    private static final StockLedger<Part> partStock = new StockLedger<>(allParts, lock, "part", Part::getStock,
+            Part::getMin, Part::getMax, Part::setStock, (part, oldStock) -> {
+                for (InventoryListener listener : listeners) {
+                    listener.partStockChanged(part, oldStock);
+                }
+            }, stockWriter);
+    /**
+     * This holds the stock of products being reserved, so reservations do not wait for the lock.
      */
-    private static ObservableList<Product> allProducts = FXCollections.observableArrayList();
+    private static final StockLedger<Product> productStock = new StockLedger<>(allProducts, lock, "product",
+            Product::getStock, Product::getMin, Product::getMax, Product::setStock, (product, oldStock) -> {
+                for (InventoryListener listener : listeners) {
+                    listener.productStockChanged(product, oldStock);
+                }
+            }, stockWriter);
+    /**
+     * How long a reservation holds its stock unless given another timeout, from the
+     * inventory.reservationTimeoutMillis system property, 5 minutes by default.
+     */
+    private static final long RESERVATION_TIMEOUT_MILLIS = Long.getLong("inventory.reservationTimeoutMillis", 300_000);
+    /**
+     * This explodes products into their leaf parts through their sub-assemblies and rolls up their cost and
+     * how many units the part stock can build, caching the results.
+     */
+    private static final BillOfMaterials bom = new BillOfMaterials(allParts, allProducts, whereUsed);
+    /**
+     * These track the parts and products outside their min and max. Each is created when first asked for.
+     */
+    private static StockMonitor<Part> partMonitor;
+    private static StockMonitor<Product> productMonitor;
+    /**
+     * This keeps the running totals of the parts and products. It is created when first asked for.
+     */
+    private static volatile InventoryAggregates aggregates;
+    /**
+     * These keep the parts and products in order of price, stock and name, by property.
+     * Each index is created when first asked for.
+     */
+    private static final Map<String, SortedIndex<Part>> partIndexes = new HashMap<>();
+    private static final Map<String, SortedIndex<Product>> productIndexes = new HashMap<>();
+    /**
+     * These are what queries read the parts and products through.
+     */
+    private static final Query.Access<Part> partAccess = access(allParts, partNames, partIndexes, Part::getName);
+    private static final Query.Access<Product> productAccess = access(allProducts, productNames, productIndexes,
+            Product::getName);
+
+    static {
+        listeners.add(bom);
+        // the ledgers follow every change of the records they count
+        listeners.add(new InventoryListener() {
+            @Override
+            public void partUpdated(int id, Part oldPart, Part newPart) {
+                partStock.replaced(oldPart, id, newPart);
+            }
+
+            @Override
+            public void partDeleted(Part part) {
+                partStock.deleted(part.getId());
+            }
+
+            @Override
+            public void productUpdated(int id, Product oldProduct, Product newProduct) {
+                productStock.replaced(oldProduct, id, newProduct);
+            }
+
+            @Override
+            public void productDeleted(Product product) {
+                productStock.deleted(product.getId());
+            }
+
+            @Override
+            public void inventoryLoaded() {
+                partStock.clear();
+                productStock.clear();
+            }
+        });
+        // the sorted indexes follow every change of the records they order
+        listeners.add(new InventoryListener() {
+            @Override
+            public void partAdded(Part part) {
+                for (SortedIndex<Part> index : partIndexes.values()) {
+                    index.changed(part);
+                }
+            }
+
+            @Override
+            public void partUpdated(int id, Part oldPart, Part newPart) {
+                for (SortedIndex<Part> index : partIndexes.values()) {
+                    if (oldPart.getId() != newPart.getId()) {
+                        index.deleted(oldPart.getId());
+                    }
+                    index.changed(newPart);
+                }
+            }
+
+            @Override
+            public void partDeleted(Part part) {
+                for (SortedIndex<Part> index : partIndexes.values()) {
+                    index.deleted(part.getId());
+                }
+            }
+
+            @Override
+            public void productAdded(Product product) {
+                for (SortedIndex<Product> index : productIndexes.values()) {
+                    index.changed(product);
+                }
+            }
+
+            @Override
+            public void productUpdated(int id, Product oldProduct, Product newProduct) {
+                for (SortedIndex<Product> index : productIndexes.values()) {
+                    if (oldProduct.getId() != newProduct.getId()) {
+                        index.deleted(oldProduct.getId());
+                    }
+                    index.changed(newProduct);
+                }
+            }
+
+            @Override
+            public void productDeleted(Product product) {
+                for (SortedIndex<Product> index : productIndexes.values()) {
+                    index.deleted(product.getId());
+                }
+            }
+
+            @Override
+            public void inventoryLoaded() {
+                partIndexes.values().forEach(SortedIndex::reloaded);
+                productIndexes.values().forEach(SortedIndex::reloaded);
+            }
+        });
+    }
     /**
      * This method adds part objects to the observable list allParts.
+     * A part added with an Id that the part Id allocator has not handed out yet moves the allocator past it.
      * @param newPart variable to be added the part list
+     * @throws IllegalArgumentException if a part with the same Id is already in the list
      */
     public static void addPart(Part newPart) {
-        allParts.add(newPart);
+        partIds.advancePast(newPart.getId());
+        lock.write(() -> {
+            checkNewIds(allParts, List.of(newPart), Part::getId, "part");
+            allParts.add(newPart);
+            partNames.add(newPart.getId(), newPart.getName());
+            for (InventoryListener listener : listeners) {
+                listener.partAdded(newPart);
+            }
+        });
     }
     /**
      * This method adds product objects to the observable list allProducts.
+     * A product added with an Id that the product Id allocator has not handed out yet moves the allocator past it.
      * @param newProduct variable to be added to product list
+     * @throws IllegalArgumentException if a product with the same Id is already in the list
      */
     public static void addProduct(Product newProduct) {
-        allProducts.add(newProduct);
+        productIds.advancePast(newProduct.getId());
+        lock.write(() -> {
+            checkNewIds(allProducts, List.of(newProduct), Product::getId, "product");
+            checkSubAssemblies(newProduct);
+            allProducts.add(newProduct);
+            productNames.add(newProduct.getId(), newProduct.getName());
+            newProduct.setWhereUsed(whereUsed);
+            for (InventoryListener listener : listeners) {
+                listener.productAdded(newProduct);
+            }
+        });
+    }
+    /**
+     * Adds many parts at once, as one change of the observable list allParts.
+     * Used for bulk imports, where adding part by part would update the tables once per part.
+     * @param newParts the parts to add, in order
+     * @throws IllegalArgumentException if two of the parts, or one of them and a part in the list, share an Id;
+     *         none of them is added
+     */
+    public static void addParts(List<? extends Part> newParts) {
+        for (Part part : newParts) {
+            partIds.advancePast(part.getId());
+        }
+        lock.write(() -> {
+            checkNewIds(allParts, newParts, Part::getId, "part");
+            allParts.addAll(allParts.size(), newParts);
+            for (Part part : newParts) {
+                partNames.add(part.getId(), part.getName());
+            }
+            for (InventoryListener listener : listeners) {
+                for (Part part : newParts) {
+                    listener.partAdded(part);
+                }
+            }
+        });
     }
     /**
-     * Looks up parts through all objects in the observable list allParts by their partId.
+     * Adds many products at once, as one change of the observable list allProducts.
+     * Used for bulk imports, where adding product by product would update the tables once per product.
+     * @param newProducts the products to add, in order
+     * @throws IllegalArgumentException if two of the products, or one of them and a product in the list, share
+     *         an Id, or one would contain itself through its sub-assemblies; none of them is added
+     */
+    public static void addProducts(List<? extends Product> newProducts) {
+        for (Product product : newProducts) {
+            productIds.advancePast(product.getId());
+        }
+        lock.write(() -> {
+            checkNewIds(allProducts, newProducts, Product::getId, "product");
+            if (newProducts.stream().anyMatch(product -> !product.getSubAssemblies().isEmpty())) {
+                // the new products may include each other, so all of them are looked at together
+                Map<Integer, Product> added = new HashMap<>();
+                for (Product product : newProducts) {
+                    added.put(product.getId(), product);
+                }
+                int cyclic = bom.findCycle(added);
+                if (cyclic != IdIndex.NONE) {
+                    throw new IllegalArgumentException("The product " + cyclic
+                            + " would contain itself through its sub-assemblies.");
+                }
+            }
+            allProducts.addAll(allProducts.size(), newProducts);
+            for (Product product : newProducts) {
+                productNames.add(product.getId(), product.getName());
+                product.setWhereUsed(whereUsed);
+            }
+            for (InventoryListener listener : listeners) {
+                for (Product product : newProducts) {
+                    listener.productAdded(product);
+                }
+            }
+        });
+    }
+    /**
+     * Looks up parts by their partId through the part index, without scanning the observable list allParts.
      * @param partId variable used to search parts using the Id
      * @return The object if found, otherwise null if not found.
      */
     public static Part lookupPart(int partId) {
-        ObservableList<Part> allParts = Inventory.getAllParts();
-        for(Part p: allParts) {
-            if(p.getId() == partId) {
-                return p;
-            }
-        }
-        return null;
+        Part part = lock.read(() -> allParts.peekById(partId));
+        return part != null ? part : readDecoding(() -> allParts.getById(partId));
     }
     /**
-     * Looks up products through all objects in the observable list allProducts by their productId.
+     * Looks up products by their productId through the product index, without scanning the observable list allProducts.
      * @param productId variable used to search products using the Id
      * @return The object if found, otherwise null if not found.
      */
     public static Product lookupProduct(int productId) {
-        ObservableList<Product> allProducts = Inventory.getAllProducts();
-        for (Product p: allProducts) {
-            if(p.getId() == productId) {
-                return p;
-            }
-        }
-        return null;
+        Product product = lock.read(() -> allProducts.peekById(productId));
+        return product != null ? product : readDecoding(() -> allProducts.getById(productId));
     }
     /**
      * Looks up partial/full name in the observable list allParts by their name.
+     * Names of three or more characters are narrowed down through the part trigram index first,
+     * shorter names scan the whole list.
      * @param partName variable used to search parts using the name
-     * @return A list of parts that contain the partial/full name that was searched.
+     * @return A list of parts that contain the partial/full name that was searched, in list order.
      */
     public static ObservableList<Part> lookupPart(String partName) {
-        // creates a new list
-        ObservableList<Part> namedPart = FXCollections.observableArrayList();
-        // gets all parts from list
-
-        for(Part part: allParts) {
-            if(part.getName().contains(partName)) {
-                namedPart.add(part);
-            }
+        refreshNames(partName, partNames, allParts, Part::getName);
+        return readDecoding(() -> toList(allParts, findSlots(allParts, partNames, Part::getName, partName)));
+    }
 
-        }
-        return namedPart;
+    /**
+     * Looks up the Ids of the parts whose names contain a string, without building a list of the parts.
+     * Used by the paged tables, which only read the parts they show, and may be called from any thread.
+     * @param partName the string to look for
+     * @return The Ids of the parts found, in list order.
+     * @throws CancellationException if the calling thread is interrupted while the parts are searched
+     */
+    public static int[] lookupPartIds(String partName) {
+        refreshNames(partName, partNames, allParts, Part::getName);
+        return readDecoding(() -> toIds(allParts, findSlots(allParts, partNames, Part::getName, partName)));
     }
+
     /**
      * Looks up partial/full name in the observable list allProducts by their name.
+     * Names of three or more characters are narrowed down through the product trigram index first,
+     * shorter names scan the whole list.
      * @param productName variable used to search products using the name
-     * @return A list of products that contain the partial/full name that was searched.
+     * @return A list of products that contain the partial/full name that was searched, in list order.
      */
     public static ObservableList<Product> lookupProduct(String productName) {
-        ObservableList<Product> namedProduct = FXCollections.observableArrayList();
+        refreshNames(productName, productNames, allProducts, Product::getName);
+        return readDecoding(() -> toList(allProducts,
+                findSlots(allProducts, productNames, Product::getName, productName)));
+    }
+
+    /**
+     * Looks up the Ids of the products whose names contain a string, without building a list of the products.
+     * Used by the paged tables, which only read the products they show, and may be called from any thread.
+     * @param productName the string to look for
+     * @return The Ids of the products found, in list order.
+     * @throws CancellationException if the calling thread is interrupted while the products are searched
+     */
+    public static int[] lookupProductIds(String productName) {
+        refreshNames(productName, productNames, allProducts, Product::getName);
+        return readDecoding(() -> toIds(allProducts,
+                findSlots(allProducts, productNames, Product::getName, productName)));
+    }
+
+    /**
+     * Creates a query of the parts. Conditions are added to it before its results are read.
+     * @return A query that finds every part until conditions are added.
+     */
+    public static Query<Part> queryParts() {
+        return new Query<>("parts", partAccess, Part::getId, Part::getName, Part::getPrice, Part::getStock);
+    }
+
+    /**
+     * Creates a query of the products. Conditions are added to it before its results are read.
+     * @return A query that finds every product until conditions are added.
+     */
+    public static Query<Product> queryProducts() {
+        return new Query<>("products", productAccess, Product::getId, Product::getName, Product::getPrice,
+                Product::getStock);
+    }
+
+    /**
+     * Creates what queries read a list and its indexes through, taking the lock for each read.
+     * @param list the records
+     * @param names the name index of the records
+     * @param indexes the sorted indexes of the records, by property
+     * @param nameOf gets the name of a record
+     * @return The access.
+     */
+    private static <T> Query.Access<T> access(RecordList<T> list, TrigramIndex names,
+            Map<String, SortedIndex<T>> indexes, Function<? super T, String> nameOf) {
+        return new Query.Access<T>() {
+            @Override
+            public int size() {
+                return lock.read(list::size);
+            }
+
+            @Override
+            public int[] ids() {
+                return readDecoding(() -> {
+                    int[] ids = new int[list.size()];
+                    for (int i = 0; i < ids.length; i++) {
+                        ids[i] = list.idAt(i);
+                    }
+                    return ids;
+                });
+            }
+
+            @Override
+            public T lookup(int id) {
+                T record = lock.read(() -> list.peekById(id));
+                return record != null ? record : readDecoding(() -> list.getById(id));
+            }
+
+            @Override
+            public int nameEstimate(String name) {
+                refreshNames(name, names, list, nameOf);
+                return lock.readLocked(() -> names.estimate(name));
+            }
+
+            @Override
+            public int[] nameCandidates(String name) {
+                refreshNames(name, names, list, nameOf);
+                return lock.readLocked(() -> names.candidates(name));
+            }
+
+            @Override
+            public SortedIndex<T> index(String property) {
+                return lock.readLocked(() -> indexes.get(property));
+            }
+        };
+    }
 
-        for(Product p: allProducts) {
-            if(p.getName().contains(productName)) {
-                namedProduct.add(p);
+    /**
+     * Rebuilds a stale name index before a search that will use it.
+     * @param name the string that will be searched for
+     * @param names the name index
+     * @param list the records the index covers
+     * @param nameOf gets the name of a record
+     */
+    private static <T> void refreshNames(String name, TrigramIndex names, RecordList<T> list,
+            Function<? super T, String> nameOf) {
+        if (name.length() >= TrigramIndex.GRAM && names.isStale()) {
+            lock.write(() -> {
+                if (names.isStale()) {
+                    names.clear();
+                    for (int i = 0; i < list.size(); i++) {
+                        names.add(list.idAt(i), nameOf.apply(list.get(i)));
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Finds the positions of the records whose names contain a string. Called under the lock.
+     * A search running off the JavaFX thread is given up once its thread is interrupted, such as by a newer search.
+     * @param list the records to search
+     * @param names the name index of the records
+     * @param nameOf gets the name of a record
+     * @param name the string to look for
+     * @return The positions found, in ascending order.
+     */
+    private static <T> int[] findSlots(RecordList<T> list, TrigramIndex names, Function<? super T, String> nameOf,
+            String name) {
+        int[] slots;
+        int found = 0;
+        if (name.length() < TrigramIndex.GRAM) {
+            slots = new int[16];
+            for (int i = 0; i < list.size(); i++) {
+                checkCancelled(i);
+                if (nameOf.apply(list.get(i)).contains(name)) {
+                    if (found == slots.length) {
+                        slots = Arrays.copyOf(slots, found * 2);
+                    }
+                    slots[found++] = i;
+                }
             }
+            return Arrays.copyOf(slots, found);
+        }
+        int[] candidates = names.candidates(name);
+        slots = new int[candidates.length];
+        for (int i = 0; i < candidates.length; i++) {
+            checkCancelled(i);
+            int id = candidates[i];
+            int slot = list.slotOf(id);
+            if (slot != IdIndex.NONE && nameOf.apply(list.get(slot)).contains(name)) {
+                slots[found++] = slot;
+            }
+        }
+        Arrays.sort(slots, 0, found);
+        return Arrays.copyOf(slots, found);
+    }
+
+    /**
+     * Gives up a search if its thread was interrupted, looking only every few thousand records.
+     * @param checked the number of records checked so far
+     * @throws CancellationException if the thread was interrupted
+     */
+    private static void checkCancelled(int checked) {
+        if ((checked & 4095) == 0 && Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Search interrupted");
+        }
+    }
+
+    /**
+     * Builds a new list of the records at the given positions. Called under the lock.
+     * @param list the records
+     * @param slots the positions
+     * @return The records, in the order of the positions.
+     */
+    private static <T> ObservableList<T> toList(RecordList<T> list, int[] slots) {
+        // creates a new list
+        ObservableList<T> named = FXCollections.observableArrayList();
+        for (int slot : slots) {
+            named.add(list.get(slot));
         }
-        return namedProduct;
+        return named;
+    }
+
+    /**
+     * Gets the Ids of the records at the given positions. Called under the lock.
+     * @param list the records
+     * @param slots the positions, replaced by the Ids
+     * @return The Ids, in the order of the positions.
+     */
+    private static int[] toIds(RecordList<?> list, int[] slots) {
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = list.idAt(slots[i]);
+        }
+        return slots;
+    }
+
+    /**
+     * Looks up the products that have a part as an associated part, through the where-used index.
+     * The time taken depends on the number of products found, not on the size of the Inventory.
+     * @param partId the Id of the part
+     * @return A list of the products using the part, in list order.
+     */
+    public static ObservableList<Product> lookupProductsUsingPart(int partId) {
+        return readDecoding(() -> {
+            int[] ids = whereUsed.productIds(partId);
+            int[] slots = new int[ids.length];
+            int found = 0;
+            for (int id : ids) {
+                int slot = allProducts.slotOf(id);
+                if (slot != IdIndex.NONE) {
+                    slots[found++] = slot;
+                }
+            }
+            Arrays.sort(slots, 0, found);
+            ObservableList<Product> usingPart = FXCollections.observableArrayList();
+            for (int i = 0; i < found; i++) {
+                usingPart.add(allProducts.get(slots[i]));
+            }
+            return usingPart;
+        });
+    }
+
+    /**
+     * Checks whether any product in the Inventory has a part as an associated part.
+     * @param partId the Id of the part
+     * @return True if the part is used by at least one product.
+     */
+    public static boolean isPartUsed(int partId) {
+        return whereUsed.isUsed(partId);
+    }
+
+    /**
+     * Checks whether any product in the Inventory includes a product as a sub-assembly.
+     * @param productId the Id of the product
+     * @return True if the product is a sub-assembly of at least one other product.
+     */
+    public static boolean isProductUsed(int productId) {
+        return lock.readLocked(() -> bom.isSubAssembly(productId));
+    }
+
+    /**
+     * Gets how many times a product lists a part as an associated part.
+     * @param partId the Id of the part
+     * @param productId the Id of the product
+     * @return The quantity of the part in the product, 0 if the product does not use it.
+     */
+    public static int getPartQuantity(int partId, int productId) {
+        return whereUsed.count(partId, productId);
     }
 
     /**
      * Updates part object at their specific index.
+     * The position of the part is taken from the part index, so no scan is needed.
+     * The replacement may be a different kind of part than the one it replaces (InHouse or Outsourced).
      * @param index variable used to determine the objects index
      * @param selectedPart the object at the parts table index
      */
     public static void updatePart(int index, Part selectedPart) {
-        int i = -1;
-        for (Part Part : getAllParts()) {
-            i++;
-            if (Part.getId() == index) {
-                getAllParts().set(i, selectedPart);
+        lock.write(() -> {
+            int slot = allParts.slotOf(index);
+            if (slot == IdIndex.NONE) {
+                return;
             }
-        }
-
+            Part oldPart = allParts.set(slot, selectedPart);
+            partNames.remove(oldPart.getId(), oldPart.getName());
+            partNames.add(selectedPart.getId(), selectedPart.getName());
+            for (InventoryListener listener : listeners) {
+                listener.partUpdated(index, oldPart, selectedPart);
+            }
+        });
     }
 
     /**
      * Updates product object at their specific index.
+     * The position of the product is taken from the product index, so no scan is needed.
      * @param index variable used to determine the objects index
      * @param newProduct the object at the products table index
      */
     public static void updateProduct(int index, Product newProduct) {
-        int i = -1;
-        for (Product Product : getAllProducts()) {
-            i++;
-            if (Product.getId() == index) {
-                getAllProducts().set(i, newProduct);
+        lock.write(() -> {
+            int slot = allProducts.slotOf(index);
+            if (slot == IdIndex.NONE) {
+                return;
             }
-        }
+            checkSubAssemblies(newProduct);
+            Product oldProduct = allProducts.set(slot, newProduct);
+            productNames.remove(oldProduct.getId(), oldProduct.getName());
+            productNames.add(newProduct.getId(), newProduct.getName());
+            oldProduct.setWhereUsed(null);
+            newProduct.setWhereUsed(whereUsed);
+            for (InventoryListener listener : listeners) {
+                listener.productUpdated(index, oldProduct, newProduct);
+            }
+        });
     }
 
     /**
      * Deletes selected part object.
+     * The part is found through the part index and the last part in the list is moved into its place,
+     * so deleting does not scan or shift the list.
      * @param selectedPart variable used to delete part
      * @return A bool value if part is deleted.
      */
     public static boolean deletePart(Part selectedPart) {
-        if (allParts.contains(selectedPart)) {
-            allParts.remove(selectedPart);
-            return true;
-        }
-        else {
-            return false;
-        }
+        return lock.write(() -> {
+            int slot = slotOf(allParts, selectedPart, selectedPart.getId());
+            if (slot >= 0) {
+                allParts.swapRemove(slot);
+                partNames.remove(selectedPart.getId(), selectedPart.getName());
+                for (InventoryListener listener : listeners) {
+                    listener.partDeleted(selectedPart);
+                }
+                return true;
+            }
+            else {
+                return false;
+            }
+        });
     }
 
     /**
      * Deletes selected product object.
+     * The product is found through the product index and the last product in the list is moved into its place,
+     * so deleting does not scan or shift the list.
      * @param selectedProduct variable used to delete product
      * @return A bool value if product is deleted.
      */
     public static boolean deleteProduct(Product selectedProduct) {
-        if (allProducts.contains(selectedProduct)) {
-            allProducts.remove(selectedProduct);
-            return true;
+        return lock.write(() -> {
+            int slot = slotOf(allProducts, selectedProduct, selectedProduct.getId());
+            if (slot >= 0) {
+                allProducts.swapRemove(slot);
+                productNames.remove(selectedProduct.getId(), selectedProduct.getName());
+                selectedProduct.setWhereUsed(null);
+                for (InventoryListener listener : listeners) {
+                    listener.productDeleted(selectedProduct);
+                }
+                return true;
+            }
+            else {
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Deletes many part objects in one compacting pass over the list.
+     * Remaining parts keep their order and listeners of allParts receive a single change.
+     * @param selectedParts the parts to delete
+     * @return The number of parts deleted.
+     */
+    public static int deleteParts(Collection<? extends Part> selectedParts) {
+        return lock.write(() -> {
+            BitSet doomed = new BitSet(allParts.size());
+            for (Part part : selectedParts) {
+                int slot = slotOf(allParts, part, part.getId());
+                if (slot >= 0) {
+                    doomed.set(slot);
+                }
+            }
+            return removePartSlots(doomed);
+        });
+    }
+
+    /**
+     * Deletes the parts with the given Ids in one compacting pass over the list.
+     * Remaining parts keep their order and listeners of allParts receive a single change.
+     * @param partIds the Ids of the parts to delete, unknown Ids are ignored
+     * @return The number of parts deleted.
+     */
+    public static int deleteParts(int[] partIds) {
+        return lock.write(() -> {
+            BitSet doomed = new BitSet(allParts.size());
+            for (int id : partIds) {
+                int slot = allParts.slotOf(id);
+                if (slot != IdIndex.NONE) {
+                    doomed.set(slot);
+                }
+            }
+            return removePartSlots(doomed);
+        });
+    }
+
+    /**
+     * Deletes many product objects in one compacting pass over the list.
+     * Remaining products keep their order and listeners of allProducts receive a single change.
+     * @param selectedProducts the products to delete
+     * @return The number of products deleted.
+     */
+    public static int deleteProducts(Collection<? extends Product> selectedProducts) {
+        return lock.write(() -> {
+            BitSet doomed = new BitSet(allProducts.size());
+            for (Product product : selectedProducts) {
+                int slot = slotOf(allProducts, product, product.getId());
+                if (slot >= 0) {
+                    doomed.set(slot);
+                }
+            }
+            return removeProductSlots(doomed);
+        });
+    }
+
+    /**
+     * Deletes the products with the given Ids in one compacting pass over the list.
+     * Remaining products keep their order and listeners of allProducts receive a single change.
+     * @param productIds the Ids of the products to delete, unknown Ids are ignored
+     * @return The number of products deleted.
+     */
+    public static int deleteProducts(int[] productIds) {
+        return lock.write(() -> {
+            BitSet doomed = new BitSet(allProducts.size());
+            for (int id : productIds) {
+                int slot = allProducts.slotOf(id);
+                if (slot != IdIndex.NONE) {
+                    doomed.set(slot);
+                }
+            }
+            return removeProductSlots(doomed);
+        });
+    }
+
+    /**
+     * Makes every change of a batch together, or none of them.
+     * Each change is first checked against the Inventory as the changes before it leave it: added records must have
+     * new Ids, updated and deleted records must exist, and added and updated records must pass the Validation checks.
+     * No product may end up containing itself through its sub-assemblies.
+     * Only then is the net result made, while no other thread can read or change the Inventory.
+     * Listeners of allParts and allProducts receive a single change each, and Inventory listeners are told about
+     * the changes between batchStarted and batchCommitted.
+     * @param batch the changes
+     * @throws IllegalArgumentException if a change cannot be made, naming the first such change; nothing is changed
+     */
+    public static void commit(InventoryBatch batch) {
+        lock.write(() -> {
+            Map<Integer, Part> parts = netChanges(batch.getPartChanges(), allParts, Part::getId, "part", part -> {
+                String problem = Validation.checkRecord(part.getName(), part.getStock(), part.getMin(), part.getMax());
+                return problem == null && part instanceof Outsourced
+                        ? Validation.checkCompanyName(((Outsourced) part).getCompanyName()) : problem;
+            });
+            Map<Integer, Product> products = netChanges(batch.getProductChanges(), allProducts, Product::getId,
+                    "product", product -> Validation.checkRecord(product.getName(), product.getStock(),
+                            product.getMin(), product.getMax()));
+            int cyclic = bom.findCycle(products);
+            if (cyclic != IdIndex.NONE) {
+                for (InventoryBatch.Change<Product> change : batch.getProductChanges()) {
+                    if (change.id == cyclic && change.record == products.get(cyclic)) {
+                        throw new IllegalArgumentException("Change " + change.number + ": The product " + cyclic
+                                + " would contain itself through its sub-assemblies.");
+                    }
+                }
+            }
+            // only once the batch is known to be made, and only for new records, so a rejected batch or an Id
+            // that is merely updated or deleted leaves the allocators where they were
+            advancePastAdded(batch.getPartChanges(), partIds);
+            advancePastAdded(batch.getProductChanges(), productIds);
+            for (InventoryListener listener : listeners) {
+                listener.batchStarted();
+            }
+            if (!parts.isEmpty()) {
+                allParts.change(() -> commitParts(parts));
+            }
+            if (!products.isEmpty()) {
+                allProducts.change(() -> commitProducts(products));
+            }
+            for (InventoryListener listener : listeners) {
+                listener.batchCommitted();
+            }
+        });
+    }
+
+    /**
+     * Moves an Id allocator past the Ids of the records a batch adds.
+     * @param changes the changes to one list
+     * @param ids the allocator of that list
+     */
+    private static <T> void advancePastAdded(List<InventoryBatch.Change<T>> changes, IdAllocator ids) {
+        for (InventoryBatch.Change<T> change : changes) {
+            if (change.kind == InventoryBatch.Kind.ADD) {
+                ids.advancePast(change.id);
+            }
+        }
+    }
+
+    /**
+     * Checks that records about to be added have Ids that no other record has. Called under the lock.
+     * @param list the records they are added to
+     * @param records the records to add
+     * @param idOf gets the Id of a record
+     * @param noun what a record is called in error messages
+     * @throws IllegalArgumentException if an Id is in the list already or is shared by two of the records
+     */
+    private static <T> void checkNewIds(RecordList<T> list, List<? extends T> records, ToIntFunction<? super T> idOf,
+            String noun) {
+        Set<Integer> seen = records.size() > 1 ? new HashSet<>() : null;
+        for (T record : records) {
+            int id = idOf.applyAsInt(record);
+            if (list.slotOf(id) != IdIndex.NONE || seen != null && !seen.add(id)) {
+                throw new IllegalArgumentException("The " + noun + " Id " + id + " is already in use.");
+            }
+        }
+    }
+
+    /**
+     * Checks the changes of a batch to one list in order and works out their net result. Called under the lock.
+     * @param changes the changes
+     * @param list the records the changes apply to
+     * @param idOf gets the Id of a record
+     * @param noun what a record is called in error messages
+     * @param check checks the values of an added or updated record, returning the error message or null
+     * @return The last record of every Id changed, or null if it ends up deleted,
+     *         in the order the Ids were first changed.
+     * @throws IllegalArgumentException if a change cannot be made
+     */
+    private static <T> Map<Integer, T> netChanges(List<InventoryBatch.Change<T>> changes, RecordList<T> list,
+            ToIntFunction<? super T> idOf, String noun, Function<? super T, String> check) {
+        Map<Integer, T> net = new LinkedHashMap<>();
+        for (InventoryBatch.Change<T> change : changes) {
+            boolean present = net.containsKey(change.id) ? net.get(change.id) != null
+                    : list.slotOf(change.id) != IdIndex.NONE;
+            String problem;
+            if (change.kind == InventoryBatch.Kind.ADD) {
+                problem = present ? "The " + noun + " Id " + change.id + " is already in use."
+                        : check.apply(change.record);
+            } else if (!present) {
+                problem = "There is no " + noun + " with the Id " + change.id + ".";
+            } else if (change.kind == InventoryBatch.Kind.UPDATE && idOf.applyAsInt(change.record) != change.id) {
+                problem = "The " + noun + " replacing Id " + change.id + " has the Id "
+                        + idOf.applyAsInt(change.record) + ".";
+            } else {
+                problem = change.kind == InventoryBatch.Kind.UPDATE ? check.apply(change.record) : null;
+            }
+            if (problem != null) {
+                throw new IllegalArgumentException("Change " + change.number + ": " + problem);
+            }
+            net.put(change.id, change.kind == InventoryBatch.Kind.DELETE ? null : change.record);
+        }
+        return net;
+    }
+
+    /**
+     * Makes the net result of a batch's part changes:
+     * replacements in place, then deletions, then additions at the end.
+     * Called under the lock, inside one change of allParts.
+     * @param parts the last part of every Id changed, or null if it is deleted
+     */
+    private static void commitParts(Map<Integer, Part> parts) {
+        BitSet doomed = new BitSet(allParts.size());
+        BitSet replaced = new BitSet(allParts.size());
+        List<Part> added = new ArrayList<>();
+        for (Map.Entry<Integer, Part> entry : parts.entrySet()) {
+            int slot = allParts.slotOf(entry.getKey());
+            if (slot == IdIndex.NONE) {
+                if (entry.getValue() != null) {
+                    added.add(entry.getValue());
+                }
+            } else if (entry.getValue() == null) {
+                doomed.set(slot);
+            } else {
+                replaced.set(slot);
+            }
+        }
+        // replaced in list order, so each replacement extends the change instead of being inserted into it
+        for (int slot = replaced.nextSetBit(0); slot >= 0; slot = replaced.nextSetBit(slot + 1)) {
+            Part part = parts.get(allParts.idAt(slot));
+            Part oldPart = allParts.set(slot, part);
+            partNames.remove(oldPart.getId(), oldPart.getName());
+            partNames.add(part.getId(), part.getName());
+            for (InventoryListener listener : listeners) {
+                listener.partUpdated(part.getId(), oldPart, part);
+            }
+        }
+        removePartSlots(doomed);
+        allParts.addAll(allParts.size(), added);
+        for (Part part : added) {
+            partNames.add(part.getId(), part.getName());
+        }
+        for (InventoryListener listener : listeners) {
+            for (Part part : added) {
+                listener.partAdded(part);
+            }
+        }
+    }
+
+    /**
+     * Makes the net result of a batch's product changes:
+     * replacements in place, then deletions, then additions at the end.
+     * Called under the lock, inside one change of allProducts.
+     * @param products the last product of every Id changed, or null if it is deleted
+     */
+    private static void commitProducts(Map<Integer, Product> products) {
+        BitSet doomed = new BitSet(allProducts.size());
+        BitSet replaced = new BitSet(allProducts.size());
+        List<Product> added = new ArrayList<>();
+        for (Map.Entry<Integer, Product> entry : products.entrySet()) {
+            int slot = allProducts.slotOf(entry.getKey());
+            if (slot == IdIndex.NONE) {
+                if (entry.getValue() != null) {
+                    added.add(entry.getValue());
+                }
+            } else if (entry.getValue() == null) {
+                doomed.set(slot);
+            } else {
+                replaced.set(slot);
+            }
+        }
+        // replaced in list order, so each replacement extends the change instead of being inserted into it
+        for (int slot = replaced.nextSetBit(0); slot >= 0; slot = replaced.nextSetBit(slot + 1)) {
+            Product product = products.get(allProducts.idAt(slot));
+            Product oldProduct = allProducts.set(slot, product);
+            productNames.remove(oldProduct.getId(), oldProduct.getName());
+            productNames.add(product.getId(), product.getName());
+            oldProduct.setWhereUsed(null);
+            product.setWhereUsed(whereUsed);
+            for (InventoryListener listener : listeners) {
+                listener.productUpdated(product.getId(), oldProduct, product);
+            }
         }
-        else {
-            return false;
+        removeProductSlots(doomed);
+        allProducts.addAll(allProducts.size(), added);
+        for (Product product : added) {
+            productNames.add(product.getId(), product.getName());
+            product.setWhereUsed(whereUsed);
         }
+        for (InventoryListener listener : listeners) {
+            for (Product product : added) {
+                listener.productAdded(product);
+            }
+        }
+    }
+
+    /**
+     * Replaces every part and product with the records of two sources.
+     * Parts are only decoded when first read, so a large Inventory is usable right away;
+     * the name indexes are rebuilt on the first name search. Products are decoded to index their associated parts.
+     * @param parts the new parts
+     * @param products the new products
+     */
+    public static void load(RecordSource<? extends Part> parts, RecordSource<? extends Product> products) {
+        lock.write(() -> {
+            for (Product product : allProducts) {
+                product.setWhereUsed(null);
+            }
+            allParts.load(parts);
+            allProducts.load(products);
+            partNames.invalidate();
+            productNames.invalidate();
+            for (Product product : allProducts) {
+                product.setWhereUsed(whereUsed);
+            }
+            for (InventoryListener listener : listeners) {
+                listener.inventoryLoaded();
+            }
+        });
+    }
+
+    /**
+     * Registers a listener to be told about every change made through this class.
+     * @param listener the listener to add
+     */
+    public static void addListener(InventoryListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener added with addListener.
+     * @param listener the listener to remove
+     */
+    public static void removeListener(InventoryListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Changes the sub-assemblies of a product in the Inventory and tells the listeners,
+     * as a change of its associated parts.
+     * @param product the product
+     * @param addedId the Id of the product being included, or IdIndex.NONE if one is being removed
+     * @param change the change to the product's sub-assemblies
+     * @throws IllegalArgumentException if the product would contain itself; nothing is changed
+     */
+    static void subAssembliesChanged(Product product, int addedId, Runnable change) {
+        lock.write(() -> {
+            if (addedId != IdIndex.NONE && bom.isWithin(product.getId(), List.of(addedId))) {
+                throw new IllegalArgumentException("The product " + addedId + " already contains the product "
+                        + product.getId() + ".");
+            }
+            change.run();
+            for (InventoryListener listener : listeners) {
+                listener.associatedPartsChanged(product);
+            }
+        });
+    }
+
+    /**
+     * Tells the listeners that the associated parts of a product in the Inventory were changed in place.
+     * @param product the product whose associated parts changed
+     */
+    static void associatedPartsChanged(Product product) {
+        lock.write(() -> {
+            for (InventoryListener listener : listeners) {
+                listener.associatedPartsChanged(product);
+            }
+        });
+    }
+
+    /**
+     * Reserves stock of a part for the default timeout, without waiting for other changes of the Inventory.
+     * @param partId the Id of the part
+     * @param quantity the quantity to reserve
+     * @return The reservation, otherwise null if it would leave less than the part's min available.
+     * @throws IllegalArgumentException if the quantity is not positive or there is no part with the Id
+     */
+    public static Reservation reservePart(int partId, int quantity) {
+        return reservePart(partId, quantity, RESERVATION_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Reserves stock of a part, without waiting for other changes of the Inventory.
+     * The reserved quantity stays out of the available stock until the reservation is committed, which takes it
+     * out of the part's stock, released, or expires after the timeout.
+     * @param partId the Id of the part
+     * @param quantity the quantity to reserve
+     * @param timeoutMillis how long the reservation lasts unless committed or released
+     * @return The reservation, otherwise null if it would leave less than the part's min available.
+     * @throws IllegalArgumentException if the quantity is not positive or there is no part with the Id
+     */
+    public static Reservation reservePart(int partId, int quantity, long timeoutMillis) {
+        return partStock.reserve(partId, quantity, TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+    }
+
+    /**
+     * Reserves stock of a product for the default timeout, without waiting for other changes of the Inventory.
+     * @param productId the Id of the product
+     * @param quantity the quantity to reserve
+     * @return The reservation, otherwise null if it would leave less than the product's min available.
+     * @throws IllegalArgumentException if the quantity is not positive or there is no product with the Id
+     */
+    public static Reservation reserveProduct(int productId, int quantity) {
+        return reserveProduct(productId, quantity, RESERVATION_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Reserves stock of a product, without waiting for other changes of the Inventory.
+     * The reserved quantity stays out of the available stock until the reservation is committed, which takes it
+     * out of the product's stock, released, or expires after the timeout.
+     * @param productId the Id of the product
+     * @param quantity the quantity to reserve
+     * @param timeoutMillis how long the reservation lasts unless committed or released
+     * @return The reservation, otherwise null if it would leave less than the product's min available.
+     * @throws IllegalArgumentException if the quantity is not positive or there is no product with the Id
+     */
+    public static Reservation reserveProduct(int productId, int quantity, long timeoutMillis) {
+        return productStock.reserve(productId, quantity, TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+    }
+
+    /**
+     * Adds received stock to a part, without waiting for other changes of the Inventory.
+     * @param partId the Id of the part
+     * @param quantity the quantity received
+     * @return True if it was added, false if the part's stock would rise above its max.
+     * @throws IllegalArgumentException if the quantity is not positive or there is no part with the Id
+     */
+    public static boolean receivePart(int partId, int quantity) {
+        return partStock.receive(partId, quantity);
+    }
+
+    /**
+     * Adds received stock to a product, without waiting for other changes of the Inventory.
+     * @param productId the Id of the product
+     * @param quantity the quantity received
+     * @return True if it was added, false if the product's stock would rise above its max.
+     * @throws IllegalArgumentException if the quantity is not positive or there is no product with the Id
+     */
+    public static boolean receiveProduct(int productId, int quantity) {
+        return productStock.receive(productId, quantity);
+    }
+
+    /**
+     * Gets the stock of a part that is not reserved, counting commits and receipts not yet written to the part.
+     * @param partId the Id of the part
+     * @return The available stock, otherwise -1 if there is no part with the Id.
+     */
+    public static int getAvailablePartStock(int partId) {
+        return partStock.available(partId);
+    }
+
+    /**
+     * Gets the stock of a product that is not reserved, counting commits and receipts not yet written to the product.
+     * @param productId the Id of the product
+     * @return The available stock, otherwise -1 if there is no product with the Id.
+     */
+    public static int getAvailableProductStock(int productId) {
+        return productStock.available(productId);
+    }
+
+    /**
+     * Writes the stock taken by committed reservations and added by receipts into the parts and products now,
+     * instead of waiting for the background write. Call on the JavaFX thread unless in concurrent mode.
+     */
+    public static void flushStock() {
+        partStock.write();
+        productStock.write();
+    }
+
+    /**
+     * Gets how many units of a product can be assembled from the current stock of its leaf parts,
+     * exploded through its sub-assemblies. The stock of the sub-assemblies themselves is not counted.
+     * The result is cached until a part or product it depends on changes.
+     * @param productId the Id of the product
+     * @return The number of units, 0 if it needs a part or sub-assembly not in the Inventory,
+     *         otherwise -1 if there is no product with the Id.
+     */
+    public static int getBuildableQuantity(int productId) {
+        return readDecoding(() -> bom.buildable(productId));
+    }
+
+    /**
+     * Gets how many units of every product can be assembled from the current stock of their leaf parts.
+     * Products whose result is not cached are worked out in parallel, from a copy of their part stock taken
+     * under the lock.
+     * @return The number of units by product Id, in the order of allProducts.
+     */
+    public static Map<Integer, Integer> getBuildableQuantities() {
+        return readDecoding(() -> {
+            int[] units = bom.buildableAll();
+            Map<Integer, Integer> byId = new LinkedHashMap<>(units.length * 4 / 3 + 1);
+            for (int slot = 0; slot < units.length; slot++) {
+                byId.put(allProducts.idAt(slot), units[slot]);
+            }
+            return byId;
+        });
+    }
+
+    /**
+     * Gets the leaf parts one unit of a product is assembled from, exploded through its sub-assemblies at any depth.
+     * @param productId the Id of the product
+     * @return The total quantity of each part by part Id, in ascending Id order,
+     *         otherwise null if there is no product with the Id.
+     */
+    public static Map<Integer, Long> explodeProduct(int productId) {
+        return readDecoding(() -> {
+            BillOfMaterials.Explosion explosion = bom.explode(productId);
+            if (explosion == null) {
+                return null;
+            }
+            Map<Integer, Long> quantities = new LinkedHashMap<>();
+            for (int i = 0; i < explosion.partIds.length; i++) {
+                quantities.put(explosion.partIds[i], explosion.quantities[i]);
+            }
+            return quantities;
+        });
+    }
+
+    /**
+     * Gets the cost of one unit of a product, the prices of its leaf parts times their exploded quantities.
+     * The result is cached until a part or product it depends on changes.
+     * @param productId the Id of the product
+     * @return The cost, otherwise NaN if there is no product with the Id or it needs a part or sub-assembly
+     *         not in the Inventory.
+     */
+    public static double getRolledUpCost(int productId) {
+        return readDecoding(() -> bom.cost(productId));
+    }
+
+    /**
+     * Gets the count, stock, value and prices of all parts, kept up to date as the Inventory changes.
+     * Reading never waits for changes in progress; the result is as of the last change made, or the last batch.
+     * The first call adds up every part, decoding any still waiting to be decoded.
+     * @return The part stats.
+     */
+    public static InventoryStats getPartStats() {
+        return aggregates().getPartStats();
+    }
+
+    /**
+     * Gets the count, stock, value and prices of all products, kept up to date as the Inventory changes.
+     * Reading never waits for changes in progress; the result is as of the last change made, or the last batch.
+     * The first call adds up every product.
+     * @return The product stats.
+     */
+    public static InventoryStats getProductStats() {
+        return aggregates().getProductStats();
+    }
+
+    /**
+     * Gets the monitor of the parts whose stock is at or below their min or above their max.
+     * The first call files every part, decoding any still waiting to be decoded.
+     * @return The part stock monitor.
+     */
+    public static StockMonitor<Part> getPartStockMonitor() {
+        return lock.write(() -> {
+            if (partMonitor == null) {
+                partMonitor = new StockMonitor<>(allParts, Part::getId, Part::getStock, Part::getMin, Part::getMax);
+                listeners.add(new InventoryListener() {
+                    @Override
+                    public void partAdded(Part part) {
+                        partMonitor.changed(part);
+                    }
+
+                    @Override
+                    public void partUpdated(int id, Part oldPart, Part newPart) {
+                        if (oldPart.getId() != newPart.getId()) {
+                            partMonitor.deleted(oldPart.getId());
+                        }
+                        partMonitor.changed(newPart);
+                    }
+
+                    @Override
+                    public void partDeleted(Part part) {
+                        partMonitor.deleted(part.getId());
+                    }
+
+                    @Override
+                    public void inventoryLoaded() {
+                        partMonitor.reloaded();
+                    }
+                });
+            }
+            return partMonitor;
+        });
+    }
+
+    /**
+     * Gets the monitor of the products whose stock is at or below their min or above their max.
+     * The first call files every product.
+     * @return The product stock monitor.
+     */
+    public static StockMonitor<Product> getProductStockMonitor() {
+        return lock.write(() -> {
+            if (productMonitor == null) {
+                productMonitor = new StockMonitor<>(allProducts, Product::getId, Product::getStock,
+                        Product::getMin, Product::getMax);
+                listeners.add(new InventoryListener() {
+                    @Override
+                    public void productAdded(Product product) {
+                        productMonitor.changed(product);
+                    }
+
+                    @Override
+                    public void productUpdated(int id, Product oldProduct, Product newProduct) {
+                        if (oldProduct.getId() != newProduct.getId()) {
+                            productMonitor.deleted(oldProduct.getId());
+                        }
+                        productMonitor.changed(newProduct);
+                    }
+
+                    @Override
+                    public void productDeleted(Product product) {
+                        productMonitor.deleted(product.getId());
+                    }
+
+                    @Override
+                    public void inventoryLoaded() {
+                        productMonitor.reloaded();
+                    }
+                });
+            }
+            return productMonitor;
+        });
+    }
+
+    /**
+     * Gets the index that keeps the parts in order of a property, for range queries, the highest or lowest parts
+     * and reading the parts in order. The first call for a property sorts every part, decoding any still waiting
+     * to be decoded; after that the index is kept up to date as the Inventory changes.
+     * @param property price, stock or name
+     * @return The part index.
+     * @throws IllegalArgumentException if there is no index for the property
+     */
+    public static SortedIndex<Part> getPartIndex(String property) {
+        return lock.write(() -> partIndexes.computeIfAbsent(property, key -> {
+            switch (key) {
+                case "price":
+                    return SortedIndex.ofDouble(key, allParts, Part::getId, Part::getPrice);
+                case "stock":
+                    return SortedIndex.ofInt(key, allParts, Part::getId, Part::getStock);
+                case "name":
+                    return SortedIndex.ofText(key, allParts, Part::getId, Part::getName);
+                default:
+                    throw new IllegalArgumentException("No part index for " + key);
+            }
+        }));
+    }
+
+    /**
+     * Gets the index that keeps the products in order of a property, for range queries, the highest or lowest
+     * products and reading the products in order. The first call for a property sorts every product;
+     * after that the index is kept up to date as the Inventory changes.
+     * @param property price, stock or name
+     * @return The product index.
+     * @throws IllegalArgumentException if there is no index for the property
+     */
+    public static SortedIndex<Product> getProductIndex(String property) {
+        return lock.write(() -> productIndexes.computeIfAbsent(property, key -> {
+            switch (key) {
+                case "price":
+                    return SortedIndex.ofDouble(key, allProducts, Product::getId, Product::getPrice);
+                case "stock":
+                    return SortedIndex.ofInt(key, allProducts, Product::getId, Product::getStock);
+                case "name":
+                    return SortedIndex.ofText(key, allProducts, Product::getId, Product::getName);
+                default:
+                    throw new IllegalArgumentException("No product index for " + key);
+            }
+        }));
+    }
+
+    /**
+     * Getter for the allocator that hands out the Ids of new parts.
+     * @return part Id allocator
+     */
+    public static IdAllocator getPartIds() {
+        return partIds;
     }
 
     /**
-     * Creates a list of all parts in Inventory.
+     * Getter for the allocator that hands out the Ids of new products.
+     * @return product Id allocator
+     */
+    public static IdAllocator getProductIds() {
+        return productIds;
+    }
+
+    /**
+     * Creates a list of all parts in Inventory, for the JavaFX tables.
+     * In concurrent mode this is a copy that follows the Inventory on the JavaFX thread.
      * @return A list of parts.
      */
     public static ObservableList<Part> getAllParts() {
-        return allParts;
+        return partsMirror != null ? partsMirror.list() : allParts;
     }
 
     /**
-     * Creates a list of all products in Inventory.
+     * Creates a list of all products in Inventory, for the JavaFX tables.
+     * In concurrent mode this is a copy that follows the Inventory on the JavaFX thread.
      * @return A list of products.
      */
     public static ObservableList<Product> getAllProducts() {
-        return allProducts;
+        return productsMirror != null ? productsMirror.list() : allProducts;
+    }
+
+    /**
+     * Creates a paged, sortable window over all parts in Inventory, for a JavaFX table with very many rows.
+     * The window can be sorted by the properties id, name, stock, price, min and max;
+     * sorting by name, stock or price alone reads the order from the part indexes.
+     * @return A window showing every part.
+     */
+    public static RecordWindow<Part> partWindow() {
+        return new RecordWindow<>(partsMirror != null ? partsMirror.list() : allParts, Part::getId,
+                RecordWindow.Key.ofInt("id", Part::getId),
+                RecordWindow.Key.ofText("name", Part::getName).indexedBy(() -> getPartIndex("name")),
+                RecordWindow.Key.ofInt("stock", Part::getStock).indexedBy(() -> getPartIndex("stock")),
+                RecordWindow.Key.ofDouble("price", Part::getPrice).indexedBy(() -> getPartIndex("price")),
+                RecordWindow.Key.ofInt("min", Part::getMin), RecordWindow.Key.ofInt("max", Part::getMax));
+    }
+
+    /**
+     * Creates a paged, sortable window over all products in Inventory, for a JavaFX table with very many rows.
+     * The window can be sorted by the properties id, name, stock, price, min and max;
+     * sorting by name, stock or price alone reads the order from the product indexes.
+     * @return A window showing every product.
+     */
+    public static RecordWindow<Product> productWindow() {
+        return new RecordWindow<>(productsMirror != null ? productsMirror.list() : allProducts, Product::getId,
+                RecordWindow.Key.ofInt("id", Product::getId),
+                RecordWindow.Key.ofText("name", Product::getName).indexedBy(() -> getProductIndex("name")),
+                RecordWindow.Key.ofInt("stock", Product::getStock).indexedBy(() -> getProductIndex("stock")),
+                RecordWindow.Key.ofDouble("price", Product::getPrice).indexedBy(() -> getProductIndex("price")),
+                RecordWindow.Key.ofInt("min", Product::getMin), RecordWindow.Key.ofInt("max", Product::getMax));
+    }
+
+    /**
+     * Runs an action on the current parts and products while no other thread can change them,
+     * as when the whole Inventory is saved. The action must not change the Inventory or keep the lists.
+     * @param action reads the parts and products
+     * @return The result of the action.
+     */
+    public static <R> R inspect(BiFunction<List<Part>, List<Product>, R> action) {
+        return readDecoding(() -> action.apply(allParts, allProducts));
+    }
+
+    /**
+     * Runs a read that may decode records loaded from a RecordSource.
+     * @param reader the read
+     * @return The result of the read.
+     */
+    private static <T> T readDecoding(Supplier<T> reader) {
+        return lock.readDecoding(() -> allParts.isDecoded() && allProducts.isDecoded(), reader);
+    }
+
+    /**
+     * Finds the position of an object in a list, using the Id index first.
+     * Falls back to a scan only if another object holds the same Id.
+     * @param list the list to search
+     * @param item the object to find
+     * @param id the Id of the object
+     * @return The position, otherwise -1 if the object is not in the list.
+     */
+    private static <T> int slotOf(RecordList<T> list, T item, int id) {
+        int slot = list.slotOf(id);
+        if (slot != IdIndex.NONE && list.holds(slot, item)) {
+            return slot;
+        }
+        return slot == IdIndex.NONE ? -1 : list.indexOf(item);
+    }
+
+    /**
+     * Tells the listeners that the calling thread has released the lock after a change.
+     */
+    private static void lockReleased() {
+        for (InventoryListener listener : listeners) {
+            listener.lockReleased();
+        }
+    }
+
+    /**
+     * Gets the running totals, creating them on first use.
+     * @return The aggregates.
+     */
+    private static InventoryAggregates aggregates() {
+        InventoryAggregates current = aggregates;
+        if (current != null) {
+            return current;
+        }
+        return lock.write(() -> {
+            if (aggregates == null) {
+                aggregates = new InventoryAggregates(allParts, allProducts);
+                listeners.add(aggregates);
+            }
+            return aggregates;
+        });
+    }
+
+    /**
+     * Checks that a product added or replaced on its own would not contain itself through its sub-assemblies.
+     * Called under the lock.
+     * @param product the product as it would be
+     * @throws IllegalArgumentException if the product would contain itself
+     */
+    private static void checkSubAssemblies(Product product) {
+        if (bom.containsItself(product)) {
+            throw new IllegalArgumentException("The product " + product.getId()
+                    + " would contain itself through its sub-assemblies.");
+        }
+    }
+
+    /**
+     * Removes the parts at the marked positions and drops their names from the part name index.
+     * @param doomed positions of the parts to remove
+     * @return The number of parts removed.
+     */
+    private static int removePartSlots(BitSet doomed) {
+        List<Part> removed = allParts.removeSlots(doomed);
+        if (removed.size() > allParts.size()) {
+            // rebuilding from the few parts left on the next search is cheaper than removing every name
+            partNames.invalidate();
+        } else {
+            for (Part part : removed) {
+                partNames.remove(part.getId(), part.getName());
+            }
+        }
+        if (!removed.isEmpty()) {
+            for (InventoryListener listener : listeners) {
+                listener.partsDeleted(removed);
+            }
+        }
+        return removed.size();
+    }
+
+    /**
+     * Removes the products at the marked positions and drops their names from the product name index.
+     * @param doomed positions of the products to remove
+     * @return The number of products removed.
+     */
+    private static int removeProductSlots(BitSet doomed) {
+        List<Product> removed = allProducts.removeSlots(doomed);
+        boolean rebuild = removed.size() > allProducts.size();
+        if (rebuild) {
+            productNames.invalidate();
+        }
+        for (Product product : removed) {
+            if (!rebuild) {
+                productNames.remove(product.getId(), product.getName());
+            }
+            product.setWhereUsed(null);
+        }
+        if (!removed.isEmpty()) {
+            for (InventoryListener listener : listeners) {
+                listener.productsDeleted(removed);
+            }
+        }
+        return removed.size();
     }
 }
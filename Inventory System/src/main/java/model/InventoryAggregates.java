@@ -0,0 +1,198 @@
+package model;
+
+import java.math.BigDecimal;
+import java.util.TreeMap;
+
+/**
+ * This class keeps running totals of the parts and the products as the Inventory changes, so valuations and
+ * counts are read without going over the lists. Every change adds or takes away one record's share in O(1),
+ * apart from the lowest and highest price, which are kept in a sorted count of prices in O(log n).
+ *
+ * Its listener methods run under the Inventory write lock; after each change, or after the last change of a batch,
+ * a new InventoryStats is published through a volatile field, so readers never wait and never see half a change.
+ */
+final class InventoryAggregates implements InventoryListener {
+    /**
+     * The running totals of one list.
+     */
+    private static final class Totals {
+        private int count;
+        /**
+         * The records whose price is NaN or infinite, which are counted but left out of every price total.
+         */
+        private int unpriced;
+        private long totalStock;
+        private BigDecimal totalValue = BigDecimal.ZERO;
+        private BigDecimal priceSum = BigDecimal.ZERO;
+        /**
+         * Each price with the number of records that have it.
+         */
+        private final TreeMap<BigDecimal, Integer> prices = new TreeMap<>();
+
+        private void add(double price, int stock) {
+            count++;
+            totalStock += stock;
+            if (!Double.isFinite(price)) {
+                unpriced++;
+                return;
+            }
+            BigDecimal decimal = BigDecimal.valueOf(price);
+            totalValue = totalValue.add(decimal.multiply(BigDecimal.valueOf(stock)));
+            priceSum = priceSum.add(decimal);
+            prices.merge(decimal, 1, Integer::sum);
+        }
+
+        private void remove(double price, int stock) {
+            count--;
+            totalStock -= stock;
+            if (!Double.isFinite(price)) {
+                unpriced--;
+                return;
+            }
+            BigDecimal decimal = BigDecimal.valueOf(price);
+            totalValue = totalValue.subtract(decimal.multiply(BigDecimal.valueOf(stock)));
+            priceSum = priceSum.subtract(decimal);
+            prices.computeIfPresent(decimal, (key, n) -> n > 1 ? n - 1 : null);
+        }
+
+        private void restock(double price, int oldStock, int newStock) {
+            long added = (long) newStock - oldStock;
+            totalStock += added;
+            if (!Double.isFinite(price)) {
+                return;
+            }
+            totalValue = totalValue.add(BigDecimal.valueOf(price).multiply(BigDecimal.valueOf(added)));
+        }
+
+        private void clear() {
+            count = 0;
+            unpriced = 0;
+            totalStock = 0;
+            totalValue = BigDecimal.ZERO;
+            priceSum = BigDecimal.ZERO;
+            prices.clear();
+        }
+
+        private InventoryStats stats() {
+            return new InventoryStats(count, unpriced, totalStock, totalValue, priceSum,
+                    prices.isEmpty() ? null : prices.firstKey(), prices.isEmpty() ? null : prices.lastKey());
+        }
+    }
+
+    private final RecordList<Part> parts;
+    private final RecordList<Product> products;
+    private final Totals partTotals = new Totals();
+    private final Totals productTotals = new Totals();
+    private volatile InventoryStats partStats;
+    private volatile InventoryStats productStats;
+    private boolean inBatch;
+
+    /**
+     * Constructor for the totals of the Inventory lists, which adds up every record in them.
+     * Called under the write lock.
+     * @param parts the parts
+     * @param products the products
+     */
+    InventoryAggregates(RecordList<Part> parts, RecordList<Product> products) {
+        this.parts = parts;
+        this.products = products;
+        inventoryLoaded();
+    }
+
+    /**
+     * Getter for the totals of the parts as of the last change.
+     * @return part stats
+     */
+    InventoryStats getPartStats() {
+        return partStats;
+    }
+
+    /**
+     * Getter for the totals of the products as of the last change.
+     * @return product stats
+     */
+    InventoryStats getProductStats() {
+        return productStats;
+    }
+
+    private void publish() {
+        if (!inBatch) {
+            partStats = partTotals.stats();
+            productStats = productTotals.stats();
+        }
+    }
+
+    @Override
+    public void partAdded(Part part) {
+        partTotals.add(part.getPrice(), part.getStock());
+        publish();
+    }
+
+    @Override
+    public void partUpdated(int id, Part oldPart, Part newPart) {
+        partTotals.remove(oldPart.getPrice(), oldPart.getStock());
+        partTotals.add(newPart.getPrice(), newPart.getStock());
+        publish();
+    }
+
+    @Override
+    public void partStockChanged(Part part, int oldStock) {
+        partTotals.restock(part.getPrice(), oldStock, part.getStock());
+        publish();
+    }
+
+    @Override
+    public void partDeleted(Part part) {
+        partTotals.remove(part.getPrice(), part.getStock());
+        publish();
+    }
+
+    @Override
+    public void productAdded(Product product) {
+        productTotals.add(product.getPrice(), product.getStock());
+        publish();
+    }
+
+    @Override
+    public void productUpdated(int id, Product oldProduct, Product newProduct) {
+        productTotals.remove(oldProduct.getPrice(), oldProduct.getStock());
+        productTotals.add(newProduct.getPrice(), newProduct.getStock());
+        publish();
+    }
+
+    @Override
+    public void productStockChanged(Product product, int oldStock) {
+        productTotals.restock(product.getPrice(), oldStock, product.getStock());
+        publish();
+    }
+
+    @Override
+    public void productDeleted(Product product) {
+        productTotals.remove(product.getPrice(), product.getStock());
+        publish();
+    }
+
+    @Override
+    public void batchStarted() {
+        inBatch = true;
+    }
+
+    @Override
+    public void batchCommitted() {
+        inBatch = false;
+        publish();
+    }
+
+    @Override
+    public void inventoryLoaded() {
+        partTotals.clear();
+        productTotals.clear();
+        for (Part part : parts) {
+            partTotals.add(part.getPrice(), part.getStock());
+        }
+        for (Product product : products) {
+            productTotals.add(product.getPrice(), product.getStock());
+        }
+        publish();
+    }
+}
@@ -0,0 +1,130 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class collects changes to parts and products to be made together by Inventory.commit.
+ * Nothing is checked or changed until the batch is committed; then either every change is made, or none is
+ * and the first change that cannot be made is reported.
+ *
+ * Only the net result of the batch is made and reported: a part added and then updated is added once with its
+ * last values, and a part added and then deleted is not added at all.
+ */
+public final class InventoryBatch {
+    /**
+     * This enum lists the kinds of change a batch can hold.
+     */
+    enum Kind {
+        ADD, UPDATE, DELETE
+    }
+
+    /**
+     * One change, in the order it was added to the batch.
+     */
+    static final class Change<T> {
+        /**
+         * The position of the change in the whole batch, counting from 1, as reported when it cannot be made.
+         */
+        final int number;
+        final Kind kind;
+        final int id;
+        final T record;
+
+        private Change(int number, Kind kind, int id, T record) {
+            this.number = number;
+            this.kind = kind;
+            this.id = id;
+            this.record = record;
+        }
+    }
+
+    private final List<Change<Part>> parts = new ArrayList<>();
+    private final List<Change<Product>> products = new ArrayList<>();
+
+    /**
+     * Adds a new part to the batch.
+     * @param part the part, whose Id must not be in the Inventory when the batch is committed
+     * @return This batch.
+     */
+    public InventoryBatch addPart(Part part) {
+        parts.add(new Change<>(size() + 1, Kind.ADD, part.getId(), part));
+        return this;
+    }
+
+    /**
+     * Replaces a part.
+     * @param id the Id of the part to replace
+     * @param part the replacement, with the same Id
+     * @return This batch.
+     */
+    public InventoryBatch updatePart(int id, Part part) {
+        parts.add(new Change<>(size() + 1, Kind.UPDATE, id, part));
+        return this;
+    }
+
+    /**
+     * Deletes a part.
+     * @param id the Id of the part to delete
+     * @return This batch.
+     */
+    public InventoryBatch deletePart(int id) {
+        parts.add(new Change<>(size() + 1, Kind.DELETE, id, null));
+        return this;
+    }
+
+    /**
+     * Adds a new product to the batch.
+     * @param product the product, whose Id must not be in the Inventory when the batch is committed
+     * @return This batch.
+     */
+    public InventoryBatch addProduct(Product product) {
+        products.add(new Change<>(size() + 1, Kind.ADD, product.getId(), product));
+        return this;
+    }
+
+    /**
+     * Replaces a product.
+     * @param id the Id of the product to replace
+     * @param product the replacement, with the same Id
+     * @return This batch.
+     */
+    public InventoryBatch updateProduct(int id, Product product) {
+        products.add(new Change<>(size() + 1, Kind.UPDATE, id, product));
+        return this;
+    }
+
+    /**
+     * Deletes a product.
+     * @param id the Id of the product to delete
+     * @return This batch.
+     */
+    public InventoryBatch deleteProduct(int id) {
+        products.add(new Change<>(size() + 1, Kind.DELETE, id, null));
+        return this;
+    }
+
+    /**
+     * Getter for the number of changes in the batch.
+     * @return number of changes
+     */
+    public int size() {
+        return parts.size() + products.size();
+    }
+
+    /**
+     * Getter for the part changes, in order.
+     * @return part changes
+     */
+    List<Change<Part>> getPartChanges() {
+        return parts;
+    }
+
+    /**
+     * Getter for the product changes, in order.
+     * @return product changes
+     */
+    List<Change<Product>> getProductChanges() {
+        return products;
+    }
+}
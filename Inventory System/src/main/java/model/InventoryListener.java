@@ -0,0 +1,130 @@
+package model;
+
+import java.util.List;
+
+/**
+ * This interface is notified of every change made through the Inventory class, after the change is applied.
+ * All methods do nothing by default, so implementations only override the changes they care about.
+ */
+public interface InventoryListener {
+    /**
+     * Called after a part is added.
+     * @param part the new part
+     */
+    default void partAdded(Part part) {
+    }
+
+    /**
+     * Called after a part is replaced by updatePart.
+     * @param id the Id the part was updated under
+     * @param oldPart the part that was replaced
+     * @param newPart the part that replaced it
+     */
+    default void partUpdated(int id, Part oldPart, Part newPart) {
+    }
+
+    /**
+     * Called after the stock of a part is changed in place, as when stock taken by reservations is saved.
+     * By default the part is passed to partUpdated as both the replaced part and its replacement.
+     * @param part the part, holding its new stock
+     * @param oldStock the stock before the change
+     */
+    default void partStockChanged(Part part, int oldStock) {
+        partUpdated(part.getId(), part, part);
+    }
+
+    /**
+     * Called after a part is deleted by deletePart.
+     * @param part the deleted part
+     */
+    default void partDeleted(Part part) {
+    }
+
+    /**
+     * Called after parts are deleted together by deleteParts. By default each part is passed to partDeleted.
+     * @param parts the deleted parts
+     */
+    default void partsDeleted(List<Part> parts) {
+        for (Part part : parts) {
+            partDeleted(part);
+        }
+    }
+
+    /**
+     * Called after a product is added.
+     * @param product the new product
+     */
+    default void productAdded(Product product) {
+    }
+
+    /**
+     * Called after a product is replaced by updateProduct.
+     * @param id the Id the product was updated under
+     * @param oldProduct the product that was replaced
+     * @param newProduct the product that replaced it
+     */
+    default void productUpdated(int id, Product oldProduct, Product newProduct) {
+    }
+
+    /**
+     * Called after the stock of a product is changed in place, as when stock taken by reservations is saved.
+     * By default the product is passed to productUpdated as both the replaced product and its replacement.
+     * @param product the product, holding its new stock
+     * @param oldStock the stock before the change
+     */
+    default void productStockChanged(Product product, int oldStock) {
+        productUpdated(product.getId(), product, product);
+    }
+
+    /**
+     * Called after a product is deleted by deleteProduct.
+     * @param product the deleted product
+     */
+    default void productDeleted(Product product) {
+    }
+
+    /**
+     * Called after products are deleted together by deleteProducts. By default each product is passed to productDeleted.
+     * @param products the deleted products
+     */
+    default void productsDeleted(List<Product> products) {
+        for (Product product : products) {
+            productDeleted(product);
+        }
+    }
+
+    /**
+     * Called before the changes of a batch committed by Inventory.commit are reported.
+     * Every change reported until batchCommitted is part of the batch, and was made together with the others.
+     */
+    default void batchStarted() {
+    }
+
+    /**
+     * Called after the last change of a batch committed by Inventory.commit is reported.
+     */
+    default void batchCommitted() {
+    }
+
+    /**
+     * Called after the whole Inventory is replaced by Inventory.load.
+     */
+    default void inventoryLoaded() {
+    }
+
+    /**
+     * Called on the thread that changed the Inventory once it has released the Inventory lock, after the change
+     * and every listener call for it. Slow work for a change, such as waiting for it to reach the disk, belongs here,
+     * where it holds up only that thread and not every thread reading or changing the Inventory.
+     * Also called after reads that had to decode records under the write lock.
+     */
+    default void lockReleased() {
+    }
+
+    /**
+     * Called after the associated parts or the sub-assemblies of a product in the Inventory are changed in place.
+     * @param product the product whose associated parts or sub-assemblies changed
+     */
+    default void associatedPartsChanged(Product product) {
+    }
+}
@@ -0,0 +1,134 @@
+package model;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * This class guards the Inventory with a StampedLock: reads first run optimistically without locking and are
+ * retried under the read lock only if a write overlapped them, while writes are exclusive.
+ * Unlike a plain StampedLock it is reentrant for the writing thread, so listeners called during a write
+ * can read the Inventory and make further changes.
+ */
+final class InventoryLock {
+    private final StampedLock lock = new StampedLock();
+    /**
+     * Run by a writing thread once it has released the write lock.
+     */
+    private final Runnable released;
+    /**
+     * The thread holding the write lock. Only that thread ever sees itself here, so the field needs no fence.
+     */
+    private Thread writer;
+
+    /**
+     * Constructor for a lock with nothing to run after writes.
+     */
+    InventoryLock() {
+        this(() -> { });
+    }
+
+    /**
+     * Constructor for a lock that runs a task after each write, on the writing thread, once the write lock is
+     * released. A write made inside another write runs it once, after the outer one.
+     * @param released the task
+     */
+    InventoryLock(Runnable released) {
+        this.released = released;
+    }
+
+    /**
+     * Runs a read that has no side effects, optimistically first.
+     * The reader may see the Inventory half-changed, so every loop in it must be bounded, and any exception
+     * it throws during the optimistic attempt is discarded before it is retried under the read lock.
+     * @param reader the read
+     * @return The result of the read.
+     */
+    <T> T read(Supplier<T> reader) {
+        if (writer == Thread.currentThread()) {
+            return reader.get();
+        }
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                T result = reader.get();
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                // a write moved things under the reader; retry below
+            }
+        }
+        return readLocked(reader);
+    }
+
+    /**
+     * Runs a read under the read lock. Used for reads that decode records or scan the lists.
+     * @param reader the read
+     * @return The result of the read.
+     */
+    <T> T readLocked(Supplier<T> reader) {
+        if (writer == Thread.currentThread()) {
+            return reader.get();
+        }
+        long stamp = lock.readLock();
+        try {
+            return reader.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Runs a read that may decode records. Decoding changes the lists, so the read only shares the read lock
+     * once there is nothing left to decode, and otherwise takes the write lock.
+     * @param decoded checks whether every record is decoded
+     * @param reader the read
+     * @return The result of the read.
+     */
+    @SuppressWarnings("unchecked")
+    <T> T readDecoding(BooleanSupplier decoded, Supplier<T> reader) {
+        Object[] result = new Object[1];
+        boolean done = readLocked(() -> {
+            if (!decoded.getAsBoolean()) {
+                return false;
+            }
+            result[0] = reader.get();
+            return true;
+        });
+        return done ? (T) result[0] : write(reader);
+    }
+
+    /**
+     * Runs a change under the write lock.
+     * @param change the change
+     * @return The result of the change.
+     */
+    <T> T write(Supplier<T> change) {
+        if (writer == Thread.currentThread()) {
+            return change.get();
+        }
+        long stamp = lock.writeLock();
+        writer = Thread.currentThread();
+        T result;
+        try {
+            result = change.get();
+        } finally {
+            writer = null;
+            lock.unlockWrite(stamp);
+        }
+        released.run();
+        return result;
+    }
+
+    /**
+     * Runs a change under the write lock.
+     * @param change the change
+     */
+    void write(Runnable change) {
+        write(() -> {
+            change.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,94 @@
+package model;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/**
+ * This class is a consistent view of the totals of the parts or the products in the Inventory at one moment,
+ * as returned by Inventory.getPartStats and getProductStats. It never changes; later changes to the Inventory
+ * are seen in the next view. Prices are taken as the decimal they print as, so sums do not drift.
+ * Records priced NaN or infinite are counted, and their stock is, but they are left out of every price figure.
+ */
+public final class InventoryStats {
+    private final int count;
+    private final int unpriced;
+    private final long totalStock;
+    private final BigDecimal totalValue;
+    private final BigDecimal priceSum;
+    private final BigDecimal minPrice;
+    private final BigDecimal maxPrice;
+
+    InventoryStats(int count, int unpriced, long totalStock, BigDecimal totalValue, BigDecimal priceSum,
+            BigDecimal minPrice, BigDecimal maxPrice) {
+        this.count = count;
+        this.unpriced = unpriced;
+        this.totalStock = totalStock;
+        this.totalValue = totalValue;
+        this.priceSum = priceSum;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+    }
+
+    /**
+     * Getter for the number of records.
+     * @return count
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Getter for the number of records whose price is NaN or infinite.
+     * @return unpriced count
+     */
+    public int getUnpricedCount() {
+        return unpriced;
+    }
+
+    /**
+     * Getter for the stock of all records together.
+     * @return total stock
+     */
+    public long getTotalStock() {
+        return totalStock;
+    }
+
+    /**
+     * Getter for the value of the stock, the sum of price times stock over all records with a finite price.
+     * @return total value
+     */
+    public BigDecimal getTotalValue() {
+        return totalValue;
+    }
+
+    /**
+     * Getter for the lowest price.
+     * @return min price, or null if no record has a finite price
+     */
+    public BigDecimal getMinPrice() {
+        return minPrice;
+    }
+
+    /**
+     * Getter for the highest price.
+     * @return max price, or null if no record has a finite price
+     */
+    public BigDecimal getMaxPrice() {
+        return maxPrice;
+    }
+
+    /**
+     * Getter for the average of the finite prices, to 34 significant digits.
+     * @return average price, or null if no record has a finite price
+     */
+    public BigDecimal getAveragePrice() {
+        int priced = count - unpriced;
+        return priced == 0 ? null : priceSum.divide(BigDecimal.valueOf(priced), MathContext.DECIMAL128);
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + count + ", unpriced=" + unpriced + ", totalStock=" + totalStock + ", totalValue=" + totalValue
+                + ", minPrice=" + minPrice + ", maxPrice=" + maxPrice + ", averagePrice=" + getAveragePrice();
+    }
+}
@@ -0,0 +1,489 @@
+package model;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * This class is a RecordStorage that keeps parts column-wise in primitive arrays instead of as one object per part.
+ * Names and company names are dictionary-encoded, and the machine Id or company name code of each part shares one column.
+ *
+ * Reading a position hands out a flyweight view, an InHouse or Outsourced object whose getters and setters read
+ * and write the columns at the part's current position. At most one view exists per part while it is reachable,
+ * so views can be compared with ==. When a part leaves the list its view is detached: the values are copied into
+ * the view, which from then on behaves like an ordinary part.
+ * Views read the columns under the InventoryLock given to the constructor, so they can be used from any thread.
+ * Strings stay in the dictionary after the last part using them is gone.
+ */
+class PartColumns implements RecordStorage<Part> {
+    private static final byte EMPTY = 0;
+    private static final byte IN_HOUSE = 1;
+    private static final byte OUTSOURCED = 2;
+    private static final int NO_STRING = -1;
+
+    private byte[] kinds = new byte[16];
+    private int[] names = new int[16];
+    private double[] prices = new double[16];
+    private int[] stocks = new int[16];
+    private int[] mins = new int[16];
+    private int[] maxes = new int[16];
+    /**
+     * The machine Id of an InHouse part, or the dictionary code of an Outsourced part's company name.
+     */
+    private int[] extras = new int[16];
+
+    private final List<String> strings = new ArrayList<>();
+    private final Map<String, Integer> codes = new HashMap<>();
+
+    /**
+     * The live view of every part that has one, by part id.
+     */
+    private final Map<Integer, ViewRef> views = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Part> collected = new ReferenceQueue<>();
+    private final InventoryLock guard;
+    private IntUnaryOperator positionOf = id -> IdIndex.NONE;
+
+    /**
+     * Constructor for empty PartColumns used on their own.
+     */
+    PartColumns() {
+        this(new InventoryLock());
+    }
+
+    /**
+     * Constructor for empty PartColumns whose views read and write under the lock that guards their list.
+     * @param guard the lock of the owning list
+     */
+    PartColumns(InventoryLock guard) {
+        this.guard = guard;
+    }
+
+    @Override
+    public void attach(IntUnaryOperator positionOf) {
+        this.positionOf = positionOf;
+    }
+
+    @Override
+    public Part get(int index, int id) {
+        byte kind = kinds[index];
+        if (kind == EMPTY) {
+            return null;
+        }
+        expungeCollected();
+        ViewRef ref = views.get(id);
+        Part view = ref == null ? null : ref.get();
+        if (view != null && kindOf(view) == kind) {
+            return view;
+        }
+        // readers may get here together, and an optimistic reader may have registered a view of the wrong kind
+        Part[] result = new Part[1];
+        views.compute(id, (key, old) -> {
+            Part existing = old == null ? null : old.get();
+            if (existing != null && kindOf(existing) == kind) {
+                result[0] = existing;
+                return old;
+            }
+            result[0] = kind == IN_HOUSE ? new InHouseView(this, id) : new OutsourcedView(this, id);
+            return new ViewRef(result[0], id, collected);
+        });
+        return result[0];
+    }
+
+    @Override
+    public void set(int index, Part record) {
+        if (record == null) {
+            kinds[index] = EMPTY;
+            return;
+        }
+        View view = record instanceof View && ((View) record).owner() == this ? (View) record : null;
+        if (view != null && view.isAttached()) {
+            // the part is moving inside the list; its old position is still indexed
+            int from = positionOf.applyAsInt(record.getId());
+            if (from != IdIndex.NONE && from != index) {
+                move(from, index, 1);
+            }
+            return;
+        }
+        if (record instanceof InHouse) {
+            kinds[index] = IN_HOUSE;
+            extras[index] = ((InHouse) record).getMachineId();
+        } else if (record instanceof Outsourced) {
+            kinds[index] = OUTSOURCED;
+            extras[index] = encode(((Outsourced) record).getCompanyName());
+        } else {
+            throw new IllegalArgumentException("Unknown kind of part: " + record.getClass().getName());
+        }
+        names[index] = encode(record.getName());
+        prices[index] = record.getPrice();
+        stocks[index] = record.getStock();
+        mins[index] = record.getMin();
+        maxes[index] = record.getMax();
+        if (view != null) {
+            // a view of this storage coming back, as when a sorted copy of the list is set back into it
+            view.setAttached(true);
+            views.put(record.getId(), new ViewRef(record, record.getId(), collected));
+        }
+    }
+
+    @Override
+    public boolean holds(int index, Part record) {
+        if (record instanceof View) {
+            View view = (View) record;
+            return view.owner() == this && view.isAttached() && positionOf.applyAsInt(record.getId()) == index;
+        }
+        // parts are stored by value, so a plain part is held if its id is stored at the position
+        return kinds[index] != EMPTY && positionOf.applyAsInt(record.getId()) == index;
+    }
+
+    @Override
+    public void move(int from, int to, int length) {
+        System.arraycopy(kinds, from, kinds, to, length);
+        System.arraycopy(names, from, names, to, length);
+        System.arraycopy(prices, from, prices, to, length);
+        System.arraycopy(stocks, from, stocks, to, length);
+        System.arraycopy(mins, from, mins, to, length);
+        System.arraycopy(maxes, from, maxes, to, length);
+        System.arraycopy(extras, from, extras, to, length);
+    }
+
+    @Override
+    public void clear(int from, int to) {
+        Arrays.fill(kinds, from, to, EMPTY);
+    }
+
+    @Override
+    public void ensureCapacity(int capacity) {
+        if (capacity > kinds.length) {
+            kinds = Arrays.copyOf(kinds, capacity);
+            names = Arrays.copyOf(names, capacity);
+            prices = Arrays.copyOf(prices, capacity);
+            stocks = Arrays.copyOf(stocks, capacity);
+            mins = Arrays.copyOf(mins, capacity);
+            maxes = Arrays.copyOf(maxes, capacity);
+            extras = Arrays.copyOf(extras, capacity);
+        }
+    }
+
+    @Override
+    public void release(int index, Part record) {
+        if (!(record instanceof View) || ((View) record).owner() != this || !((View) record).isAttached()) {
+            return;
+        }
+        String name = decode(names[index]);
+        double price = prices[index];
+        int stock = stocks[index];
+        int min = mins[index];
+        int max = maxes[index];
+        int extra = extras[index];
+        ((View) record).setAttached(false);
+        record.setName(name);
+        record.setPrice(price);
+        record.setStock(stock);
+        record.setMin(min);
+        record.setMax(max);
+        if (record instanceof InHouse) {
+            ((InHouse) record).setMachineId(extra);
+        } else {
+            ((Outsourced) record).setCompanyName(decode(extra));
+        }
+        ViewRef ref = views.get(record.getId());
+        if (ref != null && ref.get() == record) {
+            views.remove(record.getId());
+        }
+    }
+
+    /**
+     * Reads a value of a view: from the columns while it is attached, otherwise from the view itself.
+     * @param view the view
+     * @param column reads the value at the view's position
+     * @param own reads the value held by the detached view
+     * @return The value.
+     */
+    private <R> R read(View view, IntFunction<R> column, Supplier<R> own) {
+        return guard.read(() -> {
+            int at = positionOf(view);
+            return at < 0 ? own.get() : column.apply(at);
+        });
+    }
+
+    /**
+     * Writes a value of a view: to the columns while it is attached, otherwise to the view itself.
+     * @param view the view
+     * @param column writes the value at the view's position
+     * @param own writes the value held by the detached view
+     */
+    private void write(View view, IntConsumer column, Runnable own) {
+        guard.write(() -> {
+            int at = positionOf(view);
+            if (at < 0) {
+                own.run();
+            } else {
+                column.accept(at);
+            }
+        });
+    }
+
+    private static byte kindOf(Part view) {
+        return view instanceof InHouse ? IN_HOUSE : OUTSOURCED;
+    }
+
+    /**
+     * Gets the current position of an attached view.
+     * @param view the view
+     * @return The position, otherwise -1 if the view is detached and holds its own values.
+     */
+    private int positionOf(View view) {
+        if (!view.isAttached()) {
+            return -1;
+        }
+        int position = positionOf.applyAsInt(((Part) view).getId());
+        return position == IdIndex.NONE ? -1 : position;
+    }
+
+    private int encode(String string) {
+        if (string == null) {
+            return NO_STRING;
+        }
+        Integer code = codes.get(string);
+        if (code == null) {
+            code = strings.size();
+            strings.add(string);
+            codes.put(string, code);
+        }
+        return code;
+    }
+
+    private String decode(int code) {
+        return code == NO_STRING ? null : strings.get(code);
+    }
+
+    private void expungeCollected() {
+        for (ViewRef ref; (ref = (ViewRef) collected.poll()) != null; ) {
+            views.remove(ref.id, ref);
+        }
+    }
+
+    /**
+     * A weak reference to a view that remembers the part id, so the entry can be dropped once the view is collected.
+     */
+    private static final class ViewRef extends WeakReference<Part> {
+        private final int id;
+
+        private ViewRef(Part view, int id, ReferenceQueue<Part> queue) {
+            super(view, queue);
+            this.id = id;
+        }
+    }
+
+    /**
+     * Implemented by both kinds of view.
+     */
+    private interface View {
+        PartColumns owner();
+
+        boolean isAttached();
+
+        void setAttached(boolean attached);
+    }
+
+    /**
+     * A flyweight InHouse part backed by the columns.
+     */
+    private static final class InHouseView extends InHouse implements View {
+        private final PartColumns columns;
+        private boolean attached = true;
+
+        private InHouseView(PartColumns columns, int id) {
+            super(id, null, 0, 0, 0, 0, 0);
+            this.columns = columns;
+        }
+
+        @Override
+        public PartColumns owner() {
+            return columns;
+        }
+
+        @Override
+        public boolean isAttached() {
+            return attached;
+        }
+
+        @Override
+        public void setAttached(boolean attached) {
+            this.attached = attached;
+        }
+
+        @Override
+        public void setId(int id) {
+            if (attached) {
+                throw new UnsupportedOperationException("The Id of a stored part cannot change");
+            }
+            super.setId(id);
+        }
+
+        @Override
+        public String getName() {
+            return columns.read(this, at -> columns.decode(columns.names[at]), super::getName);
+        }
+
+        @Override
+        public void setName(String name) {
+            columns.write(this, at -> columns.names[at] = columns.encode(name), () -> super.setName(name));
+        }
+
+        @Override
+        public double getPrice() {
+            return columns.read(this, at -> columns.prices[at], super::getPrice);
+        }
+
+        @Override
+        public void setPrice(double price) {
+            columns.write(this, at -> columns.prices[at] = price, () -> super.setPrice(price));
+        }
+
+        @Override
+        public int getStock() {
+            return columns.read(this, at -> columns.stocks[at], super::getStock);
+        }
+
+        @Override
+        public void setStock(int stock) {
+            columns.write(this, at -> columns.stocks[at] = stock, () -> super.setStock(stock));
+        }
+
+        @Override
+        public int getMin() {
+            return columns.read(this, at -> columns.mins[at], super::getMin);
+        }
+
+        @Override
+        public void setMin(int min) {
+            columns.write(this, at -> columns.mins[at] = min, () -> super.setMin(min));
+        }
+
+        @Override
+        public int getMax() {
+            return columns.read(this, at -> columns.maxes[at], super::getMax);
+        }
+
+        @Override
+        public void setMax(int max) {
+            columns.write(this, at -> columns.maxes[at] = max, () -> super.setMax(max));
+        }
+
+        @Override
+        public int getMachineId() {
+            return columns.read(this, at -> columns.extras[at], super::getMachineId);
+        }
+
+        @Override
+        public void setMachineId(int machineId) {
+            columns.write(this, at -> columns.extras[at] = machineId, () -> super.setMachineId(machineId));
+        }
+    }
+
+    /**
+     * A flyweight Outsourced part backed by the columns.
+     */
+    private static final class OutsourcedView extends Outsourced implements View {
+        private final PartColumns columns;
+        private boolean attached = true;
+
+        private OutsourcedView(PartColumns columns, int id) {
+            super(id, null, 0, 0, 0, 0, null);
+            this.columns = columns;
+        }
+
+        @Override
+        public PartColumns owner() {
+            return columns;
+        }
+
+        @Override
+        public boolean isAttached() {
+            return attached;
+        }
+
+        @Override
+        public void setAttached(boolean attached) {
+            this.attached = attached;
+        }
+
+        @Override
+        public void setId(int id) {
+            if (attached) {
+                throw new UnsupportedOperationException("The Id of a stored part cannot change");
+            }
+            super.setId(id);
+        }
+
+        @Override
+        public String getName() {
+            return columns.read(this, at -> columns.decode(columns.names[at]), super::getName);
+        }
+
+        @Override
+        public void setName(String name) {
+            columns.write(this, at -> columns.names[at] = columns.encode(name), () -> super.setName(name));
+        }
+
+        @Override
+        public double getPrice() {
+            return columns.read(this, at -> columns.prices[at], super::getPrice);
+        }
+
+        @Override
+        public void setPrice(double price) {
+            columns.write(this, at -> columns.prices[at] = price, () -> super.setPrice(price));
+        }
+
+        @Override
+        public int getStock() {
+            return columns.read(this, at -> columns.stocks[at], super::getStock);
+        }
+
+        @Override
+        public void setStock(int stock) {
+            columns.write(this, at -> columns.stocks[at] = stock, () -> super.setStock(stock));
+        }
+
+        @Override
+        public int getMin() {
+            return columns.read(this, at -> columns.mins[at], super::getMin);
+        }
+
+        @Override
+        public void setMin(int min) {
+            columns.write(this, at -> columns.mins[at] = min, () -> super.setMin(min));
+        }
+
+        @Override
+        public int getMax() {
+            return columns.read(this, at -> columns.maxes[at], super::getMax);
+        }
+
+        @Override
+        public void setMax(int max) {
+            columns.write(this, at -> columns.maxes[at] = max, () -> super.setMax(max));
+        }
+
+        @Override
+        public String getCompanyName() {
+            return columns.read(this, at -> columns.decode(columns.extras[at]), super::getCompanyName);
+        }
+
+        @Override
+        public void setCompanyName(String companyName) {
+            columns.write(this, at -> columns.extras[at] = columns.encode(companyName), () -> super.setCompanyName(companyName));
+        }
+    }
+}
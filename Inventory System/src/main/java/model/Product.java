@@ -1,8 +1,13 @@
 package model;
 
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * Model for product class.
  */
@@ -11,6 +16,19 @@ public class Product {
      * An observable list of products called associatedParts.
      */
     private ObservableList<Part> associatedParts = FXCollections.observableArrayList();
+    /**
+     * The where-used index of the Inventory, set only while this product is in the Inventory.
+     */
+    private WhereUsedIndex whereUsed;
+    /**
+     * Keeps the where-used index current however the associated parts list is changed.
+     */
+    private final ListChangeListener<Part> associatedPartsListener = this::onAssociatedPartsChanged;
+    /**
+     * The products this product is assembled from, by product Id, with how many of each one unit needs.
+     * While this product is in the Inventory it is only changed under the Inventory lock.
+     */
+    private final Map<Integer, Integer> subAssemblies = new LinkedHashMap<>();
     private int id;
     private String name;
     private double price;
@@ -34,6 +52,7 @@ public class Product {
         this.stock  = stock;
         this.min = min;
         this.max = max;
+        associatedParts.addListener(associatedPartsListener);
     }
 
     /**
@@ -49,7 +68,16 @@ public class Product {
      * @param associatedParts variable for associated parts
      */
     public void setAssociatedParts(ObservableList<Part> associatedParts) {
+        this.associatedParts.removeListener(associatedPartsListener);
+        if (whereUsed != null) {
+            whereUsed.unlinkAll(this);
+        }
         this.associatedParts = associatedParts;
+        if (whereUsed != null) {
+            whereUsed.linkAll(this);
+            Inventory.associatedPartsChanged(this);
+        }
+        associatedParts.addListener(associatedPartsListener);
     }
 
     /**
@@ -173,4 +201,93 @@ public class Product {
     public ObservableList<Part> getAllAssociatedParts() {
         return associatedParts;
     }
+
+    /**
+     * Adds a product as a sub-assembly of this product, or adds to its quantity if it is one already.
+     * The sub-assembly does not have to be in the Inventory yet; until it is, this product cannot be built.
+     * @param productId the Id of the product to include
+     * @param quantity how many of it one unit of this product needs
+     * @throws IllegalArgumentException if the quantity is not positive, or this product is in the Inventory
+     *         and would then contain itself, directly or through its sub-assemblies
+     */
+    public void addSubAssembly(int productId, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive: " + quantity);
+        }
+        if (productId == id) {
+            throw new IllegalArgumentException("The product " + id + " cannot contain itself.");
+        }
+        if (whereUsed == null) {
+            subAssemblies.merge(productId, quantity, Integer::sum);
+        } else {
+            Inventory.subAssembliesChanged(this, productId,
+                    () -> subAssemblies.merge(productId, quantity, Integer::sum));
+        }
+    }
+
+    /**
+     * Removes a sub-assembly of this product, whatever its quantity.
+     * @param productId the Id of the included product
+     * @return True if the product was a sub-assembly.
+     */
+    public boolean removeSubAssembly(int productId) {
+        if (!subAssemblies.containsKey(productId)) {
+            return false;
+        }
+        if (whereUsed == null) {
+            subAssemblies.remove(productId);
+        } else {
+            Inventory.subAssembliesChanged(this, IdIndex.NONE, () -> subAssemblies.remove(productId));
+        }
+        return true;
+    }
+
+    /**
+     * Getter for the sub-assemblies of this product.
+     * @return A read-only view of the included product Ids with how many of each one unit needs, in the order added.
+     */
+    public Map<Integer, Integer> getSubAssemblies() {
+        return Collections.unmodifiableMap(subAssemblies);
+    }
+
+    /**
+     * Attaches this product to the where-used index of the Inventory, or detaches it when given null.
+     * @param index the where-used index, or null
+     */
+    void setWhereUsed(WhereUsedIndex index) {
+        if (whereUsed != null) {
+            whereUsed.unlinkAll(this);
+        }
+        whereUsed = index;
+        if (whereUsed != null) {
+            whereUsed.linkAll(this);
+        }
+    }
+
+    /**
+     * Passes parts added to or removed from the associated parts list on to the where-used index,
+     * and tells the Inventory listeners while this product is in the Inventory.
+     * @param change the list change
+     */
+    private void onAssociatedPartsChanged(ListChangeListener.Change<? extends Part> change) {
+        if (whereUsed == null) {
+            return;
+        }
+        boolean changed = false;
+        while (change.next()) {
+            if (change.wasPermutated() || change.wasUpdated()) {
+                continue;
+            }
+            for (Part part : change.getRemoved()) {
+                whereUsed.unlink(id, part);
+            }
+            for (Part part : change.getAddedSubList()) {
+                whereUsed.link(id, part);
+            }
+            changed = true;
+        }
+        if (changed) {
+            Inventory.associatedPartsChanged(this);
+        }
+    }
 }
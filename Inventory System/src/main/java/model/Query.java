@@ -0,0 +1,427 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * This class finds the parts or the products that meet every one of a set of conditions. Queries are created by
+ * Inventory.queryParts and queryProducts, and conditions are added one call at a time, such as
+ * queryParts().nameContains("bolt").priceBelow(5).ofType(Outsourced.class) followed by a where condition
+ * on the company name.
+ *
+ * When the results are read, the query picks the way in expected to give the fewest records: the Id index for an
+ * Id, the name trigrams for a name of three or more characters, or a price or stock index already created by
+ * Inventory.getPartIndex or getProductIndex for a price or stock range, and otherwise every record.
+ * The records found are then checked against every condition in one pass, as they are read.
+ * The order of the results depends on the way in; explain shows which was picked and why.
+ * @param <T> the record type, Part or Product
+ */
+public final class Query<T> {
+    /**
+     * The number of Ids read from a sorted index at a time.
+     */
+    private static final int PAGE_SIZE = 256;
+
+    /**
+     * This interface is what a query reads the Inventory through. It is implemented by the Inventory class,
+     * and every method takes the lock it needs.
+     * @param <T> the record type
+     */
+    interface Access<T> {
+        /**
+         * Getter for the number of records.
+         * @return size
+         */
+        int size();
+
+        /**
+         * Gets the Ids of every record, in list order.
+         * @return The Ids.
+         */
+        int[] ids();
+
+        /**
+         * Looks up a record by Id.
+         * @param id the Id
+         * @return The record, otherwise null.
+         */
+        T lookup(int id);
+
+        /**
+         * Estimates how many records the name trigrams give for a name of three or more characters.
+         * @param name the text to find in names
+         * @return The most records the trigrams can give.
+         */
+        int nameEstimate(String name);
+
+        /**
+         * Gets the Ids of the records whose names hold every trigram of a name of three or more characters.
+         * @param name the text to find in names
+         * @return The Ids, some of which may not contain the name.
+         */
+        int[] nameCandidates(String name);
+
+        /**
+         * Gets a sorted index, only if it was already created.
+         * @param property price or stock
+         * @return The index, otherwise null.
+         */
+        SortedIndex<T> index(String property);
+    }
+
+    /**
+     * One condition, with the text explain shows for it.
+     */
+    private static final class Condition<T> {
+        private final String description;
+        private final Predicate<? super T> test;
+
+        private Condition(String description, Predicate<? super T> test) {
+            this.description = description;
+            this.test = test;
+        }
+    }
+
+    /**
+     * One way of finding the records that may meet the conditions, with how many it is expected to give.
+     */
+    private static final class Path {
+        private final String description;
+        private final long rows;
+        private final Supplier<PrimitiveIterator.OfInt> ids;
+
+        private Path(String description, long rows, Supplier<PrimitiveIterator.OfInt> ids) {
+            this.description = description;
+            this.rows = rows;
+            this.ids = ids;
+        }
+    }
+
+    private final String noun;
+    private final Access<T> access;
+    private final ToIntFunction<? super T> idOf;
+    private final Function<? super T, String> nameOf;
+    private final ToDoubleFunction<? super T> priceOf;
+    private final ToIntFunction<? super T> stockOf;
+    private final List<Condition<T>> conditions = new ArrayList<>();
+    private final List<String> names = new ArrayList<>();
+    private final List<String> priceTerms = new ArrayList<>();
+    private final List<String> stockTerms = new ArrayList<>();
+    private Integer id;
+    private boolean contradicted;
+    private double minPrice = Double.NEGATIVE_INFINITY;
+    private double maxPrice = Double.POSITIVE_INFINITY;
+    private long minStock = Integer.MIN_VALUE;
+    private long maxStock = Integer.MAX_VALUE;
+
+    /**
+     * Constructor for a query with no conditions, which finds every record.
+     * @param noun what the records are called, for explain
+     * @param access reads the Inventory
+     * @param idOf reads the Id of a record
+     * @param nameOf reads the name of a record
+     * @param priceOf reads the price of a record
+     * @param stockOf reads the stock of a record
+     */
+    Query(String noun, Access<T> access, ToIntFunction<? super T> idOf, Function<? super T, String> nameOf,
+            ToDoubleFunction<? super T> priceOf, ToIntFunction<? super T> stockOf) {
+        this.noun = noun;
+        this.access = access;
+        this.idOf = idOf;
+        this.nameOf = nameOf;
+        this.priceOf = priceOf;
+        this.stockOf = stockOf;
+    }
+
+    /**
+     * Keeps only the record with an Id.
+     * @param id the Id
+     * @return This query.
+     */
+    public Query<T> idIs(int id) {
+        if (this.id != null && this.id != id) {
+            contradicted = true;
+        }
+        this.id = id;
+        return add("id = " + id, record -> idOf.applyAsInt(record) == id);
+    }
+
+    /**
+     * Keeps only the records whose names contain some text, matching case as lookupPart and lookupProduct do.
+     * @param text the text
+     * @return This query.
+     * @throws IllegalArgumentException if the text is null
+     */
+    public Query<T> nameContains(String text) {
+        if (text == null) {
+            throw new IllegalArgumentException("The name to look for cannot be null");
+        }
+        names.add(text);
+        return add("name contains \"" + text + "\"", record -> {
+            String name = nameOf.apply(record);
+            return name != null && name.contains(text);
+        });
+    }
+
+    /**
+     * Keeps only the records with a price between two values.
+     * @param min the lowest price, included
+     * @param max the highest price, included
+     * @return This query.
+     * @throws IllegalArgumentException if a price is not a number
+     */
+    public Query<T> priceBetween(double min, double max) {
+        checkNumber(min);
+        checkNumber(max);
+        minPrice = Math.max(minPrice, min);
+        maxPrice = Math.min(maxPrice, max);
+        return add(priceTerms, min + " <= price <= " + max, record -> {
+            double price = priceOf.applyAsDouble(record);
+            return price >= min && price <= max;
+        });
+    }
+
+    /**
+     * Keeps only the records priced below a value.
+     * @param max the price, not included
+     * @return This query.
+     * @throws IllegalArgumentException if the price is not a number
+     */
+    public Query<T> priceBelow(double max) {
+        checkNumber(max);
+        maxPrice = Math.min(maxPrice, Math.nextDown(max));
+        return add(priceTerms, "price < " + max, record -> priceOf.applyAsDouble(record) < max);
+    }
+
+    /**
+     * Keeps only the records priced above a value.
+     * @param min the price, not included
+     * @return This query.
+     * @throws IllegalArgumentException if the price is not a number
+     */
+    public Query<T> priceAbove(double min) {
+        checkNumber(min);
+        minPrice = Math.max(minPrice, Math.nextUp(min));
+        return add(priceTerms, "price > " + min, record -> priceOf.applyAsDouble(record) > min);
+    }
+
+    /**
+     * Keeps only the records with a stock between two values.
+     * @param min the lowest stock, included
+     * @param max the highest stock, included
+     * @return This query.
+     */
+    public Query<T> stockBetween(int min, int max) {
+        minStock = Math.max(minStock, min);
+        maxStock = Math.min(maxStock, max);
+        return add(stockTerms, min + " <= stock <= " + max, record -> {
+            int stock = stockOf.applyAsInt(record);
+            return stock >= min && stock <= max;
+        });
+    }
+
+    /**
+     * Keeps only the records with less stock than a value.
+     * @param max the stock, not included
+     * @return This query.
+     */
+    public Query<T> stockBelow(int max) {
+        maxStock = Math.min(maxStock, max - 1L);
+        return add(stockTerms, "stock < " + max, record -> stockOf.applyAsInt(record) < max);
+    }
+
+    /**
+     * Keeps only the records with more stock than a value.
+     * @param min the stock, not included
+     * @return This query.
+     */
+    public Query<T> stockAbove(int min) {
+        minStock = Math.max(minStock, min + 1L);
+        return add(stockTerms, "stock > " + min, record -> stockOf.applyAsInt(record) > min);
+    }
+
+    /**
+     * Keeps only the records of a class, such as Outsourced parts.
+     * @param type the class
+     * @return This query.
+     */
+    public Query<T> ofType(Class<? extends T> type) {
+        return add("type is " + type.getSimpleName(), type::isInstance);
+    }
+
+    /**
+     * Keeps only the records that meet any other condition. It is checked on the records found through
+     * the other conditions, so it cannot narrow down which records are read.
+     * @param description the condition as explain shows it, such as "companyName = Acme"
+     * @param test checks a record
+     * @return This query.
+     */
+    public Query<T> where(String description, Predicate<? super T> test) {
+        return add(description, test);
+    }
+
+    /**
+     * Reads the records that meet every condition. The way in is picked when this is called;
+     * the records are then read as the stream is, each as it is at that moment,
+     * so a record changed or deleted meanwhile is checked as it is then or left out.
+     * @return The records.
+     */
+    public Stream<T> stream() {
+        Path path = plan(new ArrayList<>());
+        List<Predicate<? super T>> tests = new ArrayList<>();
+        for (Condition<T> condition : conditions) {
+            tests.add(condition.test);
+        }
+        PrimitiveIterator.OfInt ids = path.ids.get();
+        return StreamSupport.intStream(Spliterators.spliteratorUnknownSize(ids, Spliterator.ORDERED), false)
+                .mapToObj(access::lookup)
+                .filter(Objects::nonNull)
+                .filter(record -> {
+                    for (Predicate<? super T> test : tests) {
+                        if (!test.test(record)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                });
+    }
+
+    /**
+     * Describes how the records would be found if they were read now: the way in that was picked, the
+     * conditions every record it gives is checked against, and the other ways in with their estimates.
+     * @return The plan, one step per line.
+     */
+    public String explain() {
+        List<Path> rejected = new ArrayList<>();
+        Path path = plan(rejected);
+        StringBuilder plan = new StringBuilder("Query of ").append(noun).append('\n');
+        plan.append("  read: ").append(path.description).append(", about ").append(path.rows).append(' ')
+                .append(noun).append('\n');
+        plan.append("  check: ").append(conditions.isEmpty() ? "nothing" : describe(conditions)).append('\n');
+        for (Path other : rejected) {
+            plan.append("  not picked: ").append(other.description).append(", about ").append(other.rows)
+                    .append(' ').append(noun).append('\n');
+        }
+        return plan.toString();
+    }
+
+    private Query<T> add(String description, Predicate<? super T> test) {
+        conditions.add(new Condition<>(description, test));
+        return this;
+    }
+
+    private Query<T> add(List<String> terms, String description, Predicate<? super T> test) {
+        terms.add(description);
+        return add(description, test);
+    }
+
+    /**
+     * Picks the way in expected to give the fewest records.
+     * @param rejected receives the other ways in that were looked at
+     * @return The way in.
+     */
+    private Path plan(List<Path> rejected) {
+        if (contradicted || minPrice > maxPrice || minStock > maxStock) {
+            return new Path("nothing, as the conditions contradict each other", 0, () -> IntStream.empty().iterator());
+        }
+        List<Path> paths = new ArrayList<>();
+        if (id != null) {
+            int only = id;
+            paths.add(new Path("the Id index for " + only, 1, () -> IntStream.of(only).iterator()));
+        }
+        for (String name : names) {
+            if (name.length() >= TrigramIndex.GRAM) {
+                paths.add(new Path("the name trigrams for \"" + name + "\"", access.nameEstimate(name),
+                        () -> IntStream.of(access.nameCandidates(name)).iterator()));
+            }
+        }
+        if (minPrice != Double.NEGATIVE_INFINITY || maxPrice != Double.POSITIVE_INFINITY) {
+            SortedIndex<T> index = access.index("price");
+            if (index != null) {
+                paths.add(new Path("the price index for " + String.join(" and ", priceTerms),
+                        index.count(minPrice, maxPrice), () -> pages(index.cursor(minPrice, maxPrice))));
+            }
+        }
+        if (minStock != Integer.MIN_VALUE || maxStock != Integer.MAX_VALUE) {
+            SortedIndex<T> index = access.index("stock");
+            if (index != null) {
+                paths.add(new Path("the stock index for " + String.join(" and ", stockTerms),
+                        index.count(minStock, maxStock), () -> pages(index.cursor(minStock, maxStock))));
+            }
+        }
+        paths.add(new Path("every one of the " + noun, access.size(), () -> IntStream.of(access.ids()).iterator()));
+        Path best = paths.get(0);
+        for (Path path : paths) {
+            if (path.rows < best.rows) {
+                best = path;
+            }
+        }
+        for (Path path : paths) {
+            if (path != best) {
+                rejected.add(path);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Reads the Ids of a cursor a page at a time, as they are asked for.
+     * @param cursor the cursor
+     * @return The Ids.
+     */
+    private static PrimitiveIterator.OfInt pages(SortedIndex<?>.Cursor cursor) {
+        return new PrimitiveIterator.OfInt() {
+            private int[] page = new int[0];
+            private int next;
+            private boolean last;
+
+            @Override
+            public boolean hasNext() {
+                while (next == page.length) {
+                    if (last) {
+                        return false;
+                    }
+                    page = cursor.next(PAGE_SIZE);
+                    last = page.length < PAGE_SIZE;
+                    next = 0;
+                }
+                return true;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page[next++];
+            }
+        };
+    }
+
+    private static String describe(List<? extends Condition<?>> conditions) {
+        List<String> text = new ArrayList<>();
+        for (Condition<?> condition : conditions) {
+            text.add(condition.description);
+        }
+        return String.join(" and ", text);
+    }
+
+    private static void checkNumber(double value) {
+        if (Double.isNaN(value)) {
+            throw new IllegalArgumentException("The price must be a number");
+        }
+    }
+}
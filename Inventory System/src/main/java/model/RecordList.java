@@ -0,0 +1,363 @@
+package model;
+
+import javafx.collections.ModifiableObservableListBase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.ToIntFunction;
+
+/**
+ * This class is the observable list behind the Inventory part and product tables.
+ * It keeps the id of every record in a plain array and an IdIndex from every id to its position,
+ * which is updated by every change made to the list, including sorts done by a TableView.
+ * The records themselves are held by a RecordStorage, an array of objects unless another storage is given.
+ * It can also be filled from a RecordSource, in which case each record is only decoded when it is first read.
+ * @param <T> the record type, Part or Product
+ */
+class RecordList<T> extends ModifiableObservableListBase<T> {
+    private final ToIntFunction<? super T> idOf;
+    private final IdIndex slots = new IdIndex();
+    private final RecordStorage<T> storage;
+    private int[] ids = new int[16];
+    private int size;
+    /**
+     * Decodes records that have not been read yet, null once every record is decoded.
+     */
+    private RecordSource<? extends T> source;
+    private int undecoded;
+
+    /**
+     * Constructor for an empty RecordList.
+     * @param idOf gets the id of a record
+     */
+    RecordList(ToIntFunction<? super T> idOf) {
+        this(idOf, new ArrayStorage<>());
+    }
+
+    /**
+     * Constructor for an empty RecordList that keeps its records in the given storage.
+     * @param idOf gets the id of a record
+     * @param storage holds the records by position
+     */
+    RecordList(ToIntFunction<? super T> idOf, RecordStorage<T> storage) {
+        this.idOf = idOf;
+        this.storage = storage;
+        storage.ensureCapacity(ids.length);
+        storage.attach(slots::get);
+    }
+
+    /**
+     * Replaces every record with the records of a source, without decoding any of them.
+     * Listeners receive a single change.
+     * @param records the source of the new records
+     */
+    void load(RecordSource<? extends T> records) {
+        beginChange();
+        try {
+            clear();
+            int count = records.size();
+            ids = new int[Math.max(16, count)];
+            storage.ensureCapacity(ids.length);
+            for (int i = 0; i < count; i++) {
+                ids[i] = records.idAt(i);
+                slots.put(ids[i], i);
+            }
+            size = count;
+            source = count == 0 ? null : records;
+            undecoded = count;
+            modCount++;
+            nextAdd(0, count);
+        } finally {
+            endChange();
+        }
+    }
+
+    /**
+     * Gets the position of the record with the given id.
+     * @param id the record id
+     * @return The position, otherwise IdIndex.NONE if no record has the id.
+     */
+    int slotOf(int id) {
+        return slots.get(id);
+    }
+
+    /**
+     * Gets the id of the record at a position, without decoding the record.
+     * @param index the position
+     * @return The id.
+     */
+    int idAt(int index) {
+        Objects.checkIndex(index, size);
+        return ids[index];
+    }
+
+    /**
+     * Checks whether a record object is the one stored at a position.
+     * @param slot the position
+     * @param item the record to check
+     * @return True if the record is stored at the position.
+     */
+    boolean holds(int slot, T item) {
+        Objects.checkIndex(slot, size);
+        return storage.holds(slot, item);
+    }
+
+    /**
+     * Gets the record with the given id.
+     * @param id the record id
+     * @return The record, otherwise null if no record has the id.
+     */
+    T getById(int id) {
+        int slot = slots.get(id);
+        return slot == IdIndex.NONE ? null : get(slot);
+    }
+
+    /**
+     * Checks whether every record has been decoded, so reading the list no longer changes it.
+     * @return True if no record is waiting to be decoded.
+     */
+    boolean isDecoded() {
+        return source == null;
+    }
+
+    /**
+     * Gets the record with the given id if it is already decoded, without changing the list.
+     * Used by optimistic reads, which may run while the list is being changed.
+     * @param id the record id
+     * @return The record, otherwise null if no record has the id or it is not decoded yet.
+     */
+    T peekById(int id) {
+        int slot = slots.get(id);
+        return slot == IdIndex.NONE || slot >= size ? null : storage.get(slot, id);
+    }
+
+    /**
+     * Removes the record at a position in constant time by moving the last record into its place.
+     * The move and the removal are reported to listeners as one change.
+     * @param slot the position to remove
+     * @return The removed record.
+     */
+    T swapRemove(int slot) {
+        Objects.checkIndex(slot, size);
+        int last = size - 1;
+        if (slot == last) {
+            return remove(last);
+        }
+        beginChange();
+        try {
+            T removed = set(slot, get(last));
+            remove(last);
+            return removed;
+        } finally {
+            endChange();
+        }
+    }
+
+    /**
+     * Runs several changes of this list so that listeners receive them as a single change.
+     * @param changes the changes
+     */
+    void change(Runnable changes) {
+        beginChange();
+        try {
+            changes.run();
+        } finally {
+            endChange();
+        }
+    }
+
+    /**
+     * Removes the records at all marked positions in one compacting pass.
+     * The remaining records keep their order and listeners receive a single change.
+     * @param doomed the positions to remove
+     * @return The removed records, in list order.
+     */
+    List<T> removeSlots(BitSet doomed) {
+        List<T> removed = new ArrayList<>(doomed.cardinality());
+        if (doomed.isEmpty()) {
+            return removed;
+        }
+        beginChange();
+        try {
+            int write = 0;
+            for (int read = 0; read < size; read++) {
+                if (doomed.get(read)) {
+                    T element = element(read);
+                    unindex(read, element);
+                    removed.add(element);
+                    // earlier removals already shifted this record to position write
+                    nextRemove(write, element);
+                } else {
+                    if (write != read) {
+                        storage.move(read, write, 1);
+                        ids[write] = ids[read];
+                        slots.put(ids[write], write);
+                    }
+                    write++;
+                }
+            }
+            storage.clear(write, size);
+            size = write;
+            modCount++;
+        } finally {
+            endChange();
+        }
+        return removed;
+    }
+
+    @Override
+    public T get(int index) {
+        Objects.checkIndex(index, size);
+        return element(index);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends T> c) {
+        Objects.checkIndex(index, size + 1);
+        Object[] added = c.toArray();
+        if (added.length == 0) {
+            return false;
+        }
+        beginChange();
+        try {
+            ensureCapacity(size + added.length);
+            storage.move(index, index + added.length, size - index);
+            System.arraycopy(ids, index, ids, index + added.length, size - index);
+            for (int i = 0; i < added.length; i++) {
+                @SuppressWarnings("unchecked")
+                T element = (T) added[i];
+                ids[index + i] = idOf.applyAsInt(element);
+                storage.set(index + i, element);
+            }
+            size += added.length;
+            reindex(index);
+            modCount++;
+            nextAdd(index, index + added.length);
+        } finally {
+            endChange();
+        }
+        return true;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        Objects.checkFromToIndex(fromIndex, toIndex, size);
+        if (fromIndex == toIndex) {
+            return;
+        }
+        beginChange();
+        try {
+            List<T> removed = new ArrayList<>(toIndex - fromIndex);
+            for (int i = fromIndex; i < toIndex; i++) {
+                T element = element(i);
+                removed.add(element);
+                unindex(i, element);
+            }
+            storage.move(toIndex, fromIndex, size - toIndex);
+            System.arraycopy(ids, toIndex, ids, fromIndex, size - toIndex);
+            storage.clear(size - (toIndex - fromIndex), size);
+            size -= toIndex - fromIndex;
+            reindex(fromIndex);
+            modCount++;
+            nextRemove(fromIndex, removed);
+        } finally {
+            endChange();
+        }
+    }
+
+    @Override
+    protected void doAdd(int index, T element) {
+        ensureCapacity(size + 1);
+        storage.move(index, index + 1, size - index);
+        System.arraycopy(ids, index, ids, index + 1, size - index);
+        ids[index] = idOf.applyAsInt(element);
+        storage.set(index, element);
+        size++;
+        if (index == size - 1) {
+            slots.put(ids[index], index);
+        } else {
+            reindex(index);
+        }
+    }
+
+    @Override
+    protected T doSet(int index, T element) {
+        T old = element(index);
+        unindex(index, old);
+        ids[index] = idOf.applyAsInt(element);
+        storage.set(index, element);
+        slots.put(ids[index], index);
+        return old;
+    }
+
+    @Override
+    protected T doRemove(int index) {
+        T old = element(index);
+        unindex(index, old);
+        storage.move(index + 1, index, size - index - 1);
+        System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+        storage.clear(size - 1, size);
+        size--;
+        reindex(index);
+        return old;
+    }
+
+    /**
+     * Drops the id at a position from the index, unless the id already points at another position,
+     * and lets the storage release the record once it is no longer in the list.
+     * @param index the position being vacated
+     * @param element the record at the position
+     */
+    private void unindex(int index, T element) {
+        if (slots.get(ids[index]) == index) {
+            slots.remove(ids[index]);
+        }
+        if (slots.get(ids[index]) == IdIndex.NONE) {
+            storage.release(index, element);
+        }
+    }
+
+    /**
+     * Refreshes the index for every record at or after the given position, after records before it moved.
+     * @param from the first position that moved
+     */
+    private void reindex(int from) {
+        for (int i = from; i < size; i++) {
+            slots.put(ids[i], i);
+        }
+    }
+
+    /**
+     * Gets the record at a position, decoding it from the source if it has not been read yet.
+     * @param index the position
+     * @return The record.
+     */
+    private T element(int index) {
+        T element = storage.get(index, ids[index]);
+        if (element == null && source != null) {
+            storage.set(index, source.load(ids[index]));
+            element = storage.get(index, ids[index]);
+            if (--undecoded == 0) {
+                source = null;
+            }
+        }
+        return element;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > ids.length) {
+            int grown = Math.max(capacity, ids.length + (ids.length >> 1));
+            ids = Arrays.copyOf(ids, grown);
+            storage.ensureCapacity(grown);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package model;
+
+/**
+ * This interface supplies records to the Inventory in bulk, letting each record be decoded only when it is first read.
+ * @param <T> the record type, Part or Product
+ */
+public interface RecordSource<T> {
+    /**
+     * Gets the number of records.
+     * @return The number of records.
+     */
+    int size();
+
+    /**
+     * Gets the Id of the record at a position, without decoding the record.
+     * @param index the position, from 0 to size - 1
+     * @return The Id.
+     */
+    int idAt(int index);
+
+    /**
+     * Decodes the record with an Id.
+     * @param id an Id returned by idAt
+     * @return The record.
+     */
+    T load(int id);
+}
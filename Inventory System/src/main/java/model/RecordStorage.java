@@ -0,0 +1,69 @@
+package model;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * This interface holds the records of a RecordList by position, while the RecordList keeps their ids and id index.
+ * Positions that hold no record yet, because the record has not been decoded, read as null.
+ * @param <T> the record type, Part or Product
+ */
+interface RecordStorage<T> {
+    /**
+     * Called once by the RecordList that owns the storage.
+     * @param positionOf finds the current position of a record id, or IdIndex.NONE
+     */
+    default void attach(IntUnaryOperator positionOf) {
+    }
+
+    /**
+     * Gets the record at a position.
+     * @param index the position
+     * @param id the id of the record at the position
+     * @return The record, otherwise null if none is stored there.
+     */
+    T get(int index, int id);
+
+    /**
+     * Stores a record at a position, replacing whatever was there.
+     * @param index the position
+     * @param record the record, or null to leave the position empty
+     */
+    void set(int index, T record);
+
+    /**
+     * Checks whether a record object is the one stored at a position.
+     * @param index the position
+     * @param record the record to check
+     * @return True if the record is stored at the position.
+     */
+    boolean holds(int index, T record);
+
+    /**
+     * Copies a run of positions, like System.arraycopy.
+     * @param from the first position to copy from
+     * @param to the first position to copy to
+     * @param length the number of positions
+     */
+    void move(int from, int to, int length);
+
+    /**
+     * Empties a range of positions.
+     * @param from the first position, inclusive
+     * @param to the last position, exclusive
+     */
+    void clear(int from, int to);
+
+    /**
+     * Makes room for at least the given number of positions.
+     * @param capacity the number of positions needed
+     */
+    void ensureCapacity(int capacity);
+
+    /**
+     * Called when a record leaves the list, before its position is reused.
+     * @param index the position the record is leaving
+     * @param record the record, as returned by get
+     */
+    default void release(int index, T record) {
+    }
+}
@@ -0,0 +1,545 @@
+package model;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableListBase;
+import javafx.collections.WeakListChangeListener;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * This class is a read-only list for a table that shows the parts or products of the Inventory, sorted and filtered,
+ * without copying them. It holds only the Ids of the rows, in order, and reads the records themselves a page at a time
+ * when the table asks for a row, along with a few pages around it, keeping the most recently read pages.
+ *
+ * Sorting and filtering are done here on the Ids instead of by the table, so neither builds a list of the records:
+ * a sort reads each sort key once and sorts row numbers, and a filter shows the Ids found by a search.
+ * Until either is used the rows are the Inventory list itself, and no Ids are held at all.
+ *
+ * Like the table, a window must only be used on the JavaFX thread.
+ * @param <T> the record type, Part or Product
+ */
+public final class RecordWindow<T> extends ObservableListBase<T> {
+    /**
+     * The number of rows read at a time.
+     */
+    private static final int PAGE_SIZE = 256;
+    /**
+     * The number of pages read before and after the page holding a requested row.
+     */
+    private static final int PREFETCH_PAGES = 1;
+    /**
+     * The number of pages kept.
+     */
+    private static final int CACHED_PAGES = 32;
+
+    private final RecordList<T> source;
+    private final ToIntFunction<? super T> idOf;
+    private final Map<String, Key<T>> keys = new HashMap<>();
+    /**
+     * The Ids of the rows in order, or null while the rows are the source list in its own order.
+     */
+    private int[] rows;
+    private int rowCount;
+    /**
+     * True while only the rows found by a search are shown, so records added to the Inventory are not shown.
+     */
+    private boolean filtered;
+    private List<SortKey> order = List.of();
+    /**
+     * The row of each Id, built when it is first needed after the rows change.
+     */
+    private IdIndex rowOf;
+    /**
+     * Held here and registered weakly, so a window dropped by a closed form does not stay on the Inventory list.
+     */
+    private final ListChangeListener<T> sourceListener = this::onSourceChanged;
+    private final Map<Integer, Object[]> pages = new LinkedHashMap<>(CACHED_PAGES * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Object[]> eldest) {
+            return size() > CACHED_PAGES;
+        }
+    };
+
+    /**
+     * This class names a column the rows can be sorted by and reads its value from a record.
+     * @param <T> the record type
+     */
+    public static final class Key<T> {
+        private final String property;
+        private final ToIntFunction<? super T> whole;
+        private final ToDoubleFunction<? super T> number;
+        private final Function<? super T, String> text;
+        private final Supplier<SortedIndex<T>> index;
+
+        private Key(String property, ToIntFunction<? super T> whole, ToDoubleFunction<? super T> number,
+                Function<? super T, String> text, Supplier<SortedIndex<T>> index) {
+            this.property = property;
+            this.whole = whole;
+            this.number = number;
+            this.text = text;
+            this.index = index;
+        }
+
+        /**
+         * Creates a key with whole number values, which sorts fastest.
+         * @param property the name of the property, as used by the table column
+         * @param value reads the value
+         * @return The key.
+         */
+        public static <T> Key<T> ofInt(String property, ToIntFunction<? super T> value) {
+            return new Key<>(property, value, null, null, null);
+        }
+
+        /**
+         * Creates a key with decimal values.
+         * @param property the name of the property, as used by the table column
+         * @param value reads the value
+         * @return The key.
+         */
+        public static <T> Key<T> ofDouble(String property, ToDoubleFunction<? super T> value) {
+            return new Key<>(property, null, value, null, null);
+        }
+
+        /**
+         * Creates a key with text values.
+         * @param property the name of the property, as used by the table column
+         * @param value reads the value
+         * @return The key.
+         */
+        public static <T> Key<T> ofText(String property, Function<? super T, String> value) {
+            return new Key<>(property, null, null, value, null);
+        }
+
+        /**
+         * Creates a copy of this key that reads the order of the rows from an index when the rows are sorted by
+         * this key alone, instead of reading every record and sorting. The index must order the values as this key
+         * does; records with the same value are in order of Id.
+         * @param index gets the index, which is only asked for when it is first used
+         * @return The key.
+         */
+        Key<T> indexedBy(Supplier<SortedIndex<T>> index) {
+            return new Key<>(property, whole, number, text, index);
+        }
+    }
+
+    /**
+     * This class is one column of a sort order.
+     */
+    public static final class SortKey {
+        private final String property;
+        private final boolean ascending;
+
+        /**
+         * Constructor for a sort column.
+         * @param property the name of a property the window has a key for
+         * @param ascending true to sort from low to high
+         */
+        public SortKey(String property, boolean ascending) {
+            this.property = property;
+            this.ascending = ascending;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof SortKey && ((SortKey) o).property.equals(property)
+                    && ((SortKey) o).ascending == ascending;
+        }
+
+        @Override
+        public int hashCode() {
+            return property.hashCode() * 2 + (ascending ? 1 : 0);
+        }
+    }
+
+    /**
+     * Constructor for a window over a list that only changes on the JavaFX thread.
+     * @param source the Inventory list, or its JavaFX copy in concurrent mode
+     * @param idOf gets the Id of a record
+     * @param sortKeys the columns the rows can be sorted by
+     */
+    @SafeVarargs
+    RecordWindow(RecordList<T> source, ToIntFunction<? super T> idOf, Key<T>... sortKeys) {
+        this.source = source;
+        this.idOf = idOf;
+        for (Key<T> key : sortKeys) {
+            keys.put(key.property, key);
+        }
+        rowCount = source.size();
+        source.addListener(new WeakListChangeListener<>(sourceListener));
+    }
+
+    @Override
+    public T get(int row) {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException(row);
+        }
+        int page = row / PAGE_SIZE;
+        Object[] records = pages.get(page);
+        if (records == null) {
+            int last = (rowCount - 1) / PAGE_SIZE;
+            for (int p = Math.max(0, page - PREFETCH_PAGES); p <= Math.min(last, page + PREFETCH_PAGES); p++) {
+                if (p == page || !pages.containsKey(p)) {
+                    pages.put(p, read(p));
+                }
+            }
+            records = pages.get(page);
+        }
+        @SuppressWarnings("unchecked")
+        T record = (T) records[row - page * PAGE_SIZE];
+        return record;
+    }
+
+    @Override
+    public int size() {
+        return rowCount;
+    }
+
+    /**
+     * Reads the records of one page.
+     * @param page the page number
+     * @return The records, one per row of the page.
+     */
+    private Object[] read(int page) {
+        int from = page * PAGE_SIZE;
+        Object[] records = new Object[Math.min(PAGE_SIZE, rowCount - from)];
+        for (int i = 0; i < records.length; i++) {
+            records[i] = rows == null ? source.get(from + i) : source.getById(rows[from + i]);
+        }
+        return records;
+    }
+
+    /**
+     * Shows every record of the Inventory, sorted by the current sort order.
+     */
+    public void showAll() {
+        filtered = false;
+        reorder(null);
+    }
+
+    /**
+     * Shows only the records with the given Ids, such as those found by a search, sorted by the current sort order.
+     * Ids that are not in the Inventory are left out.
+     * @param ids the Ids, in the order to show them when no sort order is set
+     */
+    public void show(int[] ids) {
+        int[] kept = new int[ids.length];
+        int count = 0;
+        for (int id : ids) {
+            if (source.slotOf(id) != IdIndex.NONE) {
+                kept[count++] = id;
+            }
+        }
+        filtered = true;
+        reorder(Arrays.copyOf(kept, count));
+    }
+
+    /**
+     * Sorts the rows. The most significant column comes first; an empty order shows the rows unsorted.
+     * Sorting again by the current order does nothing, so rows added since the last sort stay at the end.
+     * @param sortOrder the columns to sort by
+     * @throws IllegalArgumentException if a column has no sort key
+     */
+    public void sort(List<SortKey> sortOrder) {
+        if (sortOrder.equals(order)) {
+            return;
+        }
+        for (SortKey sortKey : sortOrder) {
+            if (!keys.containsKey(sortKey.property)) {
+                throw new IllegalArgumentException("No sort key for " + sortKey.property);
+            }
+        }
+        order = List.copyOf(sortOrder);
+        reorder(filtered ? Arrays.copyOf(rows, rowCount) : null);
+    }
+
+    /**
+     * Replaces the rows with the given Ids, or with every record if null, sorted by the current order,
+     * and tells the table that every row changed.
+     * @param ids the Ids to show, or null for every record
+     */
+    private void reorder(int[] ids) {
+        List<T> before = snapshot();
+        if (ids == null && order.isEmpty()) {
+            rows = null;
+            rowCount = source.size();
+        } else {
+            Key<T> only = order.size() == 1 ? keys.get(order.get(0).property) : null;
+            if (ids == null && only != null && only.index != null) {
+                rows = indexed(only.index.get(), order.get(0).ascending);
+            } else {
+                if (ids == null) {
+                    ids = new int[source.size()];
+                    for (int i = 0; i < ids.length; i++) {
+                        ids[i] = source.idAt(i);
+                    }
+                }
+                rows = sorted(ids);
+            }
+            rowCount = rows.length;
+        }
+        rowOf = null;
+        pages.clear();
+        beginChange();
+        nextReplace(0, rowCount, before);
+        endChange();
+    }
+
+    /**
+     * Reads the Ids of every record in order from an index. In concurrent mode the index follows the Inventory,
+     * which can be a few changes ahead of the source, so Ids the source does not hold yet are left out,
+     * and records the index no longer holds are put at the end.
+     * @param index the index
+     * @param ascending true to sort from low to high
+     * @return The sorted Ids.
+     */
+    private int[] indexed(SortedIndex<T> index, boolean ascending) {
+        int[] ordered = index.cursor(ascending).next(Integer.MAX_VALUE);
+        int[] ids = new int[source.size()];
+        int count = 0;
+        for (int id : ordered) {
+            if (count < ids.length && source.slotOf(id) != IdIndex.NONE) {
+                ids[count++] = id;
+            }
+        }
+        if (count < ids.length) {
+            IdIndex shown = new IdIndex(count);
+            for (int i = 0; i < count; i++) {
+                shown.put(ids[i], i);
+            }
+            for (int slot = 0; slot < source.size() && count < ids.length; slot++) {
+                if (shown.get(source.idAt(slot)) == IdIndex.NONE) {
+                    ids[count++] = source.idAt(slot);
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Sorts Ids by the current order. Each key is read once per row, and the sort is stable,
+     * so the columns are applied from the least significant to the most significant.
+     * @param ids the Ids, in the order to keep for equal keys
+     * @return The sorted Ids.
+     */
+    private int[] sorted(int[] ids) {
+        int[] perm = new int[ids.length];
+        for (int i = 0; i < perm.length; i++) {
+            perm[i] = i;
+        }
+        for (int k = order.size() - 1; k >= 0; k--) {
+            SortKey sortKey = order.get(k);
+            perm = sortBy(keys.get(sortKey.property), sortKey.ascending, ids, perm);
+        }
+        int[] result = new int[ids.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ids[perm[i]];
+        }
+        return result;
+    }
+
+    /**
+     * Stably sorts positions by one key. Every key is first turned into a whole number that sorts the same way,
+     * its rank among the distinct values for decimal and text keys, so all keys share one primitive sort.
+     * @param key the key
+     * @param ascending true to sort from low to high
+     * @param ids the Ids of the records, by position
+     * @param perm the positions in their current order
+     * @return The positions in the new order.
+     */
+    private int[] sortBy(Key<T> key, boolean ascending, int[] ids, int[] perm) {
+        int n = perm.length;
+        int[] values = new int[n];
+        if (key.whole != null) {
+            for (int i = 0; i < n; i++) {
+                values[i] = key.whole.applyAsInt(source.getById(ids[i]));
+            }
+        } else if (key.number != null) {
+            double[] numbers = new double[n];
+            for (int i = 0; i < n; i++) {
+                numbers[i] = key.number.applyAsDouble(source.getById(ids[i]));
+            }
+            double[] distinct = numbers.clone();
+            Arrays.sort(distinct);
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                if (count == 0 || Double.compare(distinct[count - 1], distinct[i]) != 0) {
+                    distinct[count++] = distinct[i];
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                values[i] = Arrays.binarySearch(distinct, 0, count, numbers[i]);
+            }
+        } else {
+            Object[] entries = new Object[n];
+            for (int i = 0; i < n; i++) {
+                entries[i] = new TextEntry(key.text.apply(source.getById(ids[i])), i);
+            }
+            Arrays.sort(entries, (a, b) -> ((TextEntry) a).text.compareTo(((TextEntry) b).text));
+            int rank = -1;
+            String last = null;
+            for (Object entry : entries) {
+                TextEntry text = (TextEntry) entry;
+                if (last == null || !last.equals(text.text)) {
+                    rank++;
+                    last = text.text;
+                }
+                values[text.position] = rank;
+            }
+        }
+        // the value and the current rank in one long, so a plain primitive sort is stable
+        long[] packed = new long[n];
+        for (int rank = 0; rank < n; rank++) {
+            long value = values[perm[rank]];
+            packed[rank] = (ascending ? value : -value) << 32 | rank;
+        }
+        Arrays.parallelSort(packed);
+        int[] result = new int[n];
+        for (int i = 0; i < n; i++) {
+            result[i] = perm[(int) packed[i]];
+        }
+        return result;
+    }
+
+    /**
+     * A text key and the position of its record, sorted together.
+     */
+    private static final class TextEntry {
+        private final String text;
+        private final int position;
+
+        private TextEntry(String text, int position) {
+            // folded once here, rather than on every comparison
+            this.text = text == null ? "" : text.toLowerCase(Locale.ROOT);
+            this.position = position;
+        }
+    }
+
+    /**
+     * Follows a change of the source list: in source order the change is passed on as it is; otherwise removed
+     * records are taken out of the rows, replaced records keep their row and, unless a search is shown,
+     * added records get new rows at the end, as a sorted table does.
+     * @param change the change
+     */
+    private void onSourceChanged(ListChangeListener.Change<? extends T> change) {
+        pages.clear();
+        if (rows == null) {
+            rowCount = source.size();
+            beginChange();
+            while (change.next()) {
+                if (change.wasPermutated()) {
+                    int[] perm = new int[change.getTo() - change.getFrom()];
+                    for (int i = 0; i < perm.length; i++) {
+                        perm[i] = change.getPermutation(change.getFrom() + i);
+                    }
+                    nextPermutation(change.getFrom(), change.getTo(), perm);
+                } else if (change.wasReplaced()) {
+                    nextReplace(change.getFrom(), change.getTo(), new ArrayList<>(change.getRemoved()));
+                } else if (change.wasRemoved()) {
+                    nextRemove(change.getFrom(), new ArrayList<>(change.getRemoved()));
+                } else if (change.wasAdded()) {
+                    nextAdd(change.getFrom(), change.getTo());
+                }
+            }
+            endChange();
+            return;
+        }
+        if (rowOf == null) {
+            rowOf = new IdIndex(rowCount);
+            for (int row = 0; row < rowCount; row++) {
+                rowOf.put(rows[row], row);
+            }
+        }
+        Map<Integer, T> removed = new HashMap<>();
+        List<Integer> added = new ArrayList<>();
+        while (change.next()) {
+            if (change.wasPermutated()) {
+                continue;
+            }
+            for (T record : change.getRemoved()) {
+                removed.put(idOf.applyAsInt(record), record);
+            }
+            for (int i = change.getFrom(); i < change.getTo(); i++) {
+                added.add(source.idAt(i));
+            }
+        }
+        beginChange();
+        BitSet doomed = new BitSet(rowCount);
+        for (Map.Entry<Integer, T> entry : removed.entrySet()) {
+            int row = rowOf.get(entry.getKey());
+            if (row == IdIndex.NONE) {
+                continue;
+            }
+            if (source.slotOf(entry.getKey()) != IdIndex.NONE) {
+                nextSet(row, entry.getValue());
+            } else {
+                doomed.set(row);
+            }
+        }
+        // removals are reported from the last row up, so each row number is still valid when reported
+        for (int row = doomed.previousSetBit(rowCount - 1); row >= 0; row = doomed.previousSetBit(row - 1)) {
+            nextRemove(row, removed.get(rows[row]));
+        }
+        if (!doomed.isEmpty()) {
+            int write = 0;
+            for (int row = 0; row < rowCount; row++) {
+                if (!doomed.get(row)) {
+                    rows[write] = rows[row];
+                    rowOf.put(rows[write], write);
+                    write++;
+                } else {
+                    rowOf.remove(rows[row]);
+                }
+            }
+            rowCount = write;
+        }
+        if (!filtered) {
+            int first = rowCount;
+            for (int id : added) {
+                if (rowOf.get(id) == IdIndex.NONE && source.slotOf(id) != IdIndex.NONE) {
+                    if (rowCount == rows.length) {
+                        rows = Arrays.copyOf(rows, Math.max(16, rowCount + (rowCount >> 1)));
+                    }
+                    rowOf.put(id, rowCount);
+                    rows[rowCount++] = id;
+                }
+            }
+            if (rowCount > first) {
+                nextAdd(first, rowCount);
+            }
+        }
+        endChange();
+    }
+
+    /**
+     * Gets the current rows as a list for a change notice, reading records only if the list is read.
+     * @return A view of the rows as they are now.
+     */
+    private List<T> snapshot() {
+        // listeners read the view while the change is reported, before the rows change again
+        int[] ids = rows;
+        int count = rowCount;
+        return new AbstractList<T>() {
+            @Override
+            public T get(int index) {
+                return ids == null ? source.get(index) : source.getById(ids[index]);
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        };
+    }
+}
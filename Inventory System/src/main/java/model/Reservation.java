@@ -0,0 +1,93 @@
+package model;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class is a quantity of a part's or product's stock held back by Inventory.reservePart or reserveProduct.
+ * The quantity is no longer available to other reservations until the reservation is committed, which takes it
+ * out of stock, or released, which gives it back. A reservation that is neither by its deadline expires and is
+ * released on its own.
+ */
+public final class Reservation {
+    private static final int ACTIVE = 0;
+    private static final int COMMITTED = 1;
+    private static final int RELEASED = 2;
+
+    private final StockLedger<?> ledger;
+    final StockLedger.Counter counter;
+    private final int id;
+    private final int quantity;
+    final long deadline;
+    private final AtomicInteger state = new AtomicInteger(ACTIVE);
+    /**
+     * Where the reservation is filed in the ledger's timing wheel, guarded by the segment; slot is -1 once unfiled.
+     */
+    StockLedger.Segment segment;
+    int slot = -1;
+    Reservation previous;
+    Reservation next;
+
+    Reservation(StockLedger<?> ledger, StockLedger.Counter counter, int id, int quantity, long deadline) {
+        this.ledger = ledger;
+        this.counter = counter;
+        this.id = id;
+        this.quantity = quantity;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Getter for the Id of the reserved part or product.
+     * @return id
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Getter for the reserved quantity.
+     * @return quantity
+     */
+    public int getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * Checks whether the reservation still holds its quantity, neither committed, released nor expired.
+     * @return True if the reservation is active.
+     */
+    public boolean isActive() {
+        return state.get() == ACTIVE && System.nanoTime() - deadline < 0;
+    }
+
+    /**
+     * Takes the reserved quantity out of the stock of the part or product.
+     * @return True if the stock was taken, false if the reservation was already committed, released or expired,
+     *         or the record was deleted or its stock lowered below the reserved quantity in the meantime.
+     */
+    public boolean commit() {
+        if (System.nanoTime() - deadline >= 0) {
+            release();
+            return false;
+        }
+        if (!state.compareAndSet(ACTIVE, COMMITTED)) {
+            return false;
+        }
+        if (!ledger.consume(this)) {
+            ledger.giveBack(this);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Gives the reserved quantity back, so it is available to other reservations again.
+     * @return True if it was given back, false if the reservation was already committed or released.
+     */
+    public boolean release() {
+        if (!state.compareAndSet(ACTIVE, RELEASED)) {
+            return false;
+        }
+        ledger.giveBack(this);
+        return true;
+    }
+}
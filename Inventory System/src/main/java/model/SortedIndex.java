@@ -0,0 +1,702 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * This class keeps the parts or the products in order of one property, price, stock or name, as the Inventory
+ * changes, so range queries, the highest or lowest records and sorted tables do not scan or sort every record.
+ * Records with the same value are in order of Id. Names are ordered ignoring case, as the tables sort them.
+ *
+ * The entries are kept in a list of sorted chunks of at most a few hundred each, holding only the value and the Id,
+ * so a change moves entries within one chunk and finding a value is two binary searches.
+ * The indexes are created by Inventory.getPartIndex and getProductIndex.
+ * @param <T> the record type, Part or Product
+ */
+public final class SortedIndex<T> {
+    /**
+     * The most entries in a chunk. A full chunk is split in two; chunks are filled to three quarters when built.
+     */
+    private static final int CHUNK_SIZE = 512;
+
+    /**
+     * How a value is turned into the long an entry is sorted by.
+     */
+    private enum Kind {
+        /**
+         * Whole numbers, sorted as they are.
+         */
+        WHOLE,
+        /**
+         * Decimal numbers, sorted by their bits arranged to compare as longs do.
+         */
+        NUMBER,
+        /**
+         * Text, sorted by its first three characters and then by the whole text.
+         */
+        TEXT
+    }
+
+    /**
+     * A run of consecutive entries.
+     */
+    private static final class Chunk {
+        private final long[] keys = new long[CHUNK_SIZE];
+        private final String[] texts;
+        private final int[] ids = new int[CHUNK_SIZE];
+        private int size;
+
+        private Chunk(boolean text) {
+            texts = text ? new String[CHUNK_SIZE] : null;
+        }
+    }
+
+    /**
+     * This class reads the Ids of an index in order a page at a time. Each page continues after the last Id read,
+     * even if records were added, changed or deleted in between, so a report can be read without holding the lock.
+     */
+    public final class Cursor {
+        private final boolean ascending;
+        private final boolean bounded;
+        private final long endKey;
+        private final String endText;
+        private final String prefix;
+        /**
+         * The entry to start at or after, unless atEdge.
+         */
+        private long key;
+        private String text;
+        private int id;
+        private boolean inclusive;
+        private boolean atEdge;
+        private boolean done;
+
+        private Cursor(boolean ascending, boolean atEdge, long key, String text, boolean bounded, long endKey,
+                String endText, String prefix) {
+            this.ascending = ascending;
+            this.atEdge = atEdge;
+            this.key = key;
+            this.text = text;
+            this.id = ascending ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+            this.inclusive = true;
+            this.bounded = bounded;
+            this.endKey = endKey;
+            this.endText = endText;
+            this.prefix = prefix;
+        }
+
+        /**
+         * Reads the next Ids.
+         * @param limit the most Ids to read
+         * @return The Ids, fewer than the limit only once the end is reached, after which no more are read.
+         */
+        public int[] next(int limit) {
+            synchronized (SortedIndex.this) {
+                if (done || limit <= 0) {
+                    return new int[0];
+                }
+                int[] page = new int[Math.min(limit, Math.min(size, 1024))];
+                int count = 0;
+                int c;
+                int i;
+                if (ascending) {
+                    long position = atEdge ? 0 : inclusive ? seek(key, text, id) : after(key, text, id);
+                    c = (int) (position >>> 32);
+                    i = (int) position;
+                } else {
+                    long position = atEdge ? position(chunks.size(), 0) : inclusive ? after(key, text, id)
+                            : seek(key, text, id);
+                    c = (int) (position >>> 32);
+                    i = (int) position - 1;
+                    if (i < 0 && --c >= 0) {
+                        i = chunks.get(c).size - 1;
+                    }
+                }
+                while (count < limit && c >= 0 && c < chunks.size()) {
+                    Chunk chunk = chunks.get(c);
+                    if (bounded && (ascending ? compare(chunk, i, endKey, endText, Integer.MAX_VALUE) > 0
+                            : compare(chunk, i, endKey, endText, Integer.MIN_VALUE) < 0)
+                            || prefix != null && !chunk.texts[i].startsWith(prefix)) {
+                        break;
+                    }
+                    if (count == page.length) {
+                        page = Arrays.copyOf(page, (int) Math.min(limit, Math.max(16, count * 2L)));
+                    }
+                    page[count++] = chunk.ids[i];
+                    key = chunk.keys[i];
+                    text = chunk.texts != null ? chunk.texts[i] : null;
+                    id = chunk.ids[i];
+                    atEdge = false;
+                    inclusive = false;
+                    if (ascending ? ++i == chunk.size : --i < 0) {
+                        c += ascending ? 1 : -1;
+                        i = ascending || c < 0 ? 0 : chunks.get(c).size - 1;
+                    }
+                }
+                if (count < limit) {
+                    done = true;
+                }
+                return count == page.length ? page : Arrays.copyOf(page, count);
+            }
+        }
+    }
+
+    private final String property;
+    private final Kind kind;
+    private final RecordList<T> list;
+    private final ToIntFunction<? super T> idOf;
+    private final ToIntFunction<? super T> wholeOf;
+    private final ToDoubleFunction<? super T> numberOf;
+    private final Function<? super T, String> textOf;
+    private final List<Chunk> chunks = new ArrayList<>();
+    private int size;
+    /**
+     * The value each Id is filed under, by a slot of filedKeys and filedTexts, so an entry can be found again
+     * after its record was changed in place.
+     */
+    private IdIndex filed = new IdIndex();
+    private long[] filedKeys = new long[16];
+    private String[] filedTexts;
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int slotCount;
+
+    private SortedIndex(String property, Kind kind, RecordList<T> list, ToIntFunction<? super T> idOf,
+            ToIntFunction<? super T> wholeOf, ToDoubleFunction<? super T> numberOf,
+            Function<? super T, String> textOf) {
+        this.property = property;
+        this.kind = kind;
+        this.list = list;
+        this.idOf = idOf;
+        this.wholeOf = wholeOf;
+        this.numberOf = numberOf;
+        this.textOf = textOf;
+        filedTexts = kind == Kind.TEXT ? new String[16] : null;
+        rebuild();
+    }
+
+    /**
+     * Creates an index of whole number values, which files every record in the list. Called under the write lock.
+     * @param property the name of the property
+     * @param list the records
+     * @param idOf reads the Id of a record
+     * @param value reads the value
+     * @return The index.
+     */
+    static <T> SortedIndex<T> ofInt(String property, RecordList<T> list, ToIntFunction<? super T> idOf,
+            ToIntFunction<? super T> value) {
+        return new SortedIndex<>(property, Kind.WHOLE, list, idOf, value, null, null);
+    }
+
+    /**
+     * Creates an index of decimal values, which files every record in the list. Called under the write lock.
+     * @param property the name of the property
+     * @param list the records
+     * @param idOf reads the Id of a record
+     * @param value reads the value
+     * @return The index.
+     */
+    static <T> SortedIndex<T> ofDouble(String property, RecordList<T> list, ToIntFunction<? super T> idOf,
+            ToDoubleFunction<? super T> value) {
+        return new SortedIndex<>(property, Kind.NUMBER, list, idOf, null, value, null);
+    }
+
+    /**
+     * Creates an index of text values, which files every record in the list. Called under the write lock.
+     * @param property the name of the property
+     * @param list the records
+     * @param idOf reads the Id of a record
+     * @param value reads the value
+     * @return The index.
+     */
+    static <T> SortedIndex<T> ofText(String property, RecordList<T> list, ToIntFunction<? super T> idOf,
+            Function<? super T, String> value) {
+        return new SortedIndex<>(property, Kind.TEXT, list, idOf, null, null, value);
+    }
+
+    /**
+     * Getter for the name of the property the records are ordered by.
+     * @return property
+     */
+    public String getProperty() {
+        return property;
+    }
+
+    /**
+     * Getter for the number of records in the index.
+     * @return size
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Gets the records with the lowest values, lowest first.
+     * @param limit the most Ids to return
+     * @return The Ids of the records.
+     */
+    public int[] first(int limit) {
+        return cursor(true).next(limit);
+    }
+
+    /**
+     * Gets the records with the highest values, highest first.
+     * @param limit the most Ids to return
+     * @return The Ids of the records.
+     */
+    public int[] last(int limit) {
+        return cursor(false).next(limit);
+    }
+
+    /**
+     * Gets the records with a price or stock between two values, lowest first.
+     * @param from the lowest value, included
+     * @param to the highest value, included
+     * @param limit the most Ids to return
+     * @return The Ids of the records.
+     * @throws IllegalArgumentException if the index is of names or a value is not a number
+     */
+    public int[] range(double from, double to, int limit) {
+        return cursor(from, to).next(limit);
+    }
+
+    /**
+     * Counts the records with a price or stock between two values, without reading them.
+     * @param from the lowest value, included
+     * @param to the highest value, included
+     * @return The number of records.
+     * @throws IllegalArgumentException if the index is of names or a value is not a number
+     */
+    public synchronized int count(double from, double to) {
+        long low = lowKey(from);
+        long high = highKey(to);
+        return low > high ? 0 : rank(after(high, null, Integer.MAX_VALUE)) - rank(seek(low, null, Integer.MIN_VALUE));
+    }
+
+    /**
+     * Gets the records with a name between two names, ignoring case, in order of name.
+     * @param from the first name, included
+     * @param to the last name, included
+     * @param limit the most Ids to return
+     * @return The Ids of the records.
+     * @throws IllegalArgumentException if the index is not of names
+     */
+    public int[] range(String from, String to, int limit) {
+        String first = fold(textKind(from));
+        String last = fold(to);
+        return new Cursor(true, false, prefixOf(first), first, true, prefixOf(last), last, null).next(limit);
+    }
+
+    /**
+     * Gets the records with a name that starts with some text, ignoring case, in order of name.
+     * @param prefix the start of the name
+     * @param limit the most Ids to return
+     * @return The Ids of the records.
+     * @throws IllegalArgumentException if the index is not of names
+     */
+    public int[] startingWith(String prefix, int limit) {
+        String folded = fold(textKind(prefix));
+        return new Cursor(true, false, prefixOf(folded), folded, false, 0, null, folded).next(limit);
+    }
+
+    /**
+     * Creates a cursor over every record.
+     * @param ascending true to read from the lowest value, false from the highest
+     * @return The cursor.
+     */
+    public Cursor cursor(boolean ascending) {
+        return new Cursor(ascending, true, 0, null, false, 0, null, null);
+    }
+
+    /**
+     * Creates a cursor starting at a price or stock.
+     * @param from the first value to read, included
+     * @param ascending true to read higher values from there, false lower values
+     * @return The cursor.
+     * @throws IllegalArgumentException if the index is of names or the value is not a number
+     */
+    public Cursor cursor(double from, boolean ascending) {
+        return new Cursor(ascending, false, ascending ? lowKey(from) : highKey(from), null, false, 0, null, null);
+    }
+
+    /**
+     * Creates a cursor over the records with a price or stock between two values, lowest first.
+     * @param from the lowest value, included
+     * @param to the highest value, included
+     * @return The cursor.
+     */
+    Cursor cursor(double from, double to) {
+        return new Cursor(true, false, lowKey(from), null, true, highKey(to), null, null);
+    }
+
+    /**
+     * Creates a cursor starting at a name, ignoring case.
+     * @param from the first name to read, included
+     * @param ascending true to read later names from there, false earlier names
+     * @return The cursor.
+     * @throws IllegalArgumentException if the index is not of names
+     */
+    public Cursor cursor(String from, boolean ascending) {
+        String folded = fold(textKind(from));
+        return new Cursor(ascending, false, prefixOf(folded), folded, false, 0, null, null);
+    }
+
+    /**
+     * Files a record that was added or changed, moving it only if its value changed. Called under the write lock.
+     * @param record the record
+     */
+    void changed(T record) {
+        int id = idOf.applyAsInt(record);
+        String text = kind == Kind.TEXT ? fold(textOf.apply(record)) : null;
+        long key = keyOf(record, text);
+        synchronized (this) {
+            int slot = filed.get(id);
+            if (slot != IdIndex.NONE) {
+                if (filedKeys[slot] == key && (text == null || text.equals(filedTexts[slot]))) {
+                    return;
+                }
+                remove(filedKeys[slot], kind == Kind.TEXT ? filedTexts[slot] : null, id);
+            } else {
+                slot = newSlot();
+                filed.put(id, slot);
+            }
+            filedKeys[slot] = key;
+            if (text != null) {
+                filedTexts[slot] = text;
+            }
+            insert(key, text, id);
+        }
+    }
+
+    /**
+     * Drops a deleted record. Called under the write lock.
+     * @param id the Id of the record
+     */
+    synchronized void deleted(int id) {
+        int slot = filed.remove(id);
+        if (slot != IdIndex.NONE) {
+            remove(filedKeys[slot], kind == Kind.TEXT ? filedTexts[slot] : null, id);
+            if (filedTexts != null) {
+                filedTexts[slot] = null;
+            }
+            if (freeCount == freeSlots.length) {
+                freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+            }
+            freeSlots[freeCount++] = slot;
+        }
+    }
+
+    /**
+     * Files every record again after the whole list was replaced. Called under the write lock.
+     */
+    void reloaded() {
+        rebuild();
+    }
+
+    /**
+     * Files every record of the list, sorting them once rather than inserting them one at a time.
+     */
+    private synchronized void rebuild() {
+        int n = list.size();
+        int[] ids = new int[n];
+        long[] keys = new long[n];
+        String[] texts = kind == Kind.TEXT ? new String[n] : null;
+        int count = 0;
+        for (T record : list) {
+            ids[count] = idOf.applyAsInt(record);
+            if (texts != null) {
+                texts[count] = fold(textOf.apply(record));
+            } else {
+                keys[count] = keyOf(record, null);
+            }
+            count++;
+        }
+        // each value is replaced by its rank among the distinct values, so a value and an Id sort as one long
+        long[] packed = new long[n];
+        long[] distinctKeys = null;
+        String[] distinctTexts = null;
+        if (texts != null) {
+            distinctTexts = texts.clone();
+            Arrays.parallelSort(distinctTexts);
+            int distinct = 0;
+            for (int i = 0; i < n; i++) {
+                if (distinct == 0 || !distinctTexts[distinct - 1].equals(distinctTexts[i])) {
+                    distinctTexts[distinct++] = distinctTexts[i];
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                packed[i] = (long) Arrays.binarySearch(distinctTexts, 0, distinct, texts[i]) << 32
+                        | (ids[i] ^ Integer.MIN_VALUE) & 0xFFFFFFFFL;
+            }
+        } else {
+            distinctKeys = keys.clone();
+            Arrays.parallelSort(distinctKeys);
+            int distinct = 0;
+            for (int i = 0; i < n; i++) {
+                if (distinct == 0 || distinctKeys[distinct - 1] != distinctKeys[i]) {
+                    distinctKeys[distinct++] = distinctKeys[i];
+                }
+            }
+            for (int i = 0; i < n; i++) {
+                packed[i] = (long) Arrays.binarySearch(distinctKeys, 0, distinct, keys[i]) << 32
+                        | (ids[i] ^ Integer.MIN_VALUE) & 0xFFFFFFFFL;
+            }
+        }
+        Arrays.parallelSort(packed);
+        chunks.clear();
+        filed = new IdIndex(n);
+        size = n;
+        freeCount = 0;
+        slotCount = 0;
+        filedKeys = new long[Math.max(16, n)];
+        filedTexts = texts != null ? new String[Math.max(16, n)] : null;
+        Chunk chunk = null;
+        for (long entry : packed) {
+            if (chunk == null || chunk.size == CHUNK_SIZE * 3 / 4) {
+                chunk = new Chunk(texts != null);
+                chunks.add(chunk);
+            }
+            int rank = (int) (entry >>> 32);
+            int id = (int) entry ^ Integer.MIN_VALUE;
+            String text = texts != null ? distinctTexts[rank] : null;
+            long key = texts != null ? prefixOf(text) : distinctKeys[rank];
+            chunk.keys[chunk.size] = key;
+            chunk.ids[chunk.size] = id;
+            if (text != null) {
+                chunk.texts[chunk.size] = text;
+                filedTexts[slotCount] = text;
+            }
+            chunk.size++;
+            filedKeys[slotCount] = key;
+            filed.put(id, slotCount++);
+        }
+    }
+
+    private int newSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (slotCount == filedKeys.length) {
+            filedKeys = Arrays.copyOf(filedKeys, slotCount * 2);
+            if (filedTexts != null) {
+                filedTexts = Arrays.copyOf(filedTexts, slotCount * 2);
+            }
+        }
+        return slotCount++;
+    }
+
+    private void insert(long key, String text, int id) {
+        if (chunks.isEmpty()) {
+            chunks.add(new Chunk(kind == Kind.TEXT));
+        }
+        long position = seek(key, text, id);
+        int c = (int) (position >>> 32);
+        int i = (int) position;
+        if (c == chunks.size()) {
+            c--;
+            i = chunks.get(c).size;
+        }
+        Chunk chunk = chunks.get(c);
+        if (chunk.size == CHUNK_SIZE) {
+            Chunk right = new Chunk(kind == Kind.TEXT);
+            int half = CHUNK_SIZE / 2;
+            move(chunk, half, right, 0, CHUNK_SIZE - half);
+            right.size = CHUNK_SIZE - half;
+            chunk.size = half;
+            chunks.add(c + 1, right);
+            if (i > half) {
+                chunk = right;
+                i -= half;
+            }
+        }
+        move(chunk, i, chunk, i + 1, chunk.size - i);
+        chunk.keys[i] = key;
+        chunk.ids[i] = id;
+        if (text != null) {
+            chunk.texts[i] = text;
+        }
+        chunk.size++;
+        size++;
+    }
+
+    private void remove(long key, String text, int id) {
+        long position = seek(key, text, id);
+        int c = (int) (position >>> 32);
+        int i = (int) position;
+        if (c == chunks.size() || compare(chunks.get(c), i, key, text, id) != 0) {
+            return;
+        }
+        Chunk chunk = chunks.get(c);
+        move(chunk, i + 1, chunk, i, chunk.size - i - 1);
+        chunk.size--;
+        if (chunk.texts != null) {
+            chunk.texts[chunk.size] = null;
+        }
+        size--;
+        if (chunk.size == 0) {
+            chunks.remove(c);
+        } else if (chunk.size < CHUNK_SIZE / 4) {
+            // a small chunk is merged into a neighbour, so many deletes do not leave many near-empty chunks
+            int left = c + 1 < chunks.size() ? c : c - 1;
+            if (left >= 0) {
+                Chunk into = chunks.get(left);
+                Chunk from = chunks.get(left + 1);
+                if (into.size + from.size <= CHUNK_SIZE / 2) {
+                    move(from, 0, into, into.size, from.size);
+                    into.size += from.size;
+                    chunks.remove(left + 1);
+                }
+            }
+        }
+    }
+
+    private static void move(Chunk from, int fromIndex, Chunk to, int toIndex, int length) {
+        System.arraycopy(from.keys, fromIndex, to.keys, toIndex, length);
+        System.arraycopy(from.ids, fromIndex, to.ids, toIndex, length);
+        if (from.texts != null) {
+            System.arraycopy(from.texts, fromIndex, to.texts, toIndex, length);
+        }
+    }
+
+    /**
+     * Finds the first entry at or after a value and Id.
+     * @return The chunk number in the high half and the position in the chunk in the low half,
+     *         or the number of chunks if every entry comes before.
+     */
+    private long seek(long key, String text, int id) {
+        int low = 0;
+        int high = chunks.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            Chunk chunk = chunks.get(mid);
+            if (compare(chunk, chunk.size - 1, key, text, id) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if (low == chunks.size()) {
+            return position(low, 0);
+        }
+        Chunk chunk = chunks.get(low);
+        int from = 0;
+        int to = chunk.size;
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (compare(chunk, mid, key, text, id) < 0) {
+                from = mid + 1;
+            } else {
+                to = mid;
+            }
+        }
+        return position(low, from);
+    }
+
+    /**
+     * Finds the first entry after a value and Id.
+     */
+    private long after(long key, String text, int id) {
+        long position = seek(key, text, id);
+        int c = (int) (position >>> 32);
+        int i = (int) position;
+        if (c < chunks.size() && compare(chunks.get(c), i, key, text, id) == 0) {
+            return ++i == chunks.get(c).size ? position(c + 1, 0) : position(c, i);
+        }
+        return position;
+    }
+
+    /**
+     * Gets the number of entries before a position, adding up the sizes of the chunks before it.
+     */
+    private int rank(long position) {
+        int c = (int) (position >>> 32);
+        int rank = (int) position;
+        for (int i = 0; i < c; i++) {
+            rank += chunks.get(i).size;
+        }
+        return rank;
+    }
+
+    private static long position(int chunk, int index) {
+        return (long) chunk << 32 | index;
+    }
+
+    private static int compare(Chunk chunk, int i, long key, String text, int id) {
+        int result = Long.compare(chunk.keys[i], key);
+        if (result == 0 && text != null) {
+            result = chunk.texts[i].compareTo(text);
+        }
+        return result != 0 ? result : Integer.compare(chunk.ids[i], id);
+    }
+
+    private long keyOf(T record, String text) {
+        switch (kind) {
+            case WHOLE:
+                return wholeOf.applyAsInt(record);
+            case NUMBER:
+                return numberKey(numberOf.applyAsDouble(record));
+            default:
+                return prefixOf(text);
+        }
+    }
+
+    /**
+     * Gets the lowest key of the values at or above a number.
+     */
+    private long lowKey(double value) {
+        checkNumber(value);
+        return kind == Kind.WHOLE ? (long) Math.ceil(value) : numberKey(value);
+    }
+
+    /**
+     * Gets the highest key of the values at or below a number.
+     */
+    private long highKey(double value) {
+        checkNumber(value);
+        return kind == Kind.WHOLE ? (long) Math.floor(value) : numberKey(value);
+    }
+
+    private void checkNumber(double value) {
+        if (kind == Kind.TEXT) {
+            throw new IllegalArgumentException("The " + property + " index is not of numbers");
+        }
+        if (Double.isNaN(value)) {
+            throw new IllegalArgumentException("The bound must be a number");
+        }
+    }
+
+    private String textKind(String value) {
+        if (kind != Kind.TEXT) {
+            throw new IllegalArgumentException("The " + property + " index is not of text");
+        }
+        return value;
+    }
+
+    /**
+     * Arranges the bits of a decimal so the longs compare as the decimals do, with -0.0 as 0.0.
+     */
+    private static long numberKey(double value) {
+        long bits = Double.doubleToLongBits(value + 0.0);
+        return bits ^ (bits >> 63) & Long.MAX_VALUE;
+    }
+
+    /**
+     * Packs the first three characters of a text, so most comparisons do not read the text.
+     */
+    private static long prefixOf(String text) {
+        long key = 0;
+        for (int i = 0; i < 3; i++) {
+            key = key << 16 | (i < text.length() ? text.charAt(i) : 0);
+        }
+        return key;
+    }
+
+    private static String fold(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+}
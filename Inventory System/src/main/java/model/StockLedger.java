@@ -0,0 +1,440 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * This class keeps the stock of the parts or the products that are being reserved, so reservations from many
+ * threads never wait for the Inventory lock. Each record has a counter holding its stock on hand and the quantity
+ * reserved in one long, changed only by compare-and-set, so every reservation sees both at once: a reservation
+ * is refused if it would leave less than the record's min available, and received stock may not rise above max.
+ *
+ * Stock taken by committed reservations is written back into the records in the background, many at a time,
+ * as one change of the list. Until then the counter is ahead of the record. A record replaced through the
+ * Inventory sets its counter to the new stock and bounds, keeping what is reserved; a deleted record drops it.
+ *
+ * Reservations that are not committed or released in time are released by a sweeper thread. They wait in a
+ * timing wheel of 100 ms slots, split into segments by thread so reserving threads rarely share a monitor.
+ * @param <T> the record type, Part or Product
+ */
+final class StockLedger<T> {
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int WHEEL_SLOTS = 1024;
+    private static final int SEGMENTS = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) * 2;
+    private static final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "inventory-reservations");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * The stock of one record: the quantity on hand in the high half of the state, the reserved quantity in the low.
+     */
+    static final class Counter {
+        private final int id;
+        private final AtomicLong state;
+        private volatile int min;
+        private volatile int max;
+        private volatile boolean dropped;
+        private final AtomicBoolean dirty = new AtomicBoolean();
+
+        private Counter(int id, int stock, int min, int max) {
+            this.id = id;
+            this.state = new AtomicLong(pack(stock, 0));
+            this.min = min;
+            this.max = max;
+        }
+    }
+
+    /**
+     * One segment of the timing wheel: a list of reservations per slot, linked through the reservations.
+     */
+    static final class Segment {
+        private final Reservation[] slots = new Reservation[WHEEL_SLOTS];
+    }
+
+    private final RecordList<T> list;
+    private final InventoryLock lock;
+    private final String noun;
+    private final ToIntFunction<? super T> stockOf;
+    private final ToIntFunction<? super T> minOf;
+    private final ToIntFunction<? super T> maxOf;
+    private final ObjIntConsumer<? super T> setStock;
+    private final ObjIntConsumer<? super T> written;
+    private final Executor writer;
+    private final ConcurrentHashMap<Integer, Counter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Counter> unwritten = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean writeScheduled = new AtomicBoolean();
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    /**
+     * The last slot time swept; reservations due by then are filed in the next slot.
+     */
+    private volatile long sweptTick = Math.floorDiv(System.nanoTime(), TICK_NANOS);
+
+    /**
+     * Constructor for the ledger of one list.
+     * @param list the records
+     * @param lock the lock that guards the list
+     * @param noun what a record is called in error messages
+     * @param stockOf reads the stock of a record
+     * @param minOf reads the min of a record
+     * @param maxOf reads the max of a record
+     * @param setStock sets the stock of a record
+     * @param written tells the Inventory listeners about a record whose stock was written back, with its old stock,
+     *        under the write lock
+     * @param writer runs the write-backs
+     */
+    StockLedger(RecordList<T> list, InventoryLock lock, String noun, ToIntFunction<? super T> stockOf,
+            ToIntFunction<? super T> minOf, ToIntFunction<? super T> maxOf, ObjIntConsumer<? super T> setStock,
+            ObjIntConsumer<? super T> written, Executor writer) {
+        this.list = list;
+        this.lock = lock;
+        this.noun = noun;
+        this.stockOf = stockOf;
+        this.minOf = minOf;
+        this.maxOf = maxOf;
+        this.setStock = setStock;
+        this.written = written;
+        this.writer = writer;
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Reserves a quantity of a record's stock.
+     * @param id the Id of the record
+     * @param quantity the quantity, more than 0
+     * @param timeoutNanos how long the reservation holds the quantity unless committed or released
+     * @return The reservation, otherwise null if less than min would be left available.
+     * @throws IllegalArgumentException if the quantity is not positive or there is no record with the Id
+     */
+    Reservation reserve(int id, int quantity, long timeoutNanos) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive: " + quantity);
+        }
+        Counter counter = counterOf(id);
+        while (true) {
+            long state = counter.state.get();
+            int onHand = onHand(state);
+            int reserved = reserved(state);
+            if ((long) onHand - reserved - quantity < counter.min) {
+                return null;
+            }
+            if (counter.state.compareAndSet(state, pack(onHand, reserved + quantity))) {
+                break;
+            }
+        }
+        Reservation reservation = new Reservation(this, counter, id, quantity, System.nanoTime() + timeoutNanos);
+        file(reservation);
+        return reservation;
+    }
+
+    /**
+     * Adds received stock to a record.
+     * @param id the Id of the record
+     * @param quantity the quantity, more than 0
+     * @return True if it was added, false if the stock on hand would rise above max.
+     * @throws IllegalArgumentException if the quantity is not positive or there is no record with the Id
+     */
+    boolean receive(int id, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive: " + quantity);
+        }
+        Counter counter = counterOf(id);
+        while (true) {
+            long state = counter.state.get();
+            int onHand = onHand(state);
+            if ((long) onHand + quantity > counter.max) {
+                return false;
+            }
+            if (counter.state.compareAndSet(state, pack(onHand + quantity, reserved(state)))) {
+                break;
+            }
+        }
+        scheduleWrite(counter);
+        return true;
+    }
+
+    /**
+     * Gets the stock of a record that is neither reserved nor taken.
+     * @param id the Id of the record
+     * @return The stock on hand less the reserved quantity, otherwise -1 if there is no record with the Id.
+     */
+    int available(int id) {
+        Counter counter = counters.get(id);
+        if (counter == null) {
+            counter = findCounter(id);
+            if (counter == null) {
+                return -1;
+            }
+        }
+        long state = counter.state.get();
+        return onHand(state) - reserved(state);
+    }
+
+    /**
+     * Takes a committed reservation's quantity out of the stock on hand.
+     * @param reservation the reservation
+     * @return True if it was taken, false if the record is gone or has less stock on hand than the quantity.
+     */
+    boolean consume(Reservation reservation) {
+        unfile(reservation);
+        Counter counter = reservation.counter;
+        int quantity = reservation.getQuantity();
+        while (!counter.dropped) {
+            long state = counter.state.get();
+            int onHand = onHand(state);
+            if (onHand < quantity) {
+                return false;
+            }
+            if (counter.state.compareAndSet(state, pack(onHand - quantity, reserved(state) - quantity))) {
+                scheduleWrite(counter);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gives a reservation's quantity back.
+     * @param reservation the reservation
+     */
+    void giveBack(Reservation reservation) {
+        unfile(reservation);
+        reservation.counter.state.addAndGet(-reservation.getQuantity());
+    }
+
+    /**
+     * Follows a record replaced through the Inventory. Called under the write lock.
+     * A record replaced by itself is the write-back of its own stock, or a change that leaves the stock alone.
+     * @param oldRecord the replaced record
+     * @param newRecord the new record
+     */
+    void replaced(T oldRecord, int id, T newRecord) {
+        Counter counter = counters.get(id);
+        if (counter == null || oldRecord == newRecord) {
+            return;
+        }
+        counter.min = minOf.applyAsInt(newRecord);
+        counter.max = maxOf.applyAsInt(newRecord);
+        int stock = stockOf.applyAsInt(newRecord);
+        long state;
+        do {
+            state = counter.state.get();
+        } while (!counter.state.compareAndSet(state, pack(stock, reserved(state))));
+    }
+
+    /**
+     * Drops the counter of a deleted record. Called under the write lock.
+     * Its reservations can no longer be committed.
+     * @param id the Id of the record
+     */
+    void deleted(int id) {
+        Counter counter = counters.remove(id);
+        if (counter != null) {
+            counter.dropped = true;
+        }
+    }
+
+    /**
+     * Drops every counter, after the whole list was replaced. Called under the write lock.
+     */
+    void clear() {
+        for (Counter counter : counters.values()) {
+            counter.dropped = true;
+        }
+        counters.clear();
+    }
+
+    /**
+     * Writes the stock on hand of every counter changed since the last write back into its record,
+     * as one change of the list.
+     */
+    void write() {
+        writeScheduled.set(false);
+        if (unwritten.isEmpty()) {
+            return;
+        }
+        lock.write(() -> {
+            // new stock by position, so the records are set in ascending order
+            TreeMap<Integer, Integer> changed = new TreeMap<>();
+            Counter counter;
+            while ((counter = unwritten.poll()) != null) {
+                counter.dirty.set(false);
+                int slot = list.slotOf(counter.id);
+                if (counter.dropped || slot == IdIndex.NONE) {
+                    continue;
+                }
+                int onHand = onHand(counter.state.get());
+                if (stockOf.applyAsInt(list.get(slot)) != onHand) {
+                    changed.put(slot, onHand);
+                }
+            }
+            if (changed.isEmpty()) {
+                return;
+            }
+            // set again, so the tables and the mirrors see the new stock in one change
+            list.change(() -> {
+                for (Map.Entry<Integer, Integer> entry : changed.entrySet()) {
+                    T record = list.get(entry.getKey());
+                    int oldStock = stockOf.applyAsInt(record);
+                    setStock.accept(record, entry.getValue());
+                    list.set(entry.getKey(), record);
+                    written.accept(record, oldStock);
+                }
+            });
+        });
+    }
+
+    /**
+     * Gets the counter of a record, creating it from the record's stock and bounds on first use.
+     * @param id the Id of the record
+     * @return The counter.
+     * @throws IllegalArgumentException if there is no record with the Id
+     */
+    private Counter counterOf(int id) {
+        Counter counter = counters.get(id);
+        if (counter == null) {
+            counter = findCounter(id);
+            if (counter == null) {
+                throw new IllegalArgumentException("There is no " + noun + " with the Id " + id + ".");
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * Creates the counter of a record under the read lock, so the record cannot be deleted meanwhile.
+     * @param id the Id of the record
+     * @return The counter, otherwise null if there is no record with the Id.
+     */
+    private Counter findCounter(int id) {
+        return lock.readDecoding(list::isDecoded, () -> {
+            T record = list.getById(id);
+            if (record == null) {
+                return null;
+            }
+            return counters.computeIfAbsent(id, key -> new Counter(id, stockOf.applyAsInt(record),
+                    minOf.applyAsInt(record), maxOf.applyAsInt(record)));
+        });
+    }
+
+    /**
+     * Queues a counter whose stock on hand changed to be written back, and schedules the write.
+     * @param counter the counter
+     */
+    private void scheduleWrite(Counter counter) {
+        if (counter.dirty.compareAndSet(false, true)) {
+            unwritten.offer(counter);
+        }
+        if (writeScheduled.compareAndSet(false, true)) {
+            writer.execute(this::write);
+        }
+    }
+
+    /**
+     * Files a reservation in the timing wheel under its deadline.
+     * @param reservation the reservation
+     */
+    private void file(Reservation reservation) {
+        if (sweeping.compareAndSet(false, true)) {
+            sweeper.scheduleAtFixedRate(this::sweep, TICK_NANOS, TICK_NANOS, TimeUnit.NANOSECONDS);
+        }
+        // the first slot that starts after the deadline, so the reservation is due whenever its slot is swept
+        long tick = Math.max(Math.floorDiv(reservation.deadline, TICK_NANOS) + 1, sweptTick + 1);
+        Segment segment = segments[(int) Thread.currentThread().getId() & (SEGMENTS - 1)];
+        synchronized (segment) {
+            int slot = (int) (tick & (WHEEL_SLOTS - 1));
+            reservation.segment = segment;
+            reservation.slot = slot;
+            reservation.next = segment.slots[slot];
+            if (reservation.next != null) {
+                reservation.next.previous = reservation;
+            }
+            segment.slots[slot] = reservation;
+        }
+    }
+
+    /**
+     * Takes a reservation out of the timing wheel, once it is committed or released.
+     * @param reservation the reservation
+     */
+    private static void unfile(Reservation reservation) {
+        Segment segment = reservation.segment;
+        if (segment == null) {
+            return;
+        }
+        synchronized (segment) {
+            if (reservation.slot < 0) {
+                return;
+            }
+            if (reservation.previous != null) {
+                reservation.previous.next = reservation.next;
+            } else {
+                segment.slots[reservation.slot] = reservation.next;
+            }
+            if (reservation.next != null) {
+                reservation.next.previous = reservation.previous;
+            }
+            reservation.previous = null;
+            reservation.next = null;
+            reservation.slot = -1;
+        }
+    }
+
+    /**
+     * Releases the reservations due in the slots passed since the last sweep. Runs on the sweeper thread.
+     */
+    private void sweep() {
+        long now = System.nanoTime();
+        long nowTick = Math.floorDiv(now, TICK_NANOS);
+        long from = sweptTick + 1;
+        // after a long pause every slot is visited once
+        long to = Math.min(nowTick, from + WHEEL_SLOTS - 1);
+        List<Reservation> due = new ArrayList<>();
+        for (long tick = from; tick <= to; tick++) {
+            int slot = (int) (tick & (WHEEL_SLOTS - 1));
+            for (Segment segment : segments) {
+                synchronized (segment) {
+                    for (Reservation reservation = segment.slots[slot]; reservation != null;
+                            reservation = reservation.next) {
+                        // later rounds of the wheel stay filed
+                        if (reservation.deadline - now <= 0) {
+                            due.add(reservation);
+                        }
+                    }
+                }
+            }
+        }
+        sweptTick = nowTick;
+        for (Reservation reservation : due) {
+            reservation.release();
+        }
+    }
+
+    private static long pack(int onHand, int reserved) {
+        return (long) onHand << 32 | (reserved & 0xFFFFFFFFL);
+    }
+
+    private static int onHand(long state) {
+        return (int) (state >> 32);
+    }
+
+    private static int reserved(long state) {
+        return (int) state;
+    }
+}
@@ -0,0 +1,273 @@
+package model;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.ToIntFunction;
+
+/**
+ * This class keeps track of the parts or the products whose stock is at or below their min, or above their max,
+ * as the Inventory changes, so finding what to reorder does not scan every record.
+ * Only those records are kept, each in a set ordered by how far it is past its bound, and each change of stock
+ * moves one record in O(log n). Listeners are told whenever a record crosses a bound.
+ *
+ * The monitors are created by Inventory.getPartStockMonitor and getProductStockMonitor. Stock taken or received
+ * through reservations is seen once it is written back into the records.
+ * @param <T> the record type, Part or Product
+ */
+public final class StockMonitor<T> {
+    /**
+     * This enum lists where a record's stock is relative to its min and max.
+     */
+    public enum Level {
+        /**
+         * The stock is at or below min.
+         */
+        LOW,
+        /**
+         * The stock is above min and at or below max.
+         */
+        NORMAL,
+        /**
+         * The stock is above max.
+         */
+        OVER
+    }
+
+    /**
+     * This interface is notified when a record's stock crosses its min or max.
+     * It is called on the thread that changed the Inventory, while no other thread can change it.
+     */
+    public interface Listener {
+        /**
+         * Called after a record moves from one level to another, including when it is added outside NORMAL.
+         * @param id the Id of the record
+         * @param previous the level before the change
+         * @param current the level after the change, or null if the record was deleted
+         */
+        void levelChanged(int id, Level previous, Level current);
+
+        /**
+         * Called after the whole Inventory was replaced by Inventory.load and the monitor rebuilt,
+         * without reporting every record that changed level.
+         */
+        default void rebuilt() {
+        }
+    }
+
+    /**
+     * A record outside NORMAL, with the values it was filed under.
+     */
+    private static final class Entry {
+        private final int id;
+        private final int stock;
+        private final int min;
+        private final int max;
+
+        private Entry(int id, int stock, int min, int max) {
+            this.id = id;
+            this.stock = stock;
+            this.min = min;
+            this.max = max;
+        }
+    }
+
+    private final RecordList<T> list;
+    private final ToIntFunction<? super T> idOf;
+    private final ToIntFunction<? super T> stockOf;
+    private final ToIntFunction<? super T> minOf;
+    private final ToIntFunction<? super T> maxOf;
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    /**
+     * Low records, the largest shortfall below min first.
+     */
+    private final TreeSet<Entry> low = new TreeSet<>(
+            Comparator.comparingLong((Entry entry) -> (long) entry.stock - entry.min)
+                    .thenComparingInt(entry -> entry.id));
+    /**
+     * Over records, the largest excess above max first.
+     */
+    private final TreeSet<Entry> over = new TreeSet<>(
+            Comparator.comparingLong((Entry entry) -> (long) entry.max - entry.stock)
+                    .thenComparingInt(entry -> entry.id));
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Constructor for the monitor of one list, which files every record in it. Called under the write lock.
+     * @param list the records
+     * @param idOf reads the Id of a record
+     * @param stockOf reads the stock of a record
+     * @param minOf reads the min of a record
+     * @param maxOf reads the max of a record
+     */
+    StockMonitor(RecordList<T> list, ToIntFunction<? super T> idOf, ToIntFunction<? super T> stockOf,
+            ToIntFunction<? super T> minOf, ToIntFunction<? super T> maxOf) {
+        this.list = list;
+        this.idOf = idOf;
+        this.stockOf = stockOf;
+        this.minOf = minOf;
+        this.maxOf = maxOf;
+        rebuild();
+    }
+
+    /**
+     * Registers a listener to be told when a record crosses its min or max.
+     * @param listener the listener to add
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener added with addListener.
+     * @param listener the listener to remove
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Gets the level of a record's stock.
+     * @param id the Id of the record
+     * @return The level, NORMAL also when there is no record with the Id.
+     */
+    public synchronized Level getLevel(int id) {
+        Entry entry = entries.get(id);
+        return entry == null ? Level.NORMAL : levelOf(entry.stock, entry.min, entry.max);
+    }
+
+    /**
+     * Gets the records at or below their min, the largest shortfall first.
+     * @param limit the most Ids to return
+     * @return The Ids of the records.
+     */
+    public synchronized int[] getLow(int limit) {
+        return ids(low, limit);
+    }
+
+    /**
+     * Gets the records above their max, the largest excess first.
+     * @param limit the most Ids to return
+     * @return The Ids of the records.
+     */
+    public synchronized int[] getOver(int limit) {
+        return ids(over, limit);
+    }
+
+    /**
+     * Getter for the number of records at or below their min.
+     * @return number of low records
+     */
+    public synchronized int getLowCount() {
+        return low.size();
+    }
+
+    /**
+     * Getter for the number of records above their max.
+     * @return number of over records
+     */
+    public synchronized int getOverCount() {
+        return over.size();
+    }
+
+    /**
+     * Files a record that was added or changed, and reports it if it crossed a bound. Called under the write lock.
+     * @param record the record
+     */
+    void changed(T record) {
+        int id = idOf.applyAsInt(record);
+        int stock = stockOf.applyAsInt(record);
+        int min = minOf.applyAsInt(record);
+        int max = maxOf.applyAsInt(record);
+        Level previous;
+        Level current = levelOf(stock, min, max);
+        synchronized (this) {
+            previous = unfile(id);
+            if (current != Level.NORMAL) {
+                Entry entry = new Entry(id, stock, min, max);
+                entries.put(id, entry);
+                (current == Level.LOW ? low : over).add(entry);
+            }
+        }
+        if (previous != current) {
+            for (Listener listener : listeners) {
+                listener.levelChanged(id, previous, current);
+            }
+        }
+    }
+
+    /**
+     * Drops a deleted record, and reports it if it was outside NORMAL. Called under the write lock.
+     * @param id the Id of the record
+     */
+    void deleted(int id) {
+        Level previous;
+        synchronized (this) {
+            previous = unfile(id);
+        }
+        if (previous != Level.NORMAL) {
+            for (Listener listener : listeners) {
+                listener.levelChanged(id, previous, null);
+            }
+        }
+    }
+
+    /**
+     * Files every record again after the whole list was replaced. Called under the write lock.
+     */
+    void reloaded() {
+        rebuild();
+        for (Listener listener : listeners) {
+            listener.rebuilt();
+        }
+    }
+
+    private synchronized void rebuild() {
+        entries.clear();
+        low.clear();
+        over.clear();
+        for (T record : list) {
+            int stock = stockOf.applyAsInt(record);
+            int min = minOf.applyAsInt(record);
+            int max = maxOf.applyAsInt(record);
+            Level level = levelOf(stock, min, max);
+            if (level != Level.NORMAL) {
+                Entry entry = new Entry(idOf.applyAsInt(record), stock, min, max);
+                entries.put(entry.id, entry);
+                (level == Level.LOW ? low : over).add(entry);
+            }
+        }
+    }
+
+    /**
+     * Removes a record from the sets.
+     * @param id the Id of the record
+     * @return The level it was filed under.
+     */
+    private Level unfile(int id) {
+        Entry entry = entries.remove(id);
+        if (entry == null) {
+            return Level.NORMAL;
+        }
+        Level level = levelOf(entry.stock, entry.min, entry.max);
+        (level == Level.LOW ? low : over).remove(entry);
+        return level;
+    }
+
+    private static Level levelOf(int stock, int min, int max) {
+        return stock <= min ? Level.LOW : stock > max ? Level.OVER : Level.NORMAL;
+    }
+
+    private static int[] ids(TreeSet<Entry> set, int limit) {
+        int[] ids = new int[Math.max(0, Math.min(limit, set.size()))];
+        Iterator<Entry> entries = set.iterator();
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = entries.next().id;
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,188 @@
+package model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class is an inverted index from every three-character run (trigram) of a name to the ids whose name contains it.
+ * A substring query of three or more characters can only match ids found in the postings of all of its trigrams,
+ * so those postings give a small candidate set that the caller confirms with String.contains.
+ */
+class TrigramIndex {
+    /**
+     * Length of the character runs that are indexed. Shorter queries cannot use the index.
+     */
+    static final int GRAM = 3;
+    private final Map<Long, Postings> postings = new HashMap<>();
+    /**
+     * True after invalidate, until the owner rebuilds the index starting with clear.
+     */
+    private boolean stale;
+
+    /**
+     * Indexes every trigram of a name under the given id.
+     * @param id the id of the part or product
+     * @param name the name to index
+     */
+    void add(int id, String name) {
+        if (name == null || stale) {
+            return;
+        }
+        for (int i = 0; i + GRAM <= name.length(); i++) {
+            postings.computeIfAbsent(gram(name, i), g -> new Postings()).add(id);
+        }
+    }
+
+    /**
+     * Removes every trigram of a name from the postings of the given id.
+     * @param id the id of the part or product
+     * @param name the name that was indexed for the id
+     */
+    void remove(int id, String name) {
+        if (name == null || stale) {
+            return;
+        }
+        for (int i = 0; i + GRAM <= name.length(); i++) {
+            Long g = gram(name, i);
+            Postings p = postings.get(g);
+            if (p != null && p.remove(id) && p.size == 0) {
+                postings.remove(g);
+            }
+        }
+    }
+
+    /**
+     * Removes every id from the index and makes it current again.
+     */
+    void clear() {
+        postings.clear();
+        stale = false;
+    }
+
+    /**
+     * Drops the index contents and ignores adds and removes until the owner rebuilds it, starting with clear.
+     * Used when records are loaded in bulk without reading their names, and when most of them are removed at once.
+     */
+    void invalidate() {
+        postings.clear();
+        stale = true;
+    }
+
+    /**
+     * Checks whether the index must be rebuilt before it can answer queries.
+     * @return True after invalidate and before the next clear.
+     */
+    boolean isStale() {
+        return stale;
+    }
+
+    /**
+     * Finds the ids whose names contain every trigram of the query.
+     * The result can still hold false positives (the trigrams may appear apart), so callers must confirm each one.
+     * @param query the substring being searched, at least GRAM characters long
+     * @return The sorted candidate ids, empty if any trigram of the query is not indexed.
+     */
+    int[] candidates(String query) {
+        if (query.length() < GRAM) {
+            throw new IllegalArgumentException("Query is shorter than " + GRAM + " characters: " + query);
+        }
+        Postings[] lists = new Postings[query.length() - GRAM + 1];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = postings.get(gram(query, i));
+            if (lists[i] == null) {
+                return new int[0];
+            }
+        }
+        // start from the rarest trigram and probe the others, so the work is bounded by the shortest posting list
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+        int[] result = Arrays.copyOf(lists[0].ids, lists[0].size);
+        int count = result.length;
+        for (int l = 1; l < lists.length && count > 0; l++) {
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                if (lists[l].contains(result[i])) {
+                    result[kept++] = result[i];
+                }
+            }
+            count = kept;
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Estimates how many ids candidates would return for a query, without finding them.
+     * @param query the substring being searched, at least GRAM characters long
+     * @return The size of the shortest posting list of the query's trigrams, which candidates cannot exceed.
+     */
+    int estimate(String query) {
+        if (query.length() < GRAM) {
+            throw new IllegalArgumentException("Query is shorter than " + GRAM + " characters: " + query);
+        }
+        int estimate = Integer.MAX_VALUE;
+        for (int i = 0; i + GRAM <= query.length(); i++) {
+            Postings p = postings.get(gram(query, i));
+            if (p == null) {
+                return 0;
+            }
+            estimate = Math.min(estimate, p.size);
+        }
+        return estimate;
+    }
+
+    /**
+     * Packs three consecutive characters into one key.
+     * @param s the string
+     * @param at index of the first character
+     * @return The trigram key.
+     */
+    private static Long gram(String s, int at) {
+        return ((long) s.charAt(at) << 32) | ((long) s.charAt(at + 1) << 16) | s.charAt(at + 2);
+    }
+
+    /**
+     * A sorted, duplicate-free array of ids for one trigram.
+     */
+    private static final class Postings {
+        private int[] ids = new int[4];
+        private int size;
+
+        private void add(int id) {
+            // ids are usually handed out in increasing order, so this is an append in the common case
+            if (size > 0 && ids[size - 1] < id) {
+                grow();
+                ids[size++] = id;
+                return;
+            }
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if (at >= 0) {
+                return;
+            }
+            at = -at - 1;
+            grow();
+            System.arraycopy(ids, at, ids, at + 1, size - at);
+            ids[at] = id;
+            size++;
+        }
+
+        private boolean remove(int id) {
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if (at < 0) {
+                return false;
+            }
+            System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+            size--;
+            return true;
+        }
+
+        private boolean contains(int id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+
+        private void grow() {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size << 1);
+            }
+        }
+    }
+}
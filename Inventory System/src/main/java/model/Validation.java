@@ -0,0 +1,78 @@
+package model;
+
+/**
+ * This class holds the logical error checks for parts and products, shared by the forms and the CSV importer.
+ * Each check returns the error message to show, otherwise null if the values are valid.
+ */
+public final class Validation {
+    /**
+     * The most bytes a name can take in the journal and snapshot files, which store names in modified UTF-8
+     * behind a two-byte length.
+     */
+    public static final int MAX_NAME_BYTES = 65_535;
+
+    private Validation() {
+    }
+
+    /**
+     * Checks the values that parts and products have in common.
+     * @param name the name
+     * @param stock the inventory level
+     * @param min the minimum inventory level
+     * @param max the maximum inventory level
+     * @return The error message, otherwise null.
+     */
+    public static String checkRecord(String name, int stock, int min, int max) {
+        if (name == null || name.isBlank()) {
+            return "Name cannot be blank.";
+        }
+        if (!fitsRecord(name)) {
+            return "Name is too long.";
+        }
+        if (min > stock || stock > max) {
+            return "Min value should be less than Inventory. Inventory should be between Min and Max values.";
+        }
+        return null;
+    }
+
+    /**
+     * Checks the company name of an outsourced part.
+     * @param companyName the company name
+     * @return The error message, otherwise null.
+     */
+    public static String checkCompanyName(String companyName) {
+        if (companyName == null || companyName.isBlank()) {
+            return "Company Name cannot be blank.";
+        }
+        if (!fitsRecord(companyName)) {
+            return "Company Name is too long.";
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether a name can be written to the journal and snapshot files.
+     * @param name the name
+     * @return True if its modified UTF-8 form takes at most MAX_NAME_BYTES.
+     */
+    public static boolean fitsRecord(String name) {
+        if (name.length() * 3L <= MAX_NAME_BYTES) {
+            return true;
+        }
+        long bytes = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            bytes += c >= 1 && c <= 0x7F ? 1 : c <= 0x7FF ? 2 : 3;
+        }
+        return bytes <= MAX_NAME_BYTES;
+    }
+
+    /**
+     * Builds the message for a value that could not be read.
+     * @param field the label of the value, such as "Price"
+     * @return The error message.
+     */
+    public static String invalidValue(String field) {
+        return field + " must be a valid value and cannot be blank.";
+    }
+}
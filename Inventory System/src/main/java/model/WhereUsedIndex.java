@@ -0,0 +1,98 @@
+package model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class is a reverse index from each part Id to the Ids of the products that have it as an associated part.
+ * For every pair it also counts how many times the part appears in the product, since duplicates stand for quantity.
+ * Its methods are synchronized because products change their associated parts without holding the Inventory lock.
+ */
+class WhereUsedIndex {
+    /**
+     * Part Id to a map of product Id to the number of times the product lists the part.
+     */
+    private final Map<Integer, IdIndex> usage = new HashMap<>();
+
+    /**
+     * Records that a product lists a part one more time.
+     * @param productId the product Id
+     * @param part the associated part
+     */
+    synchronized void link(int productId, Part part) {
+        IdIndex products = usage.computeIfAbsent(part.getId(), id -> new IdIndex(1));
+        int count = products.get(productId);
+        products.put(productId, count == IdIndex.NONE ? 1 : count + 1);
+    }
+
+    /**
+     * Records that a product lists a part one time less.
+     * @param productId the product Id
+     * @param part the associated part
+     */
+    synchronized void unlink(int productId, Part part) {
+        IdIndex products = usage.get(part.getId());
+        if (products == null) {
+            return;
+        }
+        int count = products.get(productId);
+        if (count > 1) {
+            products.put(productId, count - 1);
+        } else if (count == 1) {
+            products.remove(productId);
+            if (products.size() == 0) {
+                usage.remove(part.getId());
+            }
+        }
+    }
+
+    /**
+     * Records every associated part of a product.
+     * @param product the product
+     */
+    synchronized void linkAll(Product product) {
+        for (Part part : product.getAllAssociatedParts()) {
+            link(product.getId(), part);
+        }
+    }
+
+    /**
+     * Forgets every associated part of a product.
+     * @param product the product
+     */
+    synchronized void unlinkAll(Product product) {
+        for (Part part : product.getAllAssociatedParts()) {
+            unlink(product.getId(), part);
+        }
+    }
+
+    /**
+     * Gets the Ids of the products that list a part.
+     * @param partId the part Id
+     * @return The product Ids, in no particular order.
+     */
+    synchronized int[] productIds(int partId) {
+        IdIndex products = usage.get(partId);
+        return products == null ? new int[0] : products.keys();
+    }
+
+    /**
+     * Gets how many times a product lists a part.
+     * @param partId the part Id
+     * @param productId the product Id
+     * @return The count, 0 if the product does not list the part.
+     */
+    synchronized int count(int partId, int productId) {
+        IdIndex products = usage.get(partId);
+        return products == null ? 0 : Math.max(0, products.get(productId));
+    }
+
+    /**
+     * Checks whether any product lists a part.
+     * @param partId the part Id
+     * @return True if at least one product lists the part.
+     */
+    synchronized boolean isUsed(int partId) {
+        return usage.containsKey(partId);
+    }
+}
@@ -0,0 +1,478 @@
+package persistence;
+
+import model.IdAllocator;
+import model.InHouse;
+import model.Inventory;
+import model.Outsourced;
+import model.Part;
+import model.Product;
+import model.Validation;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToIntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * This class imports parts and products from CSV streams of any size.
+ *
+ * Records are read in chunks. While one chunk is being read, the previous one is parsed and checked in parallel
+ * against the same rules as the Add Part and Add Product forms, and its valid rows are then added to the Inventory
+ * as one batch, so the tables see one change per chunk. A bad row is reported with its line number and skipped;
+ * the import goes on with the next row.
+ *
+ * Part records are: type (InHouse or Outsourced), Id, name, price, inventory, min, max, and machine Id or company name.
+ * Product records are: Id, name, price, inventory, min, max, and optionally the Ids of the associated parts,
+ * separated by spaces or semicolons, then the sub-assemblies, each written as the product Id and the quantity
+ * separated by a colon, such as 12:2;15:1. A sub-assembly may name a product that is imported later.
+ * A blank Id is filled in from the Inventory's Id allocators.
+ * A first record whose first value is "type" or "id" is taken as a header and skipped.
+ */
+public final class CsvImporter {
+    /**
+     * The number of records read, checked and added at a time, unless another size is given.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 10_000;
+
+    private CsvImporter() {
+    }
+
+    /**
+     * This class describes a row that was not imported.
+     */
+    public static final class RowError {
+        private final int line;
+        private final String message;
+
+        RowError(int line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        /**
+         * Getter for the line the row starts on.
+         * @return line number, counting from 1
+         */
+        public int getLine() {
+            return line;
+        }
+
+        /**
+         * Getter for the reason the row was not imported.
+         * @return message
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "Line " + line + ": " + message;
+        }
+    }
+
+    /**
+     * This class sums up an import.
+     */
+    public static final class Report {
+        private final long rows;
+        private final long imported;
+        private final long nanos;
+
+        Report(long rows, long imported, long nanos) {
+            this.rows = rows;
+            this.imported = imported;
+            this.nanos = nanos;
+        }
+
+        /**
+         * Getter for the number of rows read, not counting a header.
+         * @return rows
+         */
+        public long getRows() {
+            return rows;
+        }
+
+        /**
+         * Getter for the number of rows added to the Inventory.
+         * @return imported rows
+         */
+        public long getImported() {
+            return imported;
+        }
+
+        /**
+         * Getter for the number of rows reported as errors.
+         * @return rejected rows
+         */
+        public long getRejected() {
+            return rows - imported;
+        }
+
+        /**
+         * Getter for how long the import took.
+         * @return nanoseconds
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * Getter for the import rate.
+         * @return rows read per second
+         */
+        public double getRowsPerSecond() {
+            return nanos == 0 ? 0 : rows * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d rows, %d imported, %d rejected, %.0f rows/s", rows, imported, getRejected(),
+                    getRowsPerSecond());
+        }
+    }
+
+    /**
+     * The outcome of parsing one row: a record, or the reason there is none.
+     */
+    private static final class Row<T> {
+        private final T record;
+        private final String error;
+        private final boolean newId;
+
+        private Row(T record, String error, boolean newId) {
+            this.record = record;
+            this.error = error;
+            this.newId = newId;
+        }
+    }
+
+    /**
+     * Records read from the stream, waiting to be parsed.
+     */
+    private static final class Chunk {
+        private final List<String> records = new ArrayList<>();
+        private final List<Integer> lines = new ArrayList<>();
+    }
+
+    /**
+     * Imports parts in batches of DEFAULT_BATCH_SIZE.
+     * @param in the CSV stream, which is not closed
+     * @param errors told about each row that was not imported, in order
+     * @return The summary of the import.
+     * @throws IOException if the stream cannot be read
+     */
+    public static Report importParts(Reader in, Consumer<RowError> errors) throws IOException {
+        return importParts(in, DEFAULT_BATCH_SIZE, errors);
+    }
+
+    /**
+     * Imports parts.
+     * @param in the CSV stream, which is not closed
+     * @param batchSize the number of records read, checked and added at a time
+     * @param errors told about each row that was not imported, in order
+     * @return The summary of the import.
+     * @throws IOException if the stream cannot be read
+     */
+    public static Report importParts(Reader in, int batchSize, Consumer<RowError> errors) throws IOException {
+        return run(in, batchSize, errors, "type", CsvImporter::parsePart, Part::getId, Part::setId,
+                id -> Inventory.lookupPart(id) != null, Inventory.getPartIds(), Inventory::addParts);
+    }
+
+    /**
+     * Imports products in batches of DEFAULT_BATCH_SIZE. Their associated parts must already be in the Inventory.
+     * @param in the CSV stream, which is not closed
+     * @param errors told about each row that was not imported, in order
+     * @return The summary of the import.
+     * @throws IOException if the stream cannot be read
+     */
+    public static Report importProducts(Reader in, Consumer<RowError> errors) throws IOException {
+        return importProducts(in, DEFAULT_BATCH_SIZE, errors);
+    }
+
+    /**
+     * Imports products. Their associated parts must already be in the Inventory.
+     * @param in the CSV stream, which is not closed
+     * @param batchSize the number of records read, checked and added at a time
+     * @param errors told about each row that was not imported, in order
+     * @return The summary of the import.
+     * @throws IOException if the stream cannot be read
+     */
+    public static Report importProducts(Reader in, int batchSize, Consumer<RowError> errors) throws IOException {
+        return run(in, batchSize, errors, "id", CsvImporter::parseProduct, Product::getId, Product::setId,
+                id -> Inventory.lookupProduct(id) != null, Inventory.getProductIds(), Inventory::addProducts);
+    }
+
+    /**
+     * Reads, parses and adds records chunk by chunk, reading the next chunk while the current one is parsed.
+     * @param in the CSV stream
+     * @param batchSize the number of records per chunk
+     * @param errors told about each row that was not imported
+     * @param header the first value of a header record
+     * @param parser parses one record
+     * @param idOf gets the Id of a record
+     * @param setId sets the Id of a record
+     * @param exists checks whether an Id is already in the Inventory
+     * @param ids hands out the Ids of rows without one
+     * @param insert adds a batch of records to the Inventory
+     * @return The summary of the import.
+     */
+    private static <T> Report run(Reader in, int batchSize, Consumer<RowError> errors, String header,
+            Function<List<String>, Row<T>> parser, ToIntFunction<T> idOf, ObjIntConsumer<T> setId, IntPredicate exists,
+            IdAllocator ids, Consumer<List<T>> insert) throws IOException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        long start = System.nanoTime();
+        CsvReader reader = new CsvReader(in);
+        long rows = 0;
+        long imported = 0;
+        Chunk chunk = readChunk(reader, batchSize, header);
+        while (!chunk.records.isEmpty()) {
+            Chunk current = chunk;
+            CompletableFuture<List<Row<T>>> parsed = CompletableFuture.supplyAsync(
+                    () -> parse(current, parser, idOf, exists));
+            chunk = readChunk(reader, batchSize, null);
+            List<Row<T>> results = parsed.join();
+            List<T> batch = new ArrayList<>(results.size());
+            List<Integer> batchLines = new ArrayList<>(results.size());
+            List<RowError> rejected = new ArrayList<>();
+            Set<Integer> batchIds = new HashSet<>();
+            for (int i = 0; i < results.size(); i++) {
+                Row<T> row = results.get(i);
+                String error = row.error;
+                if (error == null && !row.newId && !batchIds.add(idOf.applyAsInt(row.record))) {
+                    error = "Id " + idOf.applyAsInt(row.record) + " is already used.";
+                }
+                if (error != null) {
+                    rejected.add(new RowError(current.lines.get(i), error));
+                    continue;
+                }
+                if (!row.newId) {
+                    ids.advancePast(idOf.applyAsInt(row.record));
+                }
+                batch.add(row.record);
+                batchLines.add(current.lines.get(i));
+            }
+            // new Ids are handed out once the allocator is past every Id given in the chunk
+            for (int i = 0; i < results.size(); i++) {
+                Row<T> row = results.get(i);
+                if (row.newId && row.error == null) {
+                    setId.accept(row.record, ids.next());
+                }
+            }
+            if (!batch.isEmpty()) {
+                try {
+                    insert.accept(batch);
+                    imported += batch.size();
+                } catch (IllegalArgumentException e) {
+                    // a row the Inventory refuses, such as a product that would contain itself through its
+                    // sub-assemblies, is found by adding the rows one at a time
+                    for (int i = 0; i < batch.size(); i++) {
+                        try {
+                            insert.accept(List.of(batch.get(i)));
+                            imported++;
+                        } catch (IllegalArgumentException rowError) {
+                            rejected.add(new RowError(batchLines.get(i), rowError.getMessage()));
+                        }
+                    }
+                    rejected.sort(Comparator.comparingInt(RowError::getLine));
+                }
+            }
+            rejected.forEach(errors);
+            rows += results.size();
+        }
+        return new Report(rows, imported, System.nanoTime() - start);
+    }
+
+    /**
+     * Reads up to batchSize records.
+     * @param reader the CSV reader
+     * @param batchSize the most records to read
+     * @param header the first value of a header record to skip, or null if none is expected
+     * @return The records, empty at the end of the stream.
+     * @throws IOException if the stream cannot be read
+     */
+    private static Chunk readChunk(CsvReader reader, int batchSize, String header) throws IOException {
+        Chunk chunk = new Chunk();
+        String record;
+        while (chunk.records.size() < batchSize && (record = reader.nextRecord()) != null) {
+            if (header != null && chunk.records.isEmpty()
+                    && CsvReader.fields(record).get(0).trim().equalsIgnoreCase(header)) {
+                header = null;
+                continue;
+            }
+            header = null;
+            chunk.records.add(record);
+            chunk.lines.add(reader.getLine());
+        }
+        return chunk;
+    }
+
+    /**
+     * Parses and checks the records of a chunk in parallel.
+     * @param chunk the records
+     * @param parser parses one record
+     * @param idOf gets the Id of a record
+     * @param exists checks whether an Id is already in the Inventory
+     * @return The rows, in the order of the records.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> List<Row<T>> parse(Chunk chunk, Function<List<String>, Row<T>> parser,
+            ToIntFunction<T> idOf, IntPredicate exists) {
+        Row<T>[] rows = (Row<T>[]) new Row<?>[chunk.records.size()];
+        IntStream.range(0, rows.length).parallel().forEach(i -> {
+            Row<T> row = parser.apply(CsvReader.fields(chunk.records.get(i)));
+            if (row.error == null && !row.newId && exists.test(idOf.applyAsInt(row.record))) {
+                row = error("Id " + idOf.applyAsInt(row.record) + " is already used.");
+            }
+            rows[i] = row;
+        });
+        return List.of(rows);
+    }
+
+    /**
+     * Parses a part record.
+     * @param fields the values of the record
+     * @return The part, or the reason the record is not valid.
+     */
+    private static Row<Part> parsePart(List<String> fields) {
+        if (fields.size() != 8) {
+            return error("Expected 8 values but found " + fields.size() + ".");
+        }
+        String type = fields.get(0).trim();
+        boolean inHouse = type.equalsIgnoreCase("InHouse");
+        if (!inHouse && !type.equalsIgnoreCase("Outsourced")) {
+            return error("Type must be InHouse or Outsourced.");
+        }
+        String field = "Id";
+        try {
+            String idText = fields.get(1).trim();
+            int id = idText.isEmpty() ? 0 : Integer.parseInt(idText);
+            String name = fields.get(2);
+            field = "Price";
+            double price = Double.parseDouble(fields.get(3).trim());
+            field = "Inventory";
+            int stock = Integer.parseInt(fields.get(4).trim());
+            field = "Min";
+            int min = Integer.parseInt(fields.get(5).trim());
+            field = "Max";
+            int max = Integer.parseInt(fields.get(6).trim());
+            String problem = Validation.checkRecord(name, stock, min, max);
+            if (problem != null) {
+                return error(problem);
+            }
+            Part part;
+            if (inHouse) {
+                field = "Machine ID should be a number and";
+                part = new InHouse(id, name, price, stock, min, max, Integer.parseInt(fields.get(7).trim()));
+            } else {
+                String companyName = fields.get(7);
+                problem = Validation.checkCompanyName(companyName);
+                if (problem != null) {
+                    return error(problem);
+                }
+                part = new Outsourced(id, name, price, stock, min, max, companyName);
+            }
+            return new Row<>(part, null, idText.isEmpty());
+        } catch (NumberFormatException e) {
+            return error(Validation.invalidValue(field));
+        } catch (IllegalArgumentException e) {
+            // a value the record refuses, so the row is skipped instead of stopping the import
+            return error(e.getMessage());
+        }
+    }
+
+    /**
+     * Parses a product record, looking up its associated parts.
+     * @param fields the values of the record
+     * @return The product, or the reason the record is not valid.
+     */
+    private static Row<Product> parseProduct(List<String> fields) {
+        if (fields.size() < 6 || fields.size() > 8) {
+            return error("Expected 6 to 8 values but found " + fields.size() + ".");
+        }
+        String field = "Id";
+        try {
+            String idText = fields.get(0).trim();
+            int id = idText.isEmpty() ? 0 : Integer.parseInt(idText);
+            String name = fields.get(1);
+            field = "Price";
+            double price = Double.parseDouble(fields.get(2).trim());
+            field = "Inventory";
+            int stock = Integer.parseInt(fields.get(3).trim());
+            field = "Min";
+            int min = Integer.parseInt(fields.get(4).trim());
+            field = "Max";
+            int max = Integer.parseInt(fields.get(5).trim());
+            String problem = Validation.checkRecord(name, stock, min, max);
+            if (problem != null) {
+                return error(problem);
+            }
+            Product product = new Product(id, name, price, stock, min, max);
+            if (fields.size() >= 7) {
+                field = "Associated part Id";
+                for (String partId : fields.get(6).trim().split("[;\\s]+")) {
+                    if (partId.isEmpty()) {
+                        continue;
+                    }
+                    Part part = Inventory.lookupPart(Integer.parseInt(partId));
+                    if (part == null) {
+                        return error("Part " + partId + " was not found.");
+                    }
+                    product.addAssociatedPart(part);
+                }
+            }
+            if (fields.size() == 8) {
+                field = "Sub-assembly";
+                for (String subAssembly : fields.get(7).trim().split("[;\\s]+")) {
+                    if (subAssembly.isEmpty()) {
+                        continue;
+                    }
+                    int colon = subAssembly.indexOf(':');
+                    if (colon < 0) {
+                        return error("Sub-assembly " + subAssembly + " should be a product Id and a quantity.");
+                    }
+                    int productId = Integer.parseInt(subAssembly.substring(0, colon));
+                    int quantity = Integer.parseInt(subAssembly.substring(colon + 1));
+                    if (quantity <= 0) {
+                        return error("Sub-assembly quantity must be positive.");
+                    }
+                    if (productId <= 0) {
+                        return error("Sub-assembly Id must be positive.");
+                    }
+                    // a row without an Id is only given one once it is valid, so it cannot name itself here
+                    if (!idText.isEmpty() && productId == id) {
+                        return error("The product " + id + " cannot contain itself.");
+                    }
+                    product.addSubAssembly(productId, quantity);
+                }
+            }
+            return new Row<>(product, null, idText.isEmpty());
+        } catch (NumberFormatException e) {
+            return error(Validation.invalidValue(field));
+        } catch (IllegalArgumentException e) {
+            // a value the record refuses, so the row is skipped instead of stopping the import
+            return error(e.getMessage());
+        }
+    }
+
+    /**
+     * Builds the row for a record that is not valid.
+     * @param message the reason
+     * @return The row.
+     */
+    private static <T> Row<T> error(String message) {
+        return new Row<>(null, message, false);
+    }
+}
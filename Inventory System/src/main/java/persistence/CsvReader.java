@@ -0,0 +1,119 @@
+package persistence;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class reads CSV records one at a time from a stream, without splitting them into values.
+ * Quoted values may hold commas, doubled quotes and line breaks; blank lines are skipped.
+ * Splitting a record into values is left to fields, so it can run on other threads than the reading one.
+ */
+final class CsvReader {
+    private final Reader in;
+    private final char[] buffer = new char[1 << 16];
+    private int position;
+    private int limit;
+    private int line = 1;
+    private int recordLine;
+    private final StringBuilder record = new StringBuilder();
+
+    /**
+     * Constructor for a reader of the given stream, which is read through its own buffer.
+     * @param in the stream
+     */
+    CsvReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Reads the next record.
+     * @return The record without its line break, otherwise null at the end of the stream.
+     * @throws IOException if the stream cannot be read
+     */
+    String nextRecord() throws IOException {
+        record.setLength(0);
+        boolean quoted = false;
+        recordLine = line;
+        while (true) {
+            if (position == limit) {
+                limit = in.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return record.length() > 0 ? record.toString() : null;
+                }
+            }
+            char c = buffer[position++];
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == '\n') {
+                line++;
+                if (!quoted) {
+                    int end = record.length();
+                    if (end > 0 && record.charAt(end - 1) == '\r') {
+                        record.setLength(end - 1);
+                    }
+                    if (record.length() > 0) {
+                        return record.toString();
+                    }
+                    recordLine = line;
+                    continue;
+                }
+            }
+            record.append(c);
+        }
+    }
+
+    /**
+     * Getter for the line the last record read started on.
+     * @return line number, counting from 1
+     */
+    int getLine() {
+        return recordLine;
+    }
+
+    /**
+     * Splits a record into its values, removing the quotes around quoted values.
+     * @param record the record
+     * @return The values.
+     */
+    static List<String> fields(String record) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        int i = 0;
+        int length = record.length();
+        while (true) {
+            value.setLength(0);
+            if (i < length && record.charAt(i) == '"') {
+                i++;
+                while (i < length) {
+                    char c = record.charAt(i++);
+                    if (c != '"') {
+                        value.append(c);
+                    } else if (i < length && record.charAt(i) == '"') {
+                        value.append('"');
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+                // anything between the closing quote and the comma is kept, as a spreadsheet would
+                while (i < length && record.charAt(i) != ',') {
+                    value.append(record.charAt(i++));
+                }
+            } else {
+                int comma = record.indexOf(',', i);
+                int end = comma < 0 ? length : comma;
+                value.append(record, i, end);
+                i = end;
+            }
+            fields.add(value.toString());
+            if (i >= length) {
+                return fields;
+            }
+            i++;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package persistence;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * This class keeps the high-water marks of the part and product Id allocators in a small file,
+ * so Ids handed out before a restart are never handed out again, even for records that were never stored.
+ *
+ * The file holds a magic number, the two marks and a CRC32C of them. It is replaced as a whole on every change,
+ * which is rare because the allocators reserve Ids well ahead of the ones in use.
+ */
+final class IdMarks {
+    private static final int MAGIC = 0x49444D4B;
+    private static final int SIZE = 16;
+
+    private final Path file;
+    private int partMark;
+    private int productMark;
+
+    private IdMarks(Path file, int partMark, int productMark) {
+        this.file = file;
+        this.partMark = partMark;
+        this.productMark = productMark;
+    }
+
+    /**
+     * Reads the marks from a file. A missing or damaged file gives marks of 0,
+     * leaving the highest stored Ids to keep the allocators unique.
+     * @param file the marks file
+     * @return The marks.
+     * @throws IOException if the file exists but cannot be read
+     */
+    static IdMarks open(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return new IdMarks(file, 0, 0);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (buffer.capacity() != SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(12) != checksum(buffer)) {
+            return new IdMarks(file, 0, 0);
+        }
+        return new IdMarks(file, buffer.getInt(4), buffer.getInt(8));
+    }
+
+    /**
+     * Getter for the first part Id that was not reserved.
+     * @return part mark
+     */
+    synchronized int getPartMark() {
+        return partMark;
+    }
+
+    /**
+     * Getter for the first product Id that was not reserved.
+     * @return product mark
+     */
+    synchronized int getProductMark() {
+        return productMark;
+    }
+
+    /**
+     * Raises the part mark and forces it to disk. Used as the reserver of the part Id allocator.
+     * @param mark the new part mark
+     * @throws UncheckedIOException if the file cannot be written
+     */
+    synchronized void reserveParts(int mark) {
+        if (mark > partMark) {
+            write(mark, productMark);
+            partMark = mark;
+        }
+    }
+
+    /**
+     * Raises the product mark and forces it to disk. Used as the reserver of the product Id allocator.
+     * @param mark the new product mark
+     * @throws UncheckedIOException if the file cannot be written
+     */
+    synchronized void reserveProducts(int mark) {
+        if (mark > productMark) {
+            write(partMark, mark);
+            productMark = mark;
+        }
+    }
+
+    /**
+     * Replaces the file with one holding the given marks.
+     * @param parts the part mark
+     * @param products the product mark
+     */
+    private void write(int parts, int products) {
+        ByteBuffer buffer = ByteBuffer.allocate(SIZE).putInt(MAGIC).putInt(parts).putInt(products);
+        buffer.putInt(checksum(buffer)).flip();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Computes the CRC32C of the magic number and the marks.
+     * @param buffer the file contents
+     * @return The checksum.
+     */
+    private static int checksum(ByteBuffer buffer) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.duplicate().position(0).limit(12));
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,498 @@
+package persistence;
+
+import model.Inventory;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * This class exports the Inventory parts and products as CSV or JSON lines, with the associated part Ids and the
+ * sub-assemblies of each product, using a fixed amount of memory however large the Inventory is.
+ *
+ * The export works from a snapshot. Exporting the Inventory first writes a binary image of every record under the
+ * Inventory read lock, so changes wait for the whole image to be written, a time that grows with the size of the
+ * Inventory; only the text is then produced from the mapped image while changes go on. To export without holding
+ * changes up at all, export a snapshot already on disk, such as the latest one written by InventoryStore; it leaves
+ * out the changes made since that snapshot.
+ * Records are never decoded into objects: values are formatted straight from the mapped image into pooled direct
+ * buffers that are written to the file channel, and names are copied as bytes, escaped where needed.
+ *
+ * The CSV files have the layout read by CsvImporter, so an export can be imported again.
+ */
+public final class InventoryExporter {
+    /**
+     * The output formats.
+     */
+    public enum Format {
+        /**
+         * Comma-separated values with a header line, as read by CsvImporter.
+         */
+        CSV,
+        /**
+         * One JSON object per line.
+         */
+        JSON_LINES
+    }
+
+    /**
+     * Large enough for the longest name with every byte escaped as JSON.
+     */
+    private static final int BUFFER_SIZE = 1 << 19;
+    /**
+     * Direct buffers kept for reuse between exports. Exports running at the same time take extra buffers
+     * when these are in use, and only this many are kept afterwards.
+     */
+    private static final BlockingQueue<ByteBuffer> buffers = new ArrayBlockingQueue<>(4);
+
+    private InventoryExporter() {
+    }
+
+    /**
+     * This class sums up an export.
+     */
+    public static final class Report {
+        private final int parts;
+        private final int products;
+        private final long bytes;
+        private final long nanos;
+
+        Report(int parts, int products, long bytes, long nanos) {
+            this.parts = parts;
+            this.products = products;
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+
+        /**
+         * Getter for the number of parts exported.
+         * @return parts
+         */
+        public int getParts() {
+            return parts;
+        }
+
+        /**
+         * Getter for the number of products exported.
+         * @return products
+         */
+        public int getProducts() {
+            return products;
+        }
+
+        /**
+         * Getter for the size of both files.
+         * @return bytes written
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Getter for how long the export took.
+         * @return nanoseconds
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * Getter for the export rate.
+         * @return records written per second
+         */
+        public double getRecordsPerSecond() {
+            return nanos == 0 ? 0 : ((long) parts + products) * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d parts, %d products, %d bytes, %.0f records/s", parts, products, bytes,
+                    getRecordsPerSecond());
+        }
+    }
+
+    /**
+     * Exports the Inventory as it is when the call starts. Changes made by other threads wait until the binary
+     * image of the whole Inventory is written to disk; changes made during the rest of the export go on and do not
+     * appear in the files.
+     * The image is a temporary file next to the parts file, deleted afterwards.
+     * @param partsFile the file for the parts, replaced if it exists
+     * @param productsFile the file for the products, replaced if it exists
+     * @param format the output format
+     * @return The summary of the export.
+     * @throws IOException if a file cannot be written
+     */
+    public static Report export(Path partsFile, Path productsFile, Format format) throws IOException {
+        long start = System.nanoTime();
+        Path image = Files.createTempFile(partsFile.toAbsolutePath().getParent(), "inventory-export", ".snapshot");
+        try {
+            try {
+                Inventory.inspect((parts, products) -> {
+                    try {
+                        Snapshot.write(image, 0, -1, -1, parts, products);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return null;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            Report report = export(Snapshot.open(image), partsFile, productsFile, format);
+            return new Report(report.parts, report.products, report.bytes, System.nanoTime() - start);
+        } finally {
+            try {
+                Files.deleteIfExists(image);
+            } catch (IOException e) {
+                // the image may still be mapped on systems that do not delete open files
+                image.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Exports the parts and products held by a snapshot, such as the latest one written by InventoryStore,
+     * without touching the Inventory.
+     * @param snapshot the snapshot to export
+     * @param partsFile the file for the parts, replaced if it exists
+     * @param productsFile the file for the products, replaced if it exists
+     * @param format the output format
+     * @return The summary of the export.
+     * @throws IOException if a file cannot be written
+     */
+    public static Report export(Snapshot snapshot, Path partsFile, Path productsFile, Format format)
+            throws IOException {
+        long start = System.nanoTime();
+        ByteBuffer image = snapshot.bytes();
+        long bytes;
+        try (Sink out = new Sink(partsFile)) {
+            if (format == Format.CSV) {
+                out.putAscii("type,id,name,price,stock,min,max,source\n");
+            }
+            for (int i = 0; i < snapshot.getPartCount(); i++) {
+                writePart(out, image, snapshot.partOffsetAt(i), format);
+            }
+            out.flush();
+            bytes = out.written;
+        }
+        try (Sink out = new Sink(productsFile)) {
+            if (format == Format.CSV) {
+                out.putAscii("id,name,price,stock,min,max,parts,subassemblies\n");
+            }
+            for (int i = 0; i < snapshot.getProductCount(); i++) {
+                writeProduct(out, image, snapshot.productOffsetAt(i), snapshot.getVersion() > 1, format);
+            }
+            out.flush();
+            bytes += out.written;
+        }
+        return new Report(snapshot.getPartCount(), snapshot.getProductCount(), bytes, System.nanoTime() - start);
+    }
+
+    /**
+     * Writes one part record, read in the RecordCodec layout: kind, Id, name, price, stock, min, max,
+     * then the machine Id or the company name.
+     * @param out where to write
+     * @param image the snapshot file
+     * @param at the offset of the record
+     * @param format the output format
+     * @throws IOException if the file cannot be written
+     */
+    private static void writePart(Sink out, ByteBuffer image, int at, Format format) throws IOException {
+        boolean inHouse = image.get(at) == RecordCodec.IN_HOUSE;
+        int id = image.getInt(at + 1);
+        int name = at + 5;
+        int next = name + 2 + (image.getShort(name) & 0xFFFF);
+        double price = image.getDouble(next);
+        int stock = image.getInt(next + 8);
+        int min = image.getInt(next + 12);
+        int max = image.getInt(next + 16);
+        int source = next + 20;
+        if (format == Format.CSV) {
+            out.putAscii(inHouse ? "InHouse," : "Outsourced,");
+            out.putInt(id);
+            out.put((byte) ',');
+            out.putCsvText(image, name);
+            out.put((byte) ',');
+            writeValues(out, price, stock, min, max, ",");
+            out.put((byte) ',');
+            if (inHouse) {
+                out.putInt(image.getInt(source));
+            } else {
+                out.putCsvText(image, source);
+            }
+        } else {
+            out.putAscii(inHouse ? "{\"type\":\"InHouse\",\"id\":" : "{\"type\":\"Outsourced\",\"id\":");
+            out.putInt(id);
+            out.putAscii(",\"name\":");
+            out.putJsonText(image, name);
+            writeValues(out, price, stock, min, max, null);
+            if (inHouse) {
+                out.putAscii(",\"machineId\":");
+                out.putInt(image.getInt(source));
+            } else {
+                out.putAscii(",\"companyName\":");
+                out.putJsonText(image, source);
+            }
+            out.put((byte) '}');
+        }
+        out.put((byte) '\n');
+    }
+
+    /**
+     * Writes one product record, read in the RecordCodec layout: Id, name, price, stock, min, max,
+     * then the number of associated parts and their Ids, and in snapshots that have them the number of
+     * sub-assemblies and the Id and quantity of each.
+     * @param out where to write
+     * @param image the snapshot file
+     * @param at the offset of the record
+     * @param subAssemblies whether the record is followed by its sub-assemblies
+     * @param format the output format
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeProduct(Sink out, ByteBuffer image, int at, boolean subAssemblies, Format format)
+            throws IOException {
+        int id = image.getInt(at);
+        int name = at + 4;
+        int next = name + 2 + (image.getShort(name) & 0xFFFF);
+        double price = image.getDouble(next);
+        int stock = image.getInt(next + 8);
+        int min = image.getInt(next + 12);
+        int max = image.getInt(next + 16);
+        int count = image.getInt(next + 20);
+        int parts = next + 24;
+        int included = parts + count * Integer.BYTES;
+        int subCount = subAssemblies ? image.getInt(included) : 0;
+        included += Integer.BYTES;
+        if (format == Format.CSV) {
+            out.putInt(id);
+            out.put((byte) ',');
+            out.putCsvText(image, name);
+            out.put((byte) ',');
+            writeValues(out, price, stock, min, max, ",");
+            out.put((byte) ',');
+            for (int i = 0; i < count; i++) {
+                if (i > 0) {
+                    out.put((byte) ';');
+                }
+                out.putInt(image.getInt(parts + i * Integer.BYTES));
+            }
+            out.put((byte) ',');
+            for (int i = 0; i < subCount; i++) {
+                if (i > 0) {
+                    out.put((byte) ';');
+                }
+                out.putInt(image.getInt(included + i * 2 * Integer.BYTES));
+                out.put((byte) ':');
+                out.putInt(image.getInt(included + (i * 2 + 1) * Integer.BYTES));
+            }
+        } else {
+            out.putAscii("{\"id\":");
+            out.putInt(id);
+            out.putAscii(",\"name\":");
+            out.putJsonText(image, name);
+            writeValues(out, price, stock, min, max, null);
+            out.putAscii(",\"parts\":[");
+            for (int i = 0; i < count; i++) {
+                if (i > 0) {
+                    out.put((byte) ',');
+                }
+                out.putInt(image.getInt(parts + i * Integer.BYTES));
+            }
+            out.putAscii("],\"subAssemblies\":[");
+            for (int i = 0; i < subCount; i++) {
+                out.putAscii(i > 0 ? ",{\"id\":" : "{\"id\":");
+                out.putInt(image.getInt(included + i * 2 * Integer.BYTES));
+                out.putAscii(",\"quantity\":");
+                out.putInt(image.getInt(included + (i * 2 + 1) * Integer.BYTES));
+                out.put((byte) '}');
+            }
+            out.putAscii("]}");
+        }
+        out.put((byte) '\n');
+    }
+
+    /**
+     * Writes the price, stock, min and max, as CSV values or as JSON members.
+     * @param out where to write
+     * @param price the price
+     * @param stock the inventory level
+     * @param min the minimum inventory level
+     * @param max the maximum inventory level
+     * @param separator the CSV separator, or null for JSON
+     * @throws IOException if the file cannot be written
+     */
+    private static void writeValues(Sink out, double price, int stock, int min, int max, String separator)
+            throws IOException {
+        if (separator != null) {
+            out.putAscii(Double.toString(price));
+            out.putAscii(separator);
+            out.putInt(stock);
+            out.putAscii(separator);
+            out.putInt(min);
+            out.putAscii(separator);
+            out.putInt(max);
+        } else {
+            out.putAscii(",\"price\":");
+            out.putAscii(Double.isFinite(price) ? Double.toString(price) : "null");
+            out.putAscii(",\"stock\":");
+            out.putInt(stock);
+            out.putAscii(",\"min\":");
+            out.putInt(min);
+            out.putAscii(",\"max\":");
+            out.putInt(max);
+        }
+    }
+
+    /**
+     * A file channel written through a pooled direct buffer.
+     */
+    private static final class Sink implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final byte[] digits = new byte[11];
+        private long written;
+
+        private Sink(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            ByteBuffer pooled = buffers.poll();
+            buffer = pooled != null ? pooled : ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void put(byte b) throws IOException {
+            ensure(1);
+            buffer.put(b);
+        }
+
+        private void putAscii(String text) throws IOException {
+            ensure(text.length());
+            for (int i = 0; i < text.length(); i++) {
+                buffer.put((byte) text.charAt(i));
+            }
+        }
+
+        private void putInt(int value) throws IOException {
+            long rest = Math.abs((long) value);
+            int start = digits.length;
+            do {
+                digits[--start] = (byte) ('0' + rest % 10);
+                rest /= 10;
+            } while (rest != 0);
+            ensure(digits.length + 1);
+            if (value < 0) {
+                buffer.put((byte) '-');
+            }
+            buffer.put(digits, start, digits.length - start);
+        }
+
+        /**
+         * Writes a string stored in the image as a CSV value, quoted only if it holds a comma, quote or line break.
+         * @param image the snapshot file
+         * @param at the offset of the string
+         */
+        private void putCsvText(ByteBuffer image, int at) throws IOException {
+            ByteBuffer text = text(image, at);
+            boolean quote = false;
+            for (int i = text.position(); i < text.limit() && !quote; i++) {
+                byte b = text.get(i);
+                quote = b == ',' || b == '"' || b == '\n' || b == '\r';
+            }
+            if (!quote) {
+                ensure(text.remaining());
+                buffer.put(text);
+                return;
+            }
+            ensure(text.remaining() * 2 + 2);
+            buffer.put((byte) '"');
+            while (text.hasRemaining()) {
+                byte b = text.get();
+                if (b == '"') {
+                    buffer.put(b);
+                }
+                buffer.put(b);
+            }
+            buffer.put((byte) '"');
+        }
+
+        /**
+         * Writes a string stored in the image as a JSON string.
+         * @param image the snapshot file
+         * @param at the offset of the string
+         */
+        private void putJsonText(ByteBuffer image, int at) throws IOException {
+            ByteBuffer text = text(image, at);
+            ensure(text.remaining() * 6 + 2);
+            buffer.put((byte) '"');
+            while (text.hasRemaining()) {
+                byte b = text.get();
+                if (b == '"' || b == '\\') {
+                    buffer.put((byte) '\\').put(b);
+                } else if (b >= 0 && b < 0x20) {
+                    buffer.put((byte) '\\').put((byte) 'u').put((byte) '0').put((byte) '0')
+                            .put((byte) Character.forDigit(b >> 4, 16)).put((byte) Character.forDigit(b & 0xF, 16));
+                } else {
+                    buffer.put(b);
+                }
+            }
+            buffer.put((byte) '"');
+        }
+
+        /**
+         * Gets the UTF-8 bytes of a string stored in the image with DataOutput.writeUTF.
+         * Its bytes are used as they are unless the string holds a character that writeUTF encodes differently
+         * from UTF-8, a NUL or one outside the Basic Multilingual Plane; those rare strings are decoded and re-encoded.
+         * @param image the snapshot file
+         * @param at the offset of the string
+         * @return The bytes, between position and limit.
+         */
+        private static ByteBuffer text(ByteBuffer image, int at) throws IOException {
+            int length = image.getShort(at) & 0xFFFF;
+            ByteBuffer text = image.duplicate().limit(at + 2 + length).position(at + 2);
+            for (int i = text.position(); i < text.limit(); i++) {
+                int b = text.get(i) & 0xFF;
+                if (b == 0xC0 || b == 0xED) {
+                    byte[] encoded = new byte[length + 2];
+                    image.get(at, encoded);
+                    String decoded = new DataInputStream(new ByteArrayInputStream(encoded)).readUTF();
+                    return ByteBuffer.wrap(decoded.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            return text;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (channel) {
+                flush();
+                channel.force(false);
+            } finally {
+                buffer.clear();
+                buffers.offer(buffer);
+            }
+        }
+    }
+}
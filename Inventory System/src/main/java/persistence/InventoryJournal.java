@@ -0,0 +1,406 @@
+package persistence;
+
+import model.InventoryListener;
+import model.Inventory;
+import model.Part;
+import model.Product;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * This class records every change made through the Inventory class in a write-ahead log,
+ * and rebuilds the Inventory from that log when it is opened.
+ * Changes are recorded while the Inventory lock is held, but only waited for once it is released, so in GROUP
+ * mode the changes of many threads share one force of the log.
+ */
+public class InventoryJournal implements InventoryListener, Closeable {
+    private static final byte PART_ADDED = 1;
+    private static final byte PART_UPDATED = 2;
+    private static final byte PART_DELETED = 3;
+    private static final byte PARTS_DELETED = 4;
+    private static final byte PRODUCT_ADDED = 5;
+    private static final byte PRODUCT_UPDATED = 6;
+    private static final byte PRODUCT_DELETED = 7;
+    private static final byte PRODUCTS_DELETED = 8;
+    private static final byte BATCH = 9;
+    /**
+     * Follows the record of a product that has sub-assemblies, which the product record does not hold.
+     */
+    private static final byte SUB_ASSEMBLIES = 10;
+    /**
+     * The size at which the records of a batch are written out, well below the largest record the log takes.
+     * A larger batch is written as several batch records, each replayed whole.
+     */
+    private static final int BATCH_CHUNK = 16 << 20;
+
+    private final WriteAheadLog log;
+    private int maxPartId;
+    private int maxProductId;
+    /**
+     * The records of the batch being committed, each as its type, length and payload, or null outside a batch.
+     */
+    private ByteArrayOutputStream batch;
+    private int batchCount;
+    /**
+     * The sequence number of the last record each thread appended and has not yet waited for, 0 if none.
+     */
+    private final ThreadLocal<long[]> unsynced = ThreadLocal.withInitial(() -> new long[1]);
+
+    private InventoryJournal(WriteAheadLog log, int maxPartId, int maxProductId) {
+        this.log = log;
+        this.maxPartId = maxPartId;
+        this.maxProductId = maxProductId;
+    }
+
+    /**
+     * Opens the journal file and replays it into the Inventory.
+     * The journal is not registered as an Inventory listener; call Inventory.addListener once replay is done.
+     * @param file the journal file, created if it does not exist
+     * @param durability when recorded changes are forced to disk
+     * @param flushDelayMillis how long background flushes wait to batch more changes, ignored for SYNC
+     * @return The open journal.
+     * @throws IOException if the file cannot be read or written
+     */
+    public static InventoryJournal open(Path file, WriteAheadLog.Durability durability, long flushDelayMillis)
+            throws IOException {
+        return open(file, durability, flushDelayMillis, 0, id -> null);
+    }
+
+    /**
+     * Opens the journal file and replays the changes made after a snapshot into the Inventory.
+     * The journal is not registered as an Inventory listener; call Inventory.addListener once replay is done.
+     * @param file the journal file, created if it does not exist
+     * @param durability when recorded changes are forced to disk
+     * @param flushDelayMillis how long background flushes wait to batch more changes, ignored for SYNC
+     * @param coveredGeneration the journal generation already covered by the loaded snapshot, 0 if none
+     * @param knownParts finds parts from the snapshot that replayed products refer to, or returns null
+     * @return The open journal.
+     * @throws IOException if the file cannot be read or written
+     */
+    public static InventoryJournal open(Path file, WriteAheadLog.Durability durability, long flushDelayMillis,
+            long coveredGeneration, IntFunction<Part> knownParts) throws IOException {
+        Replay replay = new Replay(knownParts);
+        WriteAheadLog log = WriteAheadLog.open(file, durability, flushDelayMillis, coveredGeneration, replay::apply);
+        return new InventoryJournal(log, replay.maxPartId, replay.maxProductId);
+    }
+
+    /**
+     * Checks whether the journal held no changes when it was opened.
+     * @return True if nothing was replayed.
+     */
+    public boolean isEmpty() {
+        return log.getReplayedCount() == 0;
+    }
+
+    /**
+     * Getter for the highest part Id replayed or recorded since the journal was opened, including deleted parts.
+     * @return max part Id, or -1 if there were none
+     */
+    public int getMaxPartId() {
+        return maxPartId;
+    }
+
+    /**
+     * Getter for the highest product Id replayed or recorded since the journal was opened, including deleted products.
+     * @return max product Id, or -1 if there were none
+     */
+    public int getMaxProductId() {
+        return maxProductId;
+    }
+
+    /**
+     * Getter for the underlying write-ahead log.
+     * @return log
+     */
+    public WriteAheadLog getLog() {
+        return log;
+    }
+
+    @Override
+    public void partAdded(Part part) {
+        maxPartId = Math.max(maxPartId, part.getId());
+        append(PART_ADDED, out -> RecordCodec.writePart(out, part));
+    }
+
+    @Override
+    public void partUpdated(int id, Part oldPart, Part newPart) {
+        maxPartId = Math.max(maxPartId, newPart.getId());
+        append(PART_UPDATED, out -> {
+            out.writeInt(id);
+            RecordCodec.writePart(out, newPart);
+        });
+    }
+
+    @Override
+    public void partDeleted(Part part) {
+        append(PART_DELETED, out -> out.writeInt(part.getId()));
+    }
+
+    @Override
+    public void partsDeleted(List<Part> parts) {
+        append(PARTS_DELETED, out -> {
+            out.writeInt(parts.size());
+            for (Part part : parts) {
+                out.writeInt(part.getId());
+            }
+        });
+    }
+
+    @Override
+    public void productAdded(Product product) {
+        maxProductId = Math.max(maxProductId, product.getId());
+        append(PRODUCT_ADDED, out -> RecordCodec.writeProduct(out, product));
+        appendSubAssemblies(product);
+    }
+
+    @Override
+    public void productUpdated(int id, Product oldProduct, Product newProduct) {
+        maxProductId = Math.max(maxProductId, newProduct.getId());
+        append(PRODUCT_UPDATED, out -> {
+            out.writeInt(id);
+            RecordCodec.writeProduct(out, newProduct);
+        });
+        appendSubAssemblies(newProduct);
+    }
+
+    @Override
+    public void productDeleted(Product product) {
+        append(PRODUCT_DELETED, out -> out.writeInt(product.getId()));
+    }
+
+    @Override
+    public void productsDeleted(List<Product> products) {
+        append(PRODUCTS_DELETED, out -> {
+            out.writeInt(products.size());
+            for (Product product : products) {
+                out.writeInt(product.getId());
+            }
+        });
+    }
+
+    @Override
+    public void associatedPartsChanged(Product product) {
+        productUpdated(product.getId(), product, product);
+    }
+
+    /**
+     * Waits until the changes the calling thread just made are on disk, if the log is in GROUP mode.
+     * @throws UncheckedIOException if the log could not be written
+     */
+    @Override
+    public void lockReleased() {
+        long[] sequence = unsynced.get();
+        if (sequence[0] != 0) {
+            long last = sequence[0];
+            sequence[0] = 0;
+            log.awaitDurable(last);
+        }
+    }
+
+    @Override
+    public void batchStarted() {
+        batch = new ByteArrayOutputStream(1024);
+        batchCount = 0;
+    }
+
+    @Override
+    public void batchCommitted() {
+        writeBatch();
+        batch = null;
+    }
+
+    /**
+     * Forces every recorded change to disk and closes the journal file.
+     * @throws IOException if the last changes could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        log.close();
+    }
+
+    private void appendSubAssemblies(Product product) {
+        if (!product.getSubAssemblies().isEmpty()) {
+            append(SUB_ASSEMBLIES, out -> {
+                out.writeInt(product.getId());
+                RecordCodec.writeSubAssemblies(out, product);
+            });
+        }
+    }
+
+    /**
+     * Appends a record to the log, to be waited for in GROUP mode once the Inventory lock is released.
+     */
+    private void enqueue(byte type, byte[] payload) {
+        long sequence = log.enqueue(type, payload);
+        if (log.getDurability() == WriteAheadLog.Durability.GROUP) {
+            unsynced.get()[0] = sequence;
+        }
+    }
+
+    private void append(byte type, Payload payload) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            payload.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (batch == null) {
+            enqueue(type, bytes.toByteArray());
+            return;
+        }
+        // inside a batch the record is kept until the batch is committed, so a crash keeps all of it or none
+        try (DataOutputStream out = new DataOutputStream(batch)) {
+            out.writeByte(type);
+            out.writeInt(bytes.size());
+            bytes.writeTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        batchCount++;
+        if (batch.size() >= BATCH_CHUNK) {
+            writeBatch();
+        }
+    }
+
+    /**
+     * Writes the records kept for the current batch as one log record.
+     */
+    private void writeBatch() {
+        if (batchCount == 0) {
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(batch.size() + 4);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(batchCount);
+            batch.writeTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        enqueue(BATCH, bytes.toByteArray());
+        batch.reset();
+        batchCount = 0;
+    }
+
+    /**
+     * Writes the payload of one record.
+     */
+    @FunctionalInterface
+    private interface Payload {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Applies replayed records to the Inventory.
+     */
+    private static final class Replay {
+        /**
+         * Every part seen so far by Id, kept after deletes because products can still list deleted parts.
+         */
+        private final Map<Integer, Part> parts = new HashMap<>();
+        private final IntFunction<Part> knownParts;
+        private int maxPartId = -1;
+        private int maxProductId = -1;
+
+        private Replay(IntFunction<Part> knownParts) {
+            this.knownParts = knownParts;
+        }
+
+        private void apply(byte type, DataInput in) throws IOException {
+            switch (type) {
+                case PART_ADDED: {
+                    Part part = remember(RecordCodec.readPart(in));
+                    Inventory.addPart(part);
+                    break;
+                }
+                case PART_UPDATED: {
+                    int id = in.readInt();
+                    Inventory.updatePart(id, remember(RecordCodec.readPart(in)));
+                    break;
+                }
+                case PART_DELETED: {
+                    Part part = Inventory.lookupPart(in.readInt());
+                    if (part != null) {
+                        Inventory.deletePart(part);
+                    }
+                    break;
+                }
+                case PARTS_DELETED:
+                    Inventory.deleteParts(readIds(in));
+                    break;
+                case PRODUCT_ADDED: {
+                    Product product = RecordCodec.readProduct(in, this::part);
+                    maxProductId = Math.max(maxProductId, product.getId());
+                    Inventory.addProduct(product);
+                    break;
+                }
+                case PRODUCT_UPDATED: {
+                    int id = in.readInt();
+                    Product product = RecordCodec.readProduct(in, this::part);
+                    maxProductId = Math.max(maxProductId, product.getId());
+                    Inventory.updateProduct(id, product);
+                    break;
+                }
+                case PRODUCT_DELETED: {
+                    Product product = Inventory.lookupProduct(in.readInt());
+                    if (product != null) {
+                        Inventory.deleteProduct(product);
+                    }
+                    break;
+                }
+                case PRODUCTS_DELETED:
+                    Inventory.deleteProducts(readIds(in));
+                    break;
+                case SUB_ASSEMBLIES: {
+                    Product product = Inventory.lookupProduct(in.readInt());
+                    if (product != null) {
+                        RecordCodec.readSubAssemblies(in, product);
+                    }
+                    break;
+                }
+                case BATCH: {
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        byte recordType = in.readByte();
+                        byte[] record = new byte[in.readInt()];
+                        in.readFully(record);
+                        apply(recordType, new DataInputStream(new ByteArrayInputStream(record)));
+                    }
+                    break;
+                }
+                default:
+                    throw new IOException("Unknown journal record type: " + type);
+            }
+        }
+
+        private Part part(int id) {
+            Part part = parts.get(id);
+            return part != null ? part : knownParts.apply(id);
+        }
+
+        private Part remember(Part part) {
+            parts.put(part.getId(), part);
+            maxPartId = Math.max(maxPartId, part.getId());
+            return part;
+        }
+
+        private static int[] readIds(DataInput in) throws IOException {
+            int[] ids = new int[in.readInt()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = in.readInt();
+            }
+            return ids;
+        }
+    }
+}
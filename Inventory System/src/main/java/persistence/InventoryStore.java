@@ -0,0 +1,197 @@
+package persistence;
+
+import model.Inventory;
+import model.Part;
+import model.Product;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * This class keeps the Inventory on disk as a snapshot plus a journal of the changes made after it.
+ * Opening the store maps the newest snapshot, so startup only reads record Ids, then replays the journal on top.
+ * A checkpoint writes a new snapshot and empties the journal.
+ *
+ * Two snapshot files are used in turn, so the file that the loaded records are still mapped from
+ * is never overwritten.
+ *
+ * The store also persists the high-water marks of the Inventory's Id allocators, so new Ids stay unique across runs.
+ */
+public class InventoryStore implements Closeable {
+    private static final String[] SNAPSHOTS = {"inventory.snapshot.0", "inventory.snapshot.1"};
+    private static final String JOURNAL = "inventory.wal";
+    private static final String ID_MARKS = "inventory.ids";
+
+    private final Path directory;
+    private final InventoryJournal journal;
+    private final IdMarks marks;
+    private final boolean empty;
+    private int maxPartId;
+    private int maxProductId;
+    /**
+     * Index in SNAPSHOTS of the newest snapshot file, or -1 if there is none.
+     */
+    private int current;
+
+    private InventoryStore(Path directory, InventoryJournal journal, IdMarks marks, boolean empty, int maxPartId,
+            int maxProductId, int current) {
+        this.directory = directory;
+        this.journal = journal;
+        this.marks = marks;
+        this.empty = empty;
+        this.maxPartId = maxPartId;
+        this.maxProductId = maxProductId;
+        this.current = current;
+    }
+
+    /**
+     * Loads the Inventory from the newest snapshot in a directory, replays the journal on top of it,
+     * and registers the journal as an Inventory listener.
+     * The Id allocators are moved past every Id stored or reserved before, and their new marks are persisted.
+     * @param directory the data directory, created if it does not exist
+     * @param durability when recorded changes are forced to disk
+     * @param flushDelayMillis how long background flushes wait to batch more changes, ignored for SYNC
+     * @return The open store.
+     * @throws IOException if the files cannot be read or written
+     */
+    public static InventoryStore open(Path directory, WriteAheadLog.Durability durability, long flushDelayMillis)
+            throws IOException {
+        Files.createDirectories(directory);
+        Snapshot snapshot = null;
+        int current = -1;
+        for (int i = 0; i < SNAPSHOTS.length; i++) {
+            Path file = directory.resolve(SNAPSHOTS[i]);
+            if (!Files.exists(file)) {
+                continue;
+            }
+            try {
+                Snapshot candidate = Snapshot.open(file);
+                if (snapshot == null || candidate.getWalGeneration() > snapshot.getWalGeneration()) {
+                    snapshot = candidate;
+                    current = i;
+                }
+            } catch (IOException e) {
+                // a damaged snapshot is ignored; the other one and the journal are still usable
+            }
+        }
+        long covered = 0;
+        int maxPartId = -1;
+        int maxProductId = -1;
+        InventoryJournal journal;
+        if (snapshot != null) {
+            Snapshot loaded = snapshot;
+            Inventory.load(loaded.parts(), loaded.products(Inventory::lookupPart));
+            covered = loaded.getWalGeneration();
+            maxPartId = loaded.getMaxPartId();
+            maxProductId = loaded.getMaxProductId();
+            journal = InventoryJournal.open(directory.resolve(JOURNAL), durability, flushDelayMillis, covered, id -> {
+                Part part = Inventory.lookupPart(id);
+                return part != null ? part : loaded.loadPart(id);
+            });
+        } else {
+            journal = InventoryJournal.open(directory.resolve(JOURNAL), durability, flushDelayMillis, covered, id -> null);
+        }
+        Inventory.addListener(journal);
+        IdMarks marks = IdMarks.open(directory.resolve(ID_MARKS));
+        InventoryStore store = new InventoryStore(directory, journal, marks, snapshot == null && journal.isEmpty(),
+                maxPartId, maxProductId, current);
+        Inventory.getPartIds().advancePast(Math.max(marks.getPartMark() - 1, store.getMaxPartId()));
+        Inventory.getPartIds().setReserver(marks::reserveParts);
+        Inventory.getProductIds().advancePast(Math.max(marks.getProductMark() - 1, store.getMaxProductId()));
+        Inventory.getProductIds().setReserver(marks::reserveProducts);
+        return store;
+    }
+
+    /**
+     * Checks whether there was no snapshot and the journal held no changes when the store was opened.
+     * @return True on the first start.
+     */
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * Getter for the highest part Id ever stored, including deleted parts.
+     * @return max part Id, or -1 if there were none
+     */
+    public int getMaxPartId() {
+        return Math.max(maxPartId, journal.getMaxPartId());
+    }
+
+    /**
+     * Getter for the highest product Id ever stored, including deleted products.
+     * @return max product Id, or -1 if there were none
+     */
+    public int getMaxProductId() {
+        return Math.max(maxProductId, journal.getMaxProductId());
+    }
+
+    /**
+     * Getter for the journal that records changes made after the last snapshot.
+     * @return journal
+     */
+    public InventoryJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Writes the whole Inventory to a new snapshot and empties the journal.
+     * Changes made by other threads wait until the checkpoint is done.
+     * @throws IOException if the snapshot cannot be written
+     */
+    public synchronized void checkpoint() throws IOException {
+        try {
+            Inventory.inspect((parts, products) -> {
+                try {
+                    writeCheckpoint(parts, products);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return null;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void writeCheckpoint(List<Part> parts, List<Product> products) throws IOException {
+        WriteAheadLog log = journal.getLog();
+        log.sync();
+        int next = (current + 1) % SNAPSHOTS.length;
+        Path target = directory.resolve(SNAPSHOTS[next]);
+        Path temp = directory.resolve(SNAPSHOTS[next] + ".tmp");
+        maxPartId = getMaxPartId();
+        maxProductId = getMaxProductId();
+        try {
+            Snapshot.write(temp, log.getGeneration(), maxPartId, maxProductId, parts, products);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        current = next;
+        // after a crash before the reset, the new snapshot covers the journal's generation, so it is not replayed twice
+        log.reset();
+    }
+
+    /**
+     * Writes a final checkpoint and closes the journal.
+     * @throws IOException if the checkpoint or the last changes could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            checkpoint();
+        } finally {
+            Inventory.getPartIds().setReserver(null);
+            Inventory.getProductIds().setReserver(null);
+            Inventory.removeListener(journal);
+            journal.close();
+        }
+    }
+}
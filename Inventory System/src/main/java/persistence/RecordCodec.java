@@ -0,0 +1,146 @@
+package persistence;
+
+import model.InHouse;
+import model.Outsourced;
+import model.Part;
+import model.Product;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * This class writes and reads parts and products in the binary layout shared by the persistence files.
+ */
+public final class RecordCodec {
+    /**
+     * Kind byte written before an InHouse part.
+     */
+    public static final byte IN_HOUSE = 0;
+    /**
+     * Kind byte written before an Outsourced part.
+     */
+    public static final byte OUTSOURCED = 1;
+
+    private RecordCodec() {
+    }
+
+    /**
+     * Writes a part, including its machine Id or company name.
+     * @param out where to write
+     * @param part the part to write
+     * @throws IOException if writing fails
+     */
+    public static void writePart(DataOutput out, Part part) throws IOException {
+        if (part instanceof InHouse) {
+            out.writeByte(IN_HOUSE);
+        } else if (part instanceof Outsourced) {
+            out.writeByte(OUTSOURCED);
+        } else {
+            throw new IllegalArgumentException("Unknown kind of part: " + part.getClass().getName());
+        }
+        out.writeInt(part.getId());
+        out.writeUTF(part.getName());
+        out.writeDouble(part.getPrice());
+        out.writeInt(part.getStock());
+        out.writeInt(part.getMin());
+        out.writeInt(part.getMax());
+        if (part instanceof InHouse) {
+            out.writeInt(((InHouse) part).getMachineId());
+        } else {
+            out.writeUTF(((Outsourced) part).getCompanyName());
+        }
+    }
+
+    /**
+     * Reads a part written by writePart.
+     * @param in where to read
+     * @return The part, an InHouse or Outsourced object.
+     * @throws IOException if reading fails or the kind byte is unknown
+     */
+    public static Part readPart(DataInput in) throws IOException {
+        byte kind = in.readByte();
+        int id = in.readInt();
+        String name = in.readUTF();
+        double price = in.readDouble();
+        int stock = in.readInt();
+        int min = in.readInt();
+        int max = in.readInt();
+        if (kind == IN_HOUSE) {
+            return new InHouse(id, name, price, stock, min, max, in.readInt());
+        } else if (kind == OUTSOURCED) {
+            return new Outsourced(id, name, price, stock, min, max, in.readUTF());
+        }
+        throw new IOException("Unknown kind of part: " + kind);
+    }
+
+    /**
+     * Writes a product followed by the Ids of its associated parts, duplicates included.
+     * @param out where to write
+     * @param product the product to write
+     * @throws IOException if writing fails
+     */
+    public static void writeProduct(DataOutput out, Product product) throws IOException {
+        out.writeInt(product.getId());
+        out.writeUTF(product.getName());
+        out.writeDouble(product.getPrice());
+        out.writeInt(product.getStock());
+        out.writeInt(product.getMin());
+        out.writeInt(product.getMax());
+        List<Part> associated = product.getAllAssociatedParts();
+        out.writeInt(associated.size());
+        for (Part part : associated) {
+            out.writeInt(part.getId());
+        }
+    }
+
+    /**
+     * Reads a product written by writeProduct.
+     * @param in where to read
+     * @param parts finds the part for an associated part Id, or returns null if the part is unknown
+     * @return The product with every associated part that could be found.
+     * @throws IOException if reading fails
+     */
+    public static Product readProduct(DataInput in, IntFunction<Part> parts) throws IOException {
+        Product product = new Product(in.readInt(), in.readUTF(), in.readDouble(), in.readInt(), in.readInt(), in.readInt());
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            Part part = parts.apply(in.readInt());
+            if (part != null) {
+                product.addAssociatedPart(part);
+            }
+        }
+        return product;
+    }
+
+    /**
+     * Writes the sub-assemblies of a product: their count, then the Id and quantity of each.
+     * @param out where to write
+     * @param product the product whose sub-assemblies to write
+     * @throws IOException if writing fails
+     */
+    public static void writeSubAssemblies(DataOutput out, Product product) throws IOException {
+        Map<Integer, Integer> subAssemblies = product.getSubAssemblies();
+        out.writeInt(subAssemblies.size());
+        for (Map.Entry<Integer, Integer> subAssembly : subAssemblies.entrySet()) {
+            out.writeInt(subAssembly.getKey());
+            out.writeInt(subAssembly.getValue());
+        }
+    }
+
+    /**
+     * Reads sub-assemblies written by writeSubAssemblies into a product.
+     * @param in where to read
+     * @param product the product to add them to
+     * @throws IOException if reading fails
+     */
+    public static void readSubAssemblies(DataInput in, Product product) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            product.addSubAssembly(in.readInt(), in.readInt());
+        }
+    }
+}
@@ -0,0 +1,448 @@
+package persistence;
+
+import model.Part;
+import model.Product;
+import model.RecordSource;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * This class is a binary image of the whole Inventory, read through a memory-mapped file so that loading it
+ * only reads the record Ids; every record is decoded on first access.
+ *
+ * The file starts with a header and holds a part section and a product section. Each section is the records
+ * in RecordCodec format followed by three tables: the record Ids in list order, the file offset of each record,
+ * and the Ids with their positions sorted by Id, so a record can be found by binary search.
+ * Parts that products refer to but that are no longer in the Inventory are stored after the Inventory parts
+ * in the part section, so products keep them after a reload.
+ */
+public final class Snapshot {
+    private static final int MAGIC = 0x49534E50;
+    /**
+     * Version 2 follows each product with its sub-assemblies; version 1 files, without them, are still read.
+     */
+    private static final int VERSION = 2;
+    /**
+     * Magic, version, journal generation, file length, part count, orphan part count, product count,
+     * max part Id, max product Id and the offsets of the part and product tables.
+     */
+    private static final int HEADER = 52;
+
+    private final MappedByteBuffer buffer;
+    private final int version;
+    private final long walGeneration;
+    private final int partCount;
+    private final int maxPartId;
+    private final int maxProductId;
+    private final Section parts;
+    private final Section products;
+
+    private Snapshot(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a snapshot file");
+        }
+        version = buffer.getInt(4);
+        if (version != 1 && version != VERSION) {
+            throw new IOException("Unsupported snapshot version: " + version);
+        }
+        walGeneration = buffer.getLong(8);
+        if (buffer.getLong(16) != buffer.capacity()) {
+            throw new IOException("Snapshot file is incomplete");
+        }
+        partCount = buffer.getInt(24);
+        int orphanCount = buffer.getInt(28);
+        int productCount = buffer.getInt(32);
+        maxPartId = buffer.getInt(36);
+        maxProductId = buffer.getInt(40);
+        if (partCount < 0 || orphanCount < 0 || productCount < 0) {
+            throw new IOException("Snapshot file is corrupt");
+        }
+        parts = new Section(buffer.getInt(44), partCount + orphanCount);
+        products = new Section(buffer.getInt(48), productCount);
+    }
+
+    /**
+     * Writes a snapshot file, replacing any file already there.
+     * Callers should write to a temporary file and move it into place, so a crash never leaves a partial snapshot.
+     * @param file the file to write
+     * @param walGeneration the journal generation whose records are all included in the snapshot
+     * @param maxPartId the highest part Id handed out so far, including deleted parts
+     * @param maxProductId the highest product Id handed out so far, including deleted products
+     * @param parts the Inventory parts, in list order
+     * @param products the Inventory products, in list order
+     * @throws IOException if the file cannot be written or is larger than 2 GB
+     */
+    public static void write(Path file, long walGeneration, int maxPartId, int maxProductId,
+            List<? extends Part> parts, List<? extends Product> products) throws IOException {
+        int[] partIds = new int[parts.size()];
+        for (int i = 0; i < partIds.length; i++) {
+            partIds[i] = parts.get(i).getId();
+            maxPartId = Math.max(maxPartId, partIds[i]);
+        }
+        Arrays.sort(partIds);
+        // parts that products still list after they were deleted, by Id, each stored once
+        Map<Integer, Part> orphans = new LinkedHashMap<>();
+        for (Product product : products) {
+            maxProductId = Math.max(maxProductId, product.getId());
+            for (Part part : product.getAllAssociatedParts()) {
+                if (Arrays.binarySearch(partIds, part.getId()) < 0) {
+                    orphans.putIfAbsent(part.getId(), part);
+                    maxPartId = Math.max(maxPartId, part.getId());
+                }
+            }
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(HEADER);
+            CountingOutput out = new CountingOutput(channel);
+            int[] partOffsets = new int[parts.size() + orphans.size()];
+            int[] allPartIds = new int[partOffsets.length];
+            int n = 0;
+            for (Part part : parts) {
+                allPartIds[n] = part.getId();
+                partOffsets[n++] = out.offset();
+                RecordCodec.writePart(out.data, part);
+            }
+            for (Part part : orphans.values()) {
+                allPartIds[n] = part.getId();
+                partOffsets[n++] = out.offset();
+                RecordCodec.writePart(out.data, part);
+            }
+            int[] productOffsets = new int[products.size()];
+            int[] productIds = new int[productOffsets.length];
+            n = 0;
+            for (Product product : products) {
+                productIds[n] = product.getId();
+                productOffsets[n++] = out.offset();
+                RecordCodec.writeProduct(out.data, product);
+                RecordCodec.writeSubAssemblies(out.data, product);
+            }
+            int partTable = out.offset();
+            writeTables(out, allPartIds, partOffsets);
+            int productTable = out.offset();
+            writeTables(out, productIds, productOffsets);
+            long length = out.offset();
+            out.data.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER).putInt(MAGIC).putInt(VERSION).putLong(walGeneration)
+                    .putLong(length).putInt(parts.size()).putInt(orphans.size()).putInt(products.size())
+                    .putInt(maxPartId).putInt(maxProductId).putInt(partTable).putInt(productTable);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Maps a snapshot file into memory and checks its header. No records are read.
+     * @param file the snapshot file
+     * @return The snapshot.
+     * @throws IOException if the file cannot be read, is larger than 2 GB or is not a complete snapshot
+     */
+    public static Snapshot open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot file is larger than 2 GB: " + file);
+            }
+            // the mapping stays valid after the channel is closed
+            return new Snapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    /**
+     * Getter for the journal generation whose records are all included in the snapshot.
+     * @return journal generation
+     */
+    public long getWalGeneration() {
+        return walGeneration;
+    }
+
+    /**
+     * Getter for the highest part Id handed out before the snapshot was written.
+     * @return max part Id, or -1 if there were none
+     */
+    public int getMaxPartId() {
+        return maxPartId;
+    }
+
+    /**
+     * Getter for the highest product Id handed out before the snapshot was written.
+     * @return max product Id, or -1 if there were none
+     */
+    public int getMaxProductId() {
+        return maxProductId;
+    }
+
+    /**
+     * Gets the Inventory parts as a source for Inventory.load. Each part is decoded when it is loaded.
+     * @return The parts, in the order they were written.
+     */
+    public RecordSource<Part> parts() {
+        return new RecordSource<>() {
+            @Override
+            public int size() {
+                return partCount;
+            }
+
+            @Override
+            public int idAt(int index) {
+                return parts.idAt(index);
+            }
+
+            @Override
+            public Part load(int id) {
+                return loadPart(id);
+            }
+        };
+    }
+
+    /**
+     * Gets the products as a source for Inventory.load. Each product is decoded when it is loaded.
+     * @param associated finds the part for an associated part Id; loadPart is used when it returns null
+     * @return The products, in the order they were written.
+     */
+    public RecordSource<Product> products(IntFunction<Part> associated) {
+        IntFunction<Part> resolve = id -> {
+            Part part = associated.apply(id);
+            return part != null ? part : loadPart(id);
+        };
+        return new RecordSource<>() {
+            @Override
+            public int size() {
+                return products.count;
+            }
+
+            @Override
+            public int idAt(int index) {
+                return products.idAt(index);
+            }
+
+            @Override
+            public Product load(int id) {
+                int offset = products.offsetOf(id);
+                if (offset < 0) {
+                    return null;
+                }
+                try {
+                    DataInputStream in = input(offset);
+                    Product product = RecordCodec.readProduct(in, resolve);
+                    if (version > 1) {
+                        RecordCodec.readSubAssemblies(in, product);
+                    }
+                    return product;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Decodes a part by Id, including parts that were only kept because products refer to them.
+     * Every call decodes a new part object.
+     * @param id the part Id
+     * @return The part, otherwise null if the snapshot holds no part with the Id.
+     */
+    public Part loadPart(int id) {
+        int offset = parts.offsetOf(id);
+        if (offset < 0) {
+            return null;
+        }
+        try {
+            return RecordCodec.readPart(input(offset));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Getter for the number of Inventory parts, not counting parts kept only for products.
+     * @return part count
+     */
+    int getPartCount() {
+        return partCount;
+    }
+
+    /**
+     * Getter for the version of the file format, 1 for files written before products had sub-assemblies.
+     * @return version
+     */
+    int getVersion() {
+        return version;
+    }
+
+    /**
+     * Getter for the number of products.
+     * @return product count
+     */
+    int getProductCount() {
+        return products.count;
+    }
+
+    /**
+     * Gets the file offset of a part record, in RecordCodec format.
+     * @param index the position of the part in the part section
+     * @return The offset.
+     */
+    int partOffsetAt(int index) {
+        return parts.offsetAt(index);
+    }
+
+    /**
+     * Gets the file offset of a product record, in RecordCodec format.
+     * @param index the position of the product in the product section
+     * @return The offset.
+     */
+    int productOffsetAt(int index) {
+        return products.offsetAt(index);
+    }
+
+    /**
+     * Gets the mapped file, for reading records without decoding them into objects.
+     * @return A read-only view of the whole file.
+     */
+    ByteBuffer bytes() {
+        return buffer.asReadOnlyBuffer();
+    }
+
+    private DataInputStream input(int offset) {
+        return new DataInputStream(new BufferInput(buffer.duplicate().position(offset)));
+    }
+
+    private static void writeTables(CountingOutput out, int[] ids, int[] offsets) throws IOException {
+        for (int id : ids) {
+            out.data.writeInt(id);
+        }
+        for (int offset : offsets) {
+            out.data.writeInt(offset);
+        }
+        long[] sorted = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            sorted[i] = (long) ids[i] << 32 | i;
+        }
+        Arrays.sort(sorted);
+        for (long entry : sorted) {
+            out.data.writeLong(entry);
+        }
+    }
+
+    /**
+     * The tables of one section: Ids in list order, record offsets in list order and Id-position pairs sorted by Id.
+     */
+    private final class Section {
+        private final int count;
+        private final int ids;
+        private final int offsets;
+        private final int sorted;
+
+        private Section(int table, int count) throws IOException {
+            this.count = count;
+            ids = table;
+            offsets = ids + count * Integer.BYTES;
+            sorted = offsets + count * Integer.BYTES;
+            if (table < HEADER || (long) sorted + (long) count * Long.BYTES > buffer.capacity()) {
+                throw new IOException("Snapshot file is corrupt");
+            }
+        }
+
+        private int idAt(int index) {
+            return buffer.getInt(ids + index * Integer.BYTES);
+        }
+
+        private int offsetAt(int index) {
+            return buffer.getInt(offsets + index * Integer.BYTES);
+        }
+
+        /**
+         * Finds the record offset for an Id by binary search over the sorted table.
+         * @param id the record Id
+         * @return The offset, otherwise -1.
+         */
+        private int offsetOf(int id) {
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                long entry = buffer.getLong(sorted + mid * Long.BYTES);
+                int midId = (int) (entry >> 32);
+                if (midId < id) {
+                    low = mid + 1;
+                } else if (midId > id) {
+                    high = mid - 1;
+                } else {
+                    return buffer.getInt(offsets + (int) entry * Integer.BYTES);
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * A data stream over a file channel that knows the file offset of the next byte written.
+     */
+    private static final class CountingOutput {
+        private final DataOutputStream data;
+
+        private CountingOutput(FileChannel channel) {
+            data = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+        }
+
+        private int offset() throws IOException {
+            // DataOutputStream.size stops counting at Integer.MAX_VALUE
+            int written = data.size();
+            if (written > Integer.MAX_VALUE - HEADER) {
+                throw new IOException("Snapshot would be larger than 2 GB");
+            }
+            return HEADER + written;
+        }
+    }
+
+    /**
+     * An input stream over a byte buffer, used to decode records straight from the mapped file.
+     */
+    private static final class BufferInput extends InputStream {
+        private final ByteBuffer buffer;
+
+        private BufferInput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+    }
+}
@@ -0,0 +1,513 @@
+package persistence;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * This class is an append-only log of checksummed records, used to rebuild state after a restart.
+ * Every record is stored as its payload length, a CRC32C of its type and payload, the type byte and the payload.
+ * When the log is opened, all complete records are replayed in order and a torn or corrupt tail is cut off.
+ * The file header carries a generation number that grows every time the log is reset after a checkpoint,
+ * so a log whose records are already covered by a snapshot can be recognized and skipped.
+ */
+public class WriteAheadLog implements Closeable {
+    /**
+     * When an appended record is forced to disk.
+     */
+    public enum Durability {
+        /**
+         * Every append writes and forces its record before it returns.
+         */
+        SYNC,
+        /**
+         * Appends wait for a background flush, and all records appended while a flush is running
+         * share the next force (group commit). A caller that appends while holding a lock of its own should
+         * enqueue under it and call awaitDurable once it is released, so other threads can append to the same
+         * force meanwhile.
+         */
+        GROUP,
+        /**
+         * Appends return at once and a background flush forces them shortly after.
+         */
+        ASYNC
+    }
+
+    /**
+     * Called for every record found while the log is opened.
+     */
+    @FunctionalInterface
+    public interface RecordHandler {
+        /**
+         * Applies one record.
+         * @param type the record type
+         * @param payload the record payload
+         * @throws IOException if the payload cannot be read
+         */
+        void apply(byte type, DataInput payload) throws IOException;
+    }
+
+    private static final int MAGIC = 0x494E564C;
+    private static final int VERSION = 2;
+    /**
+     * Header size of version 1 files, which had no generation and are read as generation 1.
+     */
+    private static final int FILE_HEADER_V1 = 8;
+    private static final int FILE_HEADER = 16;
+    private static final int RECORD_HEADER = 9;
+    private static final int MAX_PAYLOAD = 64 << 20;
+
+    private final FileChannel channel;
+    private final Durability durability;
+    private final long flushDelayNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition work = lock.newCondition();
+    private final Condition flushed = lock.newCondition();
+    private final Thread flusher;
+    private ByteBuffer pending = ByteBuffer.allocate(64 << 10);
+    private ByteBuffer spare = ByteBuffer.allocate(64 << 10);
+    private long appended;
+    private long durable;
+    private int syncWaiters;
+    private long replayed;
+    private long generation;
+    private IOException failure;
+    private boolean closed;
+
+    private WriteAheadLog(FileChannel channel, Durability durability, long flushDelayMillis) {
+        this.channel = channel;
+        this.durability = durability;
+        this.flushDelayNanos = TimeUnit.MILLISECONDS.toNanos(flushDelayMillis);
+        if (durability == Durability.SYNC) {
+            flusher = null;
+        } else {
+            flusher = new Thread(this::runFlusher, "wal-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+    }
+
+    /**
+     * Opens a log file, creating it if needed, and replays every complete record in it.
+     * @param file the log file
+     * @param durability when appended records are forced to disk
+     * @param flushDelayMillis how long the background flush waits for more records before forcing, ignored for SYNC
+     * @param handler applies each replayed record
+     * @return The open log, positioned after the last complete record.
+     * @throws IOException if the file cannot be opened or is not a log file
+     */
+    public static WriteAheadLog open(Path file, Durability durability, long flushDelayMillis, RecordHandler handler)
+            throws IOException {
+        return open(file, durability, flushDelayMillis, 0, handler);
+    }
+
+    /**
+     * Opens a log file, creating it if needed, and replays every complete record in it
+     * unless its generation is already covered by a snapshot, in which case the log is emptied instead.
+     * @param file the log file
+     * @param durability when appended records are forced to disk
+     * @param flushDelayMillis how long the background flush waits for more records before forcing, ignored for SYNC
+     * @param coveredGeneration the highest generation whose records are already applied, 0 if none
+     * @param handler applies each replayed record
+     * @return The open log, positioned after the last complete record.
+     * @throws IOException if the file cannot be opened or is not a log file
+     */
+    public static WriteAheadLog open(Path file, Durability durability, long flushDelayMillis, long coveredGeneration,
+            RecordHandler handler) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            long generation = channel.size() == 0 ? coveredGeneration : readGeneration(channel);
+            long[] tail;
+            if (generation <= coveredGeneration) {
+                generation = coveredGeneration + 1;
+                tail = new long[] {writeHeader(channel, generation), 0};
+            } else {
+                tail = replay(channel, handler);
+            }
+            channel.truncate(tail[0]);
+            channel.position(tail[0]);
+            WriteAheadLog log = new WriteAheadLog(channel, durability, flushDelayMillis);
+            log.replayed = tail[1];
+            log.generation = generation;
+            return log;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Appends a record. Depending on the durability mode the record is on disk when this returns.
+     * @param type the record type
+     * @param payload the record payload
+     * @throws UncheckedIOException if the log could not be written
+     */
+    public void append(byte type, byte[] payload) {
+        long sequence = enqueue(type, payload);
+        if (durability == Durability.GROUP) {
+            awaitDurable(sequence);
+        }
+    }
+
+    /**
+     * Appends a record without waiting for a background flush to force it. In SYNC mode the record is still
+     * written and forced before this returns.
+     * @param type the record type
+     * @param payload the record payload
+     * @return The sequence number of the record, to pass to awaitDurable.
+     * @throws UncheckedIOException if the log could not be written
+     */
+    public long enqueue(byte type, byte[] payload) {
+        if (payload.length > MAX_PAYLOAD) {
+            throw new IllegalArgumentException("Record is too large: " + payload.length + " bytes");
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(type);
+        crc.update(payload);
+        lock.lock();
+        try {
+            checkUsable();
+            pending = ensureRoom(pending, RECORD_HEADER + payload.length);
+            pending.putInt(payload.length).putInt((int) crc.getValue()).put(type).put(payload);
+            long sequence = ++appended;
+            if (durability == Durability.SYNC) {
+                writePending();
+            } else {
+                work.signal();
+            }
+            return sequence;
+        } catch (IOException e) {
+            failure = e;
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until a record returned by enqueue, and every record before it, is forced to disk.
+     * @param sequence the sequence number of the record
+     * @throws UncheckedIOException if the log could not be written
+     */
+    public void awaitDurable(long sequence) {
+        lock.lock();
+        try {
+            awaitFlushed(sequence);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until every record appended so far is forced to disk.
+     * @throws UncheckedIOException if the log could not be written
+     */
+    public void sync() {
+        lock.lock();
+        try {
+            checkUsable();
+            if (durability == Durability.SYNC) {
+                return;
+            }
+            syncWaiters++;
+            try {
+                work.signal();
+                awaitFlushed(appended);
+            } finally {
+                syncWaiters--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Empties the log after every record appended so far is covered by a snapshot, and moves it to the next generation.
+     * Records appended while this runs wait until it is done and belong to the new generation.
+     * @throws UncheckedIOException if the log could not be written
+     */
+    public void reset() {
+        lock.lock();
+        try {
+            checkUsable();
+            if (durability != Durability.SYNC) {
+                syncWaiters++;
+                try {
+                    work.signal();
+                    awaitFlushed(appended);
+                } finally {
+                    syncWaiters--;
+                }
+            }
+            // the flusher is idle now: it only leaves the lock while writing, and nothing is left to write
+            writeHeader(channel, generation + 1);
+            channel.truncate(FILE_HEADER);
+            channel.position(FILE_HEADER);
+            channel.force(true);
+            generation++;
+        } catch (IOException e) {
+            failure = e;
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Getter for the generation of the log, which grows by one on every reset.
+     * @return generation
+     */
+    public long getGeneration() {
+        lock.lock();
+        try {
+            return generation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Getter for the number of records replayed when the log was opened.
+     * @return replayed records
+     */
+    public long getReplayedCount() {
+        return replayed;
+    }
+
+    /**
+     * Getter for the durability mode.
+     * @return durability
+     */
+    public Durability getDurability() {
+        return durability;
+    }
+
+    /**
+     * Forces every appended record to disk and closes the file.
+     * @throws IOException if the last records could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            work.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            if (flusher != null) {
+                flusher.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            channel.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Background loop for GROUP and ASYNC: waits for records, lets more arrive for the flush delay,
+     * then writes and forces everything pending as one batch.
+     */
+    private void runFlusher() {
+        lock.lock();
+        try {
+            while (true) {
+                while (pending.position() == 0 && !closed) {
+                    work.awaitUninterruptibly();
+                }
+                if (pending.position() == 0) {
+                    return;
+                }
+                long deadline = System.nanoTime() + flushDelayNanos;
+                long left;
+                while (!closed && syncWaiters == 0 && (left = deadline - System.nanoTime()) > 0) {
+                    try {
+                        work.awaitNanos(left);
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                }
+                ByteBuffer batch = pending;
+                long upTo = appended;
+                pending = spare;
+                spare = null;
+                lock.unlock();
+                IOException error = null;
+                try {
+                    write(batch);
+                } catch (IOException e) {
+                    error = e;
+                } finally {
+                    lock.lock();
+                }
+                batch.clear();
+                spare = batch;
+                if (error != null) {
+                    failure = error;
+                    flushed.signalAll();
+                    return;
+                }
+                durable = upTo;
+                flushed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes and forces the pending records while holding the lock. Used in SYNC mode.
+     * @throws IOException if writing fails
+     */
+    private void writePending() throws IOException {
+        write(pending);
+        pending.clear();
+        durable = appended;
+    }
+
+    private void write(ByteBuffer batch) throws IOException {
+        batch.flip();
+        while (batch.hasRemaining()) {
+            channel.write(batch);
+        }
+        channel.force(false);
+    }
+
+    private void awaitFlushed(long sequence) {
+        while (durable < sequence && failure == null) {
+            flushed.awaitUninterruptibly();
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("Write-ahead log failed earlier", failure);
+        }
+    }
+
+    private void checkUsable() {
+        if (failure != null) {
+            throw new UncheckedIOException("Write-ahead log failed earlier", failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("Write-ahead log is closed");
+        }
+    }
+
+    private static ByteBuffer ensureRoom(ByteBuffer buffer, int bytes) {
+        if (buffer.remaining() >= bytes) {
+            return buffer;
+        }
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+        buffer.flip();
+        bigger.put(buffer);
+        return bigger;
+    }
+
+    private static long writeHeader(FileChannel channel, long generation) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER).putInt(MAGIC).putInt(VERSION).putLong(generation);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+        channel.force(true);
+        return FILE_HEADER;
+    }
+
+    /**
+     * Reads the generation from the file header.
+     * @param channel the log file
+     * @return The generation, 1 for version 1 files.
+     * @throws IOException if the file header is wrong
+     */
+    private static long readGeneration(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                break;
+            }
+        }
+        header.flip();
+        if (header.remaining() < FILE_HEADER_V1 || header.getInt() != MAGIC) {
+            throw new IOException("Not a write-ahead log file");
+        }
+        int version = header.getInt();
+        if (version == 1) {
+            return 1;
+        }
+        if (version != VERSION || header.remaining() < Long.BYTES) {
+            throw new IOException("Unsupported write-ahead log version: " + version);
+        }
+        return header.getLong();
+    }
+
+    /**
+     * Reads every complete, intact record after the file header and hands it to the handler.
+     * @param channel the log file
+     * @param handler applies each record
+     * @return The file offset just after the last good record, and the number of records replayed.
+     * @throws IOException if a record cannot be applied
+     */
+    private static long[] replay(FileChannel channel, RecordHandler handler) throws IOException {
+        channel.position(0);
+        InputStream stream = new BufferedInputStream(Channels.newInputStream(channel), 1 << 16);
+        DataInputStream in = new DataInputStream(stream);
+        in.readInt();
+        long offset = FILE_HEADER_V1;
+        if (in.readInt() != 1) {
+            in.readLong();
+            offset = FILE_HEADER;
+        }
+        long count = 0;
+        CRC32C crc = new CRC32C();
+        while (true) {
+            int length;
+            int checksum;
+            byte type;
+            byte[] payload;
+            try {
+                length = in.readInt();
+                checksum = in.readInt();
+                type = in.readByte();
+                if (length < 0 || length > MAX_PAYLOAD) {
+                    break;
+                }
+                payload = new byte[length];
+                in.readFully(payload);
+            } catch (EOFException e) {
+                break;
+            }
+            crc.reset();
+            crc.update(type);
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            handler.apply(type, new DataInputStream(new ByteArrayInputStream(payload)));
+            offset += RECORD_HEADER + length;
+            count++;
+        }
+        return new long[] {offset, count};
+    }
+}
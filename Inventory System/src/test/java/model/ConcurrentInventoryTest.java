@@ -0,0 +1,164 @@
+package model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * This class runs readers and writers against the Inventory at the same time and checks that no update is lost
+ * and that the Id index, the name index and the list still agree afterwards.
+ * Meant to be run with -Dinventory.concurrent=true as well as without it; only the thread-safe calls are used.
+ */
+class ConcurrentInventoryTest {
+    private static final int WRITERS = 4;
+    private static final int READERS = 4;
+    private static final int PARTS = 2_000;
+    private static final int UPDATES = 5_000;
+
+    @BeforeEach
+    void addParts() {
+        TestSources.emptyInventory();
+        List<Part> parts = new ArrayList<>(PARTS);
+        for (int id = 1; id <= PARTS; id++) {
+            parts.add(new InHouse(id, name(id, 0), 1, 0, 0, Integer.MAX_VALUE, 1));
+        }
+        Inventory.addParts(parts);
+    }
+
+    @Test
+    void readersAndWritersKeepTheIndexesConsistent() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS + READERS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        Set<Integer> added = ConcurrentHashMap.newKeySet();
+        Set<Integer> deleted = ConcurrentHashMap.newKeySet();
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int w = 0; w < WRITERS; w++) {
+                int writer = w;
+                writers.add(pool.submit(() -> {
+                    start.await();
+                    write(writer, added, deleted);
+                    return null;
+                }));
+            }
+            List<Future<?>> readers = new ArrayList<>();
+            for (int r = 0; r < READERS; r++) {
+                long seed = r;
+                readers.add(pool.submit(() -> {
+                    start.await();
+                    read(seed, writing);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> writer : writers) {
+                writer.get(2, TimeUnit.MINUTES);
+            }
+            writing.set(false);
+            for (Future<?> reader : readers) {
+                reader.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Inventory.inspect((parts, products) -> {
+            assertEquals(PARTS + added.size() - deleted.size(), parts.size());
+            for (Part part : parts) {
+                assertSame(part, Inventory.lookupPart(part.getId()));
+            }
+            return null;
+        });
+        for (int id = 1; id <= PARTS; id++) {
+            Part part = Inventory.lookupPart(id);
+            assertNotNull(part);
+            // each writer owns the Ids equal to its number modulo WRITERS and raises the stock by one per update
+            int updates = part.getStock();
+            assertEquals(name(id, updates), part.getName());
+            assertArrayEquals(new int[] {id}, Inventory.lookupPartIds(name(id, updates)));
+            if (updates > 0) {
+                assertEquals(0, Inventory.lookupPartIds(name(id, updates - 1)).length);
+            }
+        }
+        long stock = Inventory.inspect((parts, products) -> parts.stream()
+                .filter(part -> part.getId() <= PARTS).mapToLong(Part::getStock).sum());
+        assertEquals((long) WRITERS * UPDATES, stock);
+        for (int id : deleted) {
+            assertNull(Inventory.lookupPart(id));
+            assertEquals(0, Inventory.lookupPartIds(name(id, 0)).length);
+        }
+        for (int id : added) {
+            if (!deleted.contains(id)) {
+                assertArrayEquals(new int[] {id}, Inventory.lookupPartIds(name(id, 0)));
+            }
+        }
+    }
+
+    /**
+     * Updates the writer's own parts, raising the stock and renaming each time, and adds and deletes parts.
+     */
+    private static void write(int writer, Set<Integer> added, Set<Integer> deleted) {
+        SplittableRandom random = new SplittableRandom(100 + writer);
+        List<Integer> mine = new ArrayList<>();
+        for (int i = 0; i < UPDATES; i++) {
+            int id = writer + 1 + WRITERS * random.nextInt(PARTS / WRITERS);
+            Part part = Inventory.lookupPart(id);
+            int stock = part.getStock() + 1;
+            Inventory.updatePart(id, new InHouse(id, name(id, stock), 1, stock, 0, Integer.MAX_VALUE, 1));
+            if (i % 10 == 0) {
+                int newId = Inventory.getPartIds().next();
+                Inventory.addPart(new InHouse(newId, name(newId, 0), 1, 0, 0, 10, 1));
+                added.add(newId);
+                mine.add(newId);
+            }
+            if (i % 25 == 0 && !mine.isEmpty()) {
+                int oldId = mine.remove(random.nextInt(mine.size()));
+                assertEquals(1, Inventory.deleteParts(new int[] {oldId}));
+                deleted.add(oldId);
+            }
+        }
+    }
+
+    /**
+     * Looks parts up by Id and by name while the writers run, checking each answer on its own.
+     */
+    private static void read(long seed, AtomicBoolean writing) {
+        SplittableRandom random = new SplittableRandom(seed);
+        while (writing.get()) {
+            int id = 1 + random.nextInt(PARTS);
+            Part part = Inventory.lookupPart(id);
+            assertNotNull(part);
+            assertEquals(id, part.getId());
+            assertTrue(part.getName().startsWith("P" + id + "-"));
+            for (int found : Inventory.lookupPartIds("P" + id + "-")) {
+                assertEquals(id, found);
+            }
+        }
+    }
+
+    /**
+     * Gets the name a part has after a number of updates. The final dot keeps one name from containing another.
+     */
+    private static String name(int id, int updates) {
+        return "P" + id + "-" + updates + ".";
+    }
+}
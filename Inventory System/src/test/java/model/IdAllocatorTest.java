@@ -0,0 +1,100 @@
+package model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * This class tests that the Id allocators never hand out an Id twice, including Ids that records were added with.
+ */
+class IdAllocatorTest {
+    @BeforeEach
+    void emptyInventory() {
+        TestSources.emptyInventory();
+    }
+
+    @Test
+    void explicitIdInsideLeasedBlockIsNotHandedOut() {
+        IdAllocator ids = new IdAllocator(1, 64, 0);
+        assertEquals(1, ids.next());
+        ids.advancePast(6);
+        Set<Integer> handedOut = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            int id = ids.next();
+            assertNotEquals(6, id);
+            assertTrue(handedOut.add(id), "Id " + id + " was handed out twice");
+        }
+    }
+
+    @Test
+    void explicitIdInAnotherThreadsBlockIsNotHandedOut() throws InterruptedException {
+        IdAllocator ids = new IdAllocator(1, 64, 0);
+        int[] first = new int[1];
+        Thread leasing = new Thread(() -> first[0] = ids.next());
+        leasing.start();
+        leasing.join();
+        ids.advancePast(first[0] + 10);
+        Set<Integer> handedOut = new HashSet<>();
+        Thread later = new Thread(() -> {
+            for (int i = 0; i < 200; i++) {
+                handedOut.add(ids.next());
+            }
+        });
+        later.start();
+        later.join();
+        assertEquals(200, handedOut.size());
+        assertTrue(handedOut.stream().allMatch(id -> id > first[0] + 10));
+    }
+
+    @Test
+    void idBelowEveryLeaseKeepsTheLease() {
+        IdAllocator ids = new IdAllocator(100, 64, 0);
+        assertEquals(100, ids.next());
+        ids.advancePast(50);
+        assertEquals(101, ids.next());
+    }
+
+    @Test
+    void reserverIsToldBeforeIdsAreHandedOut() {
+        IdAllocator ids = new IdAllocator(1, 64, 100);
+        int[] mark = new int[1];
+        ids.setReserver(reserved -> mark[0] = reserved);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(ids.next() < mark[0]);
+        }
+    }
+
+    @Test
+    void inventoryNeverHandsOutAnIdAPartWasAddedWith() {
+        int first = Inventory.getPartIds().next();
+        Inventory.addPart(new InHouse(first, "First", 1, 5, 1, 10, 1));
+        int explicit = first + 5;
+        Inventory.addPart(new InHouse(explicit, "Explicit", 1, 5, 1, 10, 1));
+        for (int i = 0; i < 200; i++) {
+            int id = Inventory.getPartIds().next();
+            assertNotEquals(explicit, id);
+            Inventory.addPart(new InHouse(id, "Part " + i, 1, 5, 1, 10, 1));
+        }
+        assertEquals(202, Inventory.getAllParts().size());
+    }
+
+    @Test
+    void duplicateIdsAreRejected() {
+        Inventory.addPart(new InHouse(7, "Bolt", 1, 5, 1, 10, 1));
+        assertThrows(IllegalArgumentException.class, () -> Inventory.addPart(new InHouse(7, "Nut", 1, 5, 1, 10, 1)));
+        assertThrows(IllegalArgumentException.class, () -> Inventory.addParts(List.of(
+                new InHouse(8, "Nut", 1, 5, 1, 10, 1), new InHouse(8, "Washer", 1, 5, 1, 10, 1))));
+        Inventory.addProduct(new Product(3, "Bike", 10, 1, 0, 5));
+        assertThrows(IllegalArgumentException.class, () -> Inventory.addProduct(new Product(3, "Car", 10, 1, 0, 5)));
+        assertEquals(1, Inventory.getAllParts().size());
+        assertEquals(1, Inventory.getAllProducts().size());
+    }
+}
@@ -0,0 +1,53 @@
+package model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * This class tests that a batch is made whole or not at all, and only moves the Id allocators when it is made.
+ */
+class InventoryBatchTest {
+    @BeforeEach
+    void emptyInventory() {
+        TestSources.emptyInventory();
+    }
+
+    @Test
+    void rejectedBatchChangesNothing() {
+        Inventory.addPart(new InHouse(1, "Bolt", 1, 5, 1, 10, 1));
+        InventoryBatch batch = new InventoryBatch().addPart(new InHouse(2, "Nut", 1, 5, 1, 10, 1)).deletePart(99);
+        assertThrows(IllegalArgumentException.class, () -> Inventory.commit(batch));
+        assertNull(Inventory.lookupPart(2));
+        assertEquals(1, Inventory.getAllParts().size());
+    }
+
+    @Test
+    void rejectedBatchLeavesIdsAlone() {
+        int before = Inventory.getPartIds().getNextUnleased();
+        assertThrows(IllegalArgumentException.class,
+                () -> Inventory.commit(new InventoryBatch().deletePart(Integer.MAX_VALUE - 1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> Inventory.commit(new InventoryBatch().addPart(new InHouse(1_000_000_000, "Nut", 1, 5, 1, 10, 1))
+                        .deletePart(Integer.MAX_VALUE - 1)));
+        assertEquals(before, Inventory.getPartIds().getNextUnleased());
+        assertTrue(Inventory.getPartIds().next() < 1_000_000_000);
+        int products = Inventory.getProductIds().getNextUnleased();
+        assertThrows(IllegalArgumentException.class,
+                () -> Inventory.commit(new InventoryBatch().deleteProduct(1_000_000_000)));
+        assertEquals(products, Inventory.getProductIds().getNextUnleased());
+    }
+
+    @Test
+    void committedBatchMovesIdsPastAddedRecords() {
+        int explicit = Inventory.getPartIds().getNextUnleased() + 1000;
+        Inventory.commit(new InventoryBatch().addPart(new InHouse(explicit, "Nut", 1, 5, 1, 10, 1)));
+        assertNotNull(Inventory.lookupPart(explicit));
+        assertTrue(Inventory.getPartIds().next() > explicit);
+    }
+}
@@ -0,0 +1,65 @@
+package model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * This class tests that the running totals follow every change of the parts.
+ */
+class InventoryStatsTest {
+    @BeforeEach
+    void emptyInventory() {
+        TestSources.emptyInventory();
+        Inventory.getPartStats();
+    }
+
+    @Test
+    void totalsFollowChanges() {
+        Inventory.addPart(new InHouse(1, "Bolt", 0.1, 3, 1, 10, 1));
+        Inventory.addPart(new InHouse(2, "Nut", 0.2, 5, 1, 10, 1));
+        InventoryStats stats = Inventory.getPartStats();
+        assertEquals(2, stats.getCount());
+        assertEquals(8, stats.getTotalStock());
+        assertEquals(new BigDecimal("1.3"), stats.getTotalValue());
+        assertEquals(new BigDecimal("0.1"), stats.getMinPrice());
+        assertEquals(new BigDecimal("0.2"), stats.getMaxPrice());
+        Inventory.deletePart(Inventory.lookupPart(1));
+        stats = Inventory.getPartStats();
+        assertEquals(1, stats.getCount());
+        assertEquals(new BigDecimal("1.0"), stats.getTotalValue());
+    }
+
+    @Test
+    void nonFinitePricesAreCountedApart() {
+        Inventory.addPart(new InHouse(1, "Bolt", 2.0, 3, 1, 10, 1));
+        Inventory.addPart(new InHouse(2, "Nut", Double.NaN, 5, 1, 10, 1));
+        Inventory.addPart(new InHouse(3, "Cog", Double.POSITIVE_INFINITY, 4, 1, 10, 1));
+        InventoryStats stats = Inventory.getPartStats();
+        assertEquals(3, stats.getCount());
+        assertEquals(2, stats.getUnpricedCount());
+        assertEquals(12, stats.getTotalStock());
+        assertEquals(0, new BigDecimal("6").compareTo(stats.getTotalValue()));
+        assertEquals(0, new BigDecimal("2").compareTo(stats.getAveragePrice()));
+        assertTrue(Inventory.deletePart(Inventory.lookupPart(2)));
+        Inventory.updatePart(3, new InHouse(3, "Cog", 1.0, 4, 1, 10, 1));
+        stats = Inventory.getPartStats();
+        assertEquals(2, stats.getCount());
+        assertEquals(0, stats.getUnpricedCount());
+        assertEquals(0, new BigDecimal("10").compareTo(stats.getTotalValue()));
+    }
+
+    @Test
+    void onlyNonFinitePricesHaveNoPriceFigures() {
+        Inventory.addPart(new InHouse(1, "Nut", Double.NaN, 5, 1, 10, 1));
+        InventoryStats stats = Inventory.getPartStats();
+        assertEquals(1, stats.getCount());
+        assertNull(stats.getMinPrice());
+        assertNull(stats.getAveragePrice());
+    }
+}
@@ -0,0 +1,47 @@
+package model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * This class tests that name searches find the parts left after deletes, whether the name index drops the deleted
+ * names one by one or is rebuilt because most parts were deleted.
+ */
+class NameIndexTest {
+    private static final int PARTS = 10;
+
+    @BeforeEach
+    void addParts() {
+        TestSources.emptyInventory();
+        List<Part> parts = new ArrayList<>(PARTS);
+        for (int id = 1; id <= PARTS; id++) {
+            parts.add(new InHouse(id, "Bolt " + id + ".", 1, 5, 1, 10, 1));
+        }
+        Inventory.addParts(parts);
+    }
+
+    @Test
+    void fewDeletesDropTheirNames() {
+        assertEquals(2, Inventory.deleteParts(new int[] {3, 4}));
+        assertEquals(0, Inventory.lookupPartIds("Bolt 3.").length);
+        assertEquals(0, Inventory.lookupPartIds("Bolt 4.").length);
+        assertArrayEquals(new int[] {5}, Inventory.lookupPartIds("Bolt 5."));
+        assertEquals(PARTS - 2, Inventory.lookupPartIds("Bolt").length);
+    }
+
+    @Test
+    void mostDeletedRebuildsTheIndex() {
+        assertEquals(8, Inventory.deleteParts(new int[] {1, 2, 3, 4, 5, 6, 7, 8}));
+        assertEquals(0, Inventory.lookupPartIds("Bolt 1.").length);
+        assertArrayEquals(new int[] {9}, Inventory.lookupPartIds("Bolt 9."));
+        assertEquals(2, Inventory.lookupPartIds("Bolt").length);
+        Inventory.addPart(new InHouse(11, "Nut 11.", 1, 5, 1, 10, 1));
+        assertArrayEquals(new int[] {11}, Inventory.lookupPartIds("Nut"));
+    }
+}
@@ -0,0 +1,85 @@
+package model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * This class tests reserving, committing, releasing and expiring stock through the Inventory.
+ */
+class StockLedgerTest {
+    private static final int PART = 1;
+
+    @BeforeEach
+    void addPart() {
+        TestSources.emptyInventory();
+        Inventory.addPart(new InHouse(PART, "Bolt", 1, 10, 2, 20, 1));
+    }
+
+    @Test
+    void reserveHoldsStockBackUntilReleased() {
+        Reservation reservation = Inventory.reservePart(PART, 3);
+        assertNotNull(reservation);
+        assertTrue(reservation.isActive());
+        assertEquals(7, Inventory.getAvailablePartStock(PART));
+        assertTrue(reservation.release());
+        assertFalse(reservation.release());
+        assertFalse(reservation.commit());
+        assertEquals(10, Inventory.getAvailablePartStock(PART));
+    }
+
+    @Test
+    void commitTakesStockFromThePart() {
+        Reservation reservation = Inventory.reservePart(PART, 4);
+        assertTrue(reservation.commit());
+        assertFalse(reservation.release());
+        assertEquals(6, Inventory.getAvailablePartStock(PART));
+        Inventory.flushStock();
+        assertEquals(6, Inventory.lookupPart(PART).getStock());
+    }
+
+    @Test
+    void reserveNeverLeavesLessThanMin() {
+        assertNull(Inventory.reservePart(PART, 9));
+        Reservation reservation = Inventory.reservePart(PART, 8);
+        assertNotNull(reservation);
+        assertNull(Inventory.reservePart(PART, 1));
+        assertEquals(2, Inventory.getAvailablePartStock(PART));
+        reservation.release();
+        assertNotNull(Inventory.reservePart(PART, 1));
+    }
+
+    @Test
+    void expiredReservationIsReleased() throws InterruptedException {
+        Reservation reservation = Inventory.reservePart(PART, 5, 50);
+        assertEquals(5, Inventory.getAvailablePartStock(PART));
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (Inventory.getAvailablePartStock(PART) != 10 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(10, Inventory.getAvailablePartStock(PART));
+        assertFalse(reservation.isActive());
+        assertFalse(reservation.commit());
+        assertEquals(10, Inventory.lookupPart(PART).getStock());
+    }
+
+    @Test
+    void receiveAddsStockUpToMax() {
+        assertTrue(Inventory.receivePart(PART, 10));
+        assertFalse(Inventory.receivePart(PART, 1));
+        assertEquals(20, Inventory.getAvailablePartStock(PART));
+    }
+
+    @Test
+    void missingPartIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> Inventory.reservePart(99, 1));
+        assertThrows(IllegalArgumentException.class, () -> Inventory.reservePart(PART, 0));
+        assertEquals(-1, Inventory.getAvailablePartStock(99));
+    }
+}
@@ -0,0 +1,35 @@
+package model;
+
+/**
+ * This class sets up the static Inventory for tests.
+ */
+public final class TestSources {
+    private TestSources() {
+    }
+
+    /**
+     * Removes every part and product, so each test starts from an empty Inventory.
+     */
+    public static void emptyInventory() {
+        Inventory.load(empty(), empty());
+    }
+
+    private static <T> RecordSource<T> empty() {
+        return new RecordSource<T>() {
+            @Override
+            public int size() {
+                return 0;
+            }
+
+            @Override
+            public int idAt(int index) {
+                throw new IndexOutOfBoundsException(index);
+            }
+
+            @Override
+            public T load(int id) {
+                return null;
+            }
+        };
+    }
+}
@@ -0,0 +1,36 @@
+package model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * This class tests the checks shared by the forms, the CSV importer and batches.
+ */
+class ValidationTest {
+    @BeforeEach
+    void emptyInventory() {
+        TestSources.emptyInventory();
+    }
+
+    @Test
+    void namesMustFitTheRecordFiles() {
+        assertNull(Validation.checkRecord("a".repeat(Validation.MAX_NAME_BYTES), 1, 0, 1));
+        assertEquals("Name is too long.", Validation.checkRecord("a".repeat(70_000), 1, 0, 1));
+        // three bytes each in modified UTF-8
+        assertNull(Validation.checkRecord("\u20AC".repeat(Validation.MAX_NAME_BYTES / 3), 1, 0, 1));
+        assertEquals("Name is too long.", Validation.checkRecord("\u20AC".repeat(Validation.MAX_NAME_BYTES / 3 + 1),
+                1, 0, 1));
+        assertEquals("Company Name is too long.", Validation.checkCompanyName("a".repeat(70_000)));
+    }
+
+    @Test
+    void batchWithTooLongNameChangesNothing() {
+        InventoryBatch batch = new InventoryBatch().addPart(new InHouse(1, "a".repeat(70_000), 1, 5, 1, 10, 1));
+        assertThrows(IllegalArgumentException.class, () -> Inventory.commit(batch));
+        assertNull(Inventory.lookupPart(1));
+    }
+}
@@ -0,0 +1,60 @@
+package persistence;
+
+import model.Inventory;
+import model.TestSources;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * This class tests that the CSV importer reports bad rows and goes on with the rest.
+ */
+class CsvImporterTest {
+    @BeforeEach
+    void emptyInventory() {
+        TestSources.emptyInventory();
+    }
+
+    @Test
+    void badSubAssembliesAreReportedAndTheImportGoesOn() throws IOException {
+        String csv = "id,name,price,stock,min,max,parts,subassemblies\n"
+                + ",A,1,1,0,5,,0:2\n"
+                + "5,B,1,1,0,5,,5:1\n"
+                + "6,C,1,1,0,5,,-3:1\n"
+                + "7,D,1,1,0,5,,8:0\n"
+                + "8,E,1,1,0,5,,\n"
+                + ",F,1,1,0,5,,8:2\n";
+        List<CsvImporter.RowError> errors = new ArrayList<>();
+        CsvImporter.Report report = CsvImporter.importProducts(new StringReader(csv), 2, errors::add);
+        assertEquals(6, report.getRows());
+        assertEquals(2, report.getImported());
+        assertEquals(List.of(2, 3, 4, 5), errors.stream().map(CsvImporter.RowError::getLine).toList());
+        assertNotNull(Inventory.lookupProduct(8));
+        int[] added = Inventory.lookupProductIds("F");
+        assertEquals(1, added.length);
+        assertEquals(Map.of(8, 2), Inventory.lookupProduct(added[0]).getSubAssemblies());
+    }
+
+    @Test
+    void badPartRowsAreReportedAndTheImportGoesOn() throws IOException {
+        String csv = "type,id,name,price,stock,min,max,source\n"
+                + "InHouse,1,Bolt,x,5,1,10,3\n"
+                + "Outsourced,2,Nut,1,5,1,10,\n"
+                + "Gadget,3,Cog,1,5,1,10,3\n"
+                + "InHouse,4,Washer,1,50,1,10,3\n"
+                + "InHouse,5,Spring,1,5,1,10,3\n";
+        List<CsvImporter.RowError> errors = new ArrayList<>();
+        CsvImporter.Report report = CsvImporter.importParts(new StringReader(csv), errors::add);
+        assertEquals(1, report.getImported());
+        assertEquals(List.of(2, 3, 4, 5), errors.stream().map(CsvImporter.RowError::getLine).toList());
+        assertNotNull(Inventory.lookupPart(5));
+    }
+}
@@ -0,0 +1,87 @@
+package persistence;
+
+import model.InHouse;
+import model.Inventory;
+import model.Outsourced;
+import model.Product;
+import model.TestSources;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * This class tests that a CSV export, with the sub-assemblies of the products, can be imported again.
+ */
+class InventoryExporterTest {
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void emptyInventory() {
+        TestSources.emptyInventory();
+    }
+
+    @Test
+    void csvExportImportsAgain() throws IOException {
+        Inventory.addParts(List.of(new InHouse(1, "Spoke", 0.5, 100, 10, 500, 7),
+                new Outsourced(2, "Tyre, \"road\"", 12.0, 20, 2, 50, "Tyres & Co")));
+        Product wheel = new Product(1, "Wheel", 40, 4, 1, 10);
+        wheel.addAssociatedPart(Inventory.lookupPart(1));
+        wheel.addAssociatedPart(Inventory.lookupPart(2));
+        Product frame = new Product(2, "Frame", 90, 2, 1, 5);
+        frame.addSubAssembly(1, 1);
+        Product bike = new Product(3, "Bike", 300, 1, 0, 3);
+        bike.addSubAssembly(1, 2);
+        bike.addSubAssembly(2, 1);
+        Inventory.addProducts(List.of(wheel, frame, bike));
+        Path parts = directory.resolve("parts.csv");
+        Path products = directory.resolve("products.csv");
+        InventoryExporter.Report report = InventoryExporter.export(parts, products, InventoryExporter.Format.CSV);
+        assertEquals(2, report.getParts());
+        assertEquals(3, report.getProducts());
+
+        TestSources.emptyInventory();
+        List<CsvImporter.RowError> errors = new ArrayList<>();
+        try (Reader in = Files.newBufferedReader(parts)) {
+            CsvImporter.importParts(in, errors::add);
+        }
+        try (Reader in = Files.newBufferedReader(products)) {
+            CsvImporter.importProducts(in, errors::add);
+        }
+        assertEquals(List.of(), errors);
+        assertEquals("Tyre, \"road\"", Inventory.lookupPart(2).getName());
+        assertEquals(2, Inventory.lookupProduct(1).getAllAssociatedParts().size());
+        assertEquals(Map.of(1, 1), Inventory.lookupProduct(2).getSubAssemblies());
+        assertEquals(Map.of(1, 2, 2, 1), Inventory.lookupProduct(3).getSubAssemblies());
+        assertEquals(Map.of(1, 3L, 2, 3L), Inventory.explodeProduct(3));
+    }
+
+    @Test
+    void cyclicSubAssembliesAreReportedByRow() throws IOException {
+        String csv = "id,name,price,stock,min,max,parts,subassemblies\n"
+                + "1,A,1,1,0,5,,2:1\n"
+                + "2,B,1,1,0,5,,1:1\n"
+                + "3,C,1,1,0,5,,1:2;2:1\n"
+                + "4,D,1,1,0,5,,x:1\n";
+        List<CsvImporter.RowError> errors = new ArrayList<>();
+        CsvImporter.Report report = CsvImporter.importProducts(new StringReader(csv), errors::add);
+        assertEquals(2, report.getImported());
+        assertEquals(2, errors.size());
+        assertEquals(3, errors.get(0).getLine());
+        assertTrue(errors.get(0).getMessage().contains("contain itself"));
+        assertEquals(5, errors.get(1).getLine());
+        assertEquals(Map.of(1, 2, 2, 1), Inventory.lookupProduct(3).getSubAssemblies());
+    }
+}
@@ -0,0 +1,152 @@
+package persistence;
+
+import model.InHouse;
+import model.Inventory;
+import model.Outsourced;
+import model.Part;
+import model.Product;
+import model.TestSources;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * This class tests that the Inventory, with the sub-assemblies of its products, comes back the same from the journal
+ * and from a snapshot.
+ */
+class InventoryStoreTest {
+    @TempDir
+    Path directory;
+
+    private InventoryStore store;
+
+    @BeforeEach
+    void emptyInventory() {
+        TestSources.emptyInventory();
+    }
+
+    @AfterEach
+    void closeStore() throws IOException {
+        if (store != null) {
+            store.close();
+        }
+        TestSources.emptyInventory();
+    }
+
+    @Test
+    void journalReplaysSubAssemblies() throws IOException {
+        store = InventoryStore.open(directory, WriteAheadLog.Durability.SYNC, 0);
+        String expected = build();
+        crash();
+        store = InventoryStore.open(directory, WriteAheadLog.Durability.SYNC, 0);
+        assertFalse(store.isEmpty());
+        assertEquals(expected, describe());
+        assertEquals(Map.of(1, 3L, 2, 3L), Inventory.explodeProduct(3));
+    }
+
+    @Test
+    void snapshotKeepsSubAssemblies() throws IOException {
+        store = InventoryStore.open(directory, WriteAheadLog.Durability.SYNC, 0);
+        String expected = build();
+        store.close();
+        store = null;
+        TestSources.emptyInventory();
+        store = InventoryStore.open(directory, WriteAheadLog.Durability.SYNC, 0);
+        assertEquals(0, store.getJournal().getLog().getReplayedCount());
+        assertEquals(expected, describe());
+        assertEquals(Map.of(1, 3L, 2, 3L), Inventory.explodeProduct(3));
+    }
+
+    @Test
+    void journalAfterSnapshotIsReplayedOnTop() throws IOException {
+        store = InventoryStore.open(directory, WriteAheadLog.Durability.GROUP, 1);
+        build();
+        store.checkpoint();
+        Product wheel = Inventory.lookupProduct(1);
+        wheel.addSubAssembly(4, 2);
+        Inventory.lookupProduct(3).removeSubAssembly(2);
+        String expected = describe();
+        crash();
+        store = InventoryStore.open(directory, WriteAheadLog.Durability.GROUP, 1);
+        assertEquals(expected, describe());
+    }
+
+    @Test
+    void newIdsAreNotReusedAfterRestart() throws IOException {
+        store = InventoryStore.open(directory, WriteAheadLog.Durability.SYNC, 0);
+        build();
+        crash();
+        store = InventoryStore.open(directory, WriteAheadLog.Durability.SYNC, 0);
+        int id = Inventory.getPartIds().next();
+        assertEquals(null, Inventory.lookupPart(id));
+        Inventory.addPart(new InHouse(id, "Nut", 0.1, 5, 1, 10, 2));
+        assertNotNull(Inventory.lookupPart(id));
+    }
+
+    /**
+     * Adds parts and products with associated parts and nested sub-assemblies, and changes some of them.
+     * @return The description of the Inventory afterwards.
+     */
+    private static String build() {
+        Inventory.addParts(List.of(new InHouse(1, "Spoke", 0.5, 100, 10, 500, 7),
+                new Outsourced(2, "Tyre, road", 12.0, 20, 2, 50, "Tyres & Co"),
+                new InHouse(3, "Bell", 3.0, 5, 1, 10, 8)));
+        Product wheel = new Product(1, "Wheel", 40, 4, 1, 10);
+        wheel.addAssociatedPart(Inventory.lookupPart(1));
+        wheel.addAssociatedPart(Inventory.lookupPart(2));
+        Product frame = new Product(2, "Frame", 90, 2, 1, 5);
+        Product bike = new Product(3, "Bike", 300, 1, 0, 3);
+        bike.addSubAssembly(1, 2);
+        bike.addSubAssembly(2, 1);
+        Inventory.addProducts(List.of(wheel, frame, bike));
+        Inventory.addProduct(new Product(4, "Trailer", 80, 1, 0, 2));
+        Product updated = new Product(1, "Wheel", 45, 4, 1, 10);
+        updated.addAssociatedPart(Inventory.lookupPart(1));
+        updated.addAssociatedPart(Inventory.lookupPart(2));
+        Inventory.updateProduct(0, updated);
+        Inventory.lookupProduct(2).addSubAssembly(1, 1);
+        Inventory.deletePart(Inventory.lookupPart(3));
+        return describe();
+    }
+
+    /**
+     * Stops recording changes without a final checkpoint, as if the application had stopped, and empties the
+     * Inventory.
+     */
+    private void crash() throws IOException {
+        Inventory.getPartIds().setReserver(null);
+        Inventory.getProductIds().setReserver(null);
+        Inventory.removeListener(store.getJournal());
+        store.getJournal().close();
+        store = null;
+        TestSources.emptyInventory();
+    }
+
+    private static String describe() {
+        String parts = Inventory.getAllParts().stream().map(InventoryStoreTest::describe)
+                .collect(Collectors.joining("\n"));
+        String products = Inventory.getAllProducts().stream().map(product -> product.getId() + " "
+                + product.getName() + " " + product.getPrice() + " " + product.getStock() + " "
+                + product.getAllAssociatedParts().stream().map(part -> Integer.toString(part.getId()))
+                        .collect(Collectors.joining(",")) + " " + product.getSubAssemblies())
+                .collect(Collectors.joining("\n"));
+        return parts + "\n" + products;
+    }
+
+    private static String describe(Part part) {
+        String source = part instanceof InHouse ? Integer.toString(((InHouse) part).getMachineId())
+                : ((Outsourced) part).getCompanyName();
+        return part.getId() + " " + part.getName() + " " + part.getPrice() + " " + part.getStock() + " " + source;
+    }
+}
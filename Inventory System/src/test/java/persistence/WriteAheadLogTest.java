@@ -0,0 +1,149 @@
+package persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * This class tests that the write-ahead log replays every intact record and drops a torn or corrupt tail.
+ */
+class WriteAheadLogTest {
+    private static final byte TYPE = 1;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysEveryRecordInOrder() throws IOException {
+        Path file = directory.resolve("test.wal");
+        write(file, WriteAheadLog.Durability.SYNC, "one", "two", "three");
+        List<String> replayed = new ArrayList<>();
+        try (WriteAheadLog log = open(file, replayed)) {
+            assertEquals(3, log.getReplayedCount());
+        }
+        assertEquals(List.of("one", "two", "three"), replayed);
+    }
+
+    @Test
+    void groupAndAsyncRecordsAreOnDiskAfterClose() throws IOException {
+        for (WriteAheadLog.Durability durability : List.of(WriteAheadLog.Durability.GROUP,
+                WriteAheadLog.Durability.ASYNC)) {
+            Path file = directory.resolve(durability + ".wal");
+            write(file, durability, "one", "two");
+            List<String> replayed = new ArrayList<>();
+            open(file, replayed).close();
+            assertEquals(List.of("one", "two"), replayed);
+        }
+    }
+
+    @Test
+    void tornRecordAtTheEndIsDropped() throws IOException {
+        Path file = directory.resolve("torn.wal");
+        write(file, WriteAheadLog.Durability.SYNC, "one", "two", "three");
+        long intact = Files.size(file) - recordSize("three");
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(Files.size(file) - 2);
+        }
+        assertTailDroppedAndAppendable(file, intact);
+    }
+
+    @Test
+    void corruptRecordAtTheEndIsDropped() throws IOException {
+        Path file = directory.resolve("corrupt.wal");
+        write(file, WriteAheadLog.Durability.SYNC, "one", "two", "three");
+        long intact = Files.size(file) - recordSize("three");
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(Files.size(file) - 1);
+            raf.write('x');
+        }
+        assertTailDroppedAndAppendable(file, intact);
+    }
+
+    @Test
+    void headerOnlyRecordIsDropped() throws IOException {
+        Path file = directory.resolve("header.wal");
+        write(file, WriteAheadLog.Durability.SYNC, "one");
+        long intact = Files.size(file);
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(intact);
+            raf.writeInt(100);
+            raf.writeInt(0);
+        }
+        List<String> replayed = new ArrayList<>();
+        open(file, replayed).close();
+        assertEquals(List.of("one"), replayed);
+        assertEquals(intact, Files.size(file));
+    }
+
+    @Test
+    void coveredGenerationIsNotReplayed() throws IOException {
+        Path file = directory.resolve("covered.wal");
+        long generation;
+        try (WriteAheadLog log = WriteAheadLog.open(file, WriteAheadLog.Durability.SYNC, 0, (type, in) -> { })) {
+            generation = log.getGeneration();
+            log.append(TYPE, bytes("one"));
+        }
+        List<String> replayed = new ArrayList<>();
+        try (WriteAheadLog log = WriteAheadLog.open(file, WriteAheadLog.Durability.SYNC, 0, generation,
+                (type, in) -> replayed.add(text(in)))) {
+            assertEquals(generation + 1, log.getGeneration());
+        }
+        assertEquals(List.of(), replayed);
+    }
+
+    private void assertTailDroppedAndAppendable(Path file, long intact) throws IOException {
+        List<String> replayed = new ArrayList<>();
+        try (WriteAheadLog log = open(file, replayed)) {
+            assertEquals(2, log.getReplayedCount());
+            assertEquals(intact, Files.size(file));
+            log.append(TYPE, bytes("four"));
+        }
+        assertEquals(List.of("one", "two"), replayed);
+        replayed.clear();
+        open(file, replayed).close();
+        assertEquals(List.of("one", "two", "four"), replayed);
+    }
+
+    private static void write(Path file, WriteAheadLog.Durability durability, String... records) throws IOException {
+        try (WriteAheadLog log = WriteAheadLog.open(file, durability, 1, (type, in) -> { })) {
+            for (String record : records) {
+                log.append(TYPE, bytes(record));
+            }
+        }
+    }
+
+    private static WriteAheadLog open(Path file, List<String> replayed) throws IOException {
+        return WriteAheadLog.open(file, WriteAheadLog.Durability.SYNC, 0, (type, in) -> {
+            assertEquals(TYPE, type);
+            replayed.add(text(in));
+        });
+    }
+
+    /**
+     * Gets the bytes a record takes in the file: length, checksum and type, then the payload.
+     */
+    private static long recordSize(String record) {
+        return 9 + bytes(record).length;
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(DataInput in) throws IOException {
+        byte[] payload = new byte[((DataInputStream) in).available()];
+        in.readFully(payload);
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+}